@@ -0,0 +1,110 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.config.RedisConfig;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thao tác admin trên cache: thống kê từng cache và xoá có chủ đích (một cache / một key)
+ * thay cho flushDb — flushDb còn xoá cả blacklist token, token version, lock, ...
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheAdminService {
+
+    private static final int MAX_SCANNED_KEYS = 100_000;
+
+    private final CacheManager cacheManager;
+    private final CacheMetricsRegistry metrics;
+    private final CacheLoadCoalescer coalescer;
+    private final CacheGenerationService generationService;
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * @param redisKeys số key của generation hiện tại trên Redis (SCAN, chỉ chạy khi admin gọi;
+     *                  -1 nếu Redis lỗi, chặn ở {@value #MAX_SCANNED_KEYS})
+     * @param l1Size    số entry L1 trên node này; -1 nếu không dùng L1
+     */
+    public record CacheStats(String cacheName, long ttlSeconds, long generation, CacheMetricsRegistry.Snapshot metrics,
+            long coalescedWaiters, long l1Size, long l1Evictions, long redisKeys) {
+    }
+
+    public List<CacheStats> stats() {
+        return cacheNames().stream().map(this::stats).toList();
+    }
+
+    public CacheStats stats(String cacheName) {
+        TwoTierCacheManager twoTier = cacheManager instanceof TwoTierCacheManager m ? m : null;
+        return new CacheStats(cacheName,
+                RedisConfig.cacheTtls().getOrDefault(cacheName, RedisConfig.DEFAULT_CACHE_TTL).toSeconds(),
+                generationService.current(cacheName),
+                metrics.snapshot(cacheName),
+                coalescer.stats(cacheName).coalescedWaiters(),
+                twoTier != null ? twoTier.l1Size(cacheName) : -1,
+                twoTier != null ? twoTier.l1Evictions(cacheName) : 0,
+                countRedisKeys(cacheName));
+    }
+
+    /** Xoá toàn bộ một cache (bump generation). */
+    public void evictCache(String cacheName) {
+        requireCache(cacheName).clear();
+        log.info("[CACHE] Cache {} cleared by admin request", cacheName);
+    }
+
+    /** Xoá một key của cache — key ở dạng chuỗi, giống cách RedisCache và L1 chuyển key. */
+    public void evictKey(String cacheName, String key) {
+        requireCache(cacheName).evict(key);
+        log.info("[CACHE] Key {} of cache {} evicted by admin request", key, cacheName);
+    }
+
+    /** Xoá mọi cache ứng dụng; các key Redis khác (blacklist, lock, session) giữ nguyên. */
+    public void evictAll() {
+        cacheNames().forEach(name -> requireCache(name).clear());
+        log.info("[CACHE] All application caches cleared by admin request");
+    }
+
+    private Set<String> cacheNames() {
+        Set<String> names = new LinkedHashSet<>(RedisConfig.cacheTtls().keySet());
+        names.addAll(cacheManager.getCacheNames());
+        return names;
+    }
+
+    private Cache requireCache(String cacheName) {
+        if (!cacheNames().contains(cacheName)) {
+            throw new IllegalArgumentException("Unknown cache: " + cacheName);
+        }
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            throw new IllegalArgumentException("Unknown cache: " + cacheName);
+        }
+        return cache;
+    }
+
+    private long countRedisKeys(String cacheName) {
+        long count = 0;
+        try (Cursor<String> cursor = redisTemplate.scan(
+                ScanOptions.scanOptions().match(generationService.keyPrefix(cacheName) + "*").count(500).build())) {
+            while (cursor.hasNext() && count < MAX_SCANNED_KEYS) {
+                cursor.next();
+                count++;
+            }
+            return count;
+        } catch (Exception e) {
+            log.warn("[CACHE] Cannot count keys of {}: {}", cacheName, e.getMessage());
+            return -1;
+        }
+    }
+}
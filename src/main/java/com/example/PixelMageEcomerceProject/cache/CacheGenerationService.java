@@ -0,0 +1,167 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generation counter cho từng cache namespace.
+ *
+ * Key Redis thật của entry có dạng {@code {cacheName}::g{generation}::{key}}. "Xoá cả cache"
+ * = một lệnh INCR {@code cache:gen:{cacheName}} thay cho SCAN + DEL: entry của generation cũ
+ * không còn được đọc tới và tự hết hạn theo TTL.
+ *
+ * Mỗi node giữ bản sao local của generation (cập nhật qua pub/sub, làm mới định kỳ) nên việc
+ * tính key không tốn round trip.
+ *
+ * Counter nằm chung Redis allkeys-lru với entry nên có thể bị evict / flush. Generation không
+ * được đi lùi (số cũ có thể còn entry cũ), nên bump luôn INCR từ max(Redis, local). Thấy Redis
+ * thấp hơn bản local nghĩa là counter đã mất và có thể đã có bump bị nuốt: bump lại từ local.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheGenerationService implements MessageListener {
+
+    private static final String PREFIX_GENERATION = "cache:gen:"; // cache:gen:{cacheName} → generation
+    private static final String CHANNEL_GENERATION = "cache:generation"; // payload: "{cacheName}:{generation}"
+
+    // ARGV[1] = generation local; counter mất hoặc thấp hơn thì INCR từ đó
+    private static final RedisScript<Long> BUMP_SCRIPT = new DefaultRedisScript<>(
+            "local v = tonumber(redis.call('GET', KEYS[1]) or '0') "
+                    + "local floor = tonumber(ARGV[1]) "
+                    + "if v < floor then v = floor end "
+                    + "v = v + 1 "
+                    + "redis.call('SET', KEYS[1], v) "
+                    + "return v",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<String, LocalGeneration> generations = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> bumpListeners = new CopyOnWriteArrayList<>();
+
+    @Value("${cache.generation.local-ttl-ms:60000}")
+    private long localTtlMillis;
+
+    private record LocalGeneration(long generation, long loadedAt) {
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL_GENERATION));
+    }
+
+    /** Đăng ký callback được gọi (trên mọi node) khi generation của một cache tăng. */
+    public void addBumpListener(Consumer<String> listener) {
+        bumpListeners.add(listener);
+    }
+
+    /** Key prefix Redis cho cache, gắn generation hiện tại. */
+    public String keyPrefix(String cacheName) {
+        return cacheName + "::g" + current(cacheName) + "::";
+    }
+
+    public long current(String cacheName) {
+        long now = System.currentTimeMillis();
+        LocalGeneration cached = generations.get(cacheName);
+        if (cached != null && now - cached.loadedAt() < localTtlMillis) {
+            return cached.generation();
+        }
+        try {
+            String raw = redisTemplate.opsForValue().get(PREFIX_GENERATION + cacheName);
+            long generation = raw != null ? Long.parseLong(raw) : 0L;
+            if (cached != null && generation < cached.generation()) {
+                return recoverLostCounter(cacheName, cached.generation());
+            }
+            remember(cacheName, generation, now);
+            if (cached != null && cached.generation() < generation) {
+                // Lỡ mất message bump → phát hiện khi làm mới, vẫn báo cho listener (xoá L1)
+                bumpListeners.forEach(listener -> listener.accept(cacheName));
+            }
+            return generations.get(cacheName).generation();
+        } catch (Exception e) {
+            log.warn("[CACHE-GEN] Cannot read generation of {}: {}", cacheName, e.getMessage());
+            return cached != null ? cached.generation() : 0L;
+        }
+    }
+
+    /** Vô hiệu hoá toàn bộ namespace bằng một INCR duy nhất. */
+    public long bump(String cacheName) {
+        LocalGeneration local = generations.get(cacheName);
+        Long generation = redisTemplate.execute(BUMP_SCRIPT, List.of(PREFIX_GENERATION + cacheName),
+                String.valueOf(local != null ? local.generation() : 0L));
+        long newGeneration = generation != null ? generation : 0L;
+        remember(cacheName, newGeneration, System.currentTimeMillis());
+        bumpListeners.forEach(listener -> listener.accept(cacheName));
+        try {
+            redisTemplate.convertAndSend(CHANNEL_GENERATION, cacheName + ":" + newGeneration);
+        } catch (Exception e) {
+            log.warn("[CACHE-GEN] Failed to broadcast bump of {}: {}", cacheName, e.getMessage());
+        }
+        log.debug("[CACHE-GEN] {} bumped to generation {}", cacheName, newGeneration);
+        return newGeneration;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = payload.lastIndexOf(':');
+        if (sep <= 0) {
+            return;
+        }
+        try {
+            String cacheName = payload.substring(0, sep);
+            long generation = Long.parseLong(payload.substring(sep + 1));
+            LocalGeneration before = generations.get(cacheName);
+            if (before != null && generation < before.generation()) {
+                // Message trễ thì bỏ qua; còn node khác vừa INCR trên counter đã mất thì bump đó phải có hiệu lực
+                String raw = redisTemplate.opsForValue().get(PREFIX_GENERATION + cacheName);
+                if (raw == null || Long.parseLong(raw) < before.generation()) {
+                    recoverLostCounter(cacheName, before.generation());
+                }
+                return;
+            }
+            remember(cacheName, generation, System.currentTimeMillis());
+            if (before == null || before.generation() < generation) {
+                bumpListeners.forEach(listener -> listener.accept(cacheName));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("[CACHE-GEN] Ignoring malformed message: {}", payload);
+        } catch (RuntimeException e) {
+            log.warn("[CACHE-GEN] Cannot handle message {}: {}", payload, e.getMessage());
+        }
+    }
+
+    private long recoverLostCounter(String cacheName, long localGeneration) {
+        log.warn("[CACHE-GEN] Counter of {} is behind local generation {} (evicted or flushed), bumping past it",
+                cacheName, localGeneration);
+        return bump(cacheName);
+    }
+
+    /** Generation chỉ tăng — message đến trễ không được kéo lùi. */
+    private void remember(String cacheName, long generation, long loadedAt) {
+        generations.merge(cacheName, new LocalGeneration(generation, loadedAt),
+                (old, fresh) -> fresh.generation() >= old.generation()
+                        ? fresh
+                        : new LocalGeneration(old.generation(), loadedAt));
+    }
+}
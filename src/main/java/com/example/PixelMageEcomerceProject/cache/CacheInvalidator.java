@@ -0,0 +1,146 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Invalidation cache theo lập trình, thay cho chuỗi {@code @CacheEvict(allEntries = true)}.
+ *
+ * - {@link #invalidateNamespaces}: bump generation (một INCR / namespace).
+ * - {@link #evict}: xoá đúng các key bị ảnh hưởng (product / pack category cụ thể).
+ *
+ * Trong transaction: gom lại và thực thi một lần sau commit (rollback → bỏ).
+ * Trong {@link #batch()}: gom qua nhiều transaction, thực thi một lần khi đóng batch —
+ * dùng cho tool chạy hàng loạt như generatePacks.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidator {
+
+    private static final ThreadLocal<Pending> BATCH = new ThreadLocal<>();
+
+    private final CacheManager cacheManager;
+    private final CacheGenerationService generationService;
+
+    /** Invalidation gom lại, chưa thực thi. */
+    private static final class Pending {
+        private final Set<String> namespaces = new LinkedHashSet<>();
+        private final Map<String, Set<Object>> keys = new LinkedHashMap<>();
+        private int depth = 1;
+    }
+
+    /** Scope gom invalidation; đóng scope ngoài cùng → thực thi một lần. */
+    public final class Batch implements AutoCloseable {
+        private final Pending pending;
+
+        private Batch(Pending pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void close() {
+            if (--pending.depth == 0) {
+                BATCH.remove();
+                flushPending(pending);
+            }
+        }
+    }
+
+    public Batch batch() {
+        Pending existing = BATCH.get();
+        if (existing != null) {
+            existing.depth++;
+            return new Batch(existing);
+        }
+        Pending pending = new Pending();
+        BATCH.set(pending);
+        return new Batch(pending);
+    }
+
+    public void invalidateNamespaces(String... cacheNames) {
+        Pending pending = currentPending();
+        if (pending == null) {
+            Arrays.stream(cacheNames).forEach(generationService::bump);
+            return;
+        }
+        pending.namespaces.addAll(Arrays.asList(cacheNames));
+    }
+
+    public void evict(String cacheName, Collection<?> cacheKeys) {
+        if (cacheKeys.isEmpty()) {
+            return;
+        }
+        Pending pending = currentPending();
+        if (pending == null) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cacheKeys.forEach(cache::evict);
+            }
+            return;
+        }
+        pending.keys.computeIfAbsent(cacheName, n -> new LinkedHashSet<>()).addAll(cacheKeys);
+    }
+
+    /**
+     * Pending của batch hiện tại, hoặc của transaction hiện tại (đăng ký flush sau commit);
+     * null → thực thi ngay.
+     */
+    private Pending currentPending() {
+        Pending batch = BATCH.get();
+        if (batch != null) {
+            return batch;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Pending created = new Pending();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidator.this);
+                    if (status == STATUS_COMMITTED) {
+                        flushPending(created);
+                    }
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+
+    private void flushPending(Pending pending) {
+        try {
+            pending.namespaces.forEach(generationService::bump);
+            pending.keys.forEach((cacheName, cacheKeys) -> {
+                if (pending.namespaces.contains(cacheName)) {
+                    return; // cả namespace đã bị bump
+                }
+                Cache cache = cacheManager.getCache(cacheName);
+                if (cache != null) {
+                    cacheKeys.forEach(cache::evict);
+                }
+            });
+            log.debug("[CACHE-INVALIDATE] Bumped={} evicted={}", pending.namespaces, pending.keys);
+        } catch (Exception e) {
+            // Cache cũ tự hết hạn theo TTL — không làm hỏng thao tác nghiệp vụ đã commit
+            log.error("[CACHE-INVALIDATE] Flush failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single-flight cho cache miss: mỗi key chỉ có một loader trên mỗi node, các request đồng thời
+ * cùng chờ một future.
+ *
+ * Tuỳ chọn lease Redis ({@code cache:lease:{cache}::{key}}, SET NX PX): trong cả cluster chỉ node giữ
+ * lease gọi loader; node khác poll L2 tới khi giá trị xuất hiện hoặc lease hết hạn, rồi mới tự load.
+ *
+ * Áp dụng cho {@code @Cacheable(sync = true)} — Spring chỉ đi qua {@link Cache#get(Object, Callable)}
+ * khi bật sync.
+ */
+@Slf4j
+public class CacheLoadCoalescer {
+
+    private static final String PREFIX_LEASE = "cache:lease:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean leaseEnabled;
+    private final Duration leaseTtl;
+    private final Duration leasePollInterval;
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public record Stats(long loads, long coalescedWaiters, long leaseWaits, long leaseFills) {
+    }
+
+    private static final class Counters {
+        private final LongAdder loads = new LongAdder();
+        private final LongAdder coalescedWaiters = new LongAdder();
+        private final LongAdder leaseWaits = new LongAdder();
+        private final LongAdder leaseFills = new LongAdder();
+
+        Stats snapshot() {
+            return new Stats(loads.sum(), coalescedWaiters.sum(), leaseWaits.sum(), leaseFills.sum());
+        }
+    }
+
+    public CacheLoadCoalescer(StringRedisTemplate redisTemplate, boolean leaseEnabled, Duration leaseTtl,
+            Duration leasePollInterval) {
+        this.redisTemplate = redisTemplate;
+        this.leaseEnabled = leaseEnabled;
+        this.leaseTtl = leaseTtl;
+        this.leasePollInterval = leasePollInterval;
+    }
+
+    /**
+     * Đọc lại L2, miss → gọi loader và ghi L2. Caller đồng thời cùng key chờ kết quả của caller đầu tiên.
+     */
+    public Object load(String cacheName, String key, Cache l2, Object cacheKey, Callable<?> loader) throws Exception {
+        String flightKey = cacheName + "::" + key;
+        Counters stats = counters(cacheName);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, mine);
+        if (existing != null) {
+            stats.coalescedWaiters.increment();
+            return await(existing);
+        }
+        try {
+            Object value = loadOnce(flightKey, stats, l2, cacheKey, loader);
+            mine.complete(value);
+            return value;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    public Map<String, Stats> stats() {
+        Map<String, Stats> snapshot = new TreeMap<>();
+        counters.forEach((name, c) -> snapshot.put(name, c.snapshot()));
+        return snapshot;
+    }
+
+    public Stats stats(String cacheName) {
+        Counters c = counters.get(cacheName);
+        return c != null ? c.snapshot() : new Stats(0, 0, 0, 0);
+    }
+
+    private Object loadOnce(String flightKey, Counters stats, Cache l2, Object cacheKey, Callable<?> loader)
+            throws Exception {
+        // Request trước có thể vừa ghi L2 xong
+        Cache.ValueWrapper cached = l2.get(cacheKey);
+        if (cached != null) {
+            return cached.get();
+        }
+        if (!leaseEnabled) {
+            return loadAndStore(stats, l2, cacheKey, loader);
+        }
+        String leaseKey = PREFIX_LEASE + flightKey;
+        String token = UUID.randomUUID().toString();
+        if (tryAcquireLease(leaseKey, token)) {
+            try {
+                return loadAndStore(stats, l2, cacheKey, loader);
+            } finally {
+                releaseLease(leaseKey, token);
+            }
+        }
+        // Node khác đang load: chờ nó ghi L2, tối đa một lần TTL của lease
+        stats.leaseWaits.increment();
+        long deadline = System.nanoTime() + leaseTtl.toNanos();
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(leasePollInterval.toMillis());
+            cached = l2.get(cacheKey);
+            if (cached != null) {
+                stats.leaseFills.increment();
+                return cached.get();
+            }
+            if (!Boolean.TRUE.equals(leaseExists(leaseKey))) {
+                break; // leader lỗi / đã nhả lease mà không ghi được
+            }
+        }
+        return loadAndStore(stats, l2, cacheKey, loader);
+    }
+
+    private Object loadAndStore(Counters stats, Cache l2, Object cacheKey, Callable<?> loader) throws Exception {
+        stats.loads.increment();
+        Object value = loader.call();
+        if (value != null) {
+            l2.put(cacheKey, value);
+        }
+        return value;
+    }
+
+    private boolean tryAcquireLease(String leaseKey, String token) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(leaseKey, token, leaseTtl));
+        } catch (Exception e) {
+            // Redis lỗi → vẫn load local, chỉ mất phần điều phối giữa các node
+            log.warn("[CACHE-SF] Cannot acquire lease {}: {}", leaseKey, e.getMessage());
+            return true;
+        }
+    }
+
+    private Boolean leaseExists(String leaseKey) {
+        try {
+            return redisTemplate.hasKey(leaseKey);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void releaseLease(String leaseKey, String token) {
+        try {
+            if (token.equals(redisTemplate.opsForValue().get(leaseKey))) {
+                redisTemplate.delete(leaseKey);
+            }
+        } catch (Exception e) {
+            log.debug("[CACHE-SF] Lease {} not released, expires by TTL: {}", leaseKey, e.getMessage());
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Counters counters(String cacheName) {
+        return counters.computeIfAbsent(cacheName, n -> new Counters());
+    }
+}
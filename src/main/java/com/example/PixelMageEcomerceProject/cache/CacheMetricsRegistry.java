@@ -0,0 +1,143 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Metrics in-process cho từng cache name — chỉ là LongAdder / ring buffer trong heap, không có
+ * round trip Redis nào trên đường đọc. Các tầng cache ghi vào đây:
+ * - {@link TwoTierCache}: hit L1 / hit L2 / miss, thời gian load, evict / clear tường minh.
+ * - {@link #measuring}: kích thước payload serialize (ghi) và deserialize (đọc) trên Redis.
+ */
+@Component
+public class CacheMetricsRegistry {
+
+    private static final int LATENCY_SAMPLES = 1024; // giữ N lần load gần nhất để tính percentile
+
+    private final ConcurrentMap<String, Metrics> metrics = new ConcurrentHashMap<>();
+
+    public record Snapshot(long l1Hits, long l2Hits, long misses, double hitRatio, long loads,
+            double loadP50Ms, double loadP95Ms, double loadP99Ms, long explicitEvictions, long clears,
+            long avgWrittenBytes, long avgReadBytes) {
+    }
+
+    static final class Metrics {
+        private final LongAdder l1Hits = new LongAdder();
+        private final LongAdder l2Hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder clears = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+        private final LongAdder writtenBytes = new LongAdder();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder readBytes = new LongAdder();
+        private final LongAdder loads = new LongAdder();
+        private final long[] loadNanos = new long[LATENCY_SAMPLES];
+        private final AtomicLong loadCursor = new AtomicLong();
+
+        void recordLoad(long nanos) {
+            loads.increment();
+            // Ghi đè vòng tròn; race giữa các thread chỉ làm lệch một mẫu
+            loadNanos[(int) (loadCursor.getAndIncrement() % LATENCY_SAMPLES)] = nanos;
+        }
+
+        Snapshot snapshot() {
+            long hitsL1 = l1Hits.sum();
+            long hitsL2 = l2Hits.sum();
+            long missCount = misses.sum();
+            long lookups = hitsL1 + hitsL2 + missCount;
+            int sampleCount = (int) Math.min(loadCursor.get(), LATENCY_SAMPLES);
+            long[] samples = Arrays.copyOf(loadNanos, sampleCount);
+            Arrays.sort(samples);
+            long writeCount = writes.sum();
+            long readCount = reads.sum();
+            return new Snapshot(hitsL1, hitsL2, missCount,
+                    lookups == 0 ? 0 : (double) (hitsL1 + hitsL2) / lookups,
+                    loads.sum(), percentileMs(samples, 0.50), percentileMs(samples, 0.95), percentileMs(samples, 0.99),
+                    evictions.sum(), clears.sum(),
+                    writeCount == 0 ? 0 : writtenBytes.sum() / writeCount,
+                    readCount == 0 ? 0 : readBytes.sum() / readCount);
+        }
+
+        private static double percentileMs(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    Metrics forCache(String cacheName) {
+        return metrics.computeIfAbsent(cacheName, n -> new Metrics());
+    }
+
+    void recordL1Hit(String cacheName) {
+        forCache(cacheName).l1Hits.increment();
+    }
+
+    void recordL2Hit(String cacheName) {
+        forCache(cacheName).l2Hits.increment();
+    }
+
+    void recordMiss(String cacheName) {
+        forCache(cacheName).misses.increment();
+    }
+
+    void recordLoad(String cacheName, long nanos) {
+        forCache(cacheName).recordLoad(nanos);
+    }
+
+    void recordEviction(String cacheName) {
+        forCache(cacheName).evictions.increment();
+    }
+
+    void recordClear(String cacheName) {
+        forCache(cacheName).clears.increment();
+    }
+
+    public Snapshot snapshot(String cacheName) {
+        return forCache(cacheName).snapshot();
+    }
+
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        metrics.forEach((name, m) -> result.put(name, m.snapshot()));
+        return result;
+    }
+
+    /** Bọc serializer của một cache để ghi lại kích thước payload đọc / ghi. */
+    public <T> RedisSerializer<T> measuring(String cacheName, RedisSerializer<T> delegate) {
+        Metrics m = forCache(cacheName);
+        return new RedisSerializer<>() {
+            @Override
+            public byte[] serialize(T value) throws SerializationException {
+                byte[] bytes = delegate.serialize(value);
+                if (bytes != null) {
+                    m.writes.increment();
+                    m.writtenBytes.add(bytes.length);
+                }
+                return bytes;
+            }
+
+            @Override
+            public T deserialize(byte[] bytes) throws SerializationException {
+                if (bytes != null) {
+                    m.reads.increment();
+                    m.readBytes.add(bytes.length);
+                }
+                return delegate.deserialize(bytes);
+            }
+        };
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Codec giá trị cho RedisCacheManager và RedisTemplate.
+ *
+ * Định dạng v1 (nhị phân):
+ * <pre>
+ * [0xC7 magic][version][flags][UTF type][int rawLength — chỉ khi nén][body]
+ * </pre>
+ * - {@code type}: JavaType canonical của root, ghi một lần (vd {@code java.util.ArrayList<...ProductResponse>})
+ *   thay cho {@code @class} trên từng object lồng nhau như JSON hiện tại.
+ * - {@code body}: Jackson Smile, bật back-reference cho tên field và string lặp lại.
+ * - flag {@link #FLAG_LZ4}: body được nén LZ4 khi vượt {@code compressThresholdBytes}.
+ *
+ * Đọc luôn hỗ trợ cả JSON cũ (byte đầu không phải magic) lẫn v1, nên có thể bật/tắt ghi nhị phân
+ * từng node mà không phải xoá cache. Version lạ (node mới hơn đã ghi) → coi như cache miss.
+ * Giá trị không xác định được kiểu đồng nhất (list lẫn nhiều class, proxy Hibernate, ...) → ghi JSON.
+ */
+@Slf4j
+public class CacheValueCodec implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xC7; // không phải byte đầu hợp lệ của JSON
+    static final byte VERSION_1 = 1;
+    static final int FLAG_LZ4 = 1;
+
+    // Chỉ cho phép deserialize kiểu của ứng dụng và JDK — type lấy từ Redis, không tin tuyệt đối
+    private static final List<String> ALLOWED_TYPE_PREFIXES = List.of("com.example.PixelMageEcomerceProject.", "java.");
+
+    private final GenericJackson2JsonRedisSerializer legacy;
+    private final ObjectMapper smileMapper;
+    private final boolean writeBinary;
+    private final int compressThresholdBytes;
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+    private final ConcurrentMap<String, JavaType> typeCache = new ConcurrentHashMap<>();
+
+    public CacheValueCodec(GenericJackson2JsonRedisSerializer legacy, boolean writeBinary, int compressThresholdBytes) {
+        this.legacy = legacy;
+        this.writeBinary = writeBinary;
+        this.compressThresholdBytes = compressThresholdBytes;
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        this.smileMapper = new ObjectMapper(smileFactory)
+                .registerModule(new JavaTimeModule())
+                // Thêm field mới vào DTO không làm hỏng entry cũ đang nằm trong cache
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        JavaType type = writeBinary ? rootType(value) : null;
+        if (type == null) {
+            return legacy.serialize(value);
+        }
+        try {
+            byte[] body = smileMapper.writerFor(type).writeValueAsBytes(asRootInstance(value, type));
+            int flags = 0;
+            int rawLength = body.length;
+            if (body.length >= compressThresholdBytes) {
+                byte[] compressed = compress(body);
+                if (compressed.length < body.length) {
+                    body = compressed;
+                    flags |= FLAG_LZ4;
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + 96);
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeByte(MAGIC);
+            data.writeByte(VERSION_1);
+            data.writeByte(flags);
+            data.writeUTF(type.toCanonical());
+            if ((flags & FLAG_LZ4) != 0) {
+                data.writeInt(rawLength);
+            }
+            data.write(body);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Cannot encode cache value of type " + type, e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return legacy.deserialize(bytes);
+        }
+        if (bytes.length < 3 || bytes[1] != VERSION_1) {
+            log.debug("[CACHE-CODEC] Unknown codec version {}, treating as miss", bytes.length > 1 ? bytes[1] : -1);
+            return null;
+        }
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes, 3, bytes.length - 3));
+            int flags = bytes[2];
+            JavaType type = resolveType(data.readUTF());
+            byte[] body;
+            if ((flags & FLAG_LZ4) != 0) {
+                int rawLength = data.readInt();
+                body = new byte[rawLength];
+                int offset = bytes.length - data.available();
+                decompressor.decompress(bytes, offset, body, 0, rawLength);
+            } else {
+                body = data.readAllBytes();
+            }
+            return smileMapper.readValue(body, type);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Cannot decode cache value", e);
+        }
+    }
+
+    private byte[] compress(byte[] raw) {
+        byte[] buffer = new byte[compressor.maxCompressedLength(raw.length)];
+        int length = compressor.compress(raw, 0, raw.length, buffer, 0, buffer.length);
+        byte[] compressed = new byte[length];
+        System.arraycopy(buffer, 0, compressed, 0, length);
+        return compressed;
+    }
+
+    /**
+     * Kiểu root ghi vào header; null nếu không mô tả được bằng một kiểu tĩnh
+     * (khi đó Smile không giữ đủ thông tin để đọc lại đúng class).
+     */
+    @SuppressWarnings("rawtypes")
+    private JavaType rootType(Object value) {
+        TypeFactory types = smileMapper.getTypeFactory();
+        if (value instanceof Collection<?> collection) {
+            if (!(value instanceof List<?>) && !(value instanceof Set<?>)) {
+                return null;
+            }
+            Class<? extends Collection> container = value instanceof Set<?> ? LinkedHashSet.class : ArrayList.class;
+            Class<?> elementClass = commonClass(collection);
+            return elementClass != null ? types.constructCollectionType(container, elementClass) : null;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Class<?> keyClass = commonClass(map.keySet());
+            Class<?> valueClass = commonClass(map.values());
+            return keyClass != null && valueClass != null
+                    ? types.constructMapType(LinkedHashMap.class, keyClass, valueClass)
+                    : null;
+        }
+        return isPlainClass(value) ? types.constructType(value.getClass()) : null;
+    }
+
+    /**
+     * List.of / Stream.toList / unmodifiable... không phải ArrayList / LinkedHashSet: chép sang đúng container
+     * ghi trong header, nếu không writerFor(type) từ chối giá trị.
+     */
+    private static Object asRootInstance(Object value, JavaType type) {
+        if (type.getRawClass().isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Set<?> set) {
+            return new LinkedHashSet<>(set);
+        }
+        if (value instanceof List<?> list) {
+            return new ArrayList<>(list);
+        }
+        if (value instanceof Map<?, ?> map) {
+            return new LinkedHashMap<>(map);
+        }
+        return value;
+    }
+
+    /** Class chung của mọi phần tử; Object nếu rỗng; null nếu lẫn class hoặc có phần tử không ghi được. */
+    private static Class<?> commonClass(Collection<?> values) {
+        Class<?> common = null;
+        Iterator<?> iterator = values.iterator();
+        while (iterator.hasNext()) {
+            Object element = iterator.next();
+            if (element == null) {
+                continue;
+            }
+            if (!isPlainClass(element) || element instanceof Collection<?> || element instanceof Map<?, ?>) {
+                return null;
+            }
+            if (common == null) {
+                common = element.getClass();
+            } else if (common != element.getClass()) {
+                return null;
+            }
+        }
+        return common != null ? common : Object.class;
+    }
+
+    private static boolean isPlainClass(Object value) {
+        return !(value instanceof HibernateProxy) && isAllowed(value.getClass().getName());
+    }
+
+    private JavaType resolveType(String canonical) {
+        return typeCache.computeIfAbsent(canonical, c -> {
+            JavaType type = smileMapper.getTypeFactory().constructFromCanonical(c);
+            checkAllowed(type);
+            return type;
+        });
+    }
+
+    private static void checkAllowed(JavaType type) {
+        if (!isAllowed(type.getRawClass().getName())) {
+            throw new IllegalArgumentException("Type not allowed in cache payload: " + type);
+        }
+        for (int i = 0; i < type.containedTypeCount(); i++) {
+            checkAllowed(type.containedType(i));
+        }
+    }
+
+    private static boolean isAllowed(String className) {
+        return ALLOWED_TYPE_PREFIXES.stream().anyMatch(className::startsWith);
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.config.RedisConfig;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Warm-up và refresh-ahead cho các cache catalog khai báo bằng {@link WarmedCache}.
+ *
+ * - Khởi động: nạp song song mọi cache khai báo trong một {@link ApplicationRunner} — chạy xong
+ *   (hoặc hết {@code cache.warmup.startup-timeout-ms}) thì app mới phát ApplicationReadyEvent / readiness.
+ * - Refresh-ahead: entry được nạp lại nền khi đạt {@code cache.warmup.refresh-fraction} × TTL của cache,
+ *   hoặc ngay khi namespace bị bump generation — reader đọc giá trị cũ cho tới khi giá trị mới được ghi.
+ * - Cluster: lock Redis {@code cache:refresh:{cache}:g{generation}} để mỗi chu kỳ chỉ một node gọi DB;
+ *   node khác nhận pub/sub xoá L1 và đọc giá trị mới từ L2.
+ *
+ * Refresh-ahead cần {@link TwoTierCacheManager} ({@code cache.l1.enabled=true}); nếu tắt, chỉ còn warm-up.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheWarmer implements ApplicationRunner {
+
+    private static final String PREFIX_REFRESH_LOCK = "cache:refresh:";
+
+    private final List<WarmedCache> warmedCaches;
+    private final CacheManager cacheManager;
+    private final CacheGenerationService generationService;
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.warmup.refresh-fraction:0.8}")
+    private double refreshFraction;
+
+    @Value("${cache.warmup.check-interval-ms:30000}")
+    private long checkIntervalMillis;
+
+    @Value("${cache.warmup.startup-timeout-ms:60000}")
+    private long startupTimeoutMillis;
+
+    @Value("${cache.warmup.threads:4}")
+    private int threads;
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private volatile long lastWarmupMillis = -1;
+
+    public record CacheStats(String cacheName, Instant lastRefreshAt, long lastDurationMs, long refreshes,
+            long skipped, long failures, String lastError) {
+    }
+
+    public record Stats(long warmupMillis, boolean refreshAhead, List<CacheStats> caches) {
+    }
+
+    private static final class State {
+        private final WarmedCache cache;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong refreshes = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private volatile long lastRefreshAt;
+        private volatile long lastDurationMs;
+        private volatile String lastError;
+
+        State(WarmedCache cache) {
+            this.cache = cache;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        warmedCaches.forEach(c -> states.put(c.cacheName(), new State(c)));
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "cache-warmer-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Namespace bị bump (ghi dữ liệu) → nạp lại ngay thay vì đợi user đầu tiên chịu miss
+        generationService.addBumpListener(cacheName -> {
+            State state = states.get(cacheName);
+            if (state != null && enabled && refreshAhead()) {
+                submit(state);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || states.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<?>[] loads = states.values().stream().map(this::submit).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(loads).get(startupTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("[CACHE-WARMUP] Not finished after {} ms, continuing startup", startupTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("[CACHE-WARMUP] {}", e.getMessage());
+        }
+        lastWarmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long failed = states.values().stream().filter(s -> s.failures.get() > 0).count();
+        log.info("[CACHE-WARMUP] Warmed {} caches in {} ms ({} failed)", states.size(), lastWarmupMillis, failed);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.warmup.check-interval-ms:30000}",
+            initialDelayString = "${cache.warmup.check-interval-ms:30000}")
+    public void refreshDueEntries() {
+        if (!enabled || !refreshAhead()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        states.values().stream()
+                .filter(state -> now - state.lastRefreshAt >= refreshAfterMillis(state.cache.cacheName()))
+                .forEach(this::submit);
+    }
+
+    public Stats stats() {
+        List<CacheStats> caches = states.values().stream()
+                .map(s -> new CacheStats(s.cache.cacheName(),
+                        s.lastRefreshAt > 0 ? Instant.ofEpochMilli(s.lastRefreshAt) : null,
+                        s.lastDurationMs, s.refreshes.get(), s.skipped.get(), s.failures.get(), s.lastError))
+                .sorted((a, b) -> a.cacheName().compareTo(b.cacheName()))
+                .toList();
+        return new Stats(lastWarmupMillis, refreshAhead(), caches);
+    }
+
+    private CompletableFuture<Void> submit(State state) {
+        if (!state.running.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null); // đang refresh rồi
+        }
+        return CompletableFuture.runAsync(() -> refresh(state), executor)
+                .whenComplete((ignored, error) -> state.running.set(false));
+    }
+
+    private void refresh(State state) {
+        String cacheName = state.cache.cacheName();
+        if (refreshAhead() && !acquireRefreshLock(cacheName)) {
+            // Node khác vừa refresh chu kỳ này — L1 của node này được xoá qua pub/sub
+            state.skipped.incrementAndGet();
+            state.lastRefreshAt = System.currentTimeMillis();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (refreshAhead()) {
+                TwoTierCacheManager.refreshing(state.cache.loader());
+            } else {
+                state.cache.loader().call();
+            }
+            state.refreshes.incrementAndGet();
+            state.lastError = null;
+        } catch (Exception e) {
+            state.failures.incrementAndGet();
+            state.lastError = e.getMessage();
+            log.error("[CACHE-WARMUP] Refresh of {} failed: {}", cacheName, e.getMessage());
+        } finally {
+            state.lastDurationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            state.lastRefreshAt = System.currentTimeMillis();
+        }
+    }
+
+    private boolean acquireRefreshLock(String cacheName) {
+        String lockKey = PREFIX_REFRESH_LOCK + cacheName + ":g" + generationService.current(cacheName);
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(lockKey, "1", Duration.ofMillis(checkIntervalMillis)));
+        } catch (Exception e) {
+            return true; // Redis lỗi → tự refresh, chỉ mất phần chống trùng giữa các node
+        }
+    }
+
+    private long refreshAfterMillis(String cacheName) {
+        Duration ttl = RedisConfig.cacheTtls().getOrDefault(cacheName, RedisConfig.DEFAULT_CACHE_TTL);
+        return (long) (ttl.toMillis() * refreshFraction);
+    }
+
+    private boolean refreshAhead() {
+        return cacheManager instanceof TwoTierCacheManager;
+    }
+}
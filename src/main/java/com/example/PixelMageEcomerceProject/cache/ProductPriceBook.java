@@ -0,0 +1,102 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.repository.ProductRepository;
+import com.example.PixelMageEcomerceProject.service.model.ProductPrice;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bảng giá toàn catalog trong heap, dùng để tính tiền lúc tạo order thay cho giá / tổng client gửi lên.
+ *
+ * Nạp cả bảng bằng một query 3 cột; bỏ snapshot khi namespace {@link #NAMESPACE} bị bump (ProductService
+ * gọi sau mỗi thay đổi giá / isActive, mọi node nhận qua pub/sub của {@link CacheGenerationService})
+ * hoặc quá {@code order.price-book.ttl-ms}. Product mới chưa có trong snapshot → nạp lại, tối đa một lần
+ * mỗi {@code order.price-book.min-reload-interval-ms} để id rác không kéo DB theo.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductPriceBook {
+
+    public static final String NAMESPACE = "product-prices";
+
+    private final ProductRepository productRepository;
+    private final CacheGenerationService generationService;
+
+    @Value("${order.price-book.ttl-ms:300000}")
+    long ttlMillis;
+
+    @Value("${order.price-book.min-reload-interval-ms:1000}")
+    long minReloadIntervalMillis;
+
+    private record Snapshot(Map<Integer, ProductPrice> prices, long loadedAt) {
+    }
+
+    private volatile Snapshot snapshot;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    void listen() {
+        generationService.addBumpListener(cacheName -> {
+            if (NAMESPACE.equals(cacheName)) {
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Giá của các product; id không tồn tại thì không có trong map trả về.
+     */
+    public Map<Integer, ProductPrice> lookup(Collection<Integer> productIds) {
+        long now = System.currentTimeMillis();
+        Snapshot current = snapshot;
+        if (current == null || now - current.loadedAt() >= ttlMillis
+                || (!current.prices().keySet().containsAll(productIds)
+                        && now - current.loadedAt() >= minReloadIntervalMillis)) {
+            current = reload(current);
+        }
+        Map<Integer, ProductPrice> result = new HashMap<>(productIds.size() * 2);
+        for (Integer productId : productIds) {
+            ProductPrice price = current.prices().get(productId);
+            if (price != null) {
+                result.put(productId, price);
+            }
+        }
+        return result;
+    }
+
+    public void invalidate() {
+        invalidations.incrementAndGet();
+        snapshot = null;
+    }
+
+    // Nhiều request cùng thấy snapshot cũ → chỉ một thread đọc DB, các thread còn lại dùng kết quả của nó
+    private synchronized Snapshot reload(Snapshot seen) {
+        Snapshot current = snapshot;
+        if (current != null && current != seen) {
+            return current;
+        }
+        long invalidationsBefore = invalidations.get();
+        Map<Integer, ProductPrice> prices = new HashMap<>();
+        for (ProductPrice price : productRepository.findAllPrices()) {
+            prices.put(price.productId(), price);
+        }
+        Snapshot loaded = new Snapshot(Map.copyOf(prices), System.currentTimeMillis());
+        // Bị invalidate trong lúc đọc → dùng cho request này nhưng không giữ, request sau nạp lại
+        if (invalidations.get() == invalidationsBefore) {
+            snapshot = loaded;
+        }
+        log.debug("[PRICE-BOOK] Loaded {} prices", prices.size());
+        return loaded;
+    }
+}
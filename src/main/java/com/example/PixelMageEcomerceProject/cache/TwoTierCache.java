@@ -0,0 +1,225 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * Cache hai tầng: L1 = Caffeine trong heap, L2 = RedisCache.
+ *
+ * Đọc: L1 hit → trả ngay (không network, không deserialize). Miss → đọc L2 rồi nạp L1.
+ * Ghi/xoá: áp dụng cho L2, xoá L1 local và broadcast để node khác xoá L1 của chúng.
+ * Clear: bump generation của namespace (một INCR) thay cho SCAN + DEL trên Redis.
+ *
+ * {@code invalidationEpoch} tăng mỗi lần có eviction (local hoặc từ node khác). Giá trị đọc từ L2
+ * chỉ được nạp vào L1 nếu epoch không đổi trong lúc đọc — tránh nạp lại giá trị cũ đến trễ.
+ *
+ * Miss trong {@code get(key, valueLoader)} (tức {@code @Cacheable(sync = true)}) đi qua
+ * {@link CacheLoadCoalescer}: mỗi key chỉ một loader chạy cùng lúc.
+ *
+ * Lưu ý: L1 trả cùng một instance cho mọi caller — không được mutate giá trị lấy từ cache.
+ */
+public class TwoTierCache implements Cache {
+
+    private final String name;
+    private final Cache l2;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> l1;
+    private final TwoTierCacheManager manager;
+    private final CacheMetricsRegistry metrics;
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    TwoTierCache(String name, Cache l2, com.github.benmanes.caffeine.cache.Cache<String, Object> l1,
+            TwoTierCacheManager manager, CacheMetricsRegistry metrics) {
+        this.name = name;
+        this.l2 = l2;
+        this.l1 = l1;
+        this.manager = manager;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        if (TwoTierCacheManager.isRefreshing()) {
+            return null;
+        }
+        String l1Key = l1Key(key);
+        Object local = l1.getIfPresent(l1Key);
+        if (local != null) {
+            metrics.recordL1Hit(name);
+            return new SimpleValueWrapper(local);
+        }
+        long epoch = invalidationEpoch.get();
+        ValueWrapper remote = l2.get(key);
+        if (remote != null) {
+            metrics.recordL2Hit(name);
+            populateL1(l1Key, remote.get(), epoch);
+        } else {
+            metrics.recordMiss(name);
+        }
+        return remote;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        Object value = wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (TwoTierCacheManager.isRefreshing()) {
+            return refresh(key, valueLoader);
+        }
+        String l1Key = l1Key(key);
+        Object local = l1.getIfPresent(l1Key);
+        if (local != null) {
+            metrics.recordL1Hit(name);
+            return (T) local;
+        }
+        long epoch = invalidationEpoch.get();
+        boolean[] loaded = new boolean[1];
+        T value;
+        try {
+            value = (T) manager.coalescer().load(name, l1Key, l2, key, () -> {
+                loaded[0] = true;
+                return timedLoad(valueLoader);
+            });
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (loaded[0]) {
+            metrics.recordMiss(name);
+        } else {
+            metrics.recordL2Hit(name); // đọc lại L2 thấy, hoặc nhận kết quả của loader khác
+        }
+        populateL1(l1Key, value, epoch);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        l2.put(key, value);
+        populateL1(l1Key(key), value, invalidationEpoch.get());
+        if (TwoTierCacheManager.isRefreshing()) {
+            // Node khác bỏ L1 cũ, đọc lại giá trị mới từ L2
+            manager.publishEvict(name, l1Key(key));
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = l2.putIfAbsent(key, value);
+        l1.invalidate(l1Key(key));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        metrics.recordEviction(name);
+        l2.evict(key);
+        evictLocal(l1Key(key));
+        manager.publishEvict(name, l1Key(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        metrics.recordEviction(name);
+        boolean present = l2.evictIfPresent(key);
+        evictLocal(l1Key(key));
+        manager.publishEvict(name, l1Key(key));
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        metrics.recordClear(name);
+        manager.clearNamespace(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        metrics.recordClear(name);
+        manager.clearNamespace(name);
+        return true;
+    }
+
+    private <T> T refresh(Object key, Callable<T> valueLoader) {
+        T value;
+        try {
+            value = timedLoad(valueLoader);
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    private <T> T timedLoad(Callable<T> valueLoader) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return valueLoader.call();
+        } finally {
+            metrics.recordLoad(name, System.nanoTime() - start);
+        }
+    }
+
+    /** Chỉ xoá L1 của node này (dùng khi nhận message từ node khác). */
+    void evictLocal(String l1Key) {
+        invalidationEpoch.incrementAndGet();
+        l1.invalidate(l1Key);
+    }
+
+    void clearLocal() {
+        invalidationEpoch.incrementAndGet();
+        l1.invalidateAll();
+    }
+
+    long l1EstimatedSize() {
+        return l1.estimatedSize();
+    }
+
+    /** Số entry L1 bị Caffeine loại do vượt trọng số / hết hạn. */
+    long l1EvictionCount() {
+        return l1.stats().evictionCount();
+    }
+
+    private void populateL1(String l1Key, Object value, long epochBeforeRead) {
+        if (value == null) {
+            return;
+        }
+        l1.put(l1Key, value);
+        // Có eviction chen giữa lúc đọc L2 → giá trị vừa nạp có thể đã cũ
+        if (invalidationEpoch.get() != epochBeforeRead) {
+            l1.invalidate(l1Key);
+        }
+    }
+
+    /** Key L1 ở dạng String để node khác xoá được qua pub/sub (giống cách RedisCache convert key). */
+    static String l1Key(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CacheManager tổng hợp: L1 Caffeine (giới hạn theo "trọng số" ≈ số phần tử) đặt trước
+ * {@link RedisCacheManager}. TTL của L1 lấy theo TTL từng cache trong RedisConfig, chặn trên
+ * bởi {@code maxL1Ttl} để giới hạn độ cũ nếu lỡ mất message invalidation.
+ *
+ * Eviction trên bất kỳ node nào được publish lên {@value #CHANNEL_L1_INVALIDATE};
+ * mọi node khác xoá entry L1 tương ứng. Xoá cả cache = bump generation qua
+ * {@link CacheGenerationService}; mọi node nhận bump sẽ xoá toàn bộ L1 của cache đó.
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager, MessageListener {
+
+    public static final String CHANNEL_L1_INVALIDATE = "cache:l1-invalidate";
+
+    // Payload: {nodeId}|E|{cacheName}|{key}
+    private static final char SEP = '|';
+    private static final String OP_EVICT = "E";
+
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final CacheGenerationService generationService;
+    private final CacheLoadCoalescer coalescer;
+    private final CacheMetricsRegistry metrics;
+    private final Map<String, Duration> cacheTtls;
+    private final Duration defaultTtl;
+    private final Duration maxL1Ttl;
+    private final long maxWeightPerCache;
+
+    // Đang refresh chủ động (CacheWarmer): đọc cache coi như miss để method thật được gọi và ghi đè
+    private static final ThreadLocal<Boolean> REFRESHING = ThreadLocal.withInitial(() -> false);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(RedisCacheManager redisCacheManager, StringRedisTemplate redisTemplate,
+            CacheGenerationService generationService, CacheLoadCoalescer coalescer, CacheMetricsRegistry metrics,
+            Map<String, Duration> cacheTtls, Duration defaultTtl, Duration maxL1Ttl, long maxWeightPerCache) {
+        this.redisCacheManager = redisCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.generationService = generationService;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.cacheTtls = Map.copyOf(cacheTtls);
+        this.defaultTtl = defaultTtl;
+        this.maxL1Ttl = maxL1Ttl;
+        this.maxWeightPerCache = maxWeightPerCache;
+        generationService.addBumpListener(cacheName -> {
+            TwoTierCache cache = caches.get(cacheName);
+            if (cache != null) {
+                cache.clearLocal();
+            }
+        });
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoTierCache existing = caches.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        Cache l2 = redisCacheManager.getCache(name);
+        if (l2 == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> new TwoTierCache(n, l2, buildL1(n), this, metrics));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(redisCacheManager.getCacheNames());
+        names.addAll(caches.keySet());
+        return names;
+    }
+
+    /** Số entry L1 hiện có trên node này; -1 nếu cache chưa được dùng. */
+    public long l1Size(String cacheName) {
+        TwoTierCache cache = caches.get(cacheName);
+        return cache != null ? cache.l1EstimatedSize() : -1;
+    }
+
+    public long l1Evictions(String cacheName) {
+        TwoTierCache cache = caches.get(cacheName);
+        return cache != null ? cache.l1EvictionCount() : 0;
+    }
+
+    /** TTL L2 của cache theo cấu hình RedisConfig. */
+    public Duration getTtl(String cacheName) {
+        return cacheTtls.getOrDefault(cacheName, defaultTtl);
+    }
+
+    /**
+     * Chạy {@code action} ở chế độ refresh: mọi {@link TwoTierCache} bỏ qua L1/L2 khi đọc, giá trị mới
+     * được ghi vào L2 + L1 và các node khác được báo xoá L1 — reader không bao giờ thấy miss.
+     */
+    public static <T> T refreshing(Callable<T> action) throws Exception {
+        boolean previous = REFRESHING.get();
+        REFRESHING.set(true);
+        try {
+            return action.call();
+        } finally {
+            REFRESHING.set(previous);
+        }
+    }
+
+    static boolean isRefreshing() {
+        return REFRESHING.get();
+    }
+
+    CacheLoadCoalescer coalescer() {
+        return coalescer;
+    }
+
+    void publishEvict(String cacheName, String l1Key) {
+        publish(nodeId + SEP + OP_EVICT + SEP + cacheName + SEP + l1Key);
+    }
+
+    /** Xoá cả namespace: L2 đổi generation, L1 mọi node bị xoá qua bump listener. */
+    void clearNamespace(String cacheName) {
+        generationService.bump(cacheName);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 4);
+        if (parts.length < 4 || nodeId.equals(parts[0])) {
+            return; // message của chính node này — L1 đã được xoá lúc evict
+        }
+        TwoTierCache cache = caches.get(parts[2]);
+        if (cache == null) {
+            return;
+        }
+        if (OP_EVICT.equals(parts[1])) {
+            cache.evictLocal(parts[3]);
+        }
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<String, Object> buildL1(String cacheName) {
+        Duration ttl = getTtl(cacheName);
+        if (ttl.compareTo(maxL1Ttl) > 0) {
+            ttl = maxL1Ttl;
+        }
+        return Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxWeightPerCache)
+                .weigher((String key, Object value) -> weigh(value))
+                .recordStats()
+                .build();
+    }
+
+    // List/Map catalog nặng theo số phần tử; object đơn lẻ tính 1
+    private static int weigh(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return collection.size() + 1;
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.size() + 1;
+        }
+        return 1;
+    }
+
+    private void publish(String payload) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL_L1_INVALIDATE, payload);
+        } catch (Exception e) {
+            // Node khác sẽ tự hết hạn L1 sau tối đa maxL1Ttl
+            log.warn("[CACHE-L1] Failed to broadcast invalidation {}: {}", payload, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Khai báo một cache được {@link CacheWarmer} nạp sẵn lúc khởi động và refresh trước khi hết hạn.
+ *
+ * {@code loader} gọi method {@code @Cacheable} qua proxy Spring (vd {@code productService::getPublicProducts});
+ * trong lúc refresh, cache bỏ qua giá trị cũ nên method thật được chạy và kết quả ghi đè entry.
+ */
+public record WarmedCache(String cacheName, Callable<?> loader) {
+}
@@ -0,0 +1,37 @@
+package com.example.PixelMageEcomerceProject.config;
+
+import com.example.PixelMageEcomerceProject.cache.WarmedCache;
+import com.example.PixelMageEcomerceProject.service.interfaces.CardTemplateService;
+import com.example.PixelMageEcomerceProject.service.interfaces.CollectionService;
+import com.example.PixelMageEcomerceProject.service.interfaces.ProductService;
+import com.example.PixelMageEcomerceProject.service.interfaces.TarotReadingService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Các cache catalog được nạp sẵn lúc khởi động và refresh trước khi hết hạn (xem CacheWarmer).
+ * Loader gọi qua service (proxy @Cacheable) để dùng đúng key và đường ghi cache của annotation.
+ */
+@Configuration
+public class CacheWarmupConfig {
+
+    @Bean
+    public WarmedCache publicProductsWarmup(ProductService productService) {
+        return new WarmedCache("products-public", productService::getPublicProducts);
+    }
+
+    @Bean
+    public WarmedCache cardTemplatesWarmup(CardTemplateService cardTemplateService) {
+        return new WarmedCache("card-templates", cardTemplateService::getAllCardTemplates);
+    }
+
+    @Bean
+    public WarmedCache spreadsWarmup(TarotReadingService tarotReadingService) {
+        return new WarmedCache("spreads", tarotReadingService::getAllSpreads);
+    }
+
+    @Bean
+    public WarmedCache publicCollectionsWarmup(CollectionService collectionService) {
+        return new WarmedCache("public-collections", collectionService::getPublicCollections);
+    }
+}
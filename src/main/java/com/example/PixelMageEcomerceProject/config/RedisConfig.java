@@ -1,77 +1,183 @@
 package com.example.PixelMageEcomerceProject.config;
 
+import com.example.PixelMageEcomerceProject.cache.CacheGenerationService;
+import com.example.PixelMageEcomerceProject.cache.CacheLoadCoalescer;
+import com.example.PixelMageEcomerceProject.cache.CacheMetricsRegistry;
+import com.example.PixelMageEcomerceProject.cache.CacheValueCodec;
+import com.example.PixelMageEcomerceProject.cache.TwoTierCacheManager;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class RedisConfig {
 
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofHours(1);
+
+    @Value("${cache.l1.enabled:true}")
+    private boolean l1Enabled;
+
+    @Value("${cache.l1.max-ttl-ms:600000}")
+    private long l1MaxTtlMillis;
+
+    /** Trọng số tối đa mỗi cache L1 (≈ tổng số phần tử của các list được cache). */
+    @Value("${cache.l1.max-weight:50000}")
+    private long l1MaxWeight;
+
+    /** {@code binary}: ghi định dạng nhị phân v1; {@code json}: ghi JSON như cũ. Đọc luôn hỗ trợ cả hai. */
+    @Value("${cache.codec.write:binary}")
+    private String codecWrite;
+
+    @Value("${cache.codec.compress-threshold-bytes:1024}")
+    private int codecCompressThresholdBytes;
+
+    /** Lease Redis để chỉ một node trong cluster load mỗi key bị miss. */
+    @Value("${cache.single-flight.lease.enabled:false}")
+    private boolean leaseEnabled;
+
+    @Value("${cache.single-flight.lease.ttl-ms:10000}")
+    private long leaseTtlMillis;
+
+    @Value("${cache.single-flight.lease.poll-ms:50}")
+    private long leasePollMillis;
+
+    /** Codec giá trị dùng chung cho RedisTemplate và RedisCacheManager. */
+    @Bean
+    public CacheValueCodec cacheValueCodec() {
+        return new CacheValueCodec(createJacksonSerializer(), "binary".equalsIgnoreCase(codecWrite),
+                codecCompressThresholdBytes);
+    }
+
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       CacheValueCodec valueCodec) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
-        GenericJackson2JsonRedisSerializer jsonSerializer = createJacksonSerializer();
-
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(jsonSerializer);
-        template.setHashValueSerializer(jsonSerializer);
+        template.setValueSerializer(valueCodec);
+        template.setHashValueSerializer(valueCodec);
         template.afterPropertiesSet();
         return template;
     }
 
+    /**
+     * Container dùng chung cho mọi subscriber Redis pub/sub (token version, ...).
+     * Các service tự đăng ký listener + topic của mình khi khởi tạo.
+     */
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        GenericJackson2JsonRedisSerializer jsonSerializer = createJacksonSerializer();
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 
+    /**
+     * TTL theo từng cache name — nguồn duy nhất cho cả L2 (Redis) và L1 (in-process).
+     */
+    public static Map<String, Duration> cacheTtls() {
+        Map<String, Duration> ttls = new LinkedHashMap<>();
+        ttls.put("card-templates",           Duration.ofHours(24));
+        ttls.put("card-templates-visible",   Duration.ofHours(24));
+        ttls.put("card-template-by-id",      Duration.ofHours(6));
+        ttls.put("spreads",                  Duration.ofHours(24));
+        ttls.put("public-collections",       Duration.ofHours(1));
+        // CardContent caches — 6h TTL, evicted on CUD operations
+        ttls.put("card-contents-active",     Duration.ofHours(6));
+        ttls.put("card-contents-all",        Duration.ofHours(6));
+        // Product catalog — ít thay đổi, 1h TTL
+        ttls.put("products",                 Duration.ofHours(1));
+        ttls.put("products-public",          Duration.ofHours(1));
+        ttls.put("product-by-id",            Duration.ofHours(1));
+        // Pack inventory — thay đổi khi staff tạo/bán, 30 phút TTL
+        ttls.put("packs",                    Duration.ofMinutes(30));
+        ttls.put("packs-by-status",          Duration.ofMinutes(30));
+        ttls.put("packs-by-product-status",  Duration.ofMinutes(30));
+        // Achievement definitions — ít thay đổi, 6h TTL
+        ttls.put("achievement-definitions",  Duration.ofHours(6));
+        return ttls;
+    }
+
+    /**
+     * Key Redis gắn generation của namespace ({@code {cacheName}::g{gen}::{key}}) — xoá cả cache
+     * chỉ cần bump generation, không SCAN + DEL.
+     */
+    @Bean
+    public RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory,
+                                               CacheGenerationService generationService,
+                                               CacheValueCodec valueCodec,
+                                               CacheMetricsRegistry cacheMetrics) {
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .computePrefixWith(generationService::keyPrefix)
                 .serializeKeysWith(
                         RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer))
+                        RedisSerializationContext.SerializationPair.fromSerializer(valueCodec))
                 .disableCachingNullValues();
 
-        // TTL per cache name
+        // TTL per cache name; serializer đo kích thước payload cho CacheMetricsRegistry
         Map<String, RedisCacheConfiguration> cacheConfigs = new HashMap<>();
-        cacheConfigs.put("card-templates",           defaultConfig.entryTtl(Duration.ofHours(24)));
-        cacheConfigs.put("card-template-by-id",       defaultConfig.entryTtl(Duration.ofHours(6)));
-        cacheConfigs.put("spreads",                   defaultConfig.entryTtl(Duration.ofHours(24)));
-        cacheConfigs.put("public-collections",        defaultConfig.entryTtl(Duration.ofHours(1)));
-        // CardContent caches — 6h TTL, evicted on CUD operations
-        cacheConfigs.put("card-contents-active",      defaultConfig.entryTtl(Duration.ofHours(6)));
-        cacheConfigs.put("card-contents-all",         defaultConfig.entryTtl(Duration.ofHours(6)));
-        // Product catalog — ít thay đổi, 1h TTL
-        cacheConfigs.put("products",                  defaultConfig.entryTtl(Duration.ofHours(1)));
-        cacheConfigs.put("product-by-id",             defaultConfig.entryTtl(Duration.ofHours(1)));
-        // Pack inventory — thay đổi khi staff tạo/bán, 30 phút TTL
-        cacheConfigs.put("packs",                     defaultConfig.entryTtl(Duration.ofMinutes(30)));
-        cacheConfigs.put("packs-by-status",           defaultConfig.entryTtl(Duration.ofMinutes(30)));
-        cacheConfigs.put("packs-by-product-status",   defaultConfig.entryTtl(Duration.ofMinutes(30)));
-        // Achievement definitions — ít thay đổi, 6h TTL
-        cacheConfigs.put("achievement-definitions",   defaultConfig.entryTtl(Duration.ofHours(6)));
+        cacheTtls().forEach((name, ttl) -> cacheConfigs.put(name, defaultConfig.entryTtl(ttl)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        cacheMetrics.measuring(name, valueCodec)))));
 
         return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(defaultConfig.entryTtl(Duration.ofHours(1)))
+                .cacheDefaults(defaultConfig.entryTtl(DEFAULT_CACHE_TTL))
                 .withInitialCacheConfigurations(cacheConfigs)
                 .build();
     }
 
+    @Bean
+    public CacheLoadCoalescer cacheLoadCoalescer(StringRedisTemplate stringRedisTemplate) {
+        return new CacheLoadCoalescer(stringRedisTemplate, leaseEnabled,
+                Duration.ofMillis(leaseTtlMillis), Duration.ofMillis(leasePollMillis));
+    }
+
+    /**
+     * CacheManager chính cho @Cacheable: L1 Caffeine trước Redis, invalidation L1 qua pub/sub.
+     * {@code cache.l1.enabled=false} → dùng thẳng RedisCacheManager như trước.
+     */
+    @Bean
+    @Primary
+    public CacheManager cacheManager(RedisCacheManager redisCacheManager,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     RedisMessageListenerContainer listenerContainer,
+                                     CacheGenerationService generationService,
+                                     CacheLoadCoalescer coalescer,
+                                     CacheMetricsRegistry cacheMetrics) {
+        if (!l1Enabled) {
+            return redisCacheManager;
+        }
+        TwoTierCacheManager cacheManager = new TwoTierCacheManager(
+                redisCacheManager, stringRedisTemplate, generationService, coalescer, cacheMetrics, cacheTtls(), DEFAULT_CACHE_TTL,
+                Duration.ofMillis(l1MaxTtlMillis), l1MaxWeight);
+        listenerContainer.addMessageListener(cacheManager,
+                new ChannelTopic(TwoTierCacheManager.CHANNEL_L1_INVALIDATE));
+        return cacheManager;
+    }
+
     private GenericJackson2JsonRedisSerializer createJacksonSerializer() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
@@ -0,0 +1,14 @@
+package com.example.PixelMageEcomerceProject.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Bật @Scheduled cho các job nền (resync blacklist filter, ...).
+ * Pool thread dùng chung cấu hình qua {@code spring.task.scheduling.pool.size}: job chạy lâu (huỷ order quá hạn,
+ * đối soát payment) không làm trễ các job ngắn.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -159,8 +159,7 @@ public class AccountController {
                         @Parameter(description = "refreshToken cần revoke, gửi nếu có") @RequestParam(required = false) String refreshToken) {
                 try {
                         String accessToken = authHeader.substring(7);
-                        long remainingMillis = jwtTokenProvider.extractExpiration(accessToken).getTime()
-                                        - System.currentTimeMillis();
+                        long remainingMillis = jwtTokenProvider.verify(accessToken).remainingMillis();
                         accountService.logout(accessToken, refreshToken, remainingMillis);
                         return ResponseBase.success("Đăng xuất thành công");
                 } catch (RuntimeException e) {
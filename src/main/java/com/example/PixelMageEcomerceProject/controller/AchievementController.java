@@ -14,6 +14,7 @@ import com.example.PixelMageEcomerceProject.dto.response.AchievementResponse;
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
 import com.example.PixelMageEcomerceProject.dto.response.UserAchievementResponse;
 import com.example.PixelMageEcomerceProject.entity.Account;
+import com.example.PixelMageEcomerceProject.security.jwt.JwtPrincipal;
 import com.example.PixelMageEcomerceProject.service.interfaces.AchievementService;
 
 import lombok.RequiredArgsConstructor;
@@ -70,6 +71,9 @@ public class AchievementController {
         if (auth != null && auth.getPrincipal() instanceof Account account) {
             return account.getCustomerId();
         }
+        if (auth != null && auth.getPrincipal() instanceof JwtPrincipal principal) {
+            return principal.getCustomerId();
+        }
         throw new RuntimeException("Could not extract userId from authentication context");
     }
 }
@@ -1,19 +1,26 @@
 package com.example.PixelMageEcomerceProject.controller;
 
+import com.example.PixelMageEcomerceProject.cache.CacheAdminService;
+import com.example.PixelMageEcomerceProject.cache.CacheLoadCoalescer;
+import com.example.PixelMageEcomerceProject.cache.CacheWarmer;
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.security.service.TokenBlacklistFilter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.connection.RedisConnection;
-import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/admin/cache")
 @RequiredArgsConstructor
@@ -22,19 +29,72 @@ import org.springframework.web.bind.annotation.RestController;
 @SecurityRequirement(name = "bearerAuth")
 public class CacheController {
 
-    private final RedisConnectionFactory connectionFactory;
+    private final CacheAdminService cacheAdminService;
+    private final TokenBlacklistFilter tokenBlacklistFilter;
+    private final CacheLoadCoalescer cacheLoadCoalescer;
+    private final CacheWarmer cacheWarmer;
 
     @DeleteMapping("/clear")
-    @Operation(summary = "Clear all Redis cache", description = "Flush the entire Redis database. USE WITH CAUTION.")
+    @Operation(summary = "Clear all application caches", description = "Invalidate every named cache (generation bump). Other Redis data such as the token blacklist, locks and sessions is kept.")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ResponseBase<String>> clearCache() {
-        try (RedisConnection connection = connectionFactory.getConnection()) {
-            connection.serverCommands().flushDb();
-            log.info("[CACHE] Redis database flushed by admin request");
+        try {
+            cacheAdminService.evictAll();
             return ResponseBase.ok("Redis cache cleared successfully", "OK");
         } catch (Exception e) {
-            log.error("[CACHE] Failed to flush Redis database", e);
+            log.error("[CACHE] Failed to clear caches", e);
             throw new RuntimeException("Could not clear cache: " + e.getMessage());
         }
     }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Per-cache statistics", description = "Hits (L1/L2), misses, hit ratio, load time p50/p95/p99, evictions, average payload size, L1 size and Redis key count for each named cache.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<List<CacheAdminService.CacheStats>>> getCacheStats() {
+        return ResponseBase.ok(cacheAdminService.stats(), "Cache stats retrieved");
+    }
+
+    @GetMapping("/stats/{cacheName}")
+    @Operation(summary = "Statistics of one cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<CacheAdminService.CacheStats>> getCacheStats(@PathVariable String cacheName) {
+        return ResponseBase.ok(cacheAdminService.stats(cacheName), "Cache stats retrieved");
+    }
+
+    @DeleteMapping("/{cacheName}")
+    @Operation(summary = "Clear one cache", description = "Invalidate all entries of a single named cache.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<String>> evictCache(@PathVariable String cacheName) {
+        cacheAdminService.evictCache(cacheName);
+        return ResponseBase.ok("Cache " + cacheName + " cleared", "OK");
+    }
+
+    @DeleteMapping("/{cacheName}/keys/{key}")
+    @Operation(summary = "Evict one cache key", description = "Evict a single key (string form, e.g. product id) from a named cache on every node.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<String>> evictKey(@PathVariable String cacheName, @PathVariable String key) {
+        cacheAdminService.evictKey(cacheName, key);
+        return ResponseBase.ok("Key " + key + " evicted from " + cacheName, "OK");
+    }
+
+    @GetMapping("/token-blacklist-filter")
+    @Operation(summary = "Token blacklist filter stats", description = "Size, estimated/observed false-positive rate of the node-local access-token blacklist Bloom filter.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<TokenBlacklistFilter.Stats>> getTokenBlacklistFilterStats() {
+        return ResponseBase.ok(tokenBlacklistFilter.stats(), "Token blacklist filter stats retrieved");
+    }
+
+    @GetMapping("/coalescing")
+    @Operation(summary = "Cache miss coalescing stats", description = "Per cache: loader executions, callers that waited on an in-flight load, and cross-node lease waits/fills on this node.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<Map<String, CacheLoadCoalescer.Stats>>> getCoalescingStats() {
+        return ResponseBase.ok(cacheLoadCoalescer.stats(), "Cache coalescing stats retrieved");
+    }
+
+    @GetMapping("/warmup")
+    @Operation(summary = "Cache warm-up / refresh-ahead status", description = "Startup warm-up time and, per warmed cache, last refresh, duration, refresh/skip/failure counts and last error.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<CacheWarmer.Stats>> getWarmupStats() {
+        return ResponseBase.ok(cacheWarmer.stats(), "Cache warm-up stats retrieved");
+    }
 }
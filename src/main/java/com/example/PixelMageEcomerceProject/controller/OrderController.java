@@ -4,6 +4,7 @@ import java.security.Principal;
 import java.util.List;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,15 +13,20 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.example.PixelMageEcomerceProject.dto.request.OrderRequestDTO;
+import com.example.PixelMageEcomerceProject.dto.response.OrderPaymentState;
 import com.example.PixelMageEcomerceProject.dto.response.OrderResponse;
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
 import com.example.PixelMageEcomerceProject.entity.Account;
 import com.example.PixelMageEcomerceProject.enums.OrderStatus;
 import com.example.PixelMageEcomerceProject.repository.AccountRepository;
 import com.example.PixelMageEcomerceProject.service.interfaces.OrderService;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentAwaitService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -40,6 +46,7 @@ public class OrderController {
 
         private final OrderService orderService;
         private final AccountRepository accountRepository;
+        private final PaymentAwaitService paymentAwaitService;
 
         @PostMapping
         @Operation(summary = "Create a new order", description = "Create a new order")
@@ -98,6 +105,31 @@ public class OrderController {
                 return ResponseBase.error(HttpStatus.NOT_FOUND, "Order not found with id: " + id);
         }
 
+        @GetMapping("/{id}/await-payment")
+        @Operation(summary = "Await payment result (long-poll)", description = "Trả ngay nếu order đã có kết quả thanh toán, "
+                        + "không thì giữ request tới khi thanh toán xong hoặc hết timeoutMs — hết timeout thì trả trạng thái hiện tại để client gọi lại")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Current payment state", content = @Content(schema = @Schema(implementation = ResponseBase.class))),
+                        @ApiResponse(responseCode = "404", description = "Order not found", content = @Content(schema = @Schema(implementation = ResponseBase.class)))
+        })
+        public DeferredResult<ResponseEntity<ResponseBase<OrderPaymentState>>> awaitPayment(@PathVariable Integer id,
+                        @RequestParam(required = false) Long timeoutMs) {
+                try {
+                        return paymentAwaitService.awaitPayment(id, timeoutMs);
+                } catch (IllegalArgumentException e) {
+                        DeferredResult<ResponseEntity<ResponseBase<OrderPaymentState>>> notFound = new DeferredResult<>();
+                        notFound.setResult(ResponseBase.error(HttpStatus.NOT_FOUND, e.getMessage()));
+                        return notFound;
+                }
+        }
+
+        @GetMapping(value = "/{id}/await-payment/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        @Operation(summary = "Stream payment result (SSE)", description = "Event \"status\" với trạng thái hiện tại, "
+                        + "sau đó event \"payment\" khi thanh toán có kết quả rồi đóng stream")
+        public SseEmitter streamPayment(@PathVariable Integer id) {
+                return paymentAwaitService.streamPayment(id);
+        }
+
         @GetMapping("/customer/{customerId}")
         @Operation(summary = "Get orders by customer ID", description = "Retrieve all orders for a specific customer")
         @ApiResponses(value = {
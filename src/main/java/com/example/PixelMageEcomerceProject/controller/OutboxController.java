@@ -0,0 +1,40 @@
+package com.example.PixelMageEcomerceProject.controller;
+
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.outbox.FulfillmentWorker;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/outbox")
+@RequiredArgsConstructor
+@Tag(name = "Payment Fulfillment Outbox", description = "Monitoring and dead-letter handling of asynchronous payment fulfillment")
+@SecurityRequirement(name = "bearerAuth")
+public class OutboxController {
+
+    private final FulfillmentWorker fulfillmentWorker;
+
+    @GetMapping("/stats")
+    @Operation(summary = "Fulfillment queue stats", description = "Queue depth (pending / processing / dead), age of the oldest pending event, busy workers, processed/retried/dead-lettered counts and fulfillment lag p50/p95/max on this node.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<FulfillmentWorker.Stats>> getStats() {
+        return ResponseBase.ok(fulfillmentWorker.stats(), "Outbox stats retrieved");
+    }
+
+    @PostMapping("/{eventId}/retry")
+    @Operation(summary = "Retry a dead event", description = "Move a DEAD outbox event back to PENDING with its attempt counter reset.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<String>> retry(@PathVariable Long eventId) {
+        fulfillmentWorker.requeue(eventId);
+        return ResponseBase.ok("Outbox event " + eventId + " re-queued", "OK");
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.PixelMageEcomerceProject.controller;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackCardAssignmentResponse;
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackCardAssignmentService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/pack-card-assignments")
+@RequiredArgsConstructor
+@Tag(name = "Pack Card Assignment", description = "Bulk assignment of physical READY cards to empty pack slots")
+@SecurityRequirement(name = "bearerAuth")
+public class PackCardAssignmentController {
+
+    private final PackCardAssignmentService packCardAssignmentService;
+
+    @PostMapping
+    @Operation(summary = "Assign a production batch to pack slots", description = "Match the READY cards of `productionBatch` to the empty slots of STOCKED / RESERVED packs by template, oldest pack first. A pack is filled only when every empty slot can be filled; short packs are skipped and reported per template. `dryRun=true` returns the report without writing.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<PackCardAssignmentResponse>> assignCards(@RequestParam String productionBatch,
+            @RequestParam(required = false) Integer packCategoryId, @RequestParam(required = false) Integer chunkSize,
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        PackCardAssignmentResponse result = packCardAssignmentService.assignCards(productionBatch, packCategoryId,
+                chunkSize, dryRun);
+        return ResponseBase.ok(result, (dryRun ? "Dry run: " : "") + result.getPacksFilled() + " packs filled, "
+                + result.getPacksShort() + " short");
+    }
+}
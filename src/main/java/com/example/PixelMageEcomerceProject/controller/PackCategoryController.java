@@ -2,7 +2,9 @@ package com.example.PixelMageEcomerceProject.controller;
 
 import com.example.PixelMageEcomerceProject.dto.request.PackCategoryRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.response.PackCategoryResponse;
+import com.example.PixelMageEcomerceProject.dto.response.PackOddsSimulationResponse;
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.exceptions.RateLimitExceededException;
 import com.example.PixelMageEcomerceProject.service.interfaces.PackCategoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,6 +16,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -93,4 +96,21 @@ public class PackCategoryController {
             return ResponseBase.error(HttpStatus.NOT_FOUND, e.getMessage());
         }
     }
+
+    @PostMapping("/{id}/odds-simulation")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Simulate pack openings", description = "Open `packs` virtual packs with the production sampler and report per-template / per-rarity odds with 95% confidence intervals, in-pack duplicates and expected duplicates after opening N packs. Bounded by a CPU budget; one simulation at a time.")
+    public ResponseEntity<ResponseBase<PackOddsSimulationResponse>> simulateOdds(@PathVariable Integer id,
+                                                                                 @RequestParam(defaultValue = "1000000") long packs,
+                                                                                 @RequestParam(required = false) Long seed,
+                                                                                 @RequestParam(defaultValue = "1,10,50,100") List<Integer> horizons) {
+        try {
+            PackOddsSimulationResponse result = packCategoryService.simulateOdds(id, packs, seed, horizons);
+            return ResponseBase.ok(result, "Simulated " + result.getPacksSimulated() + " packs");
+        } catch (IllegalArgumentException | RateLimitExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return ResponseBase.error(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.example.PixelMageEcomerceProject.controller;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackGenerationJobResponse;
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackGenerationJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/pack-generation-jobs")
+@RequiredArgsConstructor
+@Tag(name = "Pack Generation Jobs", description = "Bulk pack generation running in the background in chunked transactions")
+@SecurityRequirement(name = "bearerAuth")
+public class PackGenerationJobController {
+
+    private final PackGenerationJobService packGenerationJobService;
+
+    @PostMapping
+    @Operation(summary = "Start a pack generation job", description = "Validate the category and queue a background job generating `quantity` STOCKED packs. Poll the job for progress.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<PackGenerationJobResponse>> startJob(@RequestParam Integer packCategoryId,
+            @RequestParam Integer quantity, @RequestParam(required = false) Integer chunkSize,
+            @AuthenticationPrincipal(expression = "customerId") Integer customerId) {
+        PackGenerationJobResponse job = packGenerationJobService.startJob(packCategoryId, quantity, chunkSize, customerId);
+        return ResponseBase.created(job, "Pack generation job " + job.getJobId() + " queued");
+    }
+
+    @GetMapping
+    @Operation(summary = "Recent pack generation jobs", description = "The 50 most recent jobs, optionally for one category")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<List<PackGenerationJobResponse>>> getRecentJobs(
+            @RequestParam(required = false) Integer packCategoryId) {
+        return ResponseBase.ok(packGenerationJobService.getRecentJobs(packCategoryId), "Pack generation jobs retrieved");
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Pack generation job progress", description = "Status, packs generated so far and average throughput")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<PackGenerationJobResponse>> getJob(@PathVariable Long jobId) {
+        return ResponseBase.ok(packGenerationJobService.getJob(jobId), "Pack generation job retrieved");
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    @Operation(summary = "Cancel a pack generation job", description = "Stops after the chunk being written; packs already committed are kept")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<PackGenerationJobResponse>> cancelJob(@PathVariable Long jobId) {
+        return ResponseBase.ok(packGenerationJobService.cancelJob(jobId), "Pack generation job cancelled");
+    }
+
+    @PostMapping("/{jobId}/resume")
+    @Operation(summary = "Resume a pack generation job", description = "Continue a cancelled, failed or abandoned job from the packs already generated")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<PackGenerationJobResponse>> resumeJob(@PathVariable Long jobId) {
+        return ResponseBase.ok(packGenerationJobService.resumeJob(jobId), "Pack generation job resumed");
+    }
+}
@@ -26,7 +26,7 @@ import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStr
 import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
 import com.example.PixelMageEcomerceProject.service.model.InitPaymentResult;
 import com.example.PixelMageEcomerceProject.service.model.PaymentStrategyRequest;
-import com.example.PixelMageEcomerceProject.service.model.WebhookResult;
+import com.example.PixelMageEcomerceProject.webhook.WebhookIngestionService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -52,6 +52,7 @@ public class PaymentController {
     private final PaymentService paymentService;
     private final Map<String, PaymentGatewayStrategy> strategies;
     private final PaymentMapper paymentMapper;
+    private final WebhookIngestionService webhookIngestionService;
 
     @PostMapping("/initiate")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
@@ -137,12 +138,7 @@ public class PaymentController {
             @PathVariable String gateway,
             @RequestBody(required = false) Map<String, Object> jsonPayload,
             HttpServletRequest request) {
-        log.info("[WEBHOOK] Received notification from gateway: {}", gateway);
-
-        PaymentGatewayStrategy strategy = strategies.get(gateway.toLowerCase());
-        if (strategy == null) {
-            return ResponseEntity.badRequest().body("Unsupported gateway: " + gateway);
-        }
+        log.debug("[WEBHOOK] Received notification from gateway: {}", gateway);
 
         Map<String, String> payload = new HashMap<>();
         
@@ -162,28 +158,11 @@ public class PaymentController {
             });
         }
 
-        WebhookResult result = strategy.handleWebhook(payload);
-        
-        if (result.isSuccess() && result.getOrderId() != null) {
-            log.info("[WEBHOOK] Payment successful for order {}. Updating records...", result.getOrderId());
-            try {
-                paymentService.savePaymentRecord(
-                    result.getOrderId(), 
-                    result.getGatewayTransactionId(), 
-                    PaymentGateway.valueOf(gateway.toUpperCase()),
-                    new HashMap<>(payload)
-                );
-            } catch (Exception e) {
-                log.error("[WEBHOOK] Failed to update payment record for order {}", result.getOrderId(), e);
-                // We still return success to the gateway if the payment was actually successful,
-                // but we should probably handle this better.
-            }
-        }
-
-        if (result.isSuccess()) {
-            return ResponseEntity.ok(result.getMessage());
-        } else {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(result.getMessage());
-        }
+        // Chỉ kiểm tra + ghi inbox rồi trả lời ngay; parse và cập nhật payment chạy trên worker outbox
+        WebhookIngestionService.Receipt receipt = webhookIngestionService.accept(gateway, payload);
+        return switch (receipt.outcome()) {
+            case ACCEPTED, DUPLICATE -> ResponseEntity.ok(receipt.message());
+            case UNSUPPORTED_GATEWAY, INVALID -> ResponseEntity.badRequest().body(receipt.message());
+        };
     }
 }
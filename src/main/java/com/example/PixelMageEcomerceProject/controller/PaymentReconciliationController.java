@@ -0,0 +1,38 @@
+package com.example.PixelMageEcomerceProject.controller;
+
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.reconciliation.PaymentReconciler;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/payments/reconciliation")
+@RequiredArgsConstructor
+@Tag(name = "Payment Reconciliation", description = "Recovering payments whose gateway webhook was missed")
+@SecurityRequirement(name = "bearerAuth")
+public class PaymentReconciliationController {
+
+    private final PaymentReconciler paymentReconciler;
+
+    @GetMapping("/last")
+    @Operation(summary = "Last reconciliation run", description = "Per gateway: pending payments checked, gateway calls (failed), payments reconciled from missed webhooks and payments whose webhook had already arrived.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<PaymentReconciler.Report>> getLastReport() {
+        return ResponseBase.ok(paymentReconciler.lastReport(), "Last reconciliation report retrieved");
+    }
+
+    @PostMapping("/run")
+    @Operation(summary = "Run reconciliation now", description = "Query the gateways for every pending payment in the lookback window and queue confirmed ones for fulfillment. Returns the previous report if another node is already running.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<PaymentReconciler.Report>> run() {
+        return ResponseBase.ok(paymentReconciler.run(), "Reconciliation finished");
+    }
+}
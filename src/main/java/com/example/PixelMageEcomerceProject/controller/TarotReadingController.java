@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
 import com.example.PixelMageEcomerceProject.dto.response.SpreadResponse;
 import com.example.PixelMageEcomerceProject.entity.Account;
+import com.example.PixelMageEcomerceProject.security.jwt.JwtPrincipal;
 import com.example.PixelMageEcomerceProject.entity.ReadingSession;
 import com.example.PixelMageEcomerceProject.service.interfaces.TarotReadingService;
 
@@ -171,6 +172,9 @@ public class TarotReadingController {
         if (principal instanceof Account account) {
             return account.getCustomerId();
         }
+        if (principal instanceof JwtPrincipal jwtPrincipal) {
+            return jwtPrincipal.getCustomerId();
+        }
         throw new IllegalStateException("Cannot extract accountId from authentication context: unexpected principal type " + principal.getClass().getSimpleName());
     }
 }
@@ -13,7 +13,6 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.PixelMageEcomerceProject.dto.request.UnlinkRequestRequest;
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
 import com.example.PixelMageEcomerceProject.dto.response.UnlinkRequestResponse;
-import com.example.PixelMageEcomerceProject.entity.Account;
 import com.example.PixelMageEcomerceProject.service.interfaces.UnlinkRequestService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -46,9 +45,10 @@ public class UnlinkRequestController {
                description = "Customer creates a request to unlink their NFC card. An email verification link is sent immediately.")
     public ResponseEntity<ResponseBase<UnlinkRequestResponse>> createRequest(
             @RequestBody UnlinkRequestRequest req,
-            @AuthenticationPrincipal Account account) {
+            @AuthenticationPrincipal(expression = "customerId") Integer customerId) {
+        // expression đọc getCustomerId() — dùng được cho cả Account lẫn JwtPrincipal
         return ResponseBase.ok(
-                unlinkRequestService.createRequest(account.getCustomerId(), req.nfcUid()),
+                unlinkRequestService.createRequest(customerId, req.nfcUid()),
                 "Yêu cầu hủy liên kết đã được tạo. Kiểm tra email để xác nhận."
         );
     }
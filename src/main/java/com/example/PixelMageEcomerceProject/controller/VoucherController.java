@@ -16,6 +16,7 @@ import com.example.PixelMageEcomerceProject.dto.request.ValidateVoucherRequestDT
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
 import com.example.PixelMageEcomerceProject.dto.response.VoucherResponse;
 import com.example.PixelMageEcomerceProject.entity.Account;
+import com.example.PixelMageEcomerceProject.security.jwt.JwtPrincipal;
 import com.example.PixelMageEcomerceProject.service.interfaces.VoucherService;
 
 import lombok.RequiredArgsConstructor;
@@ -46,6 +47,9 @@ public class VoucherController {
         if (auth != null && auth.getPrincipal() instanceof Account account) {
             return account.getCustomerId();
         }
+        if (auth != null && auth.getPrincipal() instanceof JwtPrincipal principal) {
+            return principal.getCustomerId();
+        }
         throw new RuntimeException("Could not extract userId from authentication context");
     }
 }
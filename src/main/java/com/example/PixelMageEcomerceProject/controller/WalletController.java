@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.PixelMageEcomerceProject.dto.response.PmPointWalletResponse;
 import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
 import com.example.PixelMageEcomerceProject.entity.Account;
+import com.example.PixelMageEcomerceProject.security.jwt.JwtPrincipal;
 import com.example.PixelMageEcomerceProject.service.interfaces.PmPointWalletService;
 
 import lombok.RequiredArgsConstructor;
@@ -41,6 +42,9 @@ public class WalletController {
         if (auth != null && auth.getPrincipal() instanceof Account account) {
             return account.getCustomerId();
         }
+        if (auth != null && auth.getPrincipal() instanceof JwtPrincipal principal) {
+            return principal.getCustomerId();
+        }
         throw new RuntimeException("Could not extract userId from authentication context");
     }
 }
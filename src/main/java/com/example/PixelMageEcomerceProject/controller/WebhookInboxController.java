@@ -0,0 +1,55 @@
+package com.example.PixelMageEcomerceProject.controller;
+
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.webhook.WebhookIngestionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/admin/webhooks")
+@RequiredArgsConstructor
+@Tag(name = "Payment Webhook Inbox", description = "Monitoring and replay of received payment webhooks")
+@SecurityRequirement(name = "bearerAuth")
+public class WebhookInboxController {
+
+    private final WebhookIngestionService webhookIngestionService;
+
+    @GetMapping("/stats")
+    @Operation(summary = "Webhook inbox stats", description = "Number of inbox entries waiting, processed and ignored.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<WebhookIngestionService.InboxStats>> getStats() {
+        return ResponseBase.ok(webhookIngestionService.stats(), "Webhook inbox stats retrieved");
+    }
+
+    @PostMapping("/{inboxId}/replay")
+    @Operation(summary = "Replay one webhook", description = "Re-process a stored webhook from its original payload.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<String>> replay(@PathVariable Long inboxId) {
+        webhookIngestionService.replay(inboxId);
+        return ResponseBase.ok("Webhook " + inboxId + " queued for replay", "OK");
+    }
+
+    @PostMapping("/replay")
+    @Operation(summary = "Replay webhooks in a time range", description = "Re-process every webhook received in [from, to), optionally for one gateway.")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseBase<Integer>> replayRange(
+            @Parameter(description = "Gateway (e.g., sepay, vnpay); all when omitted") @RequestParam(required = false) String gateway,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseBase.ok(webhookIngestionService.replay(gateway, from, to), "Webhooks queued for replay");
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.PixelMageEcomerceProject.dto.response;
+
+import com.example.PixelMageEcomerceProject.enums.OrderStatus;
+import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
+
+/**
+ * Trạng thái thanh toán của một order, trả cho client đang chờ ở /api/orders/{id}/await-payment.
+ */
+public record OrderPaymentState(Integer orderId, OrderStatus status, PaymentStatus paymentStatus) {
+
+    /** Đã có kết quả cuối — client không cần chờ tiếp. */
+    public boolean isSettled() {
+        return (paymentStatus != null && paymentStatus != PaymentStatus.PENDING
+                && paymentStatus != PaymentStatus.REQUIRES_ACTION)
+                || status == OrderStatus.COMPLETED || status == OrderStatus.CANCELLED;
+    }
+}
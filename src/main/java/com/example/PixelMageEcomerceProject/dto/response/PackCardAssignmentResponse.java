@@ -0,0 +1,44 @@
+package com.example.PixelMageEcomerceProject.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả một lượt gắn card của lô sản xuất vào slot pack (hoặc báo cáo dry-run: cùng phép ghép, không ghi).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PackCardAssignmentResponse {
+    private String productionBatch;
+    private Integer packCategoryId;
+    private Boolean dryRun;
+    private Integer cardsAvailable;     // card READY của lô lúc đọc
+    private Integer packsScanned;
+    private Integer packsFilled;        // pack được gắn đủ mọi slot trống
+    private Integer slotsFilled;
+    private Integer packsShort;         // pack bị bỏ qua vì thiếu card ở ít nhất một template
+    private Integer slotsWithoutTemplate;
+    private Integer cardsLeftOver;      // card còn READY sau lượt này
+    private Boolean supplyExhausted;    // dừng quét vì hết card, còn pack chưa xét
+    private Integer chunksWritten;
+    private Integer packsConflicted;    // chunk rollback vì card / slot bị đổi song song; chạy lại để gắn tiếp
+    private Long elapsedMs;
+    private List<TemplateAssignment> templates;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TemplateAssignment {
+        private Integer cardTemplateId;
+        private Integer cardsAvailable;
+        private Integer cardsAssigned;
+        private Integer cardsMissing;   // tổng số card còn thiếu của từng pack bị bỏ qua, tính riêng từng pack
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.PixelMageEcomerceProject.dto.response;
+
+import com.example.PixelMageEcomerceProject.enums.PackGenerationJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PackGenerationJobResponse {
+    private Long jobId;
+    private Integer packCategoryId;
+    private PackGenerationJobStatus status;
+    private Integer requestedQuantity;
+    private Integer generatedQuantity;
+    private Double progressPercent;
+    private Integer chunkSize;
+    private Double packsPerSecond;     // trung bình từ lúc bắt đầu tới lần cập nhật gần nhất
+    private Integer createdByAccountId;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,83 @@
+package com.example.PixelMageEcomerceProject.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả mô phỏng mở pack: xác suất quan sát được kèm khoảng tin cậy Wilson 95%,
+ * đặt cạnh xác suất lý thuyết suy ra từ rarity_rates + pool.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PackOddsSimulationResponse {
+    private Integer packCategoryId;
+    private Integer cardsPerPack;
+    private Long packsRequested;
+    private Long packsSimulated;
+    private Long cardsDrawn;
+    private Long seed;                 // chạy lại cùng seed + số pack cho đúng kết quả (khi không bị cắt)
+    private Integer parallelism;
+    private Long elapsedMs;
+    private Boolean truncated;         // hết CPU budget trước khi đủ số pack yêu cầu
+    private List<String> warnings;
+    private List<RarityOdds> rarities;
+    private List<TemplateOdds> templates;
+    private InPackDuplicates inPackDuplicates;
+    private List<CollectionEstimate> collection;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RarityOdds {
+        private String rarity;
+        private Double configuredRate;      // theo rarity_rates
+        private Double observedProbability; // theo rarity thật của template rút ra
+        private Double ciLow;
+        private Double ciHigh;
+        private Boolean fallback;           // có trong rarity_rates nhưng pool không có template nào
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TemplateOdds {
+        private Integer cardTemplateId;
+        private String name;
+        private String rarity;
+        private Double expectedProbability;
+        private Double observedProbability;
+        private Double ciLow;
+        private Double ciHigh;
+        private Long count;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class InPackDuplicates {
+        private Double meanDuplicatesPerPack;      // cardsPerPack − số template khác nhau trong pack
+        private Double packsWithDuplicateRatio;
+    }
+
+    /** Một người mở {@code packs} pack: kỳ vọng số template khác nhau và số thẻ trùng. */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CollectionEstimate {
+        private Integer packs;
+        private Long cards;
+        private Double expectedDistinctTemplates;
+        private Double expectedDuplicates;
+        private Double collectionCompletion;      // expectedDistinct / poolSize
+    }
+}
@@ -25,6 +25,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -48,8 +49,10 @@ import jakarta.persistence.NamedEntityGraph;
 @AllArgsConstructor
 public class Order {
 
+    // Sequence pooled (V9: INCREMENT BY 50) thay cho IDENTITY — Hibernate cấp id không cần INSERT ngay nên gom được JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_order_id_seq", allocationSize = 50)
     @Column(name = "order_id")
     private Integer orderId;
 
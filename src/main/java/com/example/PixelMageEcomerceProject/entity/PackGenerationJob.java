@@ -0,0 +1,68 @@
+package com.example.PixelMageEcomerceProject.entity;
+
+import java.time.LocalDateTime;
+
+import com.example.PixelMageEcomerceProject.enums.PackGenerationJobStatus;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PackGenerationJob — một lần sinh pack hàng loạt cho PackCategory, chạy nền theo chunk.
+ * {@code generatedQuantity} được cộng cùng transaction với chunk pack vừa ghi nên luôn khớp số pack trong DB.
+ */
+@Entity
+@Table(name = "pack_generation_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PackGenerationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "job_id")
+    private Long jobId;
+
+    @Column(name = "pack_category_id", nullable = false)
+    private Integer packCategoryId;
+
+    @Column(name = "requested_quantity", nullable = false)
+    private Integer requestedQuantity;
+
+    @Column(name = "generated_quantity", nullable = false)
+    private Integer generatedQuantity = 0;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private PackGenerationJobStatus status = PackGenerationJobStatus.QUEUED;
+
+    @Column(name = "created_by_account_id")
+    private Integer createdByAccountId;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
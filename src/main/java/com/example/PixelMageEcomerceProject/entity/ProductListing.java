@@ -0,0 +1,50 @@
+package com.example.PixelMageEcomerceProject.entity;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read model của danh sách sản phẩm (bảng product_listing, V4).
+ * Chỉ đọc từ Java — trigger DB giữ stock / pool / preview đồng bộ với packs, cards và cấu hình pool;
+ * stock_count được gom từ delta (V15) nên trễ tối đa một chu kỳ {@code product-listing.stock-fold.interval-ms}.
+ */
+@Entity
+@Immutable
+@Table(name = "product_listing")
+@Data
+@NoArgsConstructor
+public class ProductListing {
+
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", insertable = false, updatable = false)
+    private Product product;
+
+    // Số pack STOCKED (GACHA_PACK) hoặc card READY cùng template (SINGLE_CARD)
+    @Column(name = "stock_count")
+    private Integer stockCount;
+
+    @Column(name = "pool_size")
+    private Integer poolSize;
+
+    // JSON mảng CardTemplateResponse.Summary, tối đa 12 phần tử
+    @Column(name = "pool_preview", columnDefinition = "TEXT")
+    private String poolPreview;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
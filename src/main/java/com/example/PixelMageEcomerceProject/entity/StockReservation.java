@@ -0,0 +1,69 @@
+package com.example.PixelMageEcomerceProject.entity;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import com.example.PixelMageEcomerceProject.enums.ReservationStatus;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * StockReservation — bản mirror Postgres của lượng hàng đang giữ trên counter Redis.
+ * Tổng quantity HELD của một stockKey là phần đã trừ khỏi tồn kho vật lý khi dựng lại counter.
+ * order_id / product_id giữ dạng id để luồng giữ hàng không phải load Order / Product.
+ */
+@Entity
+@Table(name = "stock_reservations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+
+    // Pooled sequence — reservation của order được ghi cùng batch với các dòng order
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_reservations_seq")
+    @SequenceGenerator(name = "stock_reservations_seq", sequenceName = "stock_reservations_reservation_id_seq", allocationSize = 50)
+    @Column(name = "reservation_id")
+    private Long reservationId;
+
+    @Column(name = "order_id", nullable = false)
+    private Integer orderId;
+
+    @Column(name = "product_id", nullable = false)
+    private Integer productId;
+
+    // Nguồn hàng: pack-category:{id} (GACHA_PACK) hoặc product:{id} (SINGLE_CARD)
+    @Column(name = "stock_key", nullable = false, length = 50)
+    private String stockKey;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private ReservationStatus status = ReservationStatus.HELD;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -31,7 +31,7 @@ public class Voucher {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    /** UUID-based unique code used by customer at checkout. */
+    /** Unique code used by customer at checkout ({@code SerialSequence.VOUCHER}: "V" + 7 base32 + check char). */
     @Column(name = "code", nullable = false, unique = true, length = 50)
     private String code;
 
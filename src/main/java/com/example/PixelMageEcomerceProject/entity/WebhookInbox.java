@@ -0,0 +1,61 @@
+package com.example.PixelMageEcomerceProject.entity;
+
+import java.time.LocalDateTime;
+
+import com.example.PixelMageEcomerceProject.enums.WebhookInboxStatus;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * WebhookInbox — webhook thanh toán đã nhận, lưu nguyên payload để xử lý bất đồng bộ và phát lại.
+ */
+@Entity
+@Table(name = "webhook_inbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookInbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "inbox_id")
+    private Long inboxId;
+
+    // Tên bean strategy: sepay, vnpay, ...
+    @Column(name = "gateway", nullable = false, length = 20)
+    private String gateway;
+
+    // gateway + id giao dịch phía gateway (hoặc hash payload nếu gateway không gửi id)
+    @Column(name = "dedup_key", nullable = false, unique = true, length = 96, updatable = false)
+    private String dedupKey;
+
+    // Map field → value dạng JSON, đúng như đã nhận
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT", updatable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private WebhookInboxStatus status = WebhookInboxStatus.RECEIVED;
+
+    @Column(name = "order_id")
+    private Integer orderId;
+
+    @Column(name = "result_message", length = 255)
+    private String resultMessage;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,11 @@
+package com.example.PixelMageEcomerceProject.enums;
+
+/**
+ * Trạng thái một dòng outbox (bảng outbox_events)
+ */
+public enum OutboxStatus {
+    PENDING, // Chờ worker xử lý (hoặc chờ tới next_attempt_at sau lần lỗi)
+    PROCESSING, // Worker đã claim, giữ tới locked_until — quá hạn thì node khác claim lại
+    DONE,
+    DEAD // Hết số lần retry, cần admin xem / đẩy lại
+}
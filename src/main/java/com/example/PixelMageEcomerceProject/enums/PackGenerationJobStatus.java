@@ -0,0 +1,9 @@
+package com.example.PixelMageEcomerceProject.enums;
+
+public enum PackGenerationJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED
+}
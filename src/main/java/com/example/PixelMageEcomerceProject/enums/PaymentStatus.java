@@ -8,5 +8,7 @@ public enum PaymentStatus {
     SUCCEEDED,      // Payment succeeded
     FAILED,         // Payment failed
     CANCELED,       // Payment canceled
-    REQUIRES_ACTION // Payment requires action
+    REQUIRES_ACTION, // Payment requires action
+    EXPIRED,        // Quá hạn thanh toán, đóng bởi job dọn order treo
+    REFUND_REQUIRED // Tiền về sau khi order đã quá hạn và hết hàng: order giữ CANCELLED, chờ hoàn tiền
 }
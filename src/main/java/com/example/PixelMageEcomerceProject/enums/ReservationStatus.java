@@ -0,0 +1,11 @@
+package com.example.PixelMageEcomerceProject.enums;
+
+/**
+ * Trạng thái giữ hàng của một dòng order (bảng stock_reservations)
+ */
+public enum ReservationStatus {
+    HELD, // Đang giữ, chờ thanh toán — đã trừ khỏi counter Redis
+    CONFIRMED, // Thanh toán thành công, hàng được cấp phát cho order
+    RELEASED, // Order bị huỷ, trả lại counter
+    EXPIRED // Quá hạn thanh toán, trả lại counter
+}
@@ -0,0 +1,10 @@
+package com.example.PixelMageEcomerceProject.enums;
+
+/**
+ * Trạng thái xử lý một webhook trong inbox (bảng webhook_inbox) — payload không đổi, chỉ trạng thái đổi
+ */
+public enum WebhookInboxStatus {
+    RECEIVED, // Đã ghi inbox, chờ worker outbox xử lý (hoặc đang retry)
+    PROCESSED, // Đã cập nhật payment / order
+    IGNORED // Hợp lệ nhưng không có gì để làm (không khớp order, giao dịch thất bại, ...)
+}
@@ -0,0 +1,311 @@
+package com.example.PixelMageEcomerceProject.gacha;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackOddsSimulationResponse;
+import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.exceptions.RateLimitExceededException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Monte-Carlo mở pack bằng chính {@link PackSampler} của production, trên ForkJoinPool riêng.
+ *
+ * - Số pack chia đôi đệ quy tới lá {@code LEAF_PACKS}; mỗi nhánh tách SplittableRandom của cha nên
+ *   cùng seed + số pack cho cùng kết quả, không phụ thuộc lịch chạy thread.
+ * - CPU budget: pool chỉ có {@code gacha.simulation.parallelism} thread (mặc định nửa số core, ưu tiên
+ *   thấp), mỗi lần chạy tối đa {@code gacha.simulation.cpu-budget-ms} CPU-ms (quy ra wall-time theo
+ *   parallelism); hết budget thì lá còn lại bỏ qua và kết quả đánh dấu truncated. Mỗi lúc chỉ một lần chạy.
+ */
+@Slf4j
+@Component
+public class PackOddsSimulator {
+
+    static final int LEAF_PACKS = 16_384;
+    private static final double Z_95 = 1.959964;
+
+    @Value("${gacha.simulation.parallelism:0}")
+    int parallelism;
+
+    @Value("${gacha.simulation.max-packs:20000000}")
+    long maxPacks;
+
+    @Value("${gacha.simulation.cpu-budget-ms:30000}")
+    long cpuBudgetMillis;
+
+    private ForkJoinPool pool;
+    private final Semaphore running = new Semaphore(1);
+
+    @PostConstruct
+    void init() {
+        int size = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        pool = new ForkJoinPool(size, forkJoinPool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            t.setName("gacha-sim-" + t.getPoolIndex());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }, null, false);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @param templates pool của category (id, tên, rarity) — cùng pool đã biên dịch vào {@code sampler}
+     * @param seed      null = ngẫu nhiên
+     * @param horizons  số pack một người mở để ước lượng trùng / độ phủ bộ sưu tập
+     */
+    public PackOddsSimulationResponse simulate(Integer packCategoryId, PackSampler sampler, List<CardTemplate> templates,
+            long packs, Long seed, List<Integer> horizons) {
+        if (packs <= 0 || packs > maxPacks) {
+            throw new IllegalArgumentException("packs must be between 1 and " + maxPacks);
+        }
+        if (!running.tryAcquire()) {
+            throw new RateLimitExceededException("Another odds simulation is running, try again later");
+        }
+        try {
+            return run(packCategoryId, sampler, templates, packs, seed, horizons);
+        } finally {
+            running.release();
+        }
+    }
+
+    private PackOddsSimulationResponse run(Integer packCategoryId, PackSampler sampler, List<CardTemplate> templates,
+            long packs, Long seed, List<Integer> horizons) {
+        int maxId = templates.stream().mapToInt(CardTemplate::getCardTemplateId).max().orElse(0);
+        int[] indexOf = new int[maxId + 1]; // template id → vị trí trong mảng đếm
+        for (int i = 0; i < templates.size(); i++) {
+            indexOf[templates.get(i).getCardTemplateId()] = i;
+        }
+        long actualSeed = seed != null ? seed : ThreadLocalRandom.current().nextLong();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(Math.max(1, cpuBudgetMillis / pool.getParallelism()));
+
+        Tally tally = pool.invoke(new SimulationTask(sampler, indexOf, templates.size(), packs,
+                new SplittableRandom(actualSeed), deadline));
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("[GACHA] Simulated {}/{} packs of category {} in {} ms on {} threads", tally.packs, packs,
+                packCategoryId, elapsedMs, pool.getParallelism());
+        return report(packCategoryId, sampler, templates, packs, actualSeed, elapsedMs, tally, horizons);
+    }
+
+    private PackOddsSimulationResponse report(Integer packCategoryId, PackSampler sampler, List<CardTemplate> templates,
+            long packsRequested, long seed, long elapsedMs, Tally tally, List<Integer> horizons) {
+        long cards = tally.packs * sampler.cardsPerPack();
+        Map<Integer, Double> expected = sampler.templateProbabilities();
+
+        List<PackOddsSimulationResponse.TemplateOdds> templateOdds = new ArrayList<>();
+        Map<String, Long> rarityCounts = new LinkedHashMap<>();
+        double[] observed = new double[templates.size()];
+        for (int i = 0; i < templates.size(); i++) {
+            CardTemplate template = templates.get(i);
+            String rarity = template.getRarity() != null ? template.getRarity().name() : null;
+            long count = tally.counts[i];
+            observed[i] = cards > 0 ? (double) count / cards : 0;
+            double[] ci = wilson(count, cards);
+            templateOdds.add(PackOddsSimulationResponse.TemplateOdds.builder()
+                    .cardTemplateId(template.getCardTemplateId())
+                    .name(template.getName())
+                    .rarity(rarity)
+                    .expectedProbability(expected.getOrDefault(template.getCardTemplateId(), 0.0))
+                    .observedProbability(observed[i])
+                    .ciLow(ci[0])
+                    .ciHigh(ci[1])
+                    .count(count)
+                    .build());
+            if (rarity != null) {
+                rarityCounts.merge(rarity, count, Long::sum);
+            }
+        }
+
+        Map<String, Double> configured = sampler.rarityProbabilities();
+        Set<String> fallback = new LinkedHashSet<>(sampler.fallbackRarities());
+        Set<String> rarityNames = new LinkedHashSet<>(configured.keySet());
+        rarityNames.addAll(rarityCounts.keySet());
+        List<PackOddsSimulationResponse.RarityOdds> rarityOdds = new ArrayList<>();
+        for (String rarity : rarityNames) {
+            long count = rarityCounts.getOrDefault(rarity, 0L);
+            double[] ci = wilson(count, cards);
+            rarityOdds.add(PackOddsSimulationResponse.RarityOdds.builder()
+                    .rarity(rarity)
+                    .configuredRate(configured.getOrDefault(rarity, 0.0))
+                    .observedProbability(cards > 0 ? (double) count / cards : 0)
+                    .ciLow(ci[0])
+                    .ciHigh(ci[1])
+                    .fallback(fallback.contains(rarity))
+                    .build());
+        }
+
+        List<String> warnings = new ArrayList<>();
+        for (String rarity : fallback) {
+            warnings.add("Rarity " + rarity + " has a rate of " + Math.round(configured.get(rarity) * 10000) / 100.0
+                    + "% but no template in the pool; its share is spread over the whole pool");
+        }
+        if (tally.packs < packsRequested) {
+            warnings.add("CPU budget exhausted after " + tally.packs + " of " + packsRequested + " packs");
+        }
+
+        List<PackOddsSimulationResponse.CollectionEstimate> collection = new ArrayList<>();
+        for (Integer horizon : horizons) {
+            if (horizon != null && horizon > 0) {
+                collection.add(collectionEstimate(horizon, sampler.cardsPerPack(), observed));
+            }
+        }
+
+        return PackOddsSimulationResponse.builder()
+                .packCategoryId(packCategoryId)
+                .cardsPerPack(sampler.cardsPerPack())
+                .packsRequested(packsRequested)
+                .packsSimulated(tally.packs)
+                .cardsDrawn(cards)
+                .seed(seed)
+                .parallelism(pool.getParallelism())
+                .elapsedMs(elapsedMs)
+                .truncated(tally.packs < packsRequested)
+                .warnings(warnings)
+                .rarities(rarityOdds)
+                .templates(templateOdds)
+                .inPackDuplicates(PackOddsSimulationResponse.InPackDuplicates.builder()
+                        .meanDuplicatesPerPack(tally.packs > 0 ? (double) tally.duplicateCards / tally.packs : 0)
+                        .packsWithDuplicateRatio(tally.packs > 0 ? (double) tally.packsWithDuplicate / tally.packs : 0)
+                        .build())
+                .collection(collection)
+                .build();
+    }
+
+    /**
+     * Các lượt rút độc lập với xác suất p_i: sau m thẻ, E[số template khác nhau] = Σ 1 − (1 − p_i)^m,
+     * số thẻ trùng = m − số đó.
+     */
+    static PackOddsSimulationResponse.CollectionEstimate collectionEstimate(int packs, int cardsPerPack,
+            double[] probabilities) {
+        long cards = (long) packs * cardsPerPack;
+        double distinct = 0;
+        for (double p : probabilities) {
+            distinct += 1 - Math.pow(1 - p, cards);
+        }
+        return PackOddsSimulationResponse.CollectionEstimate.builder()
+                .packs(packs)
+                .cards(cards)
+                .expectedDistinctTemplates(distinct)
+                .expectedDuplicates(cards - distinct)
+                .collectionCompletion(probabilities.length > 0 ? distinct / probabilities.length : 0)
+                .build();
+    }
+
+    /** Khoảng Wilson 95% cho tỉ lệ {@code successes / trials}; vẫn đúng khi tỉ lệ gần 0 (thẻ hiếm). */
+    static double[] wilson(long successes, long trials) {
+        if (trials == 0) {
+            return new double[] { 0, 1 };
+        }
+        double p = (double) successes / trials;
+        double z2 = Z_95 * Z_95;
+        double denominator = 1 + z2 / trials;
+        double centre = (p + z2 / (2.0 * trials)) / denominator;
+        double margin = Z_95 * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+        return new double[] { Math.max(0, centre - margin), Math.min(1, centre + margin) };
+    }
+
+    /** Bộ đếm của một nhánh; gộp khi join. */
+    static final class Tally {
+        final long[] counts;
+        long packs;
+        long duplicateCards;
+        long packsWithDuplicate;
+
+        Tally(int templates) {
+            this.counts = new long[templates];
+        }
+
+        Tally merge(Tally other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            packs += other.packs;
+            duplicateCards += other.duplicateCards;
+            packsWithDuplicate += other.packsWithDuplicate;
+            return this;
+        }
+    }
+
+    private static final class SimulationTask extends RecursiveTask<Tally> {
+
+        private final PackSampler sampler;
+        private final int[] indexOf;
+        private final int templates;
+        private final long packs;
+        private final SplittableRandom random;
+        private final long deadline;
+
+        SimulationTask(PackSampler sampler, int[] indexOf, int templates, long packs, SplittableRandom random,
+                long deadline) {
+            this.sampler = sampler;
+            this.indexOf = indexOf;
+            this.templates = templates;
+            this.packs = packs;
+            this.random = random;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (packs <= LEAF_PACKS) {
+                return simulateLeaf();
+            }
+            long half = packs / 2;
+            SimulationTask left = new SimulationTask(sampler, indexOf, templates, half, random.split(), deadline);
+            left.fork();
+            Tally right = new SimulationTask(sampler, indexOf, templates, packs - half, random, deadline).compute();
+            return right.merge(left.join());
+        }
+
+        private Tally simulateLeaf() {
+            Tally tally = new Tally(templates);
+            if (System.nanoTime() > deadline) {
+                return tally;
+            }
+            int cardsPerPack = sampler.cardsPerPack();
+            int[] pack = new int[cardsPerPack];
+            for (long n = 0; n < packs; n++) {
+                sampler.drawPack(random, pack, 0);
+                int duplicates = 0;
+                for (int k = 0; k < cardsPerPack; k++) {
+                    tally.counts[indexOf[pack[k]]]++;
+                    for (int j = 0; j < k; j++) {
+                        if (pack[j] == pack[k]) {
+                            duplicates++;
+                            break;
+                        }
+                    }
+                }
+                tally.duplicateCards += duplicates;
+                if (duplicates > 0) {
+                    tally.packsWithDuplicate++;
+                }
+            }
+            tally.packs = packs;
+            return tally;
+        }
+    }
+}
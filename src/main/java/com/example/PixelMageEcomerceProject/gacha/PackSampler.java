@@ -0,0 +1,214 @@
+package com.example.PixelMageEcomerceProject.gacha;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * Bảng rút thẻ đã biên dịch của một PackCategory: alias table (Walker / Vose) trên các rarity của
+ * rarity_rates, mỗi rarity một mảng template id dựng sẵn.
+ *
+ * Luật giữ nguyên như vòng roll cũ: xác suất rarity = trọng số / tổng (trọng số ≤ 0 không bao giờ ra);
+ * rarity không có template nào trong pool thì rút đều trên cả pool; tổng trọng số ≤ 0 thì mọi lượt
+ * rơi vào COMMON.
+ *
+ * Bất biến sau khi dựng nên dùng chung giữa các thread; mỗi lượt rút là ba lần gọi RNG và vài lần đọc
+ * mảng, không cấp phát. RNG do caller giữ — mỗi thread một {@link java.util.SplittableRandom} tách từ gốc,
+ * hoặc {@link java.util.concurrent.ThreadLocalRandom#current()}.
+ */
+public final class PackSampler {
+
+    static final String OVERFLOW_RARITY = "COMMON";
+
+    private final Object version;
+    private final int cardsPerPack;
+    private final String[] rarities;        // outcome i của alias table
+    private final boolean[] fallback;        // rarity i không có template → rút trên cả pool
+    private final double[] probability;
+    private final int[] alias;
+    private final int[][] buckets;           // template id của outcome i
+    private final int[] poolTemplateIds;
+
+    private PackSampler(Object version, int cardsPerPack, String[] rarities, boolean[] fallback, double[] probability,
+            int[] alias, int[][] buckets, int[] poolTemplateIds) {
+        this.version = version;
+        this.cardsPerPack = cardsPerPack;
+        this.rarities = rarities;
+        this.fallback = fallback;
+        this.probability = probability;
+        this.alias = alias;
+        this.buckets = buckets;
+        this.poolTemplateIds = poolTemplateIds;
+    }
+
+    /**
+     * @param version          khoá phiên bản category (vd. updated_at) để registry biết bảng đã cũ
+     * @param rarityRates      rarity → trọng số, theo thứ tự trong JSON
+     * @param templateRarities template id → rarity của các template trong pool
+     */
+    public static PackSampler compile(Object version, int cardsPerPack, Map<String, Integer> rarityRates,
+            Map<Integer, String> templateRarities) {
+        if (templateRarities.isEmpty()) {
+            throw new IllegalArgumentException("This PackCategory has no CardTemplate pools assigned.");
+        }
+        if (cardsPerPack <= 0) {
+            throw new IllegalArgumentException("cardsPerPack must be positive");
+        }
+        Map<String, List<Integer>> byRarity = new LinkedHashMap<>();
+        templateRarities.forEach((templateId, rarity) -> {
+            if (rarity != null) {
+                byRarity.computeIfAbsent(rarity.toUpperCase(Locale.ROOT), r -> new ArrayList<>()).add(templateId);
+            }
+        });
+        int[] pool = templateRarities.keySet().stream().mapToInt(Integer::intValue).toArray();
+
+        List<String> names = new ArrayList<>();
+        List<Long> weights = new ArrayList<>();
+        rarityRates.forEach((rarity, weight) -> {
+            if (weight != null && weight > 0) {
+                names.add(rarity);
+                weights.add(weight.longValue());
+            }
+        });
+        if (names.isEmpty()) {
+            names.add(OVERFLOW_RARITY);
+            weights.add(1L);
+        }
+
+        int n = names.size();
+        String[] rarities = names.toArray(new String[0]);
+        boolean[] fallback = new boolean[n];
+        int[][] buckets = new int[n][];
+        for (int i = 0; i < n; i++) {
+            List<Integer> templates = byRarity.get(rarities[i].toUpperCase(Locale.ROOT));
+            fallback[i] = templates == null || templates.isEmpty();
+            buckets[i] = fallback[i] ? pool : templates.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        buildAliasTable(weights, probability, alias);
+        return new PackSampler(version, cardsPerPack, rarities, fallback, probability, alias, buckets, pool);
+    }
+
+    /**
+     * Vose: chuẩn hoá trọng số về trung bình 1, ghép mỗi cột "nhỏ" (< 1) với một cột "lớn" lấp phần thiếu.
+     * Tính trên long / double từ trọng số nguyên nên sai số chỉ ở mức làm tròn double.
+     */
+    private static void buildAliasTable(List<Long> weights, double[] probability, int[] alias) {
+        int n = weights.size();
+        long total = weights.stream().mapToLong(Long::longValue).sum();
+        double[] scaled = new double[n];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (double) weights.get(i) * n / total;
+            (scaled[i] < 1.0 ? small : large).push(i);
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            (scaled[more] < 1.0 ? small : large).push(more);
+        }
+        // Phần còn lại lệch khỏi 1 chỉ do làm tròn
+        while (!large.isEmpty()) {
+            int i = large.pop();
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+        while (!small.isEmpty()) {
+            int i = small.pop();
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+    }
+
+    /** Rút một template id. */
+    public int draw(RandomGenerator random) {
+        int column = random.nextInt(probability.length);
+        int outcome = random.nextDouble() < probability[column] ? column : alias[column];
+        int[] bucket = buckets[outcome];
+        return bucket[random.nextInt(bucket.length)];
+    }
+
+    /** Rút {@code cardsPerPack} template id vào {@code out} từ vị trí {@code offset}. */
+    public void drawPack(RandomGenerator random, int[] out, int offset) {
+        for (int k = 0; k < cardsPerPack; k++) {
+            out[offset + k] = draw(random);
+        }
+    }
+
+    public Object version() {
+        return version;
+    }
+
+    public int cardsPerPack() {
+        return cardsPerPack;
+    }
+
+    public int poolSize() {
+        return poolTemplateIds.length;
+    }
+
+    /** Xác suất lý thuyết của từng rarity trong rarity_rates (đọc lại từ alias table). */
+    public Map<String, Double> rarityProbabilities() {
+        double[] outcome = outcomeProbabilities();
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i = 0; i < rarities.length; i++) {
+            result.merge(rarities[i], outcome[i], Double::sum);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** Xác suất lý thuyết một lượt rút ra từng template, gồm cả phần dồn sang từ rarity không có template. */
+    public Map<Integer, Double> templateProbabilities() {
+        double[] outcome = outcomeProbabilities();
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        for (int templateId : poolTemplateIds) {
+            result.put(templateId, 0.0);
+        }
+        for (int i = 0; i < rarities.length; i++) {
+            double each = outcome[i] / buckets[i].length;
+            for (int templateId : buckets[i]) {
+                result.merge(templateId, each, Double::sum);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** Rarity trong rarity_rates có trọng số nhưng không có template nào trong pool. */
+    public List<String> fallbackRarities() {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < rarities.length; i++) {
+            if (fallback[i]) {
+                result.add(rarities[i]);
+            }
+        }
+        return result;
+    }
+
+    double[] outcomeProbabilities() {
+        int n = probability.length;
+        double[] outcome = new double[n];
+        for (int i = 0; i < n; i++) {
+            outcome[i] += probability[i] / n;
+            outcome[alias[i]] += (1.0 - probability[i]) / n;
+        }
+        return outcome;
+    }
+
+    @Override
+    public String toString() {
+        return "PackSampler" + Arrays.toString(rarities) + " v" + version;
+    }
+}
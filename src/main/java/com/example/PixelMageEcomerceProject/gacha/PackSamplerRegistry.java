@@ -0,0 +1,88 @@
+package com.example.PixelMageEcomerceProject.gacha;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.entity.PackCategory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link PackSampler} đã biên dịch theo PackCategory, giữ trong heap.
+ *
+ * Phiên bản của category là {@code updated_at}: {@code PackCategoryServiceImpl.updatePackCategory} đẩy
+ * updated_at khi pool / rarity_rates / cardsPerPack đổi, nên node khác nhận ra bảng cũ ở lần rút kế tiếp
+ * mà không cần message; node vừa sửa thì bỏ bảng ngay sau commit.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PackSamplerRegistry {
+
+    private static final TypeReference<LinkedHashMap<String, Integer>> RARITY_RATES_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final Map<Integer, PackSampler> samplers = new ConcurrentHashMap<>();
+
+    /**
+     * Bảng rút của category; biên dịch lại khi chưa có hoặc đã khác phiên bản. Lần biên dịch đọc
+     * {@code cardPools} (lazy) nên caller phải đang trong transaction.
+     */
+    public PackSampler samplerFor(PackCategory category) {
+        PackSampler cached = samplers.get(category.getPackCategoryId());
+        if (cached != null && Objects.equals(cached.version(), category.getUpdatedAt())) {
+            return cached;
+        }
+        PackSampler compiled = compile(category);
+        if (category.getPackCategoryId() != null) {
+            samplers.put(category.getPackCategoryId(), compiled);
+        }
+        return compiled;
+    }
+
+    public PackSampler compile(PackCategory category) {
+        if (category.getCardPools() == null || category.getCardPools().isEmpty()) {
+            throw new IllegalArgumentException("This PackCategory has no CardTemplate pools assigned.");
+        }
+        Map<String, Integer> rarityRates;
+        try {
+            rarityRates = objectMapper.readValue(category.getRarityRates(), RARITY_RATES_TYPE);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid rarity_rates JSON format in PackCategory.", e);
+        }
+        Map<Integer, String> templateRarities = new LinkedHashMap<>();
+        for (CardTemplate template : category.getCardPools()) {
+            templateRarities.put(template.getCardTemplateId(),
+                    template.getRarity() != null ? template.getRarity().name() : null);
+        }
+        PackSampler sampler = PackSampler.compile(category.getUpdatedAt(),
+                category.getCardsPerPack() != null ? category.getCardsPerPack() : 5, rarityRates, templateRarities);
+        log.debug("[GACHA] Compiled {} for category {} ({} templates)", sampler, category.getPackCategoryId(),
+                sampler.poolSize());
+        return sampler;
+    }
+
+    /** Bỏ bảng của category sau khi transaction hiện tại commit (ngoài transaction: ngay). */
+    public void invalidate(Integer packCategoryId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            samplers.remove(packCategoryId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                samplers.remove(packCategoryId);
+            }
+        });
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.PixelMageEcomerceProject.idempotency;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.Nonnull;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Header {@code Idempotency-Key} cho các POST tạo tài nguyên ({@code idempotency.paths}: tạo order,
+ * khởi tạo thanh toán) — client mobile retry khi mạng chập chờn không tạo thêm Order / Payment.
+ *
+ * - Retry sau khi request đầu đã xong: một GET Redis, trả lại đúng status + bytes của lần đầu
+ *   (header {@code Idempotent-Replayed: true}), không chạm service / DB.
+ * - Retry khi request đầu còn chạy: chờ tới {@code idempotency.wait-timeout-ms} rồi trả kết quả của nó;
+ *   quá hạn → 409, client retry sau.
+ * - Cùng key nhưng body khác → 422. Key gắn với user đăng nhập nên hai user trùng key không đụng nhau.
+ * - Chỉ lưu kết quả 2xx / 4xx; 5xx hoặc exception → xoá key để retry được thực thi lại.
+ *
+ * Chạy sau Spring Security (filter @Component mặc định LOWEST_PRECEDENCE) nên đã có principal.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER_KEY = "Idempotency-Key";
+    public static final String HEADER_REPLAYED = "Idempotent-Replayed";
+
+    private static final String PREFIX = "idem:"; // idem:{principal}:{path}:{key} → IdempotencyRecord (JSON)
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.enabled:true}")
+    boolean enabled;
+
+    @Value("${idempotency.paths:/api/orders,/api/payments/initiate}")
+    List<String> paths;
+
+    @Value("${idempotency.ttl-ms:86400000}")
+    long ttlMillis;
+
+    @Value("${idempotency.lock-ttl-ms:30000}")
+    long lockTtlMillis;
+
+    @Value("${idempotency.wait-timeout-ms:10000}")
+    long waitTimeoutMillis;
+
+    @Value("${idempotency.max-response-bytes:262144}")
+    int maxResponseBytes;
+
+    /**
+     * @param state IN_PROGRESS (request đầu đang chạy) hoặc COMPLETED
+     * @param fingerprint SHA-256 của method + path + body, phát hiện key bị dùng lại cho request khác
+     */
+    record IdempotencyRecord(String state, String fingerprint, int status, String contentType, byte[] body) {
+
+        static final String IN_PROGRESS = "IN_PROGRESS";
+        static final String COMPLETED = "COMPLETED";
+
+        boolean completed() {
+            return COMPLETED.equals(state);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@Nonnull HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || request.getHeader(HEADER_KEY) == null
+                || !paths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response,
+            @Nonnull FilterChain filterChain) throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER_KEY).trim();
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, HEADER_KEY + " must be 1-" + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = request.getInputStream().readAllBytes();
+        String fingerprint = fingerprint(request, body);
+        String redisKey = PREFIX + principal() + ":" + request.getRequestURI() + ":" + idempotencyKey;
+
+        IdempotencyRecord existing;
+        boolean acquired = false;
+        try {
+            existing = read(redisKey);
+            if (existing == null) {
+                acquired = tryAcquire(redisKey, fingerprint);
+                if (!acquired) {
+                    existing = read(redisKey); // request khác vừa giành được key
+                }
+            }
+        } catch (DataAccessException | JsonProcessingException e) {
+            // Redis lỗi: không chặn mua hàng, chạy như request không có key
+            log.warn("[IDEMPOTENCY] Redis unavailable, executing {} without key: {}", request.getRequestURI(), e.getMessage());
+            filterChain.doFilter(new CachedBodyRequest(request, body), response);
+            return;
+        }
+        if (acquired) {
+            execute(new CachedBodyRequest(request, body), response, filterChain, redisKey, fingerprint);
+            return;
+        }
+
+        if (existing != null && !existing.fingerprint().equals(fingerprint)) {
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER_KEY + " was already used for a different request");
+            return;
+        }
+        if (existing != null && !existing.completed()) {
+            existing = awaitCompletion(redisKey, existing);
+        }
+        if (existing == null) {
+            // Request đầu lỗi 5xx / hết lock → key đã bị xoá; client retry để thực thi lại
+            writeError(response, HttpStatus.CONFLICT, "Previous request with this " + HEADER_KEY + " failed, retry");
+            return;
+        }
+        if (!existing.completed()) {
+            writeError(response, HttpStatus.CONFLICT, "Request with this " + HEADER_KEY + " is still in progress");
+            return;
+        }
+        replay(response, existing);
+    }
+
+    private boolean tryAcquire(String redisKey, String fingerprint) throws JsonProcessingException {
+        String marker = objectMapper.writeValueAsString(
+                new IdempotencyRecord(IdempotencyRecord.IN_PROGRESS, fingerprint, 0, null, null));
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(redisKey, marker, Duration.ofMillis(lockTtlMillis)));
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+            String redisKey, String fingerprint) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            int status = wrapper.getStatus();
+            byte[] content = wrapper.getContentAsByteArray();
+            if (status < 500 && content.length <= maxResponseBytes && !request.isAsyncStarted()) {
+                IdempotencyRecord record = new IdempotencyRecord(IdempotencyRecord.COMPLETED, fingerprint, status,
+                        wrapper.getContentType(), content);
+                redisTemplate.opsForValue().set(redisKey, objectMapper.writeValueAsString(record),
+                        Duration.ofMillis(ttlMillis));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                deleteQuietly(redisKey);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    // Poll với backoff tăng dần: request trùng hiếm khi nhiều, không cần pub/sub
+    private IdempotencyRecord awaitCompletion(String redisKey, IdempotencyRecord current) throws JsonProcessingException {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        long sleep = 20;
+        IdempotencyRecord record = current;
+        while (record != null && !record.completed() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(Math.min(sleep, Math.max(1, deadline - System.currentTimeMillis())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            sleep = Math.min(sleep * 2, 200);
+            record = read(redisKey);
+        }
+        return record;
+    }
+
+    private IdempotencyRecord read(String redisKey) throws JsonProcessingException {
+        String raw = redisTemplate.opsForValue().get(redisKey);
+        return raw == null ? null : objectMapper.readValue(raw, IdempotencyRecord.class);
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyRecord record) throws IOException {
+        response.setStatus(record.status());
+        if (record.contentType() != null) {
+            response.setContentType(record.contentType());
+        }
+        response.setHeader(HEADER_REPLAYED, "true");
+        byte[] body = record.body() != null ? record.body() : new byte[0];
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private void deleteQuietly(String redisKey) {
+        try {
+            redisTemplate.delete(redisKey);
+        } catch (Exception e) {
+            log.warn("[IDEMPOTENCY] Cannot release {}: {}", redisKey, e.getMessage());
+        }
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), new ResponseBase<Void>(status.value(), message, null));
+    }
+
+    private static String principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : "anonymous";
+    }
+
+    static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + " " + request.getRequestURI() + "?" + Objects.toString(request.getQueryString(), "") + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Body đã đọc để tính fingerprint, phát lại cho controller. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() != null ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.PixelMageEcomerceProject.notification;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.dto.response.OrderPaymentState;
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Danh sách client đang chờ kết quả thanh toán theo orderId, trong heap của từng node.
+ *
+ * Khi order settle (fulfillment xong, huỷ, ...) node xử lý gọi {@link #publishSettled} sau commit: đánh thức
+ * waiter local rồi broadcast orderId qua pub/sub để node đang giữ kết nối của client cũng đánh thức.
+ * Mỗi node chỉ đọc DB một lần cho một order, bất kể bao nhiêu client đang chờ order đó.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentAwaitRegistry implements MessageListener {
+
+    static final String CHANNEL_PAYMENT_SETTLED = "order:payment-settled"; // payload: "{orderId}"
+
+    private final OrderRepository orderRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final ConcurrentMap<Integer, Set<Consumer<OrderPaymentState>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+
+    @Value("${payment.await.max-waiters:10000}")
+    int maxWaiters;
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL_PAYMENT_SETTLED));
+    }
+
+    /**
+     * Đăng ký waiter; waiter nhận trạng thái mới khi order settle trên node bất kỳ.
+     *
+     * @return hàm huỷ đăng ký; null nếu node đã giữ đủ {@code payment.await.max-waiters}
+     *         (caller trả trạng thái hiện tại ngay, client tự thử lại)
+     */
+    public Runnable register(Integer orderId, Consumer<OrderPaymentState> waiter) {
+        if (waiterCount.incrementAndGet() > maxWaiters) {
+            waiterCount.decrementAndGet();
+            return null;
+        }
+        waiters.computeIfAbsent(orderId, k -> ConcurrentHashMap.newKeySet()).add(waiter);
+        return () -> remove(orderId, waiter);
+    }
+
+    public Optional<OrderPaymentState> currentState(Integer orderId) {
+        return orderRepository.findPaymentStateById(orderId);
+    }
+
+    /** Gọi sau khi transaction làm order settle đã commit. */
+    public void publishSettled(Integer orderId) {
+        wakeUp(orderId);
+        try {
+            redisTemplate.convertAndSend(CHANNEL_PAYMENT_SETTLED, String.valueOf(orderId));
+        } catch (Exception e) {
+            // Client ở node khác hết timeout sẽ đọc lại trạng thái từ DB
+            log.warn("[PAYMENT-AWAIT] Cannot broadcast settle of order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            wakeUp(Integer.valueOf(payload));
+        } catch (NumberFormatException e) {
+            log.warn("[PAYMENT-AWAIT] Ignoring malformed message: {}", payload);
+        }
+    }
+
+    public int waiterCount() {
+        return waiterCount.get();
+    }
+
+    private void wakeUp(Integer orderId) {
+        Set<Consumer<OrderPaymentState>> orderWaiters = waiters.remove(orderId);
+        if (orderWaiters == null || orderWaiters.isEmpty()) {
+            return; // node này không có ai chờ order đó — không đọc DB
+        }
+        waiterCount.addAndGet(-orderWaiters.size());
+        OrderPaymentState state = currentState(orderId).orElse(null);
+        if (state == null) {
+            return;
+        }
+        for (Consumer<OrderPaymentState> waiter : orderWaiters) {
+            try {
+                waiter.accept(state);
+            } catch (Exception e) {
+                log.debug("[PAYMENT-AWAIT] Waiter of order {} failed: {}", orderId, e.getMessage());
+            }
+        }
+    }
+
+    private void remove(Integer orderId, Consumer<OrderPaymentState> waiter) {
+        waiters.computeIfPresent(orderId, (k, set) -> {
+            if (set.remove(waiter)) {
+                waiterCount.decrementAndGet();
+            }
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
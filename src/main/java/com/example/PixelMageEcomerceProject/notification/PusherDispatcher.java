@@ -0,0 +1,333 @@
+package com.example.PixelMageEcomerceProject.notification;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.dto.event.NotificationEvent;
+import com.pusher.rest.Pusher;
+import com.pusher.rest.data.Event;
+import com.pusher.rest.data.Result;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gửi event Pusher/Soketi bất đồng bộ — caller chỉ {@code offer} vào hàng đợi bị chặn, không bao giờ
+ * chờ HTTP (kể cả khi đang trong transaction DB).
+ *
+ * - Một thread nền drain hàng đợi và gửi theo lô qua batch API ({@code POST /batch_events},
+ *   tối đa {@code notification.dispatch.batch-size} event một request — Pusher/Soketi giới hạn 10).
+ * - Kênh trong {@code notification.dispatch.coalesce-channels} (mặc định admin.notifications): các event
+ *   cùng type trong một cửa sổ {@code coalesce-window-ms} được gộp thành một event mang
+ *   {@code coalescedCount} và {@code items}; field của event mới nhất giữ nguyên cho client cũ.
+ * - Soketi lỗi: ngừng gửi theo backoff luỹ thừa, lô lỗi quay lại đầu hàng đợi (tối đa {@code max-attempts}
+ *   lần). Trong lúc đó hàng đợi đầy dần và bỏ event theo {@code drop-policy}; event quá {@code max-age-ms}
+ *   bị bỏ vì thông báo trễ không còn giá trị.
+ */
+@Slf4j
+@Component
+public class PusherDispatcher {
+
+    private static final int MAX_COALESCED_ITEMS = 20;
+    private static final long IDLE_POLL_MILLIS = 1000;
+    private static final long DROP_WARN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    public enum DropPolicy {
+        /** Hàng đầy: bỏ event mới. */
+        DROP_NEWEST,
+        /** Hàng đầy: bỏ event cũ nhất để nhận event mới. */
+        DROP_OLDEST
+    }
+
+    record Pending(String channel, NotificationEvent event, long enqueuedAtNanos, int attempts) {
+        Pending retried() {
+            return new Pending(channel, event, enqueuedAtNanos, attempts + 1);
+        }
+    }
+
+    /**
+     * @param queued        số event đang chờ trong hàng đợi (chưa tính event đang gom)
+     * @param droppedFull   bỏ vì hàng đầy (theo drop-policy)
+     * @param droppedFailed bỏ sau khi gửi lỗi quá max-attempts
+     * @param circuitOpen   đang tạm ngừng gửi vì Soketi lỗi
+     */
+    public record Stats(int queued, int capacity, long enqueued, long sent, long batches, long coalesced,
+            long droppedFull, long droppedExpired, long droppedFailed, long failedBatches, boolean circuitOpen) {
+    }
+
+    private final Pusher pusher;
+
+    @Value("${notification.dispatch.queue-capacity:10000}")
+    int queueCapacity;
+
+    @Value("${notification.dispatch.batch-size:10}")
+    int batchSize;
+
+    @Value("${notification.dispatch.drop-policy:DROP_OLDEST}")
+    DropPolicy dropPolicy;
+
+    @Value("${notification.dispatch.max-age-ms:60000}")
+    long maxAgeMillis;
+
+    @Value("${notification.dispatch.max-attempts:3}")
+    int maxAttempts;
+
+    @Value("${notification.dispatch.coalesce-channels:admin.notifications}")
+    Set<String> coalesceChannels;
+
+    @Value("${notification.dispatch.coalesce-window-ms:500}")
+    long coalesceWindowMillis;
+
+    @Value("${notification.dispatch.backoff-base-ms:500}")
+    long backoffBaseMillis;
+
+    @Value("${notification.dispatch.backoff-max-ms:30000}")
+    long backoffMaxMillis;
+
+    private LinkedBlockingDeque<Pending> queue;
+    private Thread drainer;
+    private volatile boolean running;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder droppedFull = new LongAdder();
+    private final LongAdder droppedExpired = new LongAdder();
+    private final LongAdder droppedFailed = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final AtomicLong lastDropWarn = new AtomicLong();
+    private volatile boolean circuitOpen;
+
+    // Chỉ thread drain đọc / ghi
+    private final Map<String, List<Pending>> coalescing = new LinkedHashMap<>();
+    private long coalesceWindowEnd;
+    private long circuitOpenUntil;
+    private int consecutiveFailures;
+
+    public PusherDispatcher(Pusher pusher) {
+        this.pusher = pusher;
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingDeque<>(Math.max(1, queueCapacity));
+        running = true;
+        drainer = new Thread(this::drainLoop, "pusher-dispatcher");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Đưa event vào hàng đợi, không chặn.
+     *
+     * @return false nếu event bị bỏ vì hàng đầy
+     */
+    public boolean dispatch(String channel, NotificationEvent event) {
+        enqueued.increment();
+        Pending pending = new Pending(channel, event, System.nanoTime(), 0);
+        if (queue.offerLast(pending)) {
+            return true;
+        }
+        if (dropPolicy == DropPolicy.DROP_OLDEST && queue.pollFirst() != null) {
+            droppedFull.increment();
+            if (queue.offerLast(pending)) {
+                warnDropped();
+                return true;
+            }
+        }
+        droppedFull.increment();
+        warnDropped();
+        return false;
+    }
+
+    public Stats stats() {
+        return new Stats(queue.size(), Math.max(1, queueCapacity), enqueued.sum(), sent.sum(), batches.sum(),
+                coalesced.sum(), droppedFull.sum(), droppedExpired.sum(), droppedFailed.sum(), failedBatches.sum(),
+                circuitOpen);
+    }
+
+    private void drainLoop() {
+        List<Pending> drained = new ArrayList<>();
+        while (running) {
+            try {
+                long now = System.nanoTime();
+                if (circuitOpen && now < circuitOpenUntil) {
+                    // Soketi đang lỗi: để event dồn trong hàng đợi (drop-policy lo phần tràn)
+                    TimeUnit.NANOSECONDS.sleep(circuitOpenUntil - now);
+                    continue;
+                }
+                long waitNanos = coalescing.isEmpty()
+                        ? TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS)
+                        : Math.max(0, coalesceWindowEnd - now);
+                Pending first = queue.pollFirst(waitNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    drained.add(first);
+                    queue.drainTo(drained, Math.max(1, batchSize) * 50 - 1);
+                }
+                List<Pending> outgoing = route(drained);
+                drained.clear();
+                send(outgoing);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("[Soketi] Dispatcher loop error: {}", e.getMessage(), e);
+            }
+        }
+        Thread.interrupted(); // cờ interrupt của stop() sẽ làm hỏng request HTTP cuối
+        flushOnShutdown(drained);
+    }
+
+    /** Tách event cần gom khỏi event gửi ngay; trả về danh sách gửi ngay (kèm các nhóm đã hết cửa sổ). */
+    private List<Pending> route(List<Pending> drained) {
+        long now = System.nanoTime();
+        long maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        List<Pending> outgoing = new ArrayList<>(drained.size());
+        for (Pending pending : drained) {
+            if (now - pending.enqueuedAtNanos() > maxAgeNanos) {
+                droppedExpired.increment();
+            } else if (pending.attempts() == 0 && coalesceChannels.contains(pending.channel())) {
+                if (coalescing.isEmpty()) {
+                    coalesceWindowEnd = now + TimeUnit.MILLISECONDS.toNanos(coalesceWindowMillis);
+                }
+                coalescing.computeIfAbsent(pending.channel() + '\u0000' + pending.event().getType(),
+                        k -> new ArrayList<>()).add(pending);
+            } else {
+                outgoing.add(pending);
+            }
+        }
+        if (!coalescing.isEmpty() && now >= coalesceWindowEnd) {
+            coalescing.values().forEach(group -> outgoing.add(merge(group)));
+            coalescing.clear();
+        }
+        return outgoing;
+    }
+
+    private Pending merge(List<Pending> group) {
+        Pending latest = group.get(group.size() - 1);
+        if (group.size() == 1) {
+            return latest;
+        }
+        coalesced.add(group.size() - 1);
+        NotificationEvent event = latest.event();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        if (event.getPayload() != null) {
+            payload.putAll(event.getPayload());
+        }
+        payload.put("coalescedCount", group.size());
+        payload.put("items", group.subList(Math.max(0, group.size() - MAX_COALESCED_ITEMS), group.size()).stream()
+                .map(p -> p.event().getPayload())
+                .toList());
+        NotificationEvent merged = NotificationEvent.builder()
+                .type(event.getType())
+                .userId(event.getUserId())
+                .payload(payload)
+                .timestamp(event.getTimestamp())
+                .build();
+        return new Pending(latest.channel(), merged, group.get(0).enqueuedAtNanos(), 0);
+    }
+
+    private void send(List<Pending> outgoing) {
+        int size = chunkSize();
+        for (int from = 0; from < outgoing.size(); from += size) {
+            List<Pending> chunk = outgoing.subList(from, Math.min(outgoing.size(), from + size));
+            if (!trigger(chunk)) {
+                // Giữ thứ tự: phần chưa gửi rồi tới lô lỗi, cùng đẩy lại đầu hàng đợi
+                requeue(outgoing.subList(from + chunk.size(), outgoing.size()), false);
+                requeue(chunk, true);
+                return;
+            }
+        }
+    }
+
+    private boolean trigger(List<Pending> chunk) {
+        List<Event> batch = chunk.stream()
+                .map(p -> new Event(p.channel(), p.event().getType(), p.event()))
+                .toList();
+        String error;
+        try {
+            Result result = pusher.trigger(batch);
+            if (result.getStatus() == Result.Status.SUCCESS) {
+                sent.add(chunk.size());
+                batches.increment();
+                consecutiveFailures = 0;
+                circuitOpen = false;
+                log.debug("[Soketi] Sent batch of {} events", chunk.size());
+                return true;
+            }
+            error = result.getStatus() + " " + result.getHttpStatus() + ": " + result.getMessage();
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+        failedBatches.increment();
+        consecutiveFailures++;
+        long backoffMillis = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(consecutiveFailures - 1, 16));
+        circuitOpenUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+        circuitOpen = true;
+        log.warn("[Soketi] Batch of {} events failed ({} in a row), pausing {} ms: {}",
+                chunk.size(), consecutiveFailures, backoffMillis, error);
+        return false;
+    }
+
+    private void requeue(List<Pending> pendings, boolean countAttempt) {
+        for (int i = pendings.size() - 1; i >= 0; i--) {
+            Pending pending = countAttempt ? pendings.get(i).retried() : pendings.get(i);
+            if (pending.attempts() >= maxAttempts || !queue.offerFirst(pending)) {
+                droppedFailed.increment();
+            }
+        }
+    }
+
+    private void flushOnShutdown(List<Pending> drained) {
+        if (circuitOpen) {
+            return;
+        }
+        List<Pending> remaining = new ArrayList<>(drained);
+        coalescing.values().forEach(group -> remaining.add(merge(group)));
+        coalescing.clear();
+        queue.drainTo(remaining);
+        int size = chunkSize();
+        for (int from = 0; from < remaining.size(); from += size) {
+            if (!trigger(remaining.subList(from, Math.min(remaining.size(), from + size)))) {
+                break;
+            }
+        }
+    }
+
+    // Pusher / Soketi từ chối batch quá 10 event
+    private int chunkSize() {
+        return Math.max(1, Math.min(batchSize, 10));
+    }
+
+    private void warnDropped() {
+        long now = System.nanoTime();
+        long last = lastDropWarn.get();
+        if (now - last > DROP_WARN_INTERVAL_NANOS && lastDropWarn.compareAndSet(last, now)) {
+            log.warn("[Soketi] Notification queue full ({}), dropping by {} — dropped so far: {}",
+                    queue.size(), dropPolicy, droppedFull.sum());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.PixelMageEcomerceProject.outbox;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.enums.OutboxStatus;
+import com.example.PixelMageEcomerceProject.repository.OutboxEventRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Worker pool xử lý outbox: fulfillment sau thanh toán, webhook đã nhận vào inbox, ... — mỗi loại event
+ * do một {@link OutboxEventHandler} xử lý.
+ *
+ * - Poll định kỳ ({@code outbox.worker.poll-interval-ms}) và ngay khi có dòng mới commit; chỉ claim số
+ *   dòng bằng số worker đang rảnh nên hàng đợi trong heap luôn bị chặn, phần còn lại nằm trong DB.
+ * - Mỗi dòng: fulfillment + đánh dấu DONE trong cùng một transaction. Lỗi → PENDING với backoff
+ *   luỹ thừa (có jitter); quá {@code outbox.worker.max-attempts} → DEAD.
+ * - Node chết giữa chừng: dòng PROCESSING quá {@code outbox.worker.lease-ms} được node khác claim lại;
+ *   fulfillment idempotent theo paymentStatus của order.
+ * - Lease = (locked_by, attempts) lúc claim. DONE / retry là UPDATE có điều kiện trên lease đó: node chậm
+ *   mà lease đã bị claim lại thì transaction của nó rollback, không ghi đè kết quả của node mới.
+ */
+@Slf4j
+@Component
+public class FulfillmentWorker {
+
+    private static final int LAG_SAMPLES = 1024;
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    /** Handler chạy xong nhưng lease đã thuộc về lần claim khác: rollback, không retry. */
+    static final class LeaseLostException extends RuntimeException {
+        LeaseLostException(Long eventId) {
+            super("Lease of outbox event " + eventId + " was lost");
+        }
+    }
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final Map<String, OutboxEventHandler> handlers;
+    private final PlatformTransactionManager transactionManager;
+    private final String owner = UUID.randomUUID().toString();
+
+    @Value("${outbox.worker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.worker.threads:4}")
+    private int threads;
+
+    @Value("${outbox.worker.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${outbox.worker.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${outbox.worker.backoff-base-ms:1000}")
+    private long backoffBaseMillis;
+
+    @Value("${outbox.worker.backoff-max-ms:300000}")
+    private long backoffMaxMillis;
+
+    private ExecutorService workers;
+    private ExecutorService poller;
+    private Semaphore permits;
+    private final AtomicBoolean pollRequested = new AtomicBoolean();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final long[] lagMillis = new long[LAG_SAMPLES];
+    private final AtomicLong lagCursor = new AtomicLong();
+
+    /**
+     * @param pending          số dòng chờ xử lý (queue depth, gồm cả dòng đang chờ backoff)
+     * @param oldestPendingAgeMs tuổi dòng PENDING cũ nhất — lag hiện tại của pipeline
+     * @param lagP50Ms         thời gian từ lúc ghi outbox tới lúc fulfillment xong, trên các lần gần nhất
+     */
+    public record Stats(boolean enabled, int workers, int busyWorkers, long pending, long processing, long dead,
+            long oldestPendingAgeMs, long processed, long retried, long deadLettered,
+            double lagP50Ms, double lagP95Ms, double lagMaxMs) {
+    }
+
+    public FulfillmentWorker(OutboxEventRepository outboxEventRepository, List<OutboxEventHandler> handlers,
+            PlatformTransactionManager transactionManager) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.handlers = handlers.stream()
+                .collect(Collectors.toUnmodifiableMap(OutboxEventHandler::eventType, Function.identity()));
+        this.transactionManager = transactionManager;
+    }
+
+    @PostConstruct
+    void init() {
+        int size = Math.max(1, threads);
+        permits = new Semaphore(size);
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(size, r -> {
+            Thread t = new Thread(r, "outbox-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        poller = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "outbox-poller");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        workers.shutdown();
+        try {
+            // Dòng đang chạy dở mà không xong thì được claim lại sau lease
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Đánh thức poller (gộp nhiều lần gọi liên tiếp thành một lần poll). */
+    public void wakeUp() {
+        if (enabled && pollRequested.compareAndSet(false, true)) {
+            poller.execute(() -> {
+                pollRequested.set(false);
+                poll();
+            });
+        }
+    }
+
+    /** Đánh thức worker khi transaction hiện tại (vừa ghi outbox) commit; ngoài transaction thì ngay. */
+    public void wakeUpAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            wakeUp();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wakeUp();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.worker.poll-interval-ms:1000}",
+            initialDelayString = "${outbox.worker.poll-interval-ms:1000}")
+    public void scheduledPoll() {
+        wakeUp();
+    }
+
+    void poll() {
+        int free = permits.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        List<Long> claimed;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            claimed = outboxEventRepository.claimDue(now, now.plus(Duration.ofMillis(leaseMillis)), owner, free);
+        } catch (Exception e) {
+            log.error("[OUTBOX] Claim failed: {}", e.getMessage());
+            return;
+        }
+        for (Long eventId : claimed) {
+            permits.acquireUninterruptibly(); // chỉ claim đúng số permit rảnh nên không chờ thật
+            workers.execute(() -> {
+                try {
+                    process(eventId);
+                } finally {
+                    permits.release();
+                    wakeUp(); // có thể còn dòng tới hạn
+                }
+            });
+        }
+    }
+
+    void process(Long eventId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        OutboxEvent claimed = outboxEventRepository.findById(eventId).orElse(null);
+        if (claimed == null || claimed.getStatus() != OutboxStatus.PROCESSING || !owner.equals(claimed.getLockedBy())) {
+            return;
+        }
+        int attempts = claimed.getAttempts();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                dispatch(claimed);
+                LocalDateTime now = LocalDateTime.now();
+                if (outboxEventRepository.complete(eventId, owner, attempts, now) == 0) {
+                    throw new LeaseLostException(eventId);
+                }
+                recordLag(Duration.between(claimed.getCreatedAt(), now).toMillis());
+            });
+            processed.increment();
+        } catch (LeaseLostException e) {
+            log.warn("[OUTBOX] Event {} ({} {}) took longer than its lease and was re-claimed, rolled back",
+                    eventId, claimed.getEventType(), claimed.getAggregateId());
+        } catch (Exception e) {
+            transactionTemplate.executeWithoutResult(status -> scheduleRetry(claimed, attempts, e));
+        }
+    }
+
+    private void dispatch(OutboxEvent event) {
+        OutboxEventHandler handler = handlers.get(event.getEventType());
+        if (handler == null) {
+            throw new IllegalStateException("Unknown outbox event type: " + event.getEventType());
+        }
+        handler.handle(event);
+    }
+
+    private void scheduleRetry(OutboxEvent event, int attempts, Exception error) {
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        String lastError = message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+        boolean dead = attempts >= maxAttempts;
+        LocalDateTime nextAttemptAt = dead
+                ? event.getNextAttemptAt()
+                : LocalDateTime.now().plus(Duration.ofMillis(backoffMillis(attempts)));
+        OutboxStatus status = dead ? OutboxStatus.DEAD : OutboxStatus.PENDING;
+        if (outboxEventRepository.fail(event.getEventId(), owner, attempts, status.name(), nextAttemptAt, lastError) == 0) {
+            log.warn("[OUTBOX] Event {} ({} {}) failed after its lease was re-claimed, leaving it to the new owner: {}",
+                    event.getEventId(), event.getEventType(), event.getAggregateId(), message);
+            return;
+        }
+        if (dead) {
+            deadLettered.increment();
+            log.error("[OUTBOX] Event {} ({} {}) dead after {} attempts: {}", event.getEventId(),
+                    event.getEventType(), event.getAggregateId(), attempts, message);
+        } else {
+            retried.increment();
+            log.warn("[OUTBOX] Event {} ({} {}) failed attempt {}, retry at {}: {}", event.getEventId(),
+                    event.getEventType(), event.getAggregateId(), attempts, nextAttemptAt, message);
+        }
+    }
+
+    // base × 2^(attempt-1), chặn ở max, jitter ±20% để các dòng lỗi cùng lúc không retry cùng lúc
+    long backoffMillis(int attempt) {
+        long exponential = backoffBaseMillis << Math.min(Math.max(0, attempt - 1), 20);
+        long capped = Math.min(backoffMaxMillis, exponential);
+        return (long) (capped * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+
+    /** Đẩy lại một dòng DEAD về PENDING (admin). */
+    public void requeue(Long eventId) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            OutboxEvent event = outboxEventRepository.findById(eventId)
+                    .orElseThrow(() -> new IllegalArgumentException("Outbox event not found: " + eventId));
+            if (event.getStatus() != OutboxStatus.DEAD) {
+                throw new IllegalArgumentException("Outbox event " + eventId + " is " + event.getStatus() + ", not DEAD");
+            }
+            event.setStatus(OutboxStatus.PENDING);
+            event.setAttempts(0);
+            event.setNextAttemptAt(LocalDateTime.now());
+            outboxEventRepository.save(event);
+        });
+        wakeUp();
+    }
+
+    public Stats stats() {
+        int sampleCount = (int) Math.min(lagCursor.get(), LAG_SAMPLES);
+        long[] samples = Arrays.copyOf(lagMillis, sampleCount);
+        Arrays.sort(samples);
+        long oldestPendingAge = outboxEventRepository.findFirstByStatusOrderByEventIdAsc(OutboxStatus.PENDING)
+                .map(e -> Duration.between(e.getCreatedAt(), LocalDateTime.now()).toMillis())
+                .orElse(0L);
+        int size = Math.max(1, threads);
+        return new Stats(enabled, size, size - permits.availablePermits(),
+                outboxEventRepository.countByStatus(OutboxStatus.PENDING),
+                outboxEventRepository.countByStatus(OutboxStatus.PROCESSING),
+                outboxEventRepository.countByStatus(OutboxStatus.DEAD),
+                oldestPendingAge, processed.sum(), retried.sum(), deadLettered.sum(),
+                percentile(samples, 0.50), percentile(samples, 0.95),
+                samples.length == 0 ? 0 : samples[samples.length - 1]);
+    }
+
+    private void recordLag(long millis) {
+        lagMillis[(int) (lagCursor.getAndIncrement() % LAG_SAMPLES)] = millis;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.PixelMageEcomerceProject.outbox;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+
+/**
+ * Xử lý một loại outbox event. {@link FulfillmentWorker} gọi {@link #handle} trong transaction sẽ đánh
+ * dấu dòng DONE; ném exception để rollback và retry theo backoff.
+ */
+public interface OutboxEventHandler {
+
+    String eventType();
+
+    void handle(OutboxEvent event);
+}
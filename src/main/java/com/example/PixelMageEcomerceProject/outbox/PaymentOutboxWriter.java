@@ -0,0 +1,51 @@
+package com.example.PixelMageEcomerceProject.outbox;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.event.PaymentSuccessEvent;
+import com.example.PixelMageEcomerceProject.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Nhận {@link PaymentSuccessEvent} ngay trong transaction của webhook và chỉ ghi một dòng outbox —
+ * webhook trả lời gateway ngay, fulfillment (cấp phát hàng, cập nhật order, push Pusher) do
+ * {@link FulfillmentWorker} chạy sau khi commit.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentOutboxWriter {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final FulfillmentWorker fulfillmentWorker;
+    private final ObjectMapper objectMapper;
+
+    @EventListener
+    @Transactional
+    public void onPaymentSuccess(PaymentSuccessEvent event) {
+        OutboxEvent outboxEvent = OutboxEvent.pending(OutboxEvent.TYPE_PAYMENT_SUCCEEDED,
+                String.valueOf(event.getOrderId()),
+                toJson(new PaymentSucceededPayload(event.getOrderId(), event.getTransactionId(),
+                        event.getAmount(), event.getPaymentGateway())));
+        outboxEventRepository.save(outboxEvent);
+        log.info("[OUTBOX] Queued fulfillment for order {} (event {})", event.getOrderId(), outboxEvent.getEventId());
+
+        // Không đợi chu kỳ poll: commit xong là đánh thức worker
+        fulfillmentWorker.wakeUpAfterCommit();
+    }
+
+    private String toJson(PaymentSucceededPayload payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.PixelMageEcomerceProject.outbox;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.service.interfaces.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@code PAYMENT_SUCCEEDED} → cấp phát hàng và hoàn tất order.
+ */
+@Component
+public class PaymentSucceededHandler implements OutboxEventHandler {
+
+    private final ObjectMapper objectMapper;
+    private final OrderService orderService;
+
+    // @Lazy: OrderService → ... → PaymentService phát event → PaymentOutboxWriter → worker → handler
+    public PaymentSucceededHandler(ObjectMapper objectMapper, @Lazy OrderService orderService) {
+        this.objectMapper = objectMapper;
+        this.orderService = orderService;
+    }
+
+    @Override
+    public String eventType() {
+        return OutboxEvent.TYPE_PAYMENT_SUCCEEDED;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        PaymentSucceededPayload payload;
+        try {
+            payload = objectMapper.readValue(event.getPayload(), PaymentSucceededPayload.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid payload: " + e.getMessage(), e);
+        }
+        orderService.fulfillPaidOrder(payload.orderId(), payload.transactionId());
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.PixelMageEcomerceProject.outbox;
+
+import java.math.BigDecimal;
+
+import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
+
+/**
+ * Payload JSON của outbox event {@code PAYMENT_SUCCEEDED}.
+ */
+public record PaymentSucceededPayload(Integer orderId, String transactionId, BigDecimal amount,
+        PaymentGateway gateway) {
+}
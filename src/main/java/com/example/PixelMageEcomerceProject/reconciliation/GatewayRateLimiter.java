@@ -0,0 +1,30 @@
+package com.example.PixelMageEcomerceProject.reconciliation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giãn đều các request tới một gateway: tối đa {@code permitsPerSecond} request mỗi giây, dùng chung cho
+ * mọi thread đối soát của gateway đó. Không tích luỹ burst — gateway thường tính rate limit theo cửa sổ ngắn.
+ */
+final class GatewayRateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    GatewayRateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+    }
+
+    void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextFreeNanos);
+            nextFreeNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
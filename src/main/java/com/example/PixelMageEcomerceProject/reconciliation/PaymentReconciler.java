@@ -0,0 +1,248 @@
+package com.example.PixelMageEcomerceProject.reconciliation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
+import com.example.PixelMageEcomerceProject.service.interfaces.RedisLockService;
+import com.example.PixelMageEcomerceProject.service.model.ReconciliationCandidate;
+import com.example.PixelMageEcomerceProject.webhook.WebhookIngestionService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đối soát payment PENDING với gateway — lưới an toàn khi webhook bị lỡ (tiền đã vào nhưng order chưa
+ * được fulfillment).
+ *
+ * - Duyệt payment PENDING của order còn PENDING, tạo trong [now − lookback, now − min-age) — min-age để
+ *   webhook thật tới trước — keyset theo payment_id, từng trang {@code payment.reconcile.page-size}.
+ * - Trang được chia thành lô {@link PaymentGatewayStrategy#reconcileBatchSize()} (SEPay: cả lô một request
+ *   liệt kê giao dịch; VNPay querydr: một giao dịch mỗi request), tối đa
+ *   {@code payment.reconcile.<gateway>.concurrency} lô song song và {@code .rate-per-second} request / giây.
+ * - Giao dịch gateway xác nhận đã thanh toán đi vào webhook inbox như webhook thật: dedupe theo id giao dịch,
+ *   cùng handler, cùng outbox fulfillment; webhook tới muộn sau đó chỉ là DUPLICATE.
+ * - Mỗi lượt chỉ một node chạy (lock Redis); Redis lỗi thì vẫn chạy vì inbox đã chống trùng.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentReconciler {
+
+    private static final String LOCK_KEY = "lock:payment-reconcile";
+
+    private final Map<String, PaymentGatewayStrategy> strategies;
+    private final PaymentRepository paymentRepository;
+    private final WebhookIngestionService webhookIngestionService;
+    private final RedisLockService redisLockService;
+    private final Environment environment;
+
+    @Value("${payment.reconcile.enabled:true}")
+    boolean enabled;
+
+    @Value("${payment.reconcile.min-age-ms:120000}")
+    long minAgeMillis;
+
+    @Value("${payment.reconcile.lookback-ms:86400000}")
+    long lookbackMillis;
+
+    @Value("${payment.reconcile.page-size:500}")
+    int pageSize;
+
+    @Value("${payment.reconcile.concurrency:2}")
+    int defaultConcurrency;
+
+    @Value("${payment.reconcile.rate-per-second:5}")
+    double defaultRatePerSecond;
+
+    @Value("${payment.reconcile.lock-ttl-seconds:900}")
+    long lockTtlSeconds;
+
+    private final Map<String, GatewayRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private volatile Report lastReport;
+
+    /**
+     * @param checked         số payment PENDING đã hỏi gateway
+     * @param calls           số lô đã gửi gateway
+     * @param failedCalls     lô lỗi (timeout, sai chữ ký, ...) — các payment đó được hỏi lại ở lượt sau
+     * @param reconciled      giao dịch đã thanh toán mà webhook bị lỡ, vừa được đưa vào inbox
+     * @param alreadyReceived giao dịch đã thanh toán nhưng webhook của nó đã có trong inbox
+     */
+    public record GatewayReport(String gateway, int checked, int calls, int failedCalls, int reconciled,
+            int alreadyReceived) {
+    }
+
+    public record Report(LocalDateTime startedAt, long elapsedMs, int checked, int reconciled,
+            List<GatewayReport> gateways) {
+    }
+
+    @Scheduled(fixedDelayString = "${payment.reconcile.interval-ms:300000}",
+            initialDelayString = "${payment.reconcile.interval-ms:300000}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    /** Chạy một lượt đối soát; trả về báo cáo của lượt này (hoặc lượt trước nếu node khác đang chạy). */
+    public Report run() {
+        boolean lockHeld = false;
+        try {
+            lockHeld = redisLockService.tryLock(LOCK_KEY, lockTtlSeconds);
+            if (!lockHeld) {
+                log.debug("[RECONCILE] Another node is reconciling, skipping this run");
+                return lastReport;
+            }
+        } catch (Exception e) {
+            log.warn("[RECONCILE] Redis unavailable, reconciling without lock: {}", e.getMessage());
+        }
+        try {
+            return reconcileAll();
+        } finally {
+            if (lockHeld) {
+                try {
+                    redisLockService.releaseLock(LOCK_KEY);
+                } catch (Exception e) {
+                    log.warn("[RECONCILE] Cannot release lock, it expires in {}s: {}", lockTtlSeconds, e.getMessage());
+                }
+            }
+        }
+    }
+
+    public Report lastReport() {
+        return lastReport;
+    }
+
+    private Report reconcileAll() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long started = System.currentTimeMillis();
+        LocalDateTime from = startedAt.minus(Duration.ofMillis(lookbackMillis));
+        LocalDateTime to = startedAt.minus(Duration.ofMillis(minAgeMillis));
+
+        List<GatewayReport> gateways = new ArrayList<>();
+        strategies.forEach((name, strategy) -> {
+            if (strategy.reconcileBatchSize() > 0) {
+                gateways.add(reconcileGateway(name, strategy, from, to));
+            }
+        });
+
+        Report report = new Report(startedAt, System.currentTimeMillis() - started,
+                gateways.stream().mapToInt(GatewayReport::checked).sum(),
+                gateways.stream().mapToInt(GatewayReport::reconciled).sum(), List.copyOf(gateways));
+        lastReport = report;
+        log.info("[RECONCILE] Checked {} pending payments in {} ms, reconciled {} missed payments: {}",
+                report.checked(), report.elapsedMs(), report.reconciled(), gateways);
+        return report;
+    }
+
+    private GatewayReport reconcileGateway(String name, PaymentGatewayStrategy strategy, LocalDateTime from,
+            LocalDateTime to) {
+        int batchSize = strategy.reconcileBatchSize();
+        int concurrency = Math.max(1, environment.getProperty(
+                "payment.reconcile." + name + ".concurrency", Integer.class, defaultConcurrency));
+        GatewayRateLimiter limiter = rateLimiters.computeIfAbsent(name, k -> new GatewayRateLimiter(environment
+                .getProperty("payment.reconcile." + k + ".rate-per-second", Double.class, defaultRatePerSecond)));
+        Tally tally = new Tally();
+        // Chỉ giữ tối đa concurrency lô trong heap: trang sau chỉ được đọc khi có chỗ
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "reconcile-" + name + "-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            int afterId = 0;
+            while (true) {
+                List<ReconciliationCandidate> page = paymentRepository.findReconciliationCandidates(
+                        strategy.getGatewayType(), from, to, afterId, PageRequest.of(0, pageSize));
+                for (int i = 0; i < page.size(); i += batchSize) {
+                    List<ReconciliationCandidate> batch = page.subList(i, Math.min(page.size(), i + batchSize));
+                    inFlight.acquire();
+                    pool.execute(() -> {
+                        try {
+                            reconcileBatch(name, strategy, batch, limiter, tally);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).paymentId();
+            }
+            inFlight.acquire(concurrency); // chờ các lô còn đang chạy
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("[RECONCILE] {} run aborted: {}", name, e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+        return tally.report(name);
+    }
+
+    private void reconcileBatch(String name, PaymentGatewayStrategy strategy, List<ReconciliationCandidate> batch,
+            GatewayRateLimiter limiter, Tally tally) {
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        tally.checked.addAndGet(batch.size());
+        tally.calls.incrementAndGet();
+        List<Map<String, String>> settled;
+        try {
+            settled = strategy.reconcile(batch);
+        } catch (Exception e) {
+            tally.failedCalls.incrementAndGet();
+            log.warn("[RECONCILE] {} query for {} payments failed: {}", name, batch.size(), e.getMessage());
+            return;
+        }
+        for (Map<String, String> payload : settled) {
+            try {
+                WebhookIngestionService.Receipt receipt = webhookIngestionService.accept(name, payload);
+                switch (receipt.outcome()) {
+                    case ACCEPTED -> {
+                        tally.reconciled.incrementAndGet();
+                        log.info("[RECONCILE] {} missed webhook recovered as inbox {}", name, receipt.inboxId());
+                    }
+                    case DUPLICATE -> tally.alreadyReceived.incrementAndGet();
+                    default -> log.warn("[RECONCILE] {} reconciled payload rejected: {}", name, receipt.message());
+                }
+            } catch (Exception e) {
+                log.error("[RECONCILE] {} cannot queue reconciled payment: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private static final class Tally {
+        final AtomicInteger checked = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger failedCalls = new AtomicInteger();
+        final AtomicInteger reconciled = new AtomicInteger();
+        final AtomicInteger alreadyReceived = new AtomicInteger();
+
+        GatewayReport report(String gateway) {
+            return new GatewayReport(gateway, checked.get(), calls.get(), failedCalls.get(), reconciled.get(),
+                    alreadyReceived.get());
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.PixelMageEcomerceProject.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.PixelMageEcomerceProject.entity.Account;
@@ -24,4 +26,16 @@ public interface AccountRepository extends JpaRepository<Account, Integer> {
 
     @Query("SELECT a FROM Account a WHERE lower(a.role.roleName) = lower(:roleName)")
     org.springframework.data.domain.Page<Account> findByRoleName(String roleName, org.springframework.data.domain.Pageable pageable);
+
+    @Query("SELECT a.customerId FROM Account a WHERE a.role.roleId = :roleId")
+    List<Integer> findCustomerIdsByRoleId(Integer roleId);
+
+    // Token version không map vào entity (save() của Account sẽ ghi đè bằng giá trị cũ); native để thấy cả
+    // account đã khoá (@SQLRestriction is_active)
+    @Query(value = "SELECT token_version FROM accounts WHERE customer_id = :customerId", nativeQuery = true)
+    Optional<Long> findTokenVersion(@Param("customerId") Integer customerId);
+
+    @Query(value = "UPDATE accounts SET token_version = token_version + 1 WHERE customer_id = :customerId " +
+                   "RETURNING token_version", nativeQuery = true)
+    Optional<Long> incrementTokenVersion(@Param("customerId") Integer customerId);
 }
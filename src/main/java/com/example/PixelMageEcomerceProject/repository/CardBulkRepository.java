@@ -0,0 +1,43 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * INSERT card hàng loạt: Card dùng IDENTITY nên mỗi {@code cardRepository.save} là một INSERT ... RETURNING
+ * riêng; ở đây một câu unnest cho cả lô. Trigger product_listing trên cards là statement-level nên stock
+ * chỉ tính lại một lần mỗi câu. Chạy trong transaction của caller.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CardBulkRepository {
+
+    private static final String INSERT_READY_CARDS_SQL =
+            "INSERT INTO cards (card_template_id, product_id, status, serial_number, production_batch, " +
+            "card_condition, created_at, updated_at) " +
+            "SELECT ?::integer, ?::integer, 'READY', serial, ?::varchar, 'NEW', ?::timestamp, ?::timestamp " +
+            "FROM unnest(?::varchar[]) AS serial";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Mỗi serial một card READY / NEW của template + product. */
+    public int insertReadyCards(Integer cardTemplateId, Integer productId, String productionBatch, String[] serials,
+            LocalDateTime createdAt) {
+        return jdbcTemplate.update(INSERT_READY_CARDS_SQL, ps -> {
+            Array serialArray = ps.getConnection().createArrayOf("varchar", serials);
+            Timestamp now = Timestamp.valueOf(createdAt);
+            ps.setObject(1, cardTemplateId);
+            ps.setObject(2, productId);
+            ps.setString(3, productionBatch);
+            ps.setTimestamp(4, now);
+            ps.setTimestamp(5, now);
+            ps.setArray(6, serialArray);
+        });
+    }
+}
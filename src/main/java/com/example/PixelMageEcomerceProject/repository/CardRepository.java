@@ -1,9 +1,12 @@
 package com.example.PixelMageEcomerceProject.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.PixelMageEcomerceProject.entity.Card;
@@ -24,9 +27,20 @@ public interface CardRepository extends JpaRepository<Card, Integer> {
 
     long countByCardTemplate_CardTemplateIdAndStatus(Integer cardTemplateId, CardProductStatus status);
 
+    long countByProduct_ProductIdAndStatus(Integer productId, CardProductStatus status);
+
     /**
-     * Find READY cards linked to a specific SINGLE_CARD product — used for FIFO
-     * assignment in handlePaymentSuccess. Ordered by createdAt so oldest stock ships first.
+     * Giành tối đa {@code quantity} card READY của product (FIFO theo createdAt) và chuyển sang SOLD
+     * trong một câu lệnh — cùng cơ chế SKIP LOCKED với {@link PackRepository#claimStockedPacks}.
      */
-    List<Card> findByProduct_ProductIdAndStatusOrderByCreatedAtAsc(Integer productId, CardProductStatus status);
+    String CLAIM_READY_CARDS_SQL =
+            "UPDATE cards SET status = 'SOLD', sold_at = :soldAt, updated_at = :soldAt " +
+            "WHERE card_id IN (SELECT card_id FROM cards " +
+            "  WHERE product_id = :productId AND status = 'READY' " +
+            "  ORDER BY created_at, card_id LIMIT :quantity FOR UPDATE SKIP LOCKED) " +
+            "RETURNING card_id";
+
+    @Query(value = CLAIM_READY_CARDS_SQL, nativeQuery = true)
+    List<Integer> claimReadyCards(@Param("productId") Integer productId, @Param("quantity") int quantity,
+            @Param("soldAt") LocalDateTime soldAt);
 }
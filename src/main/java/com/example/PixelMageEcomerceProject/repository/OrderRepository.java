@@ -1,17 +1,24 @@
 package com.example.PixelMageEcomerceProject.repository;
 
+import com.example.PixelMageEcomerceProject.dto.response.OrderPaymentState;
 import com.example.PixelMageEcomerceProject.entity.Order;
 import com.example.PixelMageEcomerceProject.enums.OrderStatus;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Integer> {
@@ -33,4 +40,28 @@ public interface OrderRepository extends JpaRepository<Order, Integer> {
 
     @EntityGraph(value = "Order.withDetails", type = EntityGraph.EntityGraphType.LOAD)
     List<Order> findByPaymentStatusAndOrderDateAfter(PaymentStatus status, LocalDateTime date);
+
+    // Khoá dòng order khi fulfil: không chạy chồng với huỷ order / job quá hạn / worker khác claim lại cùng event
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Optional<Order> findByIdForUpdate(@Param("orderId") Integer orderId);
+
+    // Chỉ 3 cột — dùng cho client chờ thanh toán, không load items / account
+    @Query("SELECT new com.example.PixelMageEcomerceProject.dto.response.OrderPaymentState(o.orderId, o.status, o.paymentStatus) " +
+           "FROM Order o WHERE o.orderId = :orderId")
+    Optional<OrderPaymentState> findPaymentStateById(@Param("orderId") Integer orderId);
+
+    /**
+     * Huỷ tối đa {@code limit} order PENDING chưa thanh toán, tạo trước {@code cutoff}, có id sau
+     * {@code afterId} (keyset) — một câu lệnh, SKIP LOCKED để nhiều node cùng chạy job không chờ nhau.
+     * @return id các order vừa huỷ
+     */
+    @Query(value = "UPDATE orders SET status = 'CANCELLED', payment_status = 'EXPIRED', updated_at = :now " +
+                   "WHERE order_id IN (SELECT order_id FROM orders " +
+                   "  WHERE status = 'PENDING' AND (payment_status IN ('PENDING', 'FAILED') OR payment_status IS NULL) " +
+                   "    AND created_at < :cutoff AND order_id > :afterId " +
+                   "  ORDER BY order_id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING order_id", nativeQuery = true)
+    List<Integer> expireStalePending(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") int afterId,
+            @Param("limit") int limit, @Param("now") LocalDateTime now);
 }
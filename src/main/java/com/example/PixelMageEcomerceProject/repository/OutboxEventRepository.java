@@ -0,0 +1,60 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.enums.OutboxStatus;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Claim tối đa {@code limit} dòng tới hạn (PENDING đã tới next_attempt_at, hoặc PROCESSING mà node
+     * xử lý đã chết — quá locked_until) trong một câu lệnh; SKIP LOCKED để nhiều node cùng poll.
+     */
+    @Transactional
+    @Query(value = "UPDATE outbox_events SET status = 'PROCESSING', attempts = attempts + 1, locked_until = :lockedUntil, " +
+                   "locked_by = :owner " +
+                   "WHERE event_id IN (SELECT event_id FROM outbox_events " +
+                   "  WHERE (status = 'PENDING' AND next_attempt_at <= :now) " +
+                   "     OR (status = 'PROCESSING' AND locked_until < :now) " +
+                   "  ORDER BY event_id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING event_id", nativeQuery = true)
+    List<Long> claimDue(@Param("now") LocalDateTime now, @Param("lockedUntil") LocalDateTime lockedUntil,
+            @Param("owner") String owner, @Param("limit") int limit);
+
+    /**
+     * PROCESSING → DONE trong transaction của handler, chỉ khi lease vẫn là của {@code owner} ở lần claim
+     * {@code attempts}. 0 dòng = lease đã hết hạn và bị claim lại → transaction phải rollback.
+     */
+    @Modifying
+    @Query(value = "UPDATE outbox_events SET status = 'DONE', processed_at = :now, locked_until = NULL, " +
+                   "locked_by = NULL, last_error = NULL " +
+                   "WHERE event_id = :eventId AND status = 'PROCESSING' AND locked_by = :owner AND attempts = :attempts",
+           nativeQuery = true)
+    int complete(@Param("eventId") Long eventId, @Param("owner") String owner, @Param("attempts") int attempts,
+            @Param("now") LocalDateTime now);
+
+    /** Lỗi: PROCESSING → PENDING (retry) hoặc DEAD, cùng điều kiện lease như {@link #complete}. */
+    @Modifying
+    @Query(value = "UPDATE outbox_events SET status = :status, next_attempt_at = :nextAttemptAt, last_error = :error, " +
+                   "locked_until = NULL, locked_by = NULL " +
+                   "WHERE event_id = :eventId AND status = 'PROCESSING' AND locked_by = :owner AND attempts = :attempts",
+           nativeQuery = true)
+    int fail(@Param("eventId") Long eventId, @Param("owner") String owner, @Param("attempts") int attempts,
+            @Param("status") String status, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+            @Param("error") String error);
+
+    long countByStatus(OutboxStatus status);
+
+    Optional<OutboxEvent> findFirstByStatusOrderByEventIdAsc(OutboxStatus status);
+}
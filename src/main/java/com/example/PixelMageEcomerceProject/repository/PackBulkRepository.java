@@ -0,0 +1,52 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ghi pack / pack_detail hàng loạt bằng JDBC, mỗi lô một câu lệnh multi-row — Pack và PackDetail dùng
+ * IDENTITY nên Hibernate không gom batch được (mỗi save là một INSERT ... RETURNING).
+ * Trigger product_listing trên packs là statement-level: một lô chỉ cộng stock_count một lần.
+ * Gọi trong transaction của caller; không đi qua persistence context nên không sinh entity trong heap.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PackBulkRepository {
+
+    private static final String INSERT_PACKS_SQL =
+            "INSERT INTO packs (pack_category_id, status, version, created_by_account_id, created_at) " +
+            "SELECT ?::integer, 'STOCKED', 0, ?::integer, ?::timestamp FROM generate_series(1, ?) " +
+            "RETURNING pack_id";
+
+    private static final String INSERT_DETAILS_SQL =
+            "INSERT INTO pack_details (pack_id, card_template_id, position_index) " +
+            "SELECT * FROM unnest(?::integer[], ?::integer[], ?::integer[])";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** @return id của {@code count} pack STOCKED vừa tạo */
+    public List<Integer> insertStockedPacks(Integer packCategoryId, Integer createdByAccountId, int count,
+            LocalDateTime createdAt) {
+        return jdbcTemplate.queryForList(INSERT_PACKS_SQL, Integer.class,
+                packCategoryId, createdByAccountId, Timestamp.valueOf(createdAt), count);
+    }
+
+    /** Ba mảng song song: detail thứ i thuộc packIds[i], mang cardTemplateIds[i] ở vị trí positions[i]. */
+    public int insertDetails(Integer[] packIds, Integer[] cardTemplateIds, Integer[] positions) {
+        return jdbcTemplate.update(INSERT_DETAILS_SQL, ps -> {
+            Array packs = ps.getConnection().createArrayOf("integer", packIds);
+            Array templates = ps.getConnection().createArrayOf("integer", cardTemplateIds);
+            Array indexes = ps.getConnection().createArrayOf("integer", positions);
+            ps.setArray(1, packs);
+            ps.setArray(2, templates);
+            ps.setArray(3, indexes);
+        });
+    }
+}
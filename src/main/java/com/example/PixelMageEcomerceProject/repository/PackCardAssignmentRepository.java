@@ -0,0 +1,84 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Đọc / ghi cho việc gắn card vật lý vào slot pack hàng loạt bằng JDBC: chỉ id, không dựng entity
+ * (Card EAGER cả template lẫn product), và ghi cả chunk trong một câu lệnh.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PackCardAssignmentRepository {
+
+    public record ReadyCard(int cardId, int cardTemplateId) {
+    }
+
+    /** Slot chưa có card; {@code cardTemplateId} null với pack cũ sinh trước khi có template trên slot. */
+    public record Slot(int packDetailId, int packId, Integer cardTemplateId) {
+    }
+
+    private static final String READY_CARDS_SQL =
+            "SELECT card_id, card_template_id FROM cards " +
+            "WHERE status = 'READY' AND production_batch = ? " +
+            "ORDER BY card_template_id, card_id LIMIT ?";
+
+    // Trang theo pack (keyset trên pack_id) để một pack không bị cắt đôi giữa hai trang
+    private static final String UNFILLED_SLOTS_SQL =
+            "SELECT d.pack_detail_id, d.pack_id, d.card_template_id FROM pack_details d " +
+            "WHERE d.card_id IS NULL AND d.pack_id IN (" +
+            "  SELECT DISTINCT u.pack_id FROM pack_details u JOIN packs p ON p.pack_id = u.pack_id " +
+            "  WHERE u.card_id IS NULL AND u.pack_id > ? AND p.status IN ('STOCKED', 'RESERVED') " +
+            "    AND (?::integer IS NULL OR p.pack_category_id = ?::integer) " +
+            "  ORDER BY u.pack_id LIMIT ?) " +
+            "ORDER BY d.pack_id, d.pack_detail_id";
+
+    private static final String MARK_PACKED_SQL =
+            "UPDATE cards SET status = 'PACKED', updated_at = ? WHERE card_id = ANY(?) AND status = 'READY'";
+
+    private static final String FILL_SLOTS_SQL =
+            "UPDATE pack_details d SET card_id = v.card_id " +
+            "FROM unnest(?::integer[], ?::integer[]) AS v(pack_detail_id, card_id) " +
+            "WHERE d.pack_detail_id = v.pack_detail_id AND d.card_id IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Card READY của lô, sắp theo (template, card_id). */
+    public List<ReadyCard> findReadyCards(String productionBatch, int limit) {
+        return jdbcTemplate.query(READY_CARDS_SQL,
+                (rs, rowNum) -> new ReadyCard(rs.getInt(1), rs.getInt(2)), productionBatch, limit);
+    }
+
+    /** Mọi slot trống của tối đa {@code packLimit} pack STOCKED / RESERVED có pack_id > {@code afterPackId}. */
+    public List<Slot> findUnfilledSlots(Integer packCategoryId, int afterPackId, int packLimit) {
+        return jdbcTemplate.query(UNFILLED_SLOTS_SQL,
+                (rs, rowNum) -> new Slot(rs.getInt(1), rs.getInt(2), (Integer) rs.getObject(3)),
+                afterPackId, packCategoryId, packCategoryId, packLimit);
+    }
+
+    /** @return số card thật sự chuyển READY → PACKED (ít hơn nghĩa là card đã bị bán / gắn ở nơi khác) */
+    public int markCardsPacked(Integer[] cardIds, LocalDateTime now) {
+        return jdbcTemplate.update(MARK_PACKED_SQL, ps -> {
+            Array cards = ps.getConnection().createArrayOf("integer", cardIds);
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setArray(2, cards);
+        });
+    }
+
+    /** Hai mảng song song: slot packDetailIds[i] nhận cardIds[i]; chỉ ghi slot còn trống. */
+    public int fillSlots(Integer[] packDetailIds, Integer[] cardIds) {
+        return jdbcTemplate.update(FILL_SLOTS_SQL, ps -> {
+            Array details = ps.getConnection().createArrayOf("integer", packDetailIds);
+            Array cards = ps.getConnection().createArrayOf("integer", cardIds);
+            ps.setArray(1, details);
+            ps.setArray(2, cards);
+        });
+    }
+}
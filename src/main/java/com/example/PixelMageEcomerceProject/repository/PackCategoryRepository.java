@@ -1,10 +1,16 @@
 package com.example.PixelMageEcomerceProject.repository;
 
 import com.example.PixelMageEcomerceProject.entity.PackCategory;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface PackCategoryRepository extends JpaRepository<PackCategory, Integer> {
-    
+
+    /** Category kèm pool template, dùng được ngoài transaction (mô phỏng tỉ lệ chạy lâu, không giữ connection). */
+    @EntityGraph(attributePaths = "cardPools")
+    Optional<PackCategory> findWithCardPoolsByPackCategoryId(Integer packCategoryId);
 }
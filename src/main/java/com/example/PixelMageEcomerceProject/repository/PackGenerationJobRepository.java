@@ -0,0 +1,86 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.PixelMageEcomerceProject.entity.PackGenerationJob;
+
+/**
+ * Mọi chuyển trạng thái là UPDATE có điều kiện trên status: hai node / hai request admin
+ * cùng thao tác một job thì chỉ một bên được (số dòng cập nhật = 1).
+ */
+@Repository
+public interface PackGenerationJobRepository extends JpaRepository<PackGenerationJob, Long> {
+
+    List<PackGenerationJob> findTop50ByOrderByJobIdDesc();
+
+    List<PackGenerationJob> findTop50ByPackCategoryIdOrderByJobIdDesc(Integer packCategoryId);
+
+    /** Job chờ chạy, hoặc RUNNING mà không cập nhật từ trước {@code staleBefore}. */
+    @Query("SELECT j.jobId FROM PackGenerationJob j WHERE j.status = com.example.PixelMageEcomerceProject.enums.PackGenerationJobStatus.QUEUED " +
+           "OR (j.status = com.example.PixelMageEcomerceProject.enums.PackGenerationJobStatus.RUNNING AND j.updatedAt < :staleBefore) " +
+           "ORDER BY j.jobId")
+    List<Long> findRecoverableJobIds(@Param("staleBefore") LocalDateTime staleBefore);
+
+    /** QUEUED → RUNNING; node nào claim được thì node đó chạy job. */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE pack_generation_jobs SET status = 'RUNNING', started_at = COALESCE(started_at, :now), " +
+                   "updated_at = :now, last_error = NULL WHERE job_id = :jobId AND status = 'QUEUED'", nativeQuery = true)
+    int claim(@Param("jobId") Long jobId, @Param("now") LocalDateTime now);
+
+    /**
+     * Cộng tiến độ trong transaction của chunk. 0 dòng = job đã bị huỷ (hoặc node khác đã lấy lại job)
+     * → chunk phải rollback.
+     */
+    @Modifying
+    @Query(value = "UPDATE pack_generation_jobs SET generated_quantity = generated_quantity + :count, updated_at = :now " +
+                   "WHERE job_id = :jobId AND status = 'RUNNING' AND generated_quantity = :expectedGenerated", nativeQuery = true)
+    int recordChunk(@Param("jobId") Long jobId, @Param("expectedGenerated") int expectedGenerated,
+            @Param("count") int count, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE pack_generation_jobs SET status = 'COMPLETED', updated_at = :now, finished_at = :now " +
+                   "WHERE job_id = :jobId AND status = 'RUNNING'", nativeQuery = true)
+    int complete(@Param("jobId") Long jobId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE pack_generation_jobs SET status = 'FAILED', last_error = :error, updated_at = :now, " +
+                   "finished_at = :now WHERE job_id = :jobId AND status = 'RUNNING'", nativeQuery = true)
+    int fail(@Param("jobId") Long jobId, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE pack_generation_jobs SET status = 'CANCELLED', updated_at = :now, finished_at = :now " +
+                   "WHERE job_id = :jobId AND status IN ('QUEUED', 'RUNNING')", nativeQuery = true)
+    int cancel(@Param("jobId") Long jobId, @Param("now") LocalDateTime now);
+
+    /** Node tắt giữa chừng: trả job RUNNING về QUEUED để node khác / lần khởi động sau chạy tiếp ngay. */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE pack_generation_jobs SET status = 'QUEUED', updated_at = :now " +
+                   "WHERE job_id = :jobId AND status = 'RUNNING'", nativeQuery = true)
+    int release(@Param("jobId") Long jobId, @Param("now") LocalDateTime now);
+
+    /**
+     * Đưa job về QUEUED để chạy tiếp từ generated_quantity: job đã huỷ / lỗi, hoặc job QUEUED / RUNNING
+     * không cập nhật từ trước {@code staleBefore} (node chạy nó đã chết).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE pack_generation_jobs SET status = 'QUEUED', updated_at = :now, finished_at = NULL " +
+                   "WHERE job_id = :jobId AND generated_quantity < requested_quantity " +
+                   "AND (status IN ('CANCELLED', 'FAILED') " +
+                   "  OR (status IN ('QUEUED', 'RUNNING') AND updated_at < :staleBefore))", nativeQuery = true)
+    int requeue(@Param("jobId") Long jobId, @Param("staleBefore") LocalDateTime staleBefore,
+            @Param("now") LocalDateTime now);
+}
@@ -4,8 +4,10 @@ import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.PixelMageEcomerceProject.entity.Pack;
@@ -27,4 +29,19 @@ public interface PackRepository extends JpaRepository<Pack, Integer> {
     List<Pack> findByPackCategoryPackCategoryIdAndStatus(Integer packCategoryId, PackStatus status);
 
     long countByPackCategory_PackCategoryIdAndStatus(Integer packCategoryId, PackStatus status);
+
+    /**
+     * Giành tối đa {@code quantity} pack STOCKED của category và chuyển sang SOLD trong một câu lệnh.
+     * SKIP LOCKED bỏ qua dòng mà webhook khác đang giữ nên các giao dịch song song không đụng nhau,
+     * không phải retry theo @Version. Bump version để entity Pack đang load ở nơi khác không ghi đè.
+     */
+    String CLAIM_STOCKED_PACKS_SQL =
+            "UPDATE packs SET status = 'SOLD', version = version + 1 " +
+            "WHERE pack_id IN (SELECT pack_id FROM packs " +
+            "  WHERE pack_category_id = :packCategoryId AND status = 'STOCKED' " +
+            "  ORDER BY pack_id LIMIT :quantity FOR UPDATE SKIP LOCKED) " +
+            "RETURNING pack_id";
+
+    @Query(value = CLAIM_STOCKED_PACKS_SQL, nativeQuery = true)
+    List<Integer> claimStockedPacks(@Param("packCategoryId") Integer packCategoryId, @Param("quantity") int quantity);
 }
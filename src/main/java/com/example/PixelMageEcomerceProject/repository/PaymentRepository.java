@@ -1,13 +1,19 @@
 package com.example.PixelMageEcomerceProject.repository;
 
 import com.example.PixelMageEcomerceProject.entity.Payment;
+import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
+import com.example.PixelMageEcomerceProject.service.model.ReconciliationCandidate;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -54,4 +60,38 @@ public interface PaymentRepository extends JpaRepository<Payment, Integer> {
      */
     @Query("SELECT p FROM Payment p WHERE p.order.account.customerId = :customerId AND p.isSavedPaymentMethod = true")
     List<Payment> findSavedPaymentMethodsByCustomerId(@Param("customerId") Integer customerId);
+
+    /**
+     * Payment PENDING của order còn PENDING, tạo trong [from, to), theo keyset payment_id — đầu vào của job đối soát.
+     */
+    @Query("SELECT new com.example.PixelMageEcomerceProject.service.model.ReconciliationCandidate(" +
+           "p.paymentId, p.order.orderId, p.gatewayTransactionId, p.amount, p.createdAt) FROM Payment p " +
+           "WHERE p.paymentGateway = :gateway " +
+           "AND p.paymentStatus = com.example.PixelMageEcomerceProject.enums.PaymentStatus.PENDING " +
+           "AND p.order.status = com.example.PixelMageEcomerceProject.enums.OrderStatus.PENDING " +
+           "AND p.createdAt >= :from AND p.createdAt < :to AND p.paymentId > :afterId ORDER BY p.paymentId")
+    List<ReconciliationCandidate> findReconciliationCandidates(@Param("gateway") PaymentGateway gateway,
+            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to, @Param("afterId") Integer afterId,
+            Pageable pageable);
+
+    /**
+     * Đánh dấu EXPIRED các payment PENDING của những order vừa bị huỷ vì quá hạn.
+     */
+    @Modifying
+    @Query(value = "UPDATE payments SET payment_status = 'EXPIRED', updated_at = :now " +
+                   "WHERE order_id IN (:orderIds) AND payment_status = 'PENDING'", nativeQuery = true)
+    int expirePendingByOrderIds(@Param("orderIds") Collection<Integer> orderIds, @Param("now") LocalDateTime now);
+
+    /**
+     * Payment PENDING quá hạn mà order không còn PENDING (order đã thanh toán bằng payment khác, bị huỷ tay...):
+     * keyset theo payment_id, SKIP LOCKED như job huỷ order.
+     * @return id các payment vừa chuyển EXPIRED
+     */
+    @Query(value = "UPDATE payments SET payment_status = 'EXPIRED', updated_at = :now " +
+                   "WHERE payment_id IN (SELECT payment_id FROM payments " +
+                   "  WHERE payment_status = 'PENDING' AND created_at < :cutoff AND payment_id > :afterId " +
+                   "  ORDER BY payment_id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING payment_id", nativeQuery = true)
+    List<Integer> expireStalePending(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") int afterId,
+            @Param("limit") int limit, @Param("now") LocalDateTime now);
 }
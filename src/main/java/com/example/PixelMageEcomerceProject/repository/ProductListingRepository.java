@@ -0,0 +1,33 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import com.example.PixelMageEcomerceProject.entity.ProductListing;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductListingRepository extends JpaRepository<ProductListing, Integer> {
+
+    // Một query cho cả trang: product + category / template đi kèm, không lazy-load từng dòng
+    @Query("SELECT l FROM ProductListing l JOIN FETCH l.product p " +
+           "LEFT JOIN FETCH p.packCategory LEFT JOIN FETCH p.cardTemplate " +
+           "ORDER BY p.productId")
+    List<ProductListing> findAllWithProduct();
+
+    // Cùng điều kiện hiển thị với trang public: product hiện + đang bán, category / template con cũng đang hiện
+    @Query("SELECT l FROM ProductListing l JOIN FETCH l.product p " +
+           "LEFT JOIN FETCH p.packCategory pc LEFT JOIN FETCH p.cardTemplate ct " +
+           "WHERE p.isVisible = true AND p.isActive = true AND (" +
+           " (p.productType = com.example.PixelMageEcomerceProject.enums.ProductType.GACHA_PACK AND pc.isActive = true) OR " +
+           " (p.productType = com.example.PixelMageEcomerceProject.enums.ProductType.SINGLE_CARD " +
+           "  AND ct.active = true AND ct.isVisible = true)) " +
+           "ORDER BY p.productId")
+    List<ProductListing> findAllPublicWithProduct();
+
+    // Cộng tối đa :limit delta tồn kho (V15) vào stock_count; trả về số delta đã gom (0 nếu node khác đang gom)
+    @Query(value = "SELECT product_listing_fold_stock(:limit)", nativeQuery = true)
+    int foldStockDeltas(@Param("limit") int limit);
+}
@@ -1,7 +1,10 @@
 package com.example.PixelMageEcomerceProject.repository;
 
 import com.example.PixelMageEcomerceProject.entity.Product;
+import com.example.PixelMageEcomerceProject.service.model.ProductPrice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,4 +14,16 @@ import java.util.Optional;
 public interface ProductRepository extends JpaRepository<Product, Integer> {
     Optional<Product> findByName(String name);
     List<Product> findAllByIsVisibleTrueAndIsActiveTrue();
+
+    // Dùng để evict đúng các entry product-by-id bị ảnh hưởng khi pack / card thay đổi
+    @Query("SELECT p.productId FROM Product p WHERE p.packCategory.packCategoryId = :packCategoryId")
+    List<Integer> findProductIdsByPackCategoryId(@Param("packCategoryId") Integer packCategoryId);
+
+    @Query("SELECT p.productId FROM Product p WHERE p.cardTemplate.cardTemplateId = :cardTemplateId")
+    List<Integer> findProductIdsByCardTemplateId(@Param("cardTemplateId") Integer cardTemplateId);
+
+    // Price book cho đường tạo order — chỉ 3 cột, không load quan hệ
+    @Query("SELECT new com.example.PixelMageEcomerceProject.service.model.ProductPrice(p.productId, p.price, p.isActive) " +
+           "FROM Product p")
+    List<ProductPrice> findAllPrices();
 }
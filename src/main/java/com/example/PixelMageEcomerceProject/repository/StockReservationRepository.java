@@ -0,0 +1,47 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.PixelMageEcomerceProject.entity.StockReservation;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // Khoá các dòng HELD của order: confirm / release / expire không chạy chồng lên nhau
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.orderId = :orderId " +
+           "AND r.status = com.example.PixelMageEcomerceProject.enums.ReservationStatus.HELD")
+    List<StockReservation> lockHeldByOrderId(@Param("orderId") Integer orderId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.orderId IN :orderIds " +
+           "AND r.status = com.example.PixelMageEcomerceProject.enums.ReservationStatus.HELD ORDER BY r.reservationId")
+    List<StockReservation> lockHeldByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
+
+    // Lock timeout -2 = SKIP LOCKED: nhiều node chạy job expire cùng lúc không tranh cùng dòng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM StockReservation r " +
+           "WHERE r.status = com.example.PixelMageEcomerceProject.enums.ReservationStatus.HELD " +
+           "AND r.expiresAt < :now ORDER BY r.expiresAt")
+    List<StockReservation> lockExpired(@Param("now") LocalDateTime now, Pageable pageable);
+
+    boolean existsByOrderId(Integer orderId);
+
+    @Query("SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r WHERE r.stockKey = :stockKey " +
+           "AND r.status = com.example.PixelMageEcomerceProject.enums.ReservationStatus.HELD")
+    long sumHeldQuantity(@Param("stockKey") String stockKey);
+}
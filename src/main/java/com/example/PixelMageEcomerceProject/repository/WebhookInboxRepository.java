@@ -0,0 +1,34 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.PixelMageEcomerceProject.entity.WebhookInbox;
+import com.example.PixelMageEcomerceProject.enums.WebhookInboxStatus;
+
+@Repository
+public interface WebhookInboxRepository extends JpaRepository<WebhookInbox, Long> {
+
+    /**
+     * Ghi webhook nếu dedup_key chưa có — một round trip, không exception khi trùng.
+     *
+     * @return id dòng mới; rỗng nếu webhook trùng
+     */
+    @Query(value = "INSERT INTO webhook_inbox (gateway, dedup_key, payload, status, received_at) " +
+                   "VALUES (:gateway, :dedupKey, :payload, 'RECEIVED', :receivedAt) " +
+                   "ON CONFLICT (dedup_key) DO NOTHING RETURNING inbox_id", nativeQuery = true)
+    List<Long> insertIfAbsent(@Param("gateway") String gateway, @Param("dedupKey") String dedupKey,
+            @Param("payload") String payload, @Param("receivedAt") LocalDateTime receivedAt);
+
+    @Query("SELECT w.inboxId FROM WebhookInbox w WHERE w.receivedAt >= :from AND w.receivedAt < :to " +
+           "AND (:gateway IS NULL OR w.gateway = :gateway) ORDER BY w.inboxId")
+    List<Long> findIdsReceivedBetween(@Param("gateway") String gateway, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    long countByStatus(WebhookInboxStatus status);
+}
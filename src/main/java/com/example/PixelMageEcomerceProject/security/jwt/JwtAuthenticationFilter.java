@@ -1,10 +1,14 @@
 package com.example.PixelMageEcomerceProject.security.jwt;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.OptionalLong;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,6 +18,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.example.PixelMageEcomerceProject.security.service.TokenService;
+import com.example.PixelMageEcomerceProject.security.service.TokenVersionService;
 
 import jakarta.annotation.Nonnull;
 import jakarta.servlet.FilterChain;
@@ -30,6 +35,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
     private final TokenService tokenService;
+    private final TokenVersionService tokenVersionService;
+
+    /**
+     * true → dựng principal từ claims + kiểm tra token version (0 query DB).
+     * false → luồng cũ: load Account từ DB mỗi request.
+     */
+    @Value("${jwt.stateless-auth.enabled:true}")
+    private boolean statelessAuthEnabled;
 
     @Override
     protected void doFilterInternal(
@@ -49,35 +62,39 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         final String jwt = authHeader.substring(7);
-        String username = null;
+        final VerifiedClaims claims;
         try {
-            username = jwtTokenProvider.extractUsername(jwt);
+            // Parse + verify chữ ký + hạn đúng một lần cho cả request
+            claims = jwtTokenProvider.verify(jwt);
         } catch (Exception e) {
-            log.warn("[JWT] Failed to extract username from token — URI={} error={}", requestURI, e.getMessage());
+            log.warn("[JWT] Failed to verify token — URI={} error={}", requestURI, e.getMessage());
             filterChain.doFilter(request, response);
             return;
         }
+        final String username = claims.username();
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-            // Kiểm tra blacklist trước khi query DB
-            if (tokenService.isAccessTokenBlacklisted(jwt)) {
+            // Kiểm tra blacklist trước khi query DB (Bloom filter local, chỉ hỏi Redis khi nghi ngờ)
+            if (tokenService.isAccessTokenBlacklisted(jwt, claims.expiration().getTime())) {
                 log.warn("[JWT] Blacklisted token used by: {} — URI={}", username, requestURI);
                 filterChain.doFilter(request, response);
                 return;
             }
 
+            if (statelessAuthEnabled && authenticateFromClaims(claims, request)) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+
             UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
-            if (jwtTokenProvider.isTokenValid(jwt, userDetails)) {
+            if (jwtTokenProvider.isTokenValid(claims, userDetails)) {
                 List<SimpleGrantedAuthority> authorities = userDetails.getAuthorities().stream()
                         .map(a -> new SimpleGrantedAuthority(a.getAuthority()))
                         .collect(Collectors.toList());
 
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, authorities);
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+                setAuthentication(userDetails, authorities, request);
                 log.debug("[JWT] Auth set for user={} authorities={} URI={}", username, authorities, requestURI);
             } else {
                 log.warn("[JWT] Token validation FAILED for user={} — URI={}", username, requestURI);
@@ -88,4 +105,43 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Xác thực chỉ bằng claims đã verify chữ ký + token version (không query DB).
+     *
+     * @return true nếu request đã được xử lý xong ở đây (auth set hoặc token bị thu hồi);
+     *         false nếu cần fallback sang luồng load Account từ DB
+     *         (token cũ thiếu userId, hoặc Redis không đọc được version)
+     */
+    private boolean authenticateFromClaims(VerifiedClaims claims, HttpServletRequest request) {
+        JwtPrincipal principal = claims.toPrincipal();
+        if (principal == null) {
+            return false;
+        }
+
+        OptionalLong currentVersion = tokenVersionService.currentVersion(principal.getCustomerId());
+        if (currentVersion.isEmpty()) {
+            return false;
+        }
+
+        if (claims.tokenVersion() < currentVersion.getAsLong()) {
+            log.warn("[JWT] Revoked token (stale version) used by customerId={} — URI={}",
+                    principal.getCustomerId(), request.getRequestURI());
+            return true;
+        }
+
+        setAuthentication(principal, principal.getAuthorities(), request);
+        log.debug("[JWT] Stateless auth set for user={} authorities={} URI={}",
+                principal.getUsername(), principal.getAuthorities(), request.getRequestURI());
+        return true;
+    }
+
+    private void setAuthentication(UserDetails principal,
+            Collection<? extends GrantedAuthority> authorities,
+            HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authToken =
+                new UsernamePasswordAuthenticationToken(principal, null, authorities);
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
 }
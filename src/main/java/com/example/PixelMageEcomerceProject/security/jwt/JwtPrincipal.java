@@ -0,0 +1,48 @@
+package com.example.PixelMageEcomerceProject.security.jwt;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import lombok.Getter;
+
+/**
+ * Principal nhẹ dựng trực tiếp từ claims của JWT đã verify — không chạm DB.
+ * Expose {@code getCustomerId()} giống {@link com.example.PixelMageEcomerceProject.entity.Account}
+ * để controller đọc userId theo cùng một cách.
+ */
+@Getter
+public class JwtPrincipal implements UserDetails {
+
+    private final Integer customerId;
+    private final String email;
+    private final List<GrantedAuthority> authorities;
+
+    public JwtPrincipal(Integer customerId, String email, List<GrantedAuthority> authorities) {
+        this.customerId = customerId;
+        this.email = email;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "JwtPrincipal(customerId=" + customerId + ", email=" + email + ", authorities=" + authorities + ")";
+    }
+}
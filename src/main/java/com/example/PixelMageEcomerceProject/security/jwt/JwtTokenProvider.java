@@ -4,27 +4,74 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import com.example.PixelMageEcomerceProject.entity.Account;
+import com.example.PixelMageEcomerceProject.exceptions.RedisUnavailableException;
+import com.example.PixelMageEcomerceProject.security.service.TokenVersionService;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
+@RequiredArgsConstructor
 public class JwtTokenProvider {
 
+    public static final String CLAIM_USER_ID = "userId";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_TOKEN_VERSION = "tv";
+
+    private final TokenVersionService tokenVersionService;
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    // Key + parser dựng một lần lúc khởi động; JwtParser của jjwt bất biến, thread-safe
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
+    /**
+     * Parse + verify chữ ký + kiểm tra hạn đúng một lần.
+     *
+     * @throws JwtException nếu token sai chữ ký, sai định dạng hoặc đã hết hạn
+     */
+    public VerifiedClaims verify(String token) {
+        Claims claims = extractAllClaims(token);
+
+        Object userId = claims.get(CLAIM_USER_ID);
+        Object version = claims.get(CLAIM_TOKEN_VERSION);
+        List<String> roles = claims.get(CLAIM_ROLES) instanceof Collection<?> raw
+                ? raw.stream().map(String::valueOf).toList()
+                : List.of();
+
+        return new VerifiedClaims(
+                claims.getSubject(),
+                userId instanceof Number number ? number.intValue() : null,
+                roles,
+                version instanceof Number number ? number.longValue() : 0L,
+                claims.getExpiration());
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -37,13 +84,17 @@ public class JwtTokenProvider {
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         
-        // Add userId to claims if userDetails is Account
-        if (userDetails instanceof Account) {
-            claims.put("userId", ((Account) userDetails).getCustomerId());
+        // Add userId + token version to claims if userDetails is Account
+        if (userDetails instanceof Account account && account.getCustomerId() != null) {
+            claims.put(CLAIM_USER_ID, account.getCustomerId());
+            // Không đọc được version (Redis lẫn DB) thì không phát token: tv=0 sẽ qua được kiểm tra thu hồi
+            claims.put(CLAIM_TOKEN_VERSION, tokenVersionService.currentVersion(account.getCustomerId())
+                    .orElseThrow(() -> new RedisUnavailableException(
+                            "Dịch vụ xác thực tạm thời không khả dụng. Vui lòng thử lại sau.")));
         }
 
         // Add roles to claims
-        claims.put("roles", userDetails.getAuthorities().stream()
+        claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toList()));
         return generateToken(claims, userDetails);
@@ -56,17 +107,20 @@ public class JwtTokenProvider {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+    /**
+     * Claims đã qua {@link #verify(String)} nên chữ ký và hạn đã được kiểm tra —
+     * chỉ còn đối chiếu subject với user load từ DB.
+     */
+    public boolean isTokenValid(VerifiedClaims claims, UserDetails userDetails) {
+        return claims.username() != null && claims.username().equals(userDetails.getUsername());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public boolean isTokenValid(String token, UserDetails userDetails) {
+        return isTokenValid(verify(token), userDetails);
     }
 
     public Date extractExpiration(String token) {
@@ -74,16 +128,8 @@ public class JwtTokenProvider {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
     }
-
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 }
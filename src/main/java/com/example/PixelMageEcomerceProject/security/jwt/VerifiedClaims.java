@@ -0,0 +1,50 @@
+package com.example.PixelMageEcomerceProject.security.jwt;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Kết quả của một lần parse + verify chữ ký JWT duy nhất.
+ * Bất biến — filter chỉ làm việc với object này, không parse token lại.
+ *
+ * @param username     subject (email)
+ * @param userId       customerId, null với token không phát hành cho Account
+ * @param roles        authority đã nhúng lúc phát hành (ví dụ ROLE_CUSTOMER)
+ * @param tokenVersion token version lúc phát hành, 0 với token cũ không có claim
+ * @param expiration   thời điểm hết hạn
+ */
+public record VerifiedClaims(String username, Integer userId, List<String> roles, long tokenVersion,
+        Date expiration) {
+
+    public VerifiedClaims {
+        roles = roles == null ? List.of() : List.copyOf(roles);
+        expiration = new Date(expiration.getTime());
+    }
+
+    @Override
+    public Date expiration() {
+        return new Date(expiration.getTime());
+    }
+
+    public long remainingMillis() {
+        return expiration.getTime() - System.currentTimeMillis();
+    }
+
+    /**
+     * Principal dựng trực tiếp từ claims.
+     *
+     * @return null nếu token không mang userId — caller fallback sang UserDetailsService
+     */
+    public JwtPrincipal toPrincipal() {
+        if (userId == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roles.stream()
+                .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                .toList();
+        return new JwtPrincipal(userId, username, authorities);
+    }
+}
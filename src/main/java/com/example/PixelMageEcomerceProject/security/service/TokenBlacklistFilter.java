@@ -0,0 +1,376 @@
+package com.example.PixelMageEcomerceProject.security.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.util.ScalableBloomFilter;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bản sao local (xác suất) của access-token blacklist trong Redis.
+ *
+ * Token được hash SHA-256 rồi đưa vào Bloom filter của "bucket" theo thời điểm hết hạn
+ * (expiry / bucketWidth). Bucket hết hạn bị bỏ nguyên khối → bộ nhớ chỉ giữ token còn sống.
+ * Đồng bộ giữa các node qua pub/sub; rebuild từ keyspace {@code blacklist:*} lúc khởi động
+ * và định kỳ (tự lành nếu lỡ mất message).
+ *
+ * Mỗi lần thêm token tăng counter {@code token_blacklist:generation} trên Redis và gửi kèm số generation
+ * trong message. Node đọc counter tối đa mỗi {@code jwt.blacklist-filter.generation-check-ms}: counter
+ * vượt generation liên tục đã nhận → filter đang thiếu entry (message mất / chưa tới) → mọi lookup hỏi
+ * Redis cho tới khi bù đủ; thiếu quá một chu kỳ resync-check thì rebuild ngay.
+ *
+ * Filter trả "không có" → chắc chắn không bị blacklist, bỏ qua Redis.
+ * Trả "có thể có" → caller phải xác nhận bằng Redis.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenBlacklistFilter implements MessageListener {
+
+    static final String PREFIX_BLACKLIST = "blacklist:";
+    private static final String CHANNEL_BLACKLIST = "token_blacklist:added"; // payload: "{sha256Hex}:{expiresAtMillis}:{generation}"
+    private static final String KEY_GENERATION = "token_blacklist:generation"; // số lần thêm token, chỉ tăng
+
+    private static final int BUCKET_COUNT = 8;
+    private static final long MIN_BUCKET_WIDTH_MS = 60_000L;
+    // Expiry tính lại từ remainingMillis / PTTL lệch vài ms so với claim exp → tra cả bucket lân cận
+    private static final long EXPIRY_TOLERANCE_MS = 5_000L;
+    private static final int BUCKET_INITIAL_CAPACITY = 1_024;
+    private static final double TARGET_FPP = 0.001;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${jwt.expiration}")
+    private long jwtExpiration;
+
+    @Value("${jwt.blacklist-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jwt.blacklist-filter.generation-check-ms:1000}")
+    private long generationCheckMillis;
+
+    @Value("${jwt.blacklist-filter.resync-ms:600000}")
+    private long resyncMillis;
+
+    private long bucketWidthMillis;
+    private volatile ConcurrentNavigableMap<Long, ScalableBloomFilter> buckets = new ConcurrentSkipListMap<>();
+    // Khác null trong lúc rebuild — entry mới được ghi vào cả map đang dựng để không bị mất khi swap
+    private volatile ConcurrentNavigableMap<Long, ScalableBloomFilter> rebuilding;
+    private volatile boolean ready;
+    private volatile long lastRebuildAt;
+
+    // Generation liên tục cao nhất đã áp vào filter; generation tới không theo thứ tự chờ trong pendingGenerations
+    private final Object generationLock = new Object();
+    private volatile long appliedGeneration;
+    private final ConcurrentSkipListSet<Long> pendingGenerations = new ConcurrentSkipListSet<>();
+    // Mức thấp nhất đã biết của counter Redis (một GET mỗi generation-check-ms, không phải mỗi request)
+    private final AtomicLong redisGeneration = new AtomicLong();
+    private final AtomicLong generationCheckedAt = new AtomicLong();
+    private volatile long gapSince;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder possibleHits = new LongAdder();
+    private final LongAdder confirmedHits = new LongAdder();
+
+    public record Stats(boolean enabled, boolean ready, int buckets, long entries, long sizeInBytes,
+            double estimatedFpp, double observedFpp, long lookups, long possibleHits, long confirmedHits) {
+    }
+
+    @PostConstruct
+    void subscribe() {
+        bucketWidthMillis = Math.max(jwtExpiration / BUCKET_COUNT, MIN_BUCKET_WIDTH_MS);
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL_BLACKLIST));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Tra cứu local. Chưa sẵn sàng (đang khởi động / tắt) hoặc đang thiếu entry so với counter
+     * generation trên Redis → trả true để caller hỏi Redis.
+     */
+    public boolean mightContain(String token, long expiresAtMillis) {
+        if (!enabled || !ready || behindRedis()) {
+            return true;
+        }
+        lookups.increment();
+        byte[] digest = sha256(token);
+        long h1 = ByteBuffer.wrap(digest, 0, 8).getLong();
+        long h2 = ByteBuffer.wrap(digest, 8, 8).getLong();
+
+        ConcurrentNavigableMap<Long, ScalableBloomFilter> current = buckets;
+        long from = bucketOf(expiresAtMillis - EXPIRY_TOLERANCE_MS);
+        long to = bucketOf(expiresAtMillis + EXPIRY_TOLERANCE_MS);
+        for (ScalableBloomFilter filter : current.subMap(from, true, to, true).values()) {
+            if (filter.mightContain(h1, h2)) {
+                possibleHits.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Ghi nhận kết quả xác nhận từ Redis sau một possible hit — dùng tính FP rate quan sát được. */
+    public void recordConfirmation(boolean blacklisted) {
+        if (blacklisted) {
+            confirmedHits.increment();
+        }
+    }
+
+    /** Thêm token vào filter local và broadcast cho các node khác. */
+    public void add(String token, long expiresAtMillis) {
+        if (!enabled) {
+            return;
+        }
+        byte[] digest = sha256(token);
+        addLocal(digest, expiresAtMillis);
+        try {
+            // Tăng sau khi key blacklist:* đã được SET: rebuild đọc generation G trước khi quét sẽ thấy mọi key ≤ G
+            Long generation = redisTemplate.opsForValue().increment(KEY_GENERATION);
+            String payload = HexFormat.of().formatHex(digest) + ":" + expiresAtMillis;
+            if (generation != null) {
+                applyGeneration(generation);
+                payload += ":" + generation;
+            }
+            redisTemplate.convertAndSend(CHANNEL_BLACKLIST, payload);
+        } catch (Exception e) {
+            log.warn("[BLACKLIST-FILTER] Publish failed, other nodes resync on schedule: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split(":");
+        if (parts.length < 2 || parts[0].isEmpty()) {
+            return;
+        }
+        try {
+            addLocal(HexFormat.of().parseHex(parts[0]), Long.parseLong(parts[1]));
+            if (parts.length > 2) {
+                applyGeneration(Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("[BLACKLIST-FILTER] Ignoring malformed message: {}", payload);
+        }
+    }
+
+    /**
+     * Rebuild khi filter thiếu entry lâu hơn một chu kỳ kiểm tra (message pub/sub bị mất), hoặc khi
+     * tới hạn resync định kỳ {@code jwt.blacklist-filter.resync-ms}.
+     */
+    @Scheduled(fixedDelayString = "${jwt.blacklist-filter.resync-check-ms:5000}",
+            initialDelayString = "${jwt.blacklist-filter.resync-check-ms:5000}")
+    public void resyncIfNeeded() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long since = gapSince;
+        boolean gapPersisted = since != 0 && now - since >= generationCheckMillis * 2;
+        if (gapPersisted || now - lastRebuildAt >= resyncMillis) {
+            if (gapPersisted) {
+                log.warn("[BLACKLIST-FILTER] Missed generations (applied={}, redis={}), rebuilding",
+                        appliedGeneration, redisGeneration.get());
+            }
+            rebuild();
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ filter từ keyspace {@code blacklist:*}. Trong lúc quét, entry đến
+     * qua pub/sub được ghi vào cả map cũ lẫn map mới.
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ConcurrentNavigableMap<Long, ScalableBloomFilter> fresh = new ConcurrentSkipListMap<>();
+        rebuilding = fresh;
+        int loaded = 0;
+        long generation;
+        try {
+            generation = readGeneration();
+        } catch (Exception e) {
+            log.error("[BLACKLIST-FILTER] Rebuild failed: {}", e.getMessage());
+            rebuilding = null;
+            lastRebuildAt = System.currentTimeMillis();
+            return;
+        }
+        try (Cursor<String> cursor = redisTemplate.scan(
+                ScanOptions.scanOptions().match(PREFIX_BLACKLIST + "*").count(500).build())) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+                if (ttl == null || ttl <= 0) {
+                    continue;
+                }
+                byte[] digest = sha256(key.substring(PREFIX_BLACKLIST.length()));
+                put(fresh, digest, System.currentTimeMillis() + ttl);
+                loaded++;
+            }
+            buckets = fresh;
+            resetGeneration(generation);
+            ready = true;
+            log.info("[BLACKLIST-FILTER] Rebuilt with {} tokens in {}ms", loaded, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // Giữ filter cũ nếu đã ready; nếu chưa, caller tiếp tục hỏi Redis trực tiếp
+            log.error("[BLACKLIST-FILTER] Rebuild failed: {}", e.getMessage());
+        } finally {
+            rebuilding = null;
+            lastRebuildAt = System.currentTimeMillis();
+        }
+    }
+
+    public Stats stats() {
+        evictExpired(buckets);
+        long entries = 0;
+        long bytes = 0;
+        double pass = 1.0;
+        for (Map.Entry<Long, ScalableBloomFilter> entry : buckets.entrySet()) {
+            ScalableBloomFilter filter = entry.getValue();
+            entries += filter.size();
+            bytes += filter.sizeInBytes();
+            pass *= 1 - filter.estimatedFpp();
+        }
+        long totalLookups = lookups.sum();
+        long falsePositives = possibleHits.sum() - confirmedHits.sum();
+        double observed = totalLookups == 0 ? 0.0 : (double) Math.max(falsePositives, 0) / totalLookups;
+        return new Stats(enabled, ready, buckets.size(), entries, bytes, 1 - pass, observed,
+                totalLookups, possibleHits.sum(), confirmedHits.sum());
+    }
+
+    /**
+     * So generation đã áp với counter Redis (đọc lại tối đa mỗi generation-check-ms, chỉ một thread đọc).
+     * Redis không đọc được → giữ giá trị cũ: không chặn request vì lỗi Redis.
+     */
+    private boolean behindRedis() {
+        long now = System.currentTimeMillis();
+        long checkedAt = generationCheckedAt.get();
+        if (now - checkedAt >= generationCheckMillis && generationCheckedAt.compareAndSet(checkedAt, now)) {
+            try {
+                long remote = readGeneration();
+                redisGeneration.accumulateAndGet(remote, Math::max);
+            } catch (Exception e) {
+                log.debug("[BLACKLIST-FILTER] Cannot read generation: {}", e.getMessage());
+            }
+        }
+        if (redisGeneration.get() > appliedGeneration) {
+            if (gapSince == 0) {
+                gapSince = now;
+            }
+            return true;
+        }
+        gapSince = 0;
+        return false;
+    }
+
+    private long readGeneration() {
+        String raw = redisTemplate.opsForValue().get(KEY_GENERATION);
+        return raw != null ? Long.parseLong(raw) : 0L;
+    }
+
+    private void applyGeneration(long generation) {
+        redisGeneration.accumulateAndGet(generation, Math::max);
+        synchronized (generationLock) {
+            if (generation <= appliedGeneration) {
+                return;
+            }
+            pendingGenerations.add(generation);
+            long next = appliedGeneration;
+            while (pendingGenerations.remove(next + 1)) {
+                next++;
+            }
+            appliedGeneration = next;
+        }
+    }
+
+    /**
+     * Sau rebuild: filter chứa mọi token có generation ≤ {@code generation}. Đặt lại cả mốc Redis — counter
+     * bị reset (Redis flush / failover) thì từ đây theo counter mới.
+     */
+    private void resetGeneration(long generation) {
+        synchronized (generationLock) {
+            pendingGenerations.headSet(generation, true).clear();
+            long next = generation;
+            while (pendingGenerations.remove(next + 1)) {
+                next++;
+            }
+            appliedGeneration = next;
+            redisGeneration.set(next);
+            gapSince = 0;
+        }
+    }
+
+    private void addLocal(byte[] digest, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        put(buckets, digest, expiresAtMillis);
+        ConcurrentNavigableMap<Long, ScalableBloomFilter> target = rebuilding;
+        if (target != null) {
+            put(target, digest, expiresAtMillis);
+        }
+    }
+
+    private void put(ConcurrentNavigableMap<Long, ScalableBloomFilter> map, byte[] digest, long expiresAtMillis) {
+        evictExpired(map);
+        long h1 = ByteBuffer.wrap(digest, 0, 8).getLong();
+        long h2 = ByteBuffer.wrap(digest, 8, 8).getLong();
+        map.computeIfAbsent(bucketOf(expiresAtMillis),
+                b -> new ScalableBloomFilter(BUCKET_INITIAL_CAPACITY, TARGET_FPP))
+                .put(h1, h2);
+    }
+
+    /** Bỏ các bucket mà mọi token bên trong đều đã hết hạn. */
+    private void evictExpired(ConcurrentNavigableMap<Long, ScalableBloomFilter> map) {
+        long expiredBefore = bucketOf(System.currentTimeMillis() - EXPIRY_TOLERANCE_MS);
+        map.headMap(expiredBefore, false).clear();
+    }
+
+    private long bucketOf(long expiresAtMillis) {
+        return expiresAtMillis / bucketWidthMillis;
+    }
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -16,6 +16,7 @@ import lombok.extern.slf4j.Slf4j;
 public class TokenService {
 
     private final StringRedisTemplate redisTemplate;
+    private final TokenBlacklistFilter blacklistFilter;
 
     // =========================================================
     // Key prefix constants — tránh xung đột key trong Redis
@@ -138,6 +139,7 @@ public class TokenService {
                     PREFIX_BLACKLIST + token,
                     "1",
                     Duration.ofMillis(remainingMillis));
+            blacklistFilter.add(token, System.currentTimeMillis() + remainingMillis);
             log.debug("Access token blacklisted, expires in {}ms", remainingMillis);
         }
     }
@@ -149,6 +151,21 @@ public class TokenService {
         return Boolean.TRUE.equals(redisTemplate.hasKey(PREFIX_BLACKLIST + token));
     }
 
+    /**
+     * Kiểm tra blacklist qua Bloom filter local trước; chỉ hỏi Redis khi filter báo
+     * "có thể có" (hiếm — gần như không token nào bị blacklist).
+     *
+     * @param expiresAtMillis thời điểm hết hạn của token (claim exp)
+     */
+    public boolean isAccessTokenBlacklisted(String token, long expiresAtMillis) {
+        if (!blacklistFilter.mightContain(token, expiresAtMillis)) {
+            return false;
+        }
+        boolean blacklisted = isAccessTokenBlacklisted(token);
+        blacklistFilter.recordConfirmation(blacklisted);
+        return blacklisted;
+    }
+
     // =========================================================
     // Private helper
     // =========================================================
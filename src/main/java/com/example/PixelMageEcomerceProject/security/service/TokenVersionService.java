@@ -0,0 +1,157 @@
+package com.example.PixelMageEcomerceProject.security.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import com.example.PixelMageEcomerceProject.repository.AccountRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Token version per account — dùng để vô hiệu hoá toàn bộ access token đang lưu hành
+ * khi account bị khoá, đổi role hoặc đổi mật khẩu.
+ *
+ * Bản gốc: cột accounts.token_version. Key Redis token_version:{customerId} chỉ là cache dùng chung:
+ * thiếu key (evict, flush) thì nạp lại từ DB, không bao giờ coi là version 0. Redis chỉ được nâng
+ * version lên (Lua), nên nạp lại giá trị cũ chạy song song với bump không kéo version xuống.
+ * Mỗi node giữ bản sao local, được cập nhật qua pub/sub khi có bump, và tự làm mới
+ * sau {@code jwt.token-version.local-ttl-ms} để tự lành nếu lỡ mất message.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenVersionService implements MessageListener {
+
+    private static final String PREFIX_TOKEN_VERSION = "token_version:"; // token_version:{customerId} → version
+    private static final String CHANNEL_TOKEN_VERSION = "token_version:changed"; // payload: "{customerId}:{version}"
+
+    // SET nếu lớn hơn giá trị hiện có; trả về version hiệu lực trên Redis
+    private static final RedisScript<Long> RAISE_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) "
+                    + "if v and tonumber(v) >= tonumber(ARGV[1]) then return tonumber(v) end "
+                    + "redis.call('SET', KEYS[1], ARGV[1]) "
+                    + "return tonumber(ARGV[1])",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final AccountRepository accountRepository;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<Integer, LocalVersion> localVersions = new ConcurrentHashMap<>();
+
+    @Value("${jwt.token-version.local-ttl-ms:300000}")
+    private long localTtlMillis;
+
+    private record LocalVersion(long version, long loadedAt) {
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL_TOKEN_VERSION));
+    }
+
+    /**
+     * Version hiện tại của account. Đọc từ bản sao local; chỉ GET Redis khi chưa có
+     * hoặc bản sao đã quá hạn, và chỉ đọc DB khi Redis thiếu key hoặc không truy cập được.
+     *
+     * @return empty nếu cả Redis lẫn DB đều không đọc được (hoặc account không tồn tại) và node chưa
+     *         có bản sao nào — caller phải tự fallback sang đường kiểm tra bằng DB hoặc từ chối.
+     */
+    public OptionalLong currentVersion(Integer customerId) {
+        long now = System.currentTimeMillis();
+        LocalVersion cached = localVersions.get(customerId);
+        if (cached != null && now - cached.loadedAt() < localTtlMillis) {
+            return OptionalLong.of(cached.version());
+        }
+        String key = PREFIX_TOKEN_VERSION + customerId;
+        try {
+            String raw = redisTemplate.opsForValue().get(key);
+            long version;
+            if (raw != null) {
+                version = Long.parseLong(raw);
+            } else {
+                // Cache miss (key bị evict / Redis bị flush): nạp lại từ DB
+                OptionalLong stored = storedVersion(customerId);
+                if (stored.isEmpty()) {
+                    return cached != null ? OptionalLong.of(cached.version()) : OptionalLong.empty();
+                }
+                Long raised = redisTemplate.execute(RAISE_SCRIPT, List.of(key), String.valueOf(stored.getAsLong()));
+                version = raised != null ? raised : stored.getAsLong();
+            }
+            remember(customerId, version, now);
+            return OptionalLong.of(version);
+        } catch (Exception e) {
+            log.warn("[TOKEN-VERSION] Cannot read version from Redis for customerId={}, using DB: {}", customerId,
+                    e.getMessage());
+            OptionalLong stored = storedVersion(customerId);
+            if (stored.isPresent()) {
+                remember(customerId, stored.getAsLong(), now);
+                return stored;
+            }
+            return cached != null ? OptionalLong.of(cached.version()) : OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Tăng version của account → mọi access token phát hành trước đó bị từ chối.
+     * Ghi vào DB trong transaction của caller, rồi nâng cache Redis và broadcast cho các node khác qua pub/sub.
+     */
+    public long bump(Integer customerId) {
+        long newVersion = accountRepository.incrementTokenVersion(customerId).orElse(0L);
+        Long raised = redisTemplate.execute(RAISE_SCRIPT, List.of(PREFIX_TOKEN_VERSION + customerId),
+                String.valueOf(newVersion));
+        if (raised != null && raised > newVersion) {
+            newVersion = raised; // Redis đã cao hơn (bump trước đó của transaction đã rollback): giữ mức cao
+        }
+        remember(customerId, newVersion, System.currentTimeMillis());
+        redisTemplate.convertAndSend(CHANNEL_TOKEN_VERSION, customerId + ":" + newVersion);
+        log.info("[TOKEN-VERSION] Bumped customerId={} to version={}", customerId, newVersion);
+        return newVersion;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = payload.indexOf(':');
+        if (sep <= 0) {
+            return;
+        }
+        try {
+            Integer customerId = Integer.valueOf(payload.substring(0, sep));
+            long version = Long.parseLong(payload.substring(sep + 1));
+            remember(customerId, version, System.currentTimeMillis());
+        } catch (NumberFormatException e) {
+            log.warn("[TOKEN-VERSION] Ignoring malformed message: {}", payload);
+        }
+    }
+
+    private OptionalLong storedVersion(Integer customerId) {
+        try {
+            return accountRepository.findTokenVersion(customerId).map(OptionalLong::of).orElse(OptionalLong.empty());
+        } catch (Exception e) {
+            log.warn("[TOKEN-VERSION] Cannot read version from DB for customerId={}: {}", customerId, e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    /** Version chỉ tăng — không để message đến trễ ghi đè version mới hơn. */
+    private void remember(Integer customerId, long version, long loadedAt) {
+        localVersions.merge(customerId, new LocalVersion(version, loadedAt),
+                (old, fresh) -> fresh.version() >= old.version() ? fresh : new LocalVersion(old.version(), loadedAt));
+    }
+}
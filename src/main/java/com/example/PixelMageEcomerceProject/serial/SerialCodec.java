@@ -0,0 +1,105 @@
+package com.example.PixelMageEcomerceProject.serial;
+
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * Mã ngắn dạng Crockford base32 (không có I, L, O, U — đọc / gõ tay không nhầm) kèm một ký tự kiểm tra
+ * Luhn mod 32 ở cuối: bắt mọi lỗi sai một ký tự và phần lớn lỗi đảo hai ký tự liền nhau trước khi chạm DB.
+ */
+public final class SerialCodec {
+
+    static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final int BASE = 32;
+
+    private SerialCodec() {
+    }
+
+    /** {@code value} thành đúng {@code width} chữ số base32 (thêm 0 bên trái), chưa gồm ký tự kiểm tra. */
+    public static String encode(long value, int width) {
+        if (value < 0 || (width < 13 && value >= 1L << (5 * width))) {
+            throw new IllegalArgumentException("Value " + value + " does not fit in " + width + " base32 digits");
+        }
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = ALPHABET.charAt((int) (value & (BASE - 1)));
+            value >>>= 5;
+        }
+        return new String(digits);
+    }
+
+    public static long decode(CharSequence digits) {
+        long value = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            value = (value << 5) | codePoint(digits.charAt(i));
+        }
+        return value;
+    }
+
+    /** {@code digits} + ký tự kiểm tra. */
+    public static String withCheck(String digits) {
+        return digits + checkChar(digits);
+    }
+
+    /** Luhn mod N trên bảng chữ base32: nhân đôi xen kẽ từ phải sang, cộng hai "chữ số" base32 của tích. */
+    public static char checkChar(CharSequence digits) {
+        int factor = 2;
+        int sum = 0;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int addend = factor * codePoint(digits.charAt(i));
+            factor = factor == 2 ? 1 : 2;
+            sum += addend / BASE + addend % BASE;
+        }
+        return ALPHABET.charAt((BASE - sum % BASE) % BASE);
+    }
+
+    /** Mã (đã {@link #normalize}) có ký tự kiểm tra khớp; {@code prefix} không tính vào checksum. */
+    public static boolean isValid(String code, String prefix) {
+        if (code == null) {
+            return false;
+        }
+        String normalized = normalize(code);
+        String body = prefix == null || prefix.isEmpty() ? normalized
+                : normalized.startsWith(prefix) ? normalized.substring(prefix.length()) : null;
+        if (body == null || body.length() < 2) {
+            return false;
+        }
+        for (int i = 0; i < body.length(); i++) {
+            if (ALPHABET.indexOf(body.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return checkChar(body.substring(0, body.length() - 1)) == body.charAt(body.length() - 1);
+    }
+
+    /** Chữ hoa, bỏ gạch / khoảng trắng, O → 0, I / L → 1 như Crockford quy định cho mã gõ tay. */
+    public static String normalize(String code) {
+        StringBuilder sb = new StringBuilder(code.length());
+        for (char c : code.toUpperCase(Locale.ROOT).toCharArray()) {
+            switch (c) {
+                case '-', ' ' -> { }
+                case 'O' -> sb.append('0');
+                case 'I', 'L' -> sb.append('1');
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** {@code width} chữ số ngẫu nhiên + ký tự kiểm tra, cho token bí mật không được đoán theo thứ tự. */
+    public static String random(RandomGenerator random, int width) {
+        char[] digits = new char[width];
+        for (int i = 0; i < width; i++) {
+            digits[i] = ALPHABET.charAt(random.nextInt(BASE));
+        }
+        return withCheck(new String(digits));
+    }
+
+    private static int codePoint(char c) {
+        int index = ALPHABET.indexOf(c);
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid base32 character: " + c);
+        }
+        return index;
+    }
+}
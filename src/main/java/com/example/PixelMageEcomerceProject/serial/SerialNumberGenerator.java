@@ -0,0 +1,76 @@
+package com.example.PixelMageEcomerceProject.serial;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Mã không trùng, ngắn, tăng dần (serial card, mã voucher, ...) từ sequence Postgres cấp theo khối.
+ *
+ * - Một nextval trả đầu khối {@link #BLOCK_SIZE} giá trị, node giữ khối trong heap và cấp dần: 10k mã chỉ
+ *   tốn một câu {@code nextval ... generate_series}. Khối của mỗi node không giao nhau nên không trùng dù
+ *   nhiều node cùng cấp; thứ tự tăng trong từng node, giữa các node tăng theo khối.
+ * - Mã = prefix + {@code digits} chữ số Crockford base32 + ký tự kiểm tra ({@link SerialCodec}).
+ * - Khối cấp rồi mà transaction rollback hoặc node tắt thì bỏ trống, không cấp lại.
+ */
+@Component
+@RequiredArgsConstructor
+public class SerialNumberGenerator {
+
+    public static final int BLOCK_SIZE = 1000;
+
+    private static final String NEXT_BLOCKS_SQL = "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+    // Nhân với số lẻ mod 2^bits là song ánh: không trùng, nhưng mã liền nhau trông không liên quan
+    private static final long SCRAMBLE_MULTIPLIER = 0x5DEECE66DL;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<SerialSequence, long[]> blocks = new EnumMap<>(SerialSequence.class); // {next, end}
+
+    public String next(SerialSequence sequence) {
+        return next(sequence, 1).get(0);
+    }
+
+    public synchronized List<String> next(SerialSequence sequence, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        List<String> codes = new ArrayList<>(count);
+        long[] block = blocks.computeIfAbsent(sequence, s -> new long[] { 0, 0 });
+        while (codes.size() < count) {
+            if (block[0] >= block[1]) {
+                int blocksNeeded = (count - codes.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                List<Long> starts = jdbcTemplate.queryForList(NEXT_BLOCKS_SQL, Long.class,
+                        sequence.sequenceName(), blocksNeeded);
+                // Các khối đầu dùng hết ngay trong lần gọi này, khối cuối giữ lại cho lần sau
+                for (int i = 0; i < starts.size() - 1; i++) {
+                    for (long value = starts.get(i); value < starts.get(i) + BLOCK_SIZE; value++) {
+                        codes.add(format(sequence, value));
+                    }
+                }
+                block[0] = starts.get(starts.size() - 1);
+                block[1] = block[0] + BLOCK_SIZE;
+                continue;
+            }
+            codes.add(format(sequence, block[0]++));
+        }
+        return codes;
+    }
+
+    static String format(SerialSequence sequence, long value) {
+        int bits = 5 * sequence.digits();
+        long mask = (1L << bits) - 1;
+        if (value > mask) {
+            throw new IllegalStateException("Sequence " + sequence.sequenceName() + " exhausted "
+                    + sequence.digits() + " digits");
+        }
+        long encoded = sequence.scrambled() ? (value * SCRAMBLE_MULTIPLIER) & mask : value;
+        return sequence.prefix() + SerialCodec.withCheck(SerialCodec.encode(encoded, sequence.digits()));
+    }
+}
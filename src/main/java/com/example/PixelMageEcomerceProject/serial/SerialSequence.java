@@ -0,0 +1,40 @@
+package com.example.PixelMageEcomerceProject.serial;
+
+/**
+ * Các dãy mã dùng {@link SerialNumberGenerator}; mỗi dãy một sequence Postgres INCREMENT BY
+ * {@link SerialNumberGenerator#BLOCK_SIZE} (V13).
+ *
+ * @param scrambled hoán vị giá trị trước khi mã hoá: vẫn không trùng nhưng mã liền nhau không lộ thứ tự
+ */
+public enum SerialSequence {
+    CARD("card_serial_seq", "PM", 7, false),
+    VOUCHER("voucher_code_seq", "V", 7, true);
+
+    private final String sequenceName;
+    private final String prefix;
+    private final int digits;
+    private final boolean scrambled;
+
+    SerialSequence(String sequenceName, String prefix, int digits, boolean scrambled) {
+        this.sequenceName = sequenceName;
+        this.prefix = prefix;
+        this.digits = digits;
+        this.scrambled = scrambled;
+    }
+
+    public String sequenceName() {
+        return sequenceName;
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    public int digits() {
+        return digits;
+    }
+
+    public boolean scrambled() {
+        return scrambled;
+    }
+}
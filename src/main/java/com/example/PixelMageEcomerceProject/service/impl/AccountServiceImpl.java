@@ -27,6 +27,7 @@ import com.example.PixelMageEcomerceProject.repository.AccountRepository;
 import com.example.PixelMageEcomerceProject.repository.RoleRepository;
 import com.example.PixelMageEcomerceProject.security.service.AuthenticationService;
 import com.example.PixelMageEcomerceProject.security.service.TokenService;
+import com.example.PixelMageEcomerceProject.security.service.TokenVersionService;
 import com.example.PixelMageEcomerceProject.service.EmailService;
 import com.example.PixelMageEcomerceProject.service.interfaces.AccountService;
 import com.example.PixelMageEcomerceProject.service.interfaces.WebSocketNotificationService;
@@ -46,6 +47,7 @@ public class AccountServiceImpl implements AccountService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationService authenticationService;
     private final TokenService tokenService;
+    private final TokenVersionService tokenVersionService;
     private final EmailService emailService;
     private final WebSocketNotificationService wsNotificationService;
     private final StringRedisTemplate stringRedisTemplate;
@@ -260,6 +262,8 @@ public class AccountServiceImpl implements AccountService {
 
         account.setPassword(passwordEncoder.encode(dto.getNewPassword()));
         accountRepository.save(account);
+        // Đổi mật khẩu → thu hồi mọi access token đang lưu hành
+        tokenVersionService.bump(account.getCustomerId());
     }
 
     @Override
@@ -290,6 +294,7 @@ public class AccountServiceImpl implements AccountService {
 
         account.setPassword(passwordEncoder.encode(dto.getNewPassword()));
         accountRepository.save(account);
+        tokenVersionService.bump(account.getCustomerId());
     }
 
     @Override
@@ -299,8 +304,9 @@ public class AccountServiceImpl implements AccountService {
                 .orElseThrow(() -> new RuntimeException("Account not found with id: " + customerId));
         account.setIsActive(false);
         accountRepository.save(account);
-        // Revoke refresh token khi account bị xóa
+        // Revoke refresh token + access token khi account bị xóa
         tokenService.revokeUserRefreshToken(account.getEmail());
+        tokenVersionService.bump(customerId);
     }
 
     @Override
@@ -335,6 +341,7 @@ public class AccountServiceImpl implements AccountService {
         Account saved = accountRepository.save(account);
         if (!saved.getIsActive()) {
             tokenService.revokeUserRefreshToken(saved.getEmail());
+            tokenVersionService.bump(saved.getCustomerId());
         }
         return saved;
     }
@@ -1,15 +1,16 @@
 package com.example.PixelMageEcomerceProject.service.impl;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Caching;
 
+import com.example.PixelMageEcomerceProject.cache.CacheInvalidator;
 import com.example.PixelMageEcomerceProject.dto.request.CardRequestDTO;
 import com.example.PixelMageEcomerceProject.entity.Card;
 import com.example.PixelMageEcomerceProject.entity.CardTemplate;
@@ -33,13 +34,9 @@ public class CardServiceImpl implements CardService {
     private final CardTemplateRepository cardTemplateRepository;
     private final ProductRepository productRepository;
     private final CardMapper cardMapper;
+    private final CacheInvalidator cacheInvalidator;
 
     @Override
-    @Caching(evict = {
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public Card createCardProduct(CardRequestDTO cardRequestDTO) {
         CardTemplate cardTemplate = cardTemplateRepository.findById(cardRequestDTO.getCardTemplateId())
                 .orElseThrow(() -> new RuntimeException(
@@ -56,15 +53,12 @@ public class CardServiceImpl implements CardService {
         }
         card.setStatus(CardProductStatus.PENDING_BIND);
 
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        invalidateProductCaches(saved);
+        return saved;
     }
 
     @Override
-    @Caching(evict = {
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public Card bindNFC(Integer cardId, String nfcUid) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new RuntimeException("Card not found with id: " + cardId));
@@ -77,32 +71,28 @@ public class CardServiceImpl implements CardService {
         card.setNfcUid(nfcUid);
         card.setSoftwareUuid(java.util.UUID.randomUUID().toString());
         card.setStatus(CardProductStatus.READY);
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        invalidateProductCaches(saved);
+        return saved;
     }
 
     @Override
-    @Caching(evict = {
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public Card updateStatus(Integer cardId, String newStatus) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new RuntimeException("Card not found with id: " + cardId));
         card.setStatus(CardProductStatus.valueOf(newStatus.toUpperCase()));
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        invalidateProductCaches(saved);
+        return saved;
     }
 
     @Override
-    @Caching(evict = {
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public Card updateCard(Integer id, CardRequestDTO cardRequestDTO) {
         Optional<Card> existingCard = cardRepository.findById(id);
         if (existingCard.isPresent()) {
             Card updatedCard = existingCard.get();
+            // Product / template cũ cũng mất (hoặc đổi) stock
+            Set<Integer> affectedProductIds = affectedProductIds(updatedCard);
 
             if (cardRequestDTO.getCardTemplateId() != null) {
                 CardTemplate cardTemplate = cardTemplateRepository.findById(cardRequestDTO.getCardTemplateId())
@@ -126,22 +116,21 @@ public class CardServiceImpl implements CardService {
             }
 
             updatedCard.setCustomText(cardRequestDTO.getCustomText());
-            return cardRepository.save(updatedCard);
+            Card saved = cardRepository.save(updatedCard);
+            affectedProductIds.addAll(affectedProductIds(saved));
+            invalidateProductCaches(affectedProductIds);
+            return saved;
         }
         throw new RuntimeException("Card not found with id: " + id);
     }
 
     @Override
-    @Caching(evict = {
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public void deleteCard(Integer id) {
         Card card = cardRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Card not found with id: " + id));
         card.setStatus(CardProductStatus.DEACTIVATED);
         cardRepository.save(card);
+        invalidateProductCaches(card);
     }
 
     @Override
@@ -163,4 +152,28 @@ public class CardServiceImpl implements CardService {
     public Optional<Card> getCardByNfcUid(String nfcUid) {
         return cardRepository.findByNfcUid(nfcUid);
     }
+
+    /**
+     * Thay đổi card chỉ ảnh hưởng stock của product chứa nó và các product SINGLE_CARD cùng template:
+     * list product bump generation, product-by-id chỉ xoá đúng các id đó.
+     */
+    private void invalidateProductCaches(Card card) {
+        invalidateProductCaches(affectedProductIds(card));
+    }
+
+    private void invalidateProductCaches(Set<Integer> productIds) {
+        cacheInvalidator.invalidateNamespaces("products", "products-public");
+        cacheInvalidator.evict("product-by-id", productIds);
+    }
+
+    private Set<Integer> affectedProductIds(Card card) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        if (card.getProduct() != null && card.getProduct().getProductId() != null) {
+            ids.add(card.getProduct().getProductId());
+        }
+        if (card.getCardTemplate() != null) {
+            ids.addAll(productRepository.findProductIdsByCardTemplateId(card.getCardTemplate().getCardTemplateId()));
+        }
+        return ids;
+    }
 }
@@ -0,0 +1,57 @@
+package com.example.PixelMageEcomerceProject.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.PixelMageEcomerceProject.entity.Product;
+import com.example.PixelMageEcomerceProject.repository.CardBulkRepository;
+import com.example.PixelMageEcomerceProject.serial.SerialNumberGenerator;
+import com.example.PixelMageEcomerceProject.serial.SerialSequence;
+import com.example.PixelMageEcomerceProject.service.interfaces.CardStockMintingService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Nhập stock ban đầu cho SINGLE_CARD: serial cấp theo khối từ {@link SerialNumberGenerator}, card ghi bằng
+ * INSERT unnest theo lô {@code ROWS_PER_STATEMENT} — 10k card là vài câu lệnh trong một transaction.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CardStockMintingServiceImpl implements CardStockMintingService {
+
+    private static final int ROWS_PER_STATEMENT = 5_000;
+
+    private final SerialNumberGenerator serialNumberGenerator;
+    private final CardBulkRepository cardBulkRepository;
+
+    @Value("${stock.minting.max-quantity:100000}")
+    int maxQuantity;
+
+    @Override
+    @Transactional
+    public List<String> mintReadyCards(Product product, int quantity, String productionBatch) {
+        if (quantity <= 0 || quantity > maxQuantity) {
+            throw new IllegalArgumentException("initialStock must be between 1 and " + maxQuantity);
+        }
+        if (product.getCardTemplate() == null) {
+            throw new IllegalArgumentException("Product " + product.getProductId() + " has no card template");
+        }
+        long start = System.nanoTime();
+        List<String> serials = serialNumberGenerator.next(SerialSequence.CARD, quantity);
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < quantity; from += ROWS_PER_STATEMENT) {
+            String[] chunk = serials.subList(from, Math.min(quantity, from + ROWS_PER_STATEMENT)).toArray(new String[0]);
+            cardBulkRepository.insertReadyCards(product.getCardTemplate().getCardTemplateId(), product.getProductId(),
+                    productionBatch, chunk, now);
+        }
+        log.info("[STOCK] Minted {} cards for product {} ({} .. {}) in {} ms", quantity, product.getProductId(),
+                serials.get(0), serials.get(quantity - 1), (System.nanoTime() - start) / 1_000_000);
+        return serials;
+    }
+}
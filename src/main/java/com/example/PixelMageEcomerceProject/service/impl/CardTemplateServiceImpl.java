@@ -105,13 +105,13 @@ public class CardTemplateServiceImpl implements CardTemplateService {
     }
 
     @Override
-    @Cacheable("card-templates")
+    @Cacheable(value = "card-templates", sync = true)
     public List<CardTemplate> getAllCardTemplates() {
         return cardTemplateRepository.findAll();
     }
 
     @Override
-    @Cacheable("card-templates-visible")
+    @Cacheable(value = "card-templates-visible", sync = true)
     public List<CardTemplate> getAllVisibleCardTemplates() {
         return cardTemplateRepository.findByIsVisibleTrue();
     }
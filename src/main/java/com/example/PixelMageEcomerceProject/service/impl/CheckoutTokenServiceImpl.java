@@ -1,10 +1,11 @@
 package com.example.PixelMageEcomerceProject.service.impl;
 
+import com.example.PixelMageEcomerceProject.serial.SerialCodec;
 import org.springframework.stereotype.Service;
 
+import java.security.SecureRandom;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -15,11 +16,17 @@ import java.util.concurrent.ConcurrentHashMap;
  *  - One-use: burned (deleted) on first successful verification
  *  - Stored only in the JVM heap — not persisted, not replicated across pods
  *    (acceptable for a single-instance MVP; swap to Redis for multi-pod deploy)
+ *  - Random (a bearer secret must not be sequential) but in the same base32 + check char format as
+ *    serials, so mistyped / forged tokens are rejected without touching the store
  */
 @Service
 public class CheckoutTokenServiceImpl {
 
     private static final long TTL_MS = 5 * 60 * 1000L; // 5 minutes
+    private static final String PREFIX = "ct_";
+    private static final int TOKEN_DIGITS = 26; // 130 bit ngẫu nhiên
+
+    private final SecureRandom random = new SecureRandom();
 
     /** Value holds the email (username) and the expiry epoch-ms */
     private final Map<String, Entry> store = new ConcurrentHashMap<>();
@@ -33,7 +40,7 @@ public class CheckoutTokenServiceImpl {
     /** Issue a new one-use checkout token for the given email. */
     public String issue(String email) {
         evictExpired();
-        String token = "ct_" + UUID.randomUUID().toString().replace("-", "");
+        String token = PREFIX + SerialCodec.random(random, TOKEN_DIGITS);
         store.put(token, new Entry(email, System.currentTimeMillis() + TTL_MS));
         return token;
     }
@@ -45,7 +52,10 @@ public class CheckoutTokenServiceImpl {
      * @throws IllegalArgumentException if token is invalid, expired, or already used
      */
     public String verifyAndConsume(String token) {
-        Entry entry = store.remove(token); // atomic remove — one-use guaranteed
+        Entry entry = token != null && token.startsWith(PREFIX)
+                && SerialCodec.isValid(token.substring(PREFIX.length()), null)
+                ? store.remove(token) // atomic remove — one-use guaranteed
+                : null;
         if (entry == null) {
             throw new IllegalArgumentException("Checkout token không hợp lệ hoặc đã được sử dụng.");
         }
@@ -108,7 +108,7 @@ public class CollectionServiceImpl implements CollectionService {
     }
 
     @Override
-    @Cacheable("public-collections")
+    @Cacheable(value = "public-collections", sync = true)
     public List<com.example.PixelMageEcomerceProject.dto.response.CollectionResponse> getPublicCollections() {
         return cardCollectionRepository.findAllVisibleCollections(LocalDateTime.now())
                 .stream().map(collectionMapper::toCollectionResponse).collect(Collectors.toList());
@@ -53,7 +53,8 @@ public class NFCScanServiceImpl implements NFCScanService {
             throw new RuntimeException("Card is " + status + ", cannot be scanned");
         }
 
-        if (CardProductStatus.READY.equals(status) || CardProductStatus.SOLD.equals(status)) {
+        if (CardProductStatus.READY.equals(status) || CardProductStatus.PACKED.equals(status)
+                || CardProductStatus.SOLD.equals(status)) {
             response.put("action", "LINK_PROMPT");
             response.put("card_info", card);
             return response;
@@ -96,6 +97,7 @@ public class NFCScanServiceImpl implements NFCScanService {
         }
 
         if (!CardProductStatus.READY.equals(card.getStatus())
+                && !CardProductStatus.PACKED.equals(card.getStatus())
                 && !CardProductStatus.SOLD.equals(card.getStatus())) {
             throw new RuntimeException("Cannot link card with status: " + card.getStatus());
         }
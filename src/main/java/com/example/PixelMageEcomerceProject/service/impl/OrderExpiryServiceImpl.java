@@ -0,0 +1,188 @@
+package com.example.PixelMageEcomerceProject.service.impl;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.OrderExpiryService;
+import com.example.PixelMageEcomerceProject.service.interfaces.StockReservationService;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Job dọn order / payment PENDING bị bỏ dở — để findByStatus / findByPaymentStatus của dashboard
+ * không phải lọc qua hàng đống dòng chết.
+ *
+ * - Keyset theo id, mỗi lô {@code order.expiry.batch-size} dòng trong một transaction: một UPDATE ...
+ *   RETURNING huỷ order, một UPDATE payment theo danh sách id, trả reservation HELD của cả lô.
+ * - Nhiều node chạy cùng lúc: claim bằng FOR UPDATE SKIP LOCKED nên mỗi node nhận các lô rời nhau;
+ *   order đang bị webhook / thao tác khác khoá thì bỏ qua, lượt sau xét lại.
+ * - Tự điều tiết theo tải DB: nghỉ giữa các lô theo {@code order.expiry.duty-cycle} (lô chạy càng
+ *   chậm nghỉ càng lâu), và tạm dừng khi pool Hikari có thread chờ connection hoặc dùng quá
+ *   {@code order.expiry.max-pool-usage}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderExpiryServiceImpl implements OrderExpiryService {
+
+    private final OrderRepository orderRepository;
+    private final PaymentRepository paymentRepository;
+    private final StockReservationService stockReservationService;
+    private final PlatformTransactionManager transactionManager;
+    private final DataSource dataSource;
+
+    @Value("${order.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.expiry.pending-ttl-ms:7200000}")
+    private long pendingTtlMillis;
+
+    @Value("${order.expiry.batch-size:2000}")
+    private int batchSize;
+
+    @Value("${order.expiry.duty-cycle:0.5}")
+    private double dutyCycle;
+
+    @Value("${order.expiry.max-pool-usage:0.8}")
+    private double maxPoolUsage;
+
+    @Value("${order.expiry.busy-pause-ms:2000}")
+    private long busyPauseMillis;
+
+    @Value("${order.expiry.max-run-ms:120000}")
+    private long maxRunMillis;
+
+    @Override
+    @Scheduled(fixedDelayString = "${order.expiry.interval-ms:300000}",
+            initialDelayString = "${order.expiry.interval-ms:300000}")
+    public Result expireStale() {
+        if (!enabled) {
+            return new Result(0, 0, 0, 0, true);
+        }
+        long started = System.currentTimeMillis();
+        long deadline = started + maxRunMillis;
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(pendingTtlMillis));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger payments = new AtomicInteger();
+        AtomicInteger reservations = new AtomicInteger();
+
+        int orders = 0;
+        boolean complete = false;
+        try {
+            Drain orderDrain = drain(deadline, afterId -> transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                List<Integer> orderIds = orderRepository.expireStalePending(cutoff, afterId, batchSize, now);
+                if (!orderIds.isEmpty()) {
+                    payments.addAndGet(paymentRepository.expirePendingByOrderIds(orderIds, now));
+                    reservations.addAndGet(stockReservationService.releaseAll(orderIds));
+                }
+                return orderIds;
+            }));
+            orders = orderDrain.rows();
+            // Payment treo của order không còn PENDING (đã thanh toán bằng payment khác, bị huỷ tay...)
+            if (orderDrain.complete()) {
+                Drain paymentDrain = drain(deadline, afterId -> transactionTemplate.execute(status ->
+                        paymentRepository.expireStalePending(cutoff, afterId, batchSize, LocalDateTime.now())));
+                payments.addAndGet(paymentDrain.rows());
+                complete = paymentDrain.complete();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("[ORDER-EXPIRY] Sweep aborted: {}", e.getMessage());
+        }
+
+        Result result = new Result(orders, payments.get(), reservations.get(),
+                System.currentTimeMillis() - started, complete);
+        if (result.orders() > 0 || result.payments() > 0 || !complete) {
+            log.info("[ORDER-EXPIRY] Cancelled {} orders, expired {} payments, released {} reservations in {} ms{}",
+                    result.orders(), result.payments(), result.reservations(), result.elapsedMs(),
+                    complete ? "" : " (incomplete, continues next run)");
+        }
+        return result;
+    }
+
+    private record Drain(int rows, boolean complete) {
+    }
+
+    // Chạy lô nối tiếp tới khi một lô trả về ít hơn batch-size (SKIP LOCKED áp dụng trước LIMIT nên lô thiếu = hết dòng)
+    private Drain drain(long deadline, IntFunction<List<Integer>> batch) throws InterruptedException {
+        int afterId = 0;
+        int rows = 0;
+        while (true) {
+            if (!awaitCapacity(deadline)) {
+                return new Drain(rows, false);
+            }
+            long batchStarted = System.nanoTime();
+            List<Integer> ids = batch.apply(afterId);
+            if (ids == null || ids.isEmpty()) {
+                return new Drain(rows, true);
+            }
+            rows += ids.size();
+            afterId = Collections.max(ids);
+            if (ids.size() < batchSize) {
+                return new Drain(rows, true);
+            }
+            long batchMillis = (System.nanoTime() - batchStarted) / 1_000_000;
+            Thread.sleep(pauseMillis(batchMillis));
+        }
+    }
+
+    // duty-cycle 0.5: nghỉ bằng thời gian lô vừa chạy; 1.0: không nghỉ
+    long pauseMillis(long batchMillis) {
+        double duty = Math.min(1.0, Math.max(0.05, dutyCycle));
+        return (long) (batchMillis * (1 - duty) / duty);
+    }
+
+    private boolean awaitCapacity(long deadline) throws InterruptedException {
+        while (System.currentTimeMillis() < deadline) {
+            if (!poolBusy()) {
+                return true;
+            }
+            Thread.sleep(busyPauseMillis);
+        }
+        return false;
+    }
+
+    boolean poolBusy() {
+        HikariDataSource hikari = hikari();
+        HikariPoolMXBean pool = hikari != null ? hikari.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return false; // không đo được tải → chỉ điều tiết bằng duty-cycle
+        }
+        if (pool.getThreadsAwaitingConnection() > 0) {
+            return true;
+        }
+        int max = Math.max(1, hikari.getMaximumPoolSize());
+        return (double) pool.getActiveConnections() / max >= maxPoolUsage;
+    }
+
+    private HikariDataSource hikari() {
+        if (dataSource instanceof HikariDataSource hikari) {
+            return hikari;
+        }
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -1,37 +1,41 @@
 package com.example.PixelMageEcomerceProject.service.impl;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.PixelMageEcomerceProject.cache.ProductPriceBook;
 import com.example.PixelMageEcomerceProject.dto.event.NotificationEvent;
 import com.example.PixelMageEcomerceProject.dto.request.OrderItemRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.request.OrderRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.response.OrderResponse;
 import com.example.PixelMageEcomerceProject.entity.Account;
-import com.example.PixelMageEcomerceProject.entity.Card;
 import com.example.PixelMageEcomerceProject.entity.Order;
 import com.example.PixelMageEcomerceProject.entity.OrderItem;
-import com.example.PixelMageEcomerceProject.entity.Pack;
 import com.example.PixelMageEcomerceProject.entity.Product;
-import com.example.PixelMageEcomerceProject.enums.CardProductStatus;
 import com.example.PixelMageEcomerceProject.enums.OrderStatus;
 import com.example.PixelMageEcomerceProject.enums.PackStatus;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.enums.ProductType;
-import com.example.PixelMageEcomerceProject.event.PaymentSuccessEvent;
+import com.example.PixelMageEcomerceProject.exceptions.PackReservationException;
 import com.example.PixelMageEcomerceProject.mapper.OrderItemMapper;
 import com.example.PixelMageEcomerceProject.mapper.OrderMapper;
+import com.example.PixelMageEcomerceProject.notification.PaymentAwaitRegistry;
 import com.example.PixelMageEcomerceProject.repository.AccountRepository;
 import com.example.PixelMageEcomerceProject.repository.CardRepository;
 import com.example.PixelMageEcomerceProject.repository.OrderItemRepository;
@@ -40,9 +44,11 @@ import com.example.PixelMageEcomerceProject.repository.PackRepository;
 import com.example.PixelMageEcomerceProject.repository.ProductRepository;
 import com.example.PixelMageEcomerceProject.service.interfaces.OrderService;
 import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
+import com.example.PixelMageEcomerceProject.service.interfaces.StockReservationService;
 import com.example.PixelMageEcomerceProject.service.interfaces.VoucherService;
 import com.example.PixelMageEcomerceProject.service.interfaces.WebSocketNotificationService;
 import com.example.PixelMageEcomerceProject.service.model.InitPaymentResult;
+import com.example.PixelMageEcomerceProject.service.model.ProductPrice;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -64,6 +70,9 @@ public class OrderServiceImpl implements OrderService {
     private final OrderMapper orderMapper;
     private final OrderItemMapper orderItemMapper;
     private final WebSocketNotificationService wsNotificationService;
+    private final StockReservationService stockReservationService;
+    private final PaymentAwaitRegistry paymentAwaitRegistry;
+    private final ProductPriceBook productPriceBook;
 
     @Override
     public OrderResponse createOrder(OrderRequestDTO orderRequestDTO) {
@@ -79,10 +88,27 @@ public class OrderServiceImpl implements OrderService {
                     return new RuntimeException("Account not found with id: " + orderRequestDTO.getCustomerId());
                 });
 
+        List<OrderItemRequestDTO> itemDtos = orderRequestDTO.getOrderItems();
+        if (itemDtos == null || itemDtos.isEmpty()) {
+            throw new RuntimeException("Order must contain at least one item");
+        }
+        for (OrderItemRequestDTO itemDto : itemDtos) {
+            if (itemDto.getProductId() == null) {
+                throw new RuntimeException("productId is required in order items");
+            }
+        }
+
         TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
         transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
 
         return transactionTemplate.execute(status -> {
+            // Mọi product của order trong một query; giá lấy từ price book, không tin giá / tổng client gửi
+            Set<Integer> productIds = new LinkedHashSet<>();
+            itemDtos.forEach(itemDto -> productIds.add(itemDto.getProductId()));
+            Map<Integer, Product> products = new HashMap<>();
+            productRepository.findAllById(productIds).forEach(p -> products.put(p.getProductId(), p));
+            Map<Integer, ProductPrice> prices = productPriceBook.lookup(productIds);
+
             Order order = orderMapper.toEntity(orderRequestDTO);
             order.setAccount(account);
 
@@ -97,12 +123,44 @@ public class OrderServiceImpl implements OrderService {
                 order.setOrderDate(java.time.LocalDateTime.now());
             }
 
+            // Build OrderItems — reference Product only, Pack is assigned AFTER payment
+            List<OrderItem> items = new ArrayList<>(itemDtos.size());
+            BigDecimal total = BigDecimal.ZERO;
+            for (OrderItemRequestDTO itemDto : itemDtos) {
+                Product product = products.get(itemDto.getProductId());
+                if (product == null) {
+                    log.error("[ORDER] Product not found: productId={}", itemDto.getProductId());
+                    throw new RuntimeException("Product not found: " + itemDto.getProductId());
+                }
+                ProductPrice price = prices.get(product.getProductId());
+                if (price == null || !price.isOrderable()) {
+                    throw new RuntimeException("Product is not available for ordering: " + product.getProductId());
+                }
+
+                OrderItem item = orderItemMapper.toEntity(itemDto);
+                item.setOrder(order);
+                item.setProduct(product);
+                int quantity = itemDto.getQuantity() != null && itemDto.getQuantity() > 0 ? itemDto.getQuantity() : 1;
+                BigDecimal subtotal = price.price().multiply(BigDecimal.valueOf(quantity));
+                item.setQuantity(quantity);
+                item.setUnitPrice(price.price());
+                item.setSubtotal(subtotal);
+                total = total.add(subtotal);
+                // Pack is intentionally NOT set here — will be assigned in fulfillPaidOrder()
+                items.add(item);
+            }
+            if (orderRequestDTO.getTotalAmount() != null && orderRequestDTO.getTotalAmount().compareTo(total) != 0) {
+                log.warn("[ORDER] Client total {} differs from priced total {} — using priced total",
+                        orderRequestDTO.getTotalAmount(), total);
+            }
+            order.setTotalAmount(total);
+
             // Apply voucher if present
             if (orderRequestDTO.getVoucherCode() != null && !orderRequestDTO.getVoucherCode().trim().isEmpty()) {
                 log.debug("[ORDER] Applying voucher: code={}", orderRequestDTO.getVoucherCode());
                 BigDecimal discount = voucherService.redeemVoucher(orderRequestDTO.getVoucherCode(),
-                        orderRequestDTO.getCustomerId(), orderRequestDTO.getTotalAmount());
-                BigDecimal newTotal = orderRequestDTO.getTotalAmount().subtract(discount);
+                        orderRequestDTO.getCustomerId(), total);
+                BigDecimal newTotal = total.subtract(discount);
                 if (newTotal.compareTo(BigDecimal.ZERO) < 0) {
                     newTotal = BigDecimal.ZERO;
                 }
@@ -110,39 +168,18 @@ public class OrderServiceImpl implements OrderService {
                 order.setTotalAmount(newTotal);
             }
 
+            // Id lấy từ sequence pooled, chưa có câu INSERT nào — order, các dòng và reservation
+            // được ghi bằng JDBC batch khi transaction flush
             Order savedOrder = orderRepository.save(order);
             log.info("[ORDER] Order saved: orderId={}", savedOrder.getOrderId());
 
-            // Build OrderItems — reference Product only, Pack is assigned AFTER payment
-            if (orderRequestDTO.getOrderItems() != null) {
-                List<OrderItem> items = new ArrayList<>();
-                for (OrderItemRequestDTO itemDto : orderRequestDTO.getOrderItems()) {
-                    OrderItem item = orderItemMapper.toEntity(itemDto);
-                    item.setOrder(savedOrder);
-
-                    // Resolve Product (what the customer ordered)
-                    if (itemDto.getProductId() != null) {
-                        Product product = productRepository.findById(itemDto.getProductId())
-                                .orElseThrow(() -> {
-                                    log.error("[ORDER] Product not found: productId={}", itemDto.getProductId());
-                                    return new RuntimeException("Product not found: " + itemDto.getProductId());
-                                });
-                        item.setProduct(product);
-                        log.debug("[ORDER] OrderItem linked to product: productId={}, name={}",
-                                product.getProductId(), product.getName());
-                    } else {
-                        throw new RuntimeException("productId is required in order items");
-                    }
+            // Giữ hàng trước khi ghi các dòng: hết hàng → 409, cả transaction rollback
+            stockReservationService.reserve(savedOrder.getOrderId(), items);
+            orderItemRepository.saveAll(items);
+            savedOrder.setOrderItems(items);
 
-                    // Pack is intentionally NOT set here — will be assigned in handlePaymentSuccess()
-                    items.add(item);
-                    orderItemRepository.save(item);
-                }
-                savedOrder.setOrderItems(items);
-            }
-
-            log.info("[ORDER] createOrder complete: orderId={}, totalAmount={}", savedOrder.getOrderId(),
-                    savedOrder.getTotalAmount());
+            log.info("[ORDER] createOrder complete: orderId={}, items={}, totalAmount={}", savedOrder.getOrderId(),
+                    items.size(), savedOrder.getTotalAmount());
             return orderMapper.toOrderResponse(savedOrder);
         });
     }
@@ -230,8 +267,13 @@ public class OrderServiceImpl implements OrderService {
             });
         }
 
+        // Trả lại hàng đang giữ (nếu chưa thanh toán) — counter được cộng sau khi commit
+        stockReservationService.release(id);
+
         order.setStatus(OrderStatus.CANCELLED);
-        return orderMapper.toOrderResponse(orderRepository.save(order));
+        OrderResponse response = orderMapper.toOrderResponse(orderRepository.save(order));
+        runAfterCommit(() -> paymentAwaitRegistry.publishSettled(id));
+        return response;
     }
 
     @Override
@@ -255,28 +297,53 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * Triggered when payment webhook confirms success.
+     * Called by the outbox FulfillmentWorker after the payment webhook has committed.
      * THIS is the correct place to assign a physical Pack to each OrderItem.
-     * Flow: Payment confirmed → find STOCKED Pack for the product → set SOLD → link to item.
+     * Flow: Payment confirmed → claim STOCKED Packs (FOR UPDATE SKIP LOCKED) → SOLD → link to item.
+     * Idempotent: an order whose paymentStatus is no longer PENDING (or FAILED, i.e. a retried payment) is skipped (outbox retries / redelivery).
+     * Exception: an EXPIRED order (closed by the expiry job before the money arrived), or one whose stock hold
+     * lapsed before the money arrived, holds its stock again when it can, otherwise it is flagged
+     * REFUND_REQUIRED — see {@link #holdStockAgain}.
      */
-    @EventListener
+    @Override
     @Transactional
-    public void handlePaymentSuccess(PaymentSuccessEvent event) {
-        log.info("[EVENT] Handling PaymentSuccessEvent for Order ID: {}", event.getOrderId());
-        Order order = orderRepository.findById(event.getOrderId())
-                .orElseThrow(() -> new RuntimeException("Order not found with id: " + event.getOrderId()));
-
-        if (!PaymentStatus.PENDING.equals(order.getPaymentStatus())) {
+    public void fulfillPaidOrder(Integer orderId, String transactionId) {
+        log.info("[EVENT] Fulfilling paid Order ID: {}", orderId);
+        Order order = orderRepository.findByIdForUpdate(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
+
+        if (PaymentStatus.EXPIRED.equals(order.getPaymentStatus())) {
+            if (!holdStockAgain(order, transactionId)) {
+                return;
+            }
+        } else if (!PaymentStatus.PENDING.equals(order.getPaymentStatus())
+                && !PaymentStatus.FAILED.equals(order.getPaymentStatus())) {
             log.warn("[EVENT] Order {} already processed, skipping. paymentStatus={}",
                     order.getOrderId(), order.getPaymentStatus());
             return;
         }
 
+        // Hàng đã được giữ lúc tạo order. Giữ hàng hết hạn trước khi tiền về (TTL giữ hàng ngắn hơn hạn thanh
+        // toán của order) thì counter đã hứa phần đó cho người mua khác: phải giữ lại, không lấy "tồn trống"
+        if (stockReservationService.confirm(order.getOrderId()) == 0 && order.getOrderItems() != null
+                && !order.getOrderItems().isEmpty()) {
+            if (!stockReservationService.hasReservations(order.getOrderId())) {
+                log.warn("[EVENT] Order {} predates stock reservations, allocating from free stock", order.getOrderId());
+            } else if (holdStockAgain(order, transactionId)) {
+                stockReservationService.confirm(order.getOrderId());
+            } else {
+                return;
+            }
+        }
+
         order.setPaymentStatus(PaymentStatus.SUCCEEDED);
         order.setStatus(OrderStatus.PROCESSING);
 
-        // Assign physical Packs now that payment is confirmed
+        // Assign physical Packs / Cards now that payment is confirmed.
+        // Gom các dòng theo nguồn hàng: mỗi category / product một câu claim FOR UPDATE SKIP LOCKED
         if (order.getOrderItems() != null) {
+            Map<Integer, List<OrderItem>> packItems = new LinkedHashMap<>();
+            Map<Integer, List<OrderItem>> cardItems = new LinkedHashMap<>();
             for (OrderItem item : order.getOrderItems()) {
                 if (item.getPack() != null) {
                     // Pack already assigned (shouldn't happen, but safe guard)
@@ -287,67 +354,125 @@ public class OrderServiceImpl implements OrderService {
                     log.error("[EVENT] OrderItem {} has no product, cannot assign pack", item.getOrderItemId());
                     continue;
                 }
-
-                // ── GACHA_PACK: Find first available (STOCKED) Pack for this product's PackCategory ──
                 if (ProductType.GACHA_PACK.equals(item.getProduct().getProductType())
                         && item.getProduct().getPackCategory() != null) {
-                    List<Pack> stockedPacks = packRepository.findByPackCategoryPackCategoryIdAndStatus(
-                            item.getProduct().getPackCategory().getPackCategoryId(), PackStatus.STOCKED);
-
-                    if (!stockedPacks.isEmpty()) {
-                        Pack pack = stockedPacks.get(0);
-                        pack.setStatus(PackStatus.SOLD); // Skip RESERVED — go straight to SOLD
-                        packRepository.save(pack);
-                        item.setPack(pack);
-                        orderItemRepository.save(item);
+                    packItems.computeIfAbsent(item.getProduct().getPackCategory().getPackCategoryId(),
+                            k -> new ArrayList<>()).add(item);
+                } else if (ProductType.SINGLE_CARD.equals(item.getProduct().getProductType())) {
+                    cardItems.computeIfAbsent(item.getProduct().getProductId(), k -> new ArrayList<>()).add(item);
+                } else {
+                    log.warn("[EVENT] OrderItem {} has unknown productType or missing category/template, skipping pack assignment.",
+                            item.getOrderItemId());
+                }
+            }
+
+            List<OrderItem> allocated = new ArrayList<>();
+
+            // ── GACHA_PACK: STOCKED → SOLD, go straight to SOLD (skip RESERVED) ──
+            packItems.forEach((packCategoryId, items) -> {
+                List<Integer> packIds = packRepository.claimStockedPacks(packCategoryId, items.size());
+                for (int i = 0; i < items.size(); i++) {
+                    OrderItem item = items.get(i);
+                    if (i < packIds.size()) {
+                        item.setPack(packRepository.getReferenceById(packIds.get(i)));
+                        allocated.add(item);
                         log.info("[EVENT] Pack {} (GACHA_PACK product={}) assigned to OrderItem {} and marked SOLD",
-                                pack.getPackId(), item.getProduct().getProductId(), item.getOrderItemId());
+                                packIds.get(i), item.getProduct().getProductId(), item.getOrderItemId());
                     } else {
                         log.warn("[EVENT] No STOCKED packs for productId={}. OrderItem {} pending fulfillment.",
                                 item.getProduct().getProductId(), item.getOrderItemId());
                     }
+                }
+            });
 
-                // ── SINGLE_CARD: Find first READY physical Card for this product — FIFO ──
-                } else if (ProductType.SINGLE_CARD.equals(item.getProduct().getProductType())) {
-                    List<Card> readyCards = cardRepository
-                            .findByProduct_ProductIdAndStatusOrderByCreatedAtAsc(
-                                    item.getProduct().getProductId(), CardProductStatus.READY);
-
-                    if (!readyCards.isEmpty()) {
-                        Card card = readyCards.get(0);
-                        card.setStatus(CardProductStatus.SOLD);
-                        card.setSoldAt(java.time.LocalDateTime.now());
-                        cardRepository.save(card);
+            // ── SINGLE_CARD: READY → SOLD, oldest stock ships first (FIFO) ──
+            LocalDateTime soldAt = LocalDateTime.now();
+            cardItems.forEach((productId, items) -> {
+                List<Integer> cardIds = cardRepository.claimReadyCards(productId, items.size(), soldAt);
+                for (int i = 0; i < items.size(); i++) {
+                    OrderItem item = items.get(i);
+                    if (i < cardIds.size()) {
                         // Store card reference in OrderItem's customText as fallback
                         // (OrderItem.pack is designed for Pack — SINGLE_CARD uses Card directly)
-                        item.setCustomText("card_id:" + card.getCardId());
-                        orderItemRepository.save(item);
+                        item.setCustomText("card_id:" + cardIds.get(i));
+                        allocated.add(item);
                         log.info("[EVENT] Card {} (SINGLE_CARD product={}) assigned to OrderItem {} and marked SOLD",
-                                card.getCardId(), item.getProduct().getProductId(), item.getOrderItemId());
+                                cardIds.get(i), productId, item.getOrderItemId());
                     } else {
                         log.warn("[EVENT] No READY cards for SINGLE_CARD productId={}. OrderItem {} pending fulfillment.",
-                                item.getProduct().getProductId(), item.getOrderItemId());
+                                productId, item.getOrderItemId());
                     }
-
-                } else {
-                    log.warn("[EVENT] OrderItem {} has unknown productType or missing category/template, skipping pack assignment.",
-                            item.getOrderItemId());
                 }
-            }
+            });
+
+            orderItemRepository.saveAll(allocated);
         }
 
         order.setStatus(OrderStatus.COMPLETED);
         orderRepository.save(order);
         log.info("[EVENT] Order {} is now COMPLETED", order.getOrderId());
 
-        // Push real-time notification to user
+        // Push chỉ sau commit: transaction rollback (worker retry) thì không báo nhầm cho user
         Integer userId = order.getAccount() != null ? order.getAccount().getCustomerId() : null;
-        if (userId != null) {
-            wsNotificationService.pushToUser(userId,
-                    NotificationEvent.paymentConfirmed(userId, order.getOrderId(), event.getTransactionId()));
+        Integer paidOrderId = order.getOrderId();
+        BigDecimal totalAmount = order.getTotalAmount();
+        Runnable notify = () -> {
+            // Push real-time notification to user
+            if (userId != null) {
+                wsNotificationService.pushToUser(userId,
+                        NotificationEvent.paymentConfirmed(userId, paidOrderId, transactionId));
+            }
+            // Broadcast to admin
+            wsNotificationService.pushToTopic("admin.notifications",
+                    NotificationEvent.orderPaid(paidOrderId, totalAmount));
+            // Đánh thức client đang chờ ở /api/orders/{id}/await-payment (mọi node)
+            paymentAwaitRegistry.publishSettled(paidOrderId);
+        };
+        runAfterCommit(notify);
+    }
+
+    /**
+     * Tiền về sau khi hàng giữ chỗ đã được trả (job quá hạn huỷ order, hoặc reservation hết hạn thanh toán):
+     * tiền đã thu nên không được bỏ qua. Giữ hàng lại như lúc tạo order; đủ hàng thì order đi tiếp luồng
+     * fulfil bình thường, hết hàng thì huỷ order, đánh dấu REFUND_REQUIRED và báo admin để hoàn tiền.
+     *
+     * @return true nếu hàng được giữ lại và order cần fulfil tiếp
+     */
+    private boolean holdStockAgain(Order order, String transactionId) {
+        List<OrderItem> items = order.getOrderItems() != null ? order.getOrderItems() : List.of();
+        try {
+            stockReservationService.reserve(order.getOrderId(), items);
+            log.warn("[EVENT] Late payment {} for Order {} ({}): stock held again, fulfilling order",
+                    transactionId, order.getOrderId(), order.getPaymentStatus());
+            return true;
+        } catch (PackReservationException e) {
+            order.setStatus(OrderStatus.CANCELLED);
+            order.setPaymentStatus(PaymentStatus.REFUND_REQUIRED);
+            orderRepository.save(order);
+            log.error("[EVENT] Late payment {} for Order {} cannot be fulfilled ({}), flagged REFUND_REQUIRED",
+                    transactionId, order.getOrderId(), e.getMessage());
+
+            Integer userId = order.getAccount() != null ? order.getAccount().getCustomerId() : null;
+            Integer orderId = order.getOrderId();
+            runAfterCommit(() -> {
+                wsNotificationService.pushToTopic("admin.notifications",
+                        NotificationEvent.orderStatusChanged(userId, orderId, PaymentStatus.REFUND_REQUIRED.name()));
+                paymentAwaitRegistry.publishSettled(orderId);
+            });
+            return false;
+        }
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
-        // Broadcast to admin
-        wsNotificationService.pushToTopic("admin.notifications",
-                NotificationEvent.orderPaid(order.getOrderId(), order.getTotalAmount()));
     }
 }
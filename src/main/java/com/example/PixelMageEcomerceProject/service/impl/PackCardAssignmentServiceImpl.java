@@ -0,0 +1,265 @@
+package com.example.PixelMageEcomerceProject.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackCardAssignmentResponse;
+import com.example.PixelMageEcomerceProject.enums.PackStatus;
+import com.example.PixelMageEcomerceProject.repository.PackCardAssignmentRepository;
+import com.example.PixelMageEcomerceProject.repository.PackCardAssignmentRepository.ReadyCard;
+import com.example.PixelMageEcomerceProject.repository.PackCardAssignmentRepository.Slot;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackCardAssignmentService;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gắn card vật lý (READY, theo lô sản xuất) vào slot {@code PackDetail} mà generatePacks để trống.
+ *
+ * - Đọc một lần toàn bộ card READY của lô, xếp theo (template, card_id); quét slot trống theo trang pack.
+ * - Ghép trong heap theo thứ tự pack_id: một pack chỉ được gắn khi đủ card cho mọi slot trống của nó,
+ *   thiếu thì bỏ qua nguyên pack (không để pack gắn dở) và cộng vào báo cáo thiếu theo template.
+ *   Cùng dữ liệu → cùng kết quả; hết card thì dừng quét.
+ * - Ghi theo chunk {@code pack.assignment.chunk-size} pack, mỗi chunk một transaction gồm hai UPDATE có điều
+ *   kiện (card READY → PACKED, slot còn trống ← card). Lệch số dòng nghĩa là có thay đổi song song:
+ *   chunk rollback, các chunk khác vẫn ghi; chạy lại lượt sau sẽ ghép lại phần đó.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PackCardAssignmentServiceImpl implements PackCardAssignmentService {
+
+    private static final int MAX_CHUNK_SIZE = 10_000;
+    private static final int PACKS_PER_PAGE = 5_000;
+
+    private final PackCardAssignmentRepository packCardAssignmentRepository;
+    private final PackService packService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${pack.assignment.max-cards:200000}")
+    int maxCards;
+
+    @Value("${pack.assignment.chunk-size:2000}")
+    int defaultChunkSize;
+
+    @Override
+    public PackCardAssignmentResponse assignCards(String productionBatch, Integer packCategoryId, Integer chunkSize,
+            boolean dryRun) {
+        if (productionBatch == null || productionBatch.isBlank()) {
+            throw new IllegalArgumentException("productionBatch is required");
+        }
+        int chunk = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (chunk <= 0 || chunk > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        long startNanos = System.nanoTime();
+
+        List<ReadyCard> cards = packCardAssignmentRepository.findReadyCards(productionBatch, maxCards + 1);
+        if (cards.size() > maxCards) {
+            throw new IllegalArgumentException("Production batch " + productionBatch + " has more than " + maxCards
+                    + " READY cards, assign it in smaller batches");
+        }
+        Matching matching = match(cards, packCategoryId);
+
+        int chunksWritten = 0;
+        int packsConflicted = 0;
+        int slotsConflicted = 0;
+        if (!dryRun && matching.packsFilled > 0) {
+            TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+            for (int fromPack = 0; fromPack < matching.packsFilled; fromPack += chunk) {
+                int toPack = Math.min(matching.packsFilled, fromPack + chunk);
+                int from = fromPack == 0 ? 0 : matching.packEnds[fromPack - 1];
+                int to = matching.packEnds[toPack - 1];
+                try {
+                    chunkTransaction.executeWithoutResult(status -> writeChunk(matching, from, to));
+                    chunksWritten++;
+                } catch (IllegalStateException e) {
+                    packsConflicted += toPack - fromPack;
+                    slotsConflicted += to - from;
+                    for (int i = from; i < to; i++) {
+                        matching.stat(matching.templateIds[i]).assigned--;
+                    }
+                    log.warn("[PACK-ASSIGN] Batch {}: chunk of {} packs rolled back: {}", productionBatch,
+                            toPack - fromPack, e.getMessage());
+                }
+            }
+            if (chunksWritten > 0) {
+                packService.invalidatePackCaches(packCategoryId, List.of(PackStatus.STOCKED, PackStatus.RESERVED));
+            }
+        }
+
+        int slotsWritten = matching.slotsFilled - slotsConflicted;
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        log.info("[PACK-ASSIGN] Batch {}{}: {} cards, {} packs filled ({} slots), {} packs short, {} conflicted in {} ms",
+                productionBatch, dryRun ? " (dry run)" : "", cards.size(), matching.packsFilled - packsConflicted,
+                slotsWritten, matching.packsShort, packsConflicted, elapsedMs);
+
+        List<PackCardAssignmentResponse.TemplateAssignment> templates = new ArrayList<>();
+        matching.templates.forEach((templateId, stat) -> templates.add(
+                PackCardAssignmentResponse.TemplateAssignment.builder()
+                        .cardTemplateId(templateId)
+                        .cardsAvailable(stat.available)
+                        .cardsAssigned(stat.assigned)
+                        .cardsMissing(stat.missing)
+                        .build()));
+        return PackCardAssignmentResponse.builder()
+                .productionBatch(productionBatch)
+                .packCategoryId(packCategoryId)
+                .dryRun(dryRun)
+                .cardsAvailable(cards.size())
+                .packsScanned(matching.packsScanned)
+                .packsFilled(matching.packsFilled - packsConflicted)
+                .slotsFilled(slotsWritten)
+                .packsShort(matching.packsShort)
+                .slotsWithoutTemplate(matching.slotsWithoutTemplate)
+                .cardsLeftOver(cards.size() - slotsWritten)
+                .supplyExhausted(matching.supplyExhausted)
+                .chunksWritten(chunksWritten)
+                .packsConflicted(packsConflicted)
+                .elapsedMs(elapsedMs)
+                .templates(templates)
+                .build();
+    }
+
+    /** Phép ghép thuần trong heap; chỉ đọc slot từ DB theo trang. */
+    private Matching match(List<ReadyCard> cards, Integer packCategoryId) {
+        int size = cards.size();
+        Matching matching = new Matching(size);
+        // Card cùng template nằm liền nhau: template → {vị trí kế tiếp, hết}
+        int[] cardIds = new int[size];
+        Map<Integer, int[]> cursors = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ReadyCard card = cards.get(i);
+            int index = i;
+            cardIds[i] = card.cardId();
+            cursors.computeIfAbsent(card.cardTemplateId(), t -> new int[] { index, index })[1] = index + 1;
+            matching.stat(card.cardTemplateId()).available++;
+        }
+
+        int remaining = size;
+        int afterPackId = 0;
+        Map<Integer, Integer> need = new HashMap<>();
+        while (remaining > 0) {
+            List<Slot> page = packCardAssignmentRepository.findUnfilledSlots(packCategoryId, afterPackId, PACKS_PER_PAGE);
+            if (page.isEmpty()) {
+                break;
+            }
+            int start = 0;
+            while (start < page.size() && remaining > 0) {
+                int packId = page.get(start).packId();
+                int end = start;
+                boolean unmatched = false;
+                need.clear();
+                while (end < page.size() && page.get(end).packId() == packId) {
+                    Integer templateId = page.get(end).cardTemplateId();
+                    if (templateId == null) {
+                        unmatched = true;
+                        matching.slotsWithoutTemplate++;
+                    } else {
+                        need.merge(templateId, 1, Integer::sum);
+                    }
+                    end++;
+                }
+                matching.packsScanned++;
+                for (Map.Entry<Integer, Integer> entry : need.entrySet()) {
+                    int[] cursor = cursors.get(entry.getKey());
+                    int available = cursor == null ? 0 : cursor[1] - cursor[0];
+                    if (available < entry.getValue()) {
+                        unmatched = true;
+                        matching.stat(entry.getKey()).missing += entry.getValue() - available;
+                    }
+                }
+                if (unmatched) {
+                    matching.packsShort++;
+                } else {
+                    for (int i = start; i < end; i++) {
+                        Slot slot = page.get(i);
+                        int[] cursor = cursors.get(slot.cardTemplateId());
+                        matching.add(slot.packDetailId(), cardIds[cursor[0]++], slot.cardTemplateId());
+                        matching.stat(slot.cardTemplateId()).assigned++;
+                    }
+                    matching.packEnds[matching.packsFilled++] = matching.slotsFilled;
+                    remaining -= end - start;
+                }
+                start = end;
+            }
+            if (start < page.size()) {
+                matching.supplyExhausted = true;
+                break;
+            }
+            afterPackId = page.get(page.size() - 1).packId();
+        }
+        if (remaining == 0 && size > 0 && !matching.supplyExhausted) {
+            // Vừa hết card đúng cuối trang: còn pack trống phía sau hay không thì phải hỏi thêm một trang
+            matching.supplyExhausted = !packCardAssignmentRepository.findUnfilledSlots(packCategoryId, afterPackId, 1).isEmpty();
+        }
+        return matching;
+    }
+
+    private void writeChunk(Matching matching, int from, int to) {
+        int count = to - from;
+        Integer[] detailIds = new Integer[count];
+        Integer[] cardIds = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            detailIds[i] = matching.detailIds[from + i];
+            cardIds[i] = matching.cardIds[from + i];
+        }
+        int packed = packCardAssignmentRepository.markCardsPacked(cardIds, LocalDateTime.now());
+        if (packed != count) {
+            throw new IllegalStateException((count - packed) + " of " + count + " cards are no longer READY");
+        }
+        int filled = packCardAssignmentRepository.fillSlots(detailIds, cardIds);
+        if (filled != count) {
+            throw new IllegalStateException((count - filled) + " of " + count + " slots were filled concurrently");
+        }
+    }
+
+    /** Kết quả ghép: các mảng song song slot ← card (kèm template), và ranh giới từng pack để chia chunk. */
+    private static final class Matching {
+        final int[] detailIds;
+        final int[] cardIds;
+        final int[] templateIds;
+        final int[] packEnds;
+        final Map<Integer, TemplateStat> templates = new TreeMap<>();
+        int slotsFilled;
+        int packsFilled;
+        int packsScanned;
+        int packsShort;
+        int slotsWithoutTemplate;
+        boolean supplyExhausted;
+
+        Matching(int cards) {
+            this.detailIds = new int[cards];
+            this.cardIds = new int[cards];
+            this.templateIds = new int[cards];
+            this.packEnds = new int[cards];
+        }
+
+        void add(int detailId, int cardId, int templateId) {
+            detailIds[slotsFilled] = detailId;
+            cardIds[slotsFilled] = cardId;
+            templateIds[slotsFilled++] = templateId;
+        }
+
+        TemplateStat stat(Integer templateId) {
+            return templates.computeIfAbsent(templateId, t -> new TemplateStat());
+        }
+    }
+
+    private static final class TemplateStat {
+        int available;
+        int assigned;
+        int missing;
+    }
+}
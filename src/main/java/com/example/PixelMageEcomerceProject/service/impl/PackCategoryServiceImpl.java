@@ -2,8 +2,11 @@ package com.example.PixelMageEcomerceProject.service.impl;
 
 import com.example.PixelMageEcomerceProject.dto.request.PackCategoryRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.response.PackCategoryResponse;
+import com.example.PixelMageEcomerceProject.dto.response.PackOddsSimulationResponse;
 import com.example.PixelMageEcomerceProject.entity.CardTemplate;
 import com.example.PixelMageEcomerceProject.entity.PackCategory;
+import com.example.PixelMageEcomerceProject.gacha.PackOddsSimulator;
+import com.example.PixelMageEcomerceProject.gacha.PackSamplerRegistry;
 import com.example.PixelMageEcomerceProject.mapper.PackCategoryMapper;
 import com.example.PixelMageEcomerceProject.repository.CardTemplateRepository;
 import com.example.PixelMageEcomerceProject.repository.PackCategoryRepository;
@@ -14,8 +17,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,6 +31,8 @@ public class PackCategoryServiceImpl implements PackCategoryService {
     private final PackCategoryRepository packCategoryRepository;
     private final CardTemplateRepository cardTemplateRepository;
     private final PackCategoryMapper packCategoryMapper;
+    private final PackSamplerRegistry packSamplerRegistry;
+    private final PackOddsSimulator packOddsSimulator;
 
     @Override
     @Transactional
@@ -42,11 +50,24 @@ public class PackCategoryServiceImpl implements PackCategoryService {
         validateRequest(requestDTO);
         PackCategory category = packCategoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Pack Category not found"));
+        Object oddsBefore = oddsKey(category);
         mapDtoToEntity(requestDTO, category);
+        if (!oddsKey(category).equals(oddsBefore)) {
+            // Đổi riêng pool (bảng nối) không làm entity dirty → tự đẩy updated_at để sampler ở mọi node biết đã cũ
+            category.setUpdatedAt(LocalDateTime.now());
+            packSamplerRegistry.invalidate(id);
+        }
         PackCategory saved = packCategoryRepository.save(category);
         return packCategoryMapper.toResponse(saved);
     }
 
+    /** Những gì quyết định tỉ lệ rút thẻ của category. */
+    private static Object oddsKey(PackCategory category) {
+        Set<Integer> pool = category.getCardPools() == null ? Set.of()
+                : category.getCardPools().stream().map(CardTemplate::getCardTemplateId).collect(Collectors.toSet());
+        return List.of(Objects.toString(category.getRarityRates(), ""), Objects.toString(category.getCardsPerPack(), ""), pool);
+    }
+
     private void validateRequest(PackCategoryRequestDTO requestDTO) {
         if (requestDTO.getName() == null || requestDTO.getName().trim().isEmpty()) {
             throw new IllegalArgumentException("Tên Pack Category không được để trống.");
@@ -129,4 +150,13 @@ public class PackCategoryServiceImpl implements PackCategoryService {
         PackCategory saved = packCategoryRepository.save(category);
         return packCategoryMapper.toResponse(saved);
     }
+
+    @Override
+    public PackOddsSimulationResponse simulateOdds(Integer id, long packs, Long seed, List<Integer> horizons) {
+        // Không @Transactional: pool nạp sẵn bằng entity graph, mô phỏng vài giây không giữ connection DB
+        PackCategory category = packCategoryRepository.findWithCardPoolsByPackCategoryId(id)
+                .orElseThrow(() -> new RuntimeException("Pack Category not found"));
+        return packOddsSimulator.simulate(id, packSamplerRegistry.samplerFor(category), category.getCardPools(),
+                packs, seed, horizons);
+    }
 }
@@ -0,0 +1,307 @@
+package com.example.PixelMageEcomerceProject.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackGenerationJobResponse;
+import com.example.PixelMageEcomerceProject.entity.PackCategory;
+import com.example.PixelMageEcomerceProject.entity.PackGenerationJob;
+import com.example.PixelMageEcomerceProject.enums.PackGenerationJobStatus;
+import com.example.PixelMageEcomerceProject.enums.PackStatus;
+import com.example.PixelMageEcomerceProject.gacha.PackSampler;
+import com.example.PixelMageEcomerceProject.gacha.PackSamplerRegistry;
+import com.example.PixelMageEcomerceProject.repository.PackBulkRepository;
+import com.example.PixelMageEcomerceProject.repository.PackCategoryRepository;
+import com.example.PixelMageEcomerceProject.repository.PackGenerationJobRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackGenerationJobService;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sinh pack hàng loạt trên thread nền, thay cho vòng save từng pack / từng detail trong một transaction.
+ *
+ * - Mỗi chunk ({@code pack.generation.chunk-size} pack) là một transaction: cộng tiến độ job, một INSERT
+ *   multi-row cho packs, một INSERT unnest cho pack_details. Huỷ / node chết chỉ mất chunk đang ghi.
+ * - Template rút bằng {@link PackSampler} đã biên dịch của category (lấy một lần mỗi lượt chạy).
+ * - Cache pack / product bị invalidate một lần khi lượt chạy kết thúc (xong, huỷ hay lỗi).
+ * - Job QUEUED chưa ai chạy hoặc RUNNING quá {@code pack.generation.stale-ms} không cập nhật (node chết)
+ *   được lượt recovery định kỳ chạy tiếp.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PackGenerationJobServiceImpl implements PackGenerationJobService {
+
+    private static final int MAX_CHUNK_SIZE = 10_000;
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final PackGenerationJobRepository packGenerationJobRepository;
+    private final PackCategoryRepository packCategoryRepository;
+    private final PackBulkRepository packBulkRepository;
+    private final PackService packService;
+    private final PackSamplerRegistry packSamplerRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${pack.generation.threads:2}")
+    int threads;
+
+    @Value("${pack.generation.chunk-size:2000}")
+    int defaultChunkSize;
+
+    @Value("${pack.generation.max-quantity:1000000}")
+    int maxQuantity;
+
+    @Value("${pack.generation.stale-ms:300000}")
+    long staleMillis;
+
+    @Value("${pack.generation.recovery-enabled:true}")
+    boolean recoveryEnabled;
+
+    private ExecutorService executor;
+    private volatile boolean stopping;
+    // Job đã nằm trong hàng đợi của node này — recovery không submit lại
+    private final Set<Long> queuedLocally = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "pack-generation-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stopping = true; // job đang chạy dừng sau chunk hiện tại và trả về QUEUED
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public PackGenerationJobResponse startJob(Integer packCategoryId, Integer quantity, Integer chunkSize,
+            Integer createdByAccountId) {
+        if (quantity == null || quantity <= 0 || quantity > maxQuantity) {
+            throw new IllegalArgumentException("quantity must be between 1 and " + maxQuantity);
+        }
+        int chunk = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (chunk <= 0 || chunk > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        PackGenerationJob job = new TransactionTemplate(transactionManager).execute(status -> {
+            sampler(packCategoryId); // category / pool / rarity_rates hỏng thì báo ngay, không tạo job
+            LocalDateTime now = LocalDateTime.now();
+            PackGenerationJob created = new PackGenerationJob();
+            created.setPackCategoryId(packCategoryId);
+            created.setRequestedQuantity(quantity);
+            created.setGeneratedQuantity(0);
+            created.setChunkSize(chunk);
+            created.setStatus(PackGenerationJobStatus.QUEUED);
+            created.setCreatedByAccountId(createdByAccountId);
+            created.setCreatedAt(now);
+            created.setUpdatedAt(now);
+            return packGenerationJobRepository.save(created);
+        });
+        submit(job.getJobId());
+        log.info("[PACK-GEN] Job {} queued: {} packs of category {} in chunks of {}", job.getJobId(), quantity,
+                packCategoryId, chunk);
+        return toResponse(job);
+    }
+
+    @Override
+    public PackGenerationJobResponse getJob(Long jobId) {
+        return toResponse(findJob(jobId));
+    }
+
+    @Override
+    public List<PackGenerationJobResponse> getRecentJobs(Integer packCategoryId) {
+        List<PackGenerationJob> jobs = packCategoryId != null
+                ? packGenerationJobRepository.findTop50ByPackCategoryIdOrderByJobIdDesc(packCategoryId)
+                : packGenerationJobRepository.findTop50ByOrderByJobIdDesc();
+        return jobs.stream().map(this::toResponse).toList();
+    }
+
+    @Override
+    public PackGenerationJobResponse cancelJob(Long jobId) {
+        PackGenerationJob job = findJob(jobId);
+        if (packGenerationJobRepository.cancel(jobId, LocalDateTime.now()) == 0) {
+            throw new IllegalArgumentException("Pack generation job " + jobId + " is " + job.getStatus()
+                    + ", only QUEUED or RUNNING jobs can be cancelled");
+        }
+        return toResponse(findJob(jobId));
+    }
+
+    @Override
+    public PackGenerationJobResponse resumeJob(Long jobId) {
+        PackGenerationJob job = findJob(jobId);
+        LocalDateTime now = LocalDateTime.now();
+        if (packGenerationJobRepository.requeue(jobId, now.minus(Duration.ofMillis(staleMillis)), now) == 0) {
+            throw new IllegalArgumentException("Pack generation job " + jobId + " is " + job.getStatus()
+                    + " (" + job.getGeneratedQuantity() + "/" + job.getRequestedQuantity() + ") and cannot be resumed");
+        }
+        submit(jobId);
+        return toResponse(findJob(jobId));
+    }
+
+    @Scheduled(fixedDelayString = "${pack.generation.recovery-interval-ms:60000}",
+            initialDelayString = "${pack.generation.recovery-interval-ms:60000}")
+    public void recoverJobs() {
+        if (!recoveryEnabled || stopping) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(Duration.ofMillis(staleMillis));
+        for (Long jobId : packGenerationJobRepository.findRecoverableJobIds(staleBefore)) {
+            if (queuedLocally.contains(jobId)) {
+                continue;
+            }
+            // RUNNING bị bỏ dở → QUEUED; QUEUED thì requeue trả 0 nhưng vẫn submit, claim quyết định ai chạy
+            if (packGenerationJobRepository.requeue(jobId, staleBefore, now) > 0) {
+                log.warn("[PACK-GEN] Job {} was abandoned by its node, resuming", jobId);
+            }
+            submit(jobId);
+        }
+    }
+
+    private void submit(Long jobId) {
+        if (queuedLocally.add(jobId)) {
+            executor.execute(() -> run(jobId));
+        }
+    }
+
+    void run(Long jobId) {
+        queuedLocally.remove(jobId);
+        if (stopping || packGenerationJobRepository.claim(jobId, LocalDateTime.now()) == 0) {
+            return; // đã huỷ, đã xong hoặc node khác đã claim
+        }
+        PackGenerationJob job = findJob(jobId);
+        long startNanos = System.nanoTime();
+        int generated = job.getGeneratedQuantity();
+        int generatedThisRun = 0;
+        try {
+            PackSampler sampler = new TransactionTemplate(transactionManager)
+                    .execute(status -> sampler(job.getPackCategoryId()));
+            SplittableRandom random = new SplittableRandom();
+            TransactionTemplate chunkTransaction = new TransactionTemplate(transactionManager);
+            while (generated < job.getRequestedQuantity()) {
+                if (stopping) {
+                    packGenerationJobRepository.release(jobId, LocalDateTime.now());
+                    log.info("[PACK-GEN] Job {} released at {}/{} for shutdown", jobId, generated, job.getRequestedQuantity());
+                    return;
+                }
+                int count = Math.min(job.getChunkSize(), job.getRequestedQuantity() - generated);
+                int expected = generated;
+                Boolean written = chunkTransaction.execute(status -> writeChunk(job, sampler, random, expected, count));
+                if (!Boolean.TRUE.equals(written)) {
+                    log.info("[PACK-GEN] Job {} stopped at {}/{} (cancelled)", jobId, generated, job.getRequestedQuantity());
+                    return;
+                }
+                generated += count;
+                generatedThisRun += count;
+            }
+            packGenerationJobRepository.complete(jobId, LocalDateTime.now());
+            log.info("[PACK-GEN] Job {} completed: {} packs in {} ms", jobId, generatedThisRun,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (Exception e) {
+            String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+            log.error("[PACK-GEN] Job {} failed at {}/{}: {}", jobId, generated, job.getRequestedQuantity(), message);
+            packGenerationJobRepository.fail(jobId,
+                    message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message,
+                    LocalDateTime.now());
+        } finally {
+            if (generatedThisRun > 0) {
+                packService.invalidatePackCaches(job.getPackCategoryId(), List.of(PackStatus.STOCKED));
+            }
+        }
+    }
+
+    /**
+     * Một chunk: khoá dòng job và cộng tiến độ trước (huỷ chạy song song sẽ chờ chunk này commit rồi mới có
+     * hiệu lực), sau đó ghi packs + details.
+     * @return false nếu job không còn RUNNING ở đúng tiến độ đang chạy — không ghi gì
+     */
+    private boolean writeChunk(PackGenerationJob job, PackSampler sampler, SplittableRandom random,
+            int expectedGenerated, int count) {
+        LocalDateTime now = LocalDateTime.now();
+        if (packGenerationJobRepository.recordChunk(job.getJobId(), expectedGenerated, count, now) == 0) {
+            return false;
+        }
+        List<Integer> packIds = packBulkRepository.insertStockedPacks(job.getPackCategoryId(),
+                job.getCreatedByAccountId(), count, now);
+        int cardsPerPack = sampler.cardsPerPack();
+        int size = packIds.size() * cardsPerPack;
+        Integer[] detailPackIds = new Integer[size];
+        Integer[] templateIds = new Integer[size];
+        Integer[] positions = new Integer[size];
+        int i = 0;
+        for (Integer packId : packIds) {
+            for (int k = 0; k < cardsPerPack; k++, i++) {
+                detailPackIds[i] = packId;
+                templateIds[i] = sampler.draw(random);
+                positions[i] = k;
+            }
+        }
+        packBulkRepository.insertDetails(detailPackIds, templateIds, positions);
+        return true;
+    }
+
+    private PackSampler sampler(Integer packCategoryId) {
+        PackCategory category = packCategoryRepository.findById(packCategoryId)
+                .orElseThrow(() -> new IllegalArgumentException("PackCategory not found: " + packCategoryId));
+        return packSamplerRegistry.samplerFor(category);
+    }
+
+    private PackGenerationJob findJob(Long jobId) {
+        return packGenerationJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Pack generation job not found: " + jobId));
+    }
+
+    private PackGenerationJobResponse toResponse(PackGenerationJob job) {
+        int requested = job.getRequestedQuantity();
+        int generated = job.getGeneratedQuantity() != null ? job.getGeneratedQuantity() : 0;
+        Double packsPerSecond = null;
+        if (job.getStartedAt() != null && job.getUpdatedAt() != null && generated > 0) {
+            long millis = Duration.between(job.getStartedAt(), job.getUpdatedAt()).toMillis();
+            packsPerSecond = millis > 0 ? generated * 1000.0 / millis : null;
+        }
+        return PackGenerationJobResponse.builder()
+                .jobId(job.getJobId())
+                .packCategoryId(job.getPackCategoryId())
+                .status(job.getStatus())
+                .requestedQuantity(requested)
+                .generatedQuantity(generated)
+                .progressPercent(requested > 0 ? Math.round(generated * 10000.0 / requested) / 100.0 : 0.0)
+                .chunkSize(job.getChunkSize())
+                .packsPerSecond(packsPerSecond)
+                .createdByAccountId(job.getCreatedByAccountId())
+                .lastError(job.getLastError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .updatedAt(job.getUpdatedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+}
@@ -1,19 +1,19 @@
 package com.example.PixelMageEcomerceProject.service.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.PixelMageEcomerceProject.cache.CacheInvalidator;
 import com.example.PixelMageEcomerceProject.dto.request.PackRequestDTO;
 import com.example.PixelMageEcomerceProject.entity.Account;
 import com.example.PixelMageEcomerceProject.entity.Card;
@@ -22,6 +22,8 @@ import com.example.PixelMageEcomerceProject.entity.PackDetail;
 import com.example.PixelMageEcomerceProject.entity.Product;
 import com.example.PixelMageEcomerceProject.enums.CardProductStatus;
 import com.example.PixelMageEcomerceProject.enums.PackStatus;
+import com.example.PixelMageEcomerceProject.gacha.PackSampler;
+import com.example.PixelMageEcomerceProject.gacha.PackSamplerRegistry;
 import com.example.PixelMageEcomerceProject.repository.AccountRepository;
 import com.example.PixelMageEcomerceProject.repository.CardRepository;
 import com.example.PixelMageEcomerceProject.repository.PackDetailRepository;
@@ -49,17 +51,11 @@ public class PackServiceImpl implements PackService {
     private final CardRepository cardRepository;
     private final PackCategoryRepository packCategoryRepository;
     private final PackMapper packMapper;
+    private final CacheInvalidator cacheInvalidator;
+    private final PackSamplerRegistry packSamplerRegistry;
 
     @Override
     @Transactional
-    @Caching(evict = {
-        @CacheEvict(value = "packs",                        allEntries = true),
-        @CacheEvict(value = "packs-by-status",              allEntries = true),
-        @CacheEvict(value = "packs-by-product-status",      allEntries = true),
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public PackResponse createPack(PackRequestDTO requestDTO) {
         // Obsolete
         return null;
@@ -67,33 +63,17 @@ public class PackServiceImpl implements PackService {
 
     @Override
     @Transactional
-    @Caching(evict = {
-        @CacheEvict(value = "packs",                        allEntries = true),
-        @CacheEvict(value = "packs-by-status",              allEntries = true),
-        @CacheEvict(value = "packs-by-product-status",      allEntries = true),
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public List<PackResponse> generatePacks(Integer packCategoryId, Integer quantity) {
         com.example.PixelMageEcomerceProject.entity.PackCategory category = packCategoryRepository.findById(packCategoryId)
                 .orElseThrow(() -> new RuntimeException("PackCategory not found"));
 
-        List<com.example.PixelMageEcomerceProject.entity.CardTemplate> pool = category.getCardPools();
-        if (pool == null || pool.isEmpty()) {
-            throw new RuntimeException("This PackCategory has no CardTemplate pools assigned.");
-        }
-
-        Map<String, Integer> rarityRates;
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            rarityRates = mapper.readValue(category.getRarityRates(), new TypeReference<Map<String, Integer>>() {});
-        } catch (Exception e) {
-            throw new RuntimeException("Invalid rarity_rates JSON format in PackCategory.", e);
-        }
+        PackSampler sampler = packSamplerRegistry.samplerFor(category);
+        Map<Integer, com.example.PixelMageEcomerceProject.entity.CardTemplate> templatesById = category.getCardPools().stream()
+                .collect(Collectors.toMap(com.example.PixelMageEcomerceProject.entity.CardTemplate::getCardTemplateId,
+                        Function.identity(), (a, b) -> a));
 
         List<Pack> newlyGeneratedPacks = new ArrayList<>();
-        Random random = new Random();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
 
         for (int i = 0; i < quantity; i++) {
             Pack newPack = new Pack();
@@ -102,12 +82,11 @@ public class PackServiceImpl implements PackService {
             newPack.setPackDetails(new ArrayList<>());
             Pack savedPack = packRepository.save(newPack);
 
-            for (int k = 0; k < category.getCardsPerPack(); k++) {
-                com.example.PixelMageEcomerceProject.entity.CardTemplate selectedTemplate = rollRarityAndPickTemplate(rarityRates, pool, random);
-                
+            for (int k = 0; k < sampler.cardsPerPack(); k++) {
                 PackDetail pd = new PackDetail();
                 pd.setPack(savedPack);
-                pd.setCardTemplate(selectedTemplate);
+                pd.setCardTemplate(templatesById.get(sampler.draw(random)));
+                pd.setPositionIndex(k);
                 // card field is nullable because the physical card hasn't been scanned/assigned yet
                 packDetailRepository.save(pd);
                 
@@ -115,55 +94,22 @@ public class PackServiceImpl implements PackService {
             }
             newlyGeneratedPacks.add(savedPack);
         }
-        
-        return newlyGeneratedPacks.stream().map(packMapper::toResponse).toList();
-    }
+        // Cả lô chỉ gây một lần invalidation (sau commit)
+        invalidatePackCaches(packCategoryId, List.of(PackStatus.STOCKED));
 
-    private com.example.PixelMageEcomerceProject.entity.CardTemplate rollRarityAndPickTemplate(Map<String, Integer> rarityRates, List<com.example.PixelMageEcomerceProject.entity.CardTemplate> pool, Random random) {
-        // Roll rarity
-        int totalWeight = rarityRates.values().stream().mapToInt(Integer::intValue).sum();
-        if (totalWeight <= 0) totalWeight = 100;
-        
-        int roll = random.nextInt(totalWeight) + 1; // 1 to totalWeight
-        String selectedRarity = "COMMON";
-        int currentSum = 0;
-        
-        for (Map.Entry<String, Integer> entry : rarityRates.entrySet()) {
-            currentSum += entry.getValue();
-            if (roll <= currentSum) {
-                selectedRarity = entry.getKey();
-                break;
-            }
-        }
-        
-        // Filter pool by rarity
-        String finalRarity = selectedRarity;
-        List<com.example.PixelMageEcomerceProject.entity.CardTemplate> availableTemplates = pool.stream()
-            .filter(ct -> ct.getRarity().name().equalsIgnoreCase(finalRarity))
-            .toList();
-            
-        if (availableTemplates.isEmpty()) {
-            // fallback if no card of that rarity exists
-            availableTemplates = pool; 
-        }
-        
-        return availableTemplates.get(random.nextInt(availableTemplates.size()));
+        return newlyGeneratedPacks.stream().map(packMapper::toResponse).toList();
     }
 
     @Override
-    @Caching(evict = {
-        @CacheEvict(value = "packs",                        allEntries = true),
-        @CacheEvict(value = "packs-by-status",              allEntries = true),
-        @CacheEvict(value = "packs-by-product-status",      allEntries = true),
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public PackResponse updatePackStatus(Integer packId, PackStatus status) {
         Pack pack = packRepository.findById(packId)
                 .orElseThrow(() -> new RuntimeException("Pack not found: " + packId));
+        PackStatus previousStatus = pack.getStatus();
         pack.setStatus(status);
-        return packMapper.toResponse(packRepository.save(pack));
+        Pack saved = packRepository.save(pack);
+        invalidatePackCaches(categoryIdOf(pack),
+                previousStatus == null || previousStatus == status ? List.of(status) : List.of(previousStatus, status));
+        return packMapper.toResponse(saved);
     }
 
     @Override
@@ -190,15 +136,30 @@ public class PackServiceImpl implements PackService {
     }
 
     @Override
-    @Caching(evict = {
-        @CacheEvict(value = "packs",                        allEntries = true),
-        @CacheEvict(value = "packs-by-status",              allEntries = true),
-        @CacheEvict(value = "packs-by-product-status",      allEntries = true),
-        @CacheEvict(value = "products",                     allEntries = true),
-        @CacheEvict(value = "products-public",              allEntries = true),
-        @CacheEvict(value = "product-by-id",                allEntries = true)
-    })
     public void deletePack(Integer id) {
+        packRepository.findById(id).ifPresent(pack -> invalidatePackCaches(
+                categoryIdOf(pack), pack.getStatus() != null ? List.of(pack.getStatus()) : List.of()));
         packRepository.deleteById(id);
     }
+
+    /**
+     * Invalidation theo phạm vi: list tổng ("packs", "products", "products-public") bump generation;
+     * list theo status / category và product-by-id chỉ xoá đúng key của category + status bị ảnh hưởng.
+     */
+    @Override
+    public void invalidatePackCaches(Integer packCategoryId, Collection<PackStatus> statuses) {
+        cacheInvalidator.invalidateNamespaces("packs", "products", "products-public");
+        cacheInvalidator.evict("packs-by-status", statuses);
+        if (packCategoryId == null) {
+            cacheInvalidator.invalidateNamespaces("packs-by-product-status", "product-by-id");
+            return;
+        }
+        cacheInvalidator.evict("packs-by-product-status",
+                statuses.stream().map(status -> packCategoryId + "-" + status).toList());
+        cacheInvalidator.evict("product-by-id", productRepository.findProductIdsByPackCategoryId(packCategoryId));
+    }
+
+    private static Integer categoryIdOf(Pack pack) {
+        return pack.getPackCategory() != null ? pack.getPackCategory().getPackCategoryId() : null;
+    }
 }
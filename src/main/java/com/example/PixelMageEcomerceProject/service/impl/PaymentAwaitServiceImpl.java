@@ -0,0 +1,134 @@
+package com.example.PixelMageEcomerceProject.service.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.PixelMageEcomerceProject.dto.response.OrderPaymentState;
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+import com.example.PixelMageEcomerceProject.notification.PaymentAwaitRegistry;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentAwaitService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chờ kết quả thanh toán bằng request async của Servlet: thread Tomcat được trả về pool ngay, request được
+ * hoàn tất từ thread đã làm order settle (hoặc thread listener pub/sub) qua {@link PaymentAwaitRegistry}.
+ *
+ * Luôn đăng ký waiter trước rồi mới đọc trạng thái, để settle xảy ra giữa hai bước không bị lỡ.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentAwaitServiceImpl implements PaymentAwaitService {
+
+    private final PaymentAwaitRegistry paymentAwaitRegistry;
+
+    @Value("${payment.await.long-poll-timeout-ms:25000}")
+    private long longPollTimeoutMillis;
+
+    @Value("${payment.await.max-timeout-ms:60000}")
+    private long maxTimeoutMillis;
+
+    @Value("${payment.await.sse-timeout-ms:300000}")
+    private long sseTimeoutMillis;
+
+    @Override
+    public DeferredResult<ResponseEntity<ResponseBase<OrderPaymentState>>> awaitPayment(Integer orderId, Long timeoutMs) {
+        long timeout = timeoutMs == null ? longPollTimeoutMillis : Math.max(1000L, Math.min(timeoutMs, maxTimeoutMillis));
+        DeferredResult<ResponseEntity<ResponseBase<OrderPaymentState>>> result = new DeferredResult<>(timeout);
+
+        Runnable deregister = paymentAwaitRegistry.register(orderId,
+                state -> result.setResult(ResponseBase.ok(state, "Payment settled")));
+        OrderPaymentState current;
+        try {
+            current = requireState(orderId);
+        } catch (IllegalArgumentException e) {
+            if (deregister != null) {
+                deregister.run();
+            }
+            throw e;
+        }
+
+        if (deregister == null || current.isSettled()) {
+            // Đã có kết quả, hoặc node đã giữ quá nhiều waiter — trả ngay, client tự poll lại
+            if (deregister != null) {
+                deregister.run();
+            }
+            result.setResult(ResponseBase.ok(current, current.isSettled() ? "Payment settled" : "Payment pending"));
+            return result;
+        }
+
+        result.onTimeout(() -> result.setResult(ResponseBase.ok(
+                paymentAwaitRegistry.currentState(orderId).orElse(current), "Payment pending")));
+        result.onCompletion(deregister);
+        return result;
+    }
+
+    @Override
+    public SseEmitter streamPayment(Integer orderId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicReference<Runnable> deregister = new AtomicReference<>();
+
+        deregister.set(paymentAwaitRegistry.register(orderId, state -> {
+            if (finished.compareAndSet(false, true)) {
+                send(emitter, "payment", state);
+                emitter.complete();
+            }
+        }));
+        OrderPaymentState current;
+        try {
+            current = requireState(orderId);
+        } catch (IllegalArgumentException e) {
+            cleanup(deregister);
+            throw e;
+        }
+
+        emitter.onCompletion(() -> cleanup(deregister));
+        emitter.onTimeout(() -> {
+            cleanup(deregister);
+            emitter.complete();
+        });
+        emitter.onError(e -> cleanup(deregister));
+
+        if (finished.get()) {
+            return emitter; // đã settle trong lúc đọc trạng thái — event "payment" đã gửi
+        }
+        send(emitter, "status", current);
+        if ((current.isSettled() || deregister.get() == null) && finished.compareAndSet(false, true)) {
+            cleanup(deregister);
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private OrderPaymentState requireState(Integer orderId) {
+        return paymentAwaitRegistry.currentState(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + orderId));
+    }
+
+    private static void cleanup(AtomicReference<Runnable> deregister) {
+        Runnable r = deregister.getAndSet(null);
+        if (r != null) {
+            r.run();
+        }
+    }
+
+    private static void send(SseEmitter emitter, String eventName, OrderPaymentState state) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(state));
+        } catch (IOException | IllegalStateException e) {
+            // Client đã ngắt kết nối
+            log.debug("[PAYMENT-AWAIT] Cannot send {} for order {}: {}", eventName, state.orderId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -10,12 +10,15 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.example.PixelMageEcomerceProject.entity.Order;
 import com.example.PixelMageEcomerceProject.entity.Payment;
 import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.exceptions.PaymentNotFoundException;
+import com.example.PixelMageEcomerceProject.notification.PaymentAwaitRegistry;
 import com.example.PixelMageEcomerceProject.repository.OrderRepository;
 import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
 import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
@@ -41,6 +44,7 @@ public class PaymentServiceImpl implements PaymentService {
     private final PaymentGatewayStrategy activeGateway;
     private final PaymentMapper paymentMapper;
     private final ApplicationEventPublisher eventPublisher;
+    private final PaymentAwaitRegistry paymentAwaitRegistry;
 
     // // PaymentServiceImpl.java
     // public PaymentServiceImpl(PaymentRepository paymentRepository,
@@ -82,6 +86,12 @@ public class PaymentServiceImpl implements PaymentService {
 
         paymentRepository.save(payment);
 
+        // Thanh toán lại sau lần thất bại: order quay về chờ thanh toán để client chờ kết quả mới
+        if (PaymentStatus.FAILED.equals(order.getPaymentStatus())) {
+            order.setPaymentStatus(PaymentStatus.PENDING);
+            orderRepository.save(order);
+        }
+
         return result;
     }
 
@@ -126,6 +136,25 @@ public class PaymentServiceImpl implements PaymentService {
         return savedPayment;
     }
 
+    @Override
+    @Transactional
+    public void recordPaymentFailure(Integer orderId, String gatewayTransactionId, String reason) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> PaymentNotFoundException.forOrderId(orderId));
+
+        paymentRepository.findTopByOrder_OrderIdAndPaymentStatus(orderId, PaymentStatus.PENDING).ifPresent(payment -> {
+            if (gatewayTransactionId != null) {
+                payment.setGatewayTransactionId(gatewayTransactionId);
+            }
+            payment.setPaymentStatus(PaymentStatus.FAILED);
+            payment.setFailureReason(reason);
+            payment.setProcessedAt(LocalDateTime.now());
+            paymentRepository.save(payment);
+        });
+        markOrderFailed(order);
+        log.info("[WEBHOOK] Payment for order {} failed: {}", orderId, reason);
+    }
+
     @Override
     @Transactional
     public Payment updatePaymentStatus(Integer paymentId, String status, String failureReason) {
@@ -136,7 +165,31 @@ public class PaymentServiceImpl implements PaymentService {
         payment.setFailureReason(failureReason);
         payment.setProcessedAt(LocalDateTime.now());
 
-        return paymentRepository.save(payment);
+        Payment saved = paymentRepository.save(payment);
+        if (PaymentStatus.FAILED.equals(saved.getPaymentStatus()) && saved.getOrder() != null) {
+            markOrderFailed(saved.getOrder());
+        }
+        return saved;
+    }
+
+    // Chỉ order còn chờ thanh toán: order đã thanh toán / huỷ / quá hạn giữ nguyên trạng thái
+    private void markOrderFailed(Order order) {
+        if (PaymentStatus.PENDING.equals(order.getPaymentStatus()) || order.getPaymentStatus() == null) {
+            order.setPaymentStatus(PaymentStatus.FAILED);
+            orderRepository.save(order);
+        }
+        // Trạng thái cuối của lần thanh toán này: đánh thức long-poll / SSE đang chờ (mọi node) sau commit
+        Integer orderId = order.getOrderId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    paymentAwaitRegistry.publishSettled(orderId);
+                }
+            });
+        } else {
+            paymentAwaitRegistry.publishSettled(orderId);
+        }
     }
 
     @Override
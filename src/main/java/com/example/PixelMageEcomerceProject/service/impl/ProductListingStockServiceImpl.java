@@ -0,0 +1,55 @@
+package com.example.PixelMageEcomerceProject.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.PixelMageEcomerceProject.repository.ProductListingRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.ProductListingStockService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Job gom delta tồn kho vào read model product_listing (V15). Trigger packs / cards chỉ append delta nên
+ * transaction mua / mở pack không tranh row lock dòng listing; stock_count trễ tối đa
+ * {@code product-listing.stock-fold.interval-ms}. Nhiều node: advisory lock trong hàm SQL cho một node gom mỗi lúc.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductListingStockServiceImpl implements ProductListingStockService {
+
+    private final ProductListingRepository productListingRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${product-listing.stock-fold.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product-listing.stock-fold.batch-size:5000}")
+    private int batchSize;
+
+    @Override
+    @Scheduled(fixedDelayString = "${product-listing.stock-fold.interval-ms:2000}",
+            initialDelayString = "${product-listing.stock-fold.interval-ms:2000}")
+    public int foldStockDeltas() {
+        if (!enabled) {
+            return 0;
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int total = 0;
+        int batch;
+        do {
+            Integer folded = transactionTemplate.execute(status -> productListingRepository.foldStockDeltas(batchSize));
+            batch = folded != null ? folded : 0;
+            total += batch;
+        } while (batch == batchSize);
+
+        if (total > 0) {
+            log.debug("[PRODUCT-LISTING] Folded {} stock deltas", total);
+        }
+        return total;
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.PixelMageEcomerceProject.service.impl;
 
+import com.example.PixelMageEcomerceProject.cache.CacheInvalidator;
+import com.example.PixelMageEcomerceProject.cache.ProductPriceBook;
+import com.example.PixelMageEcomerceProject.dto.response.CardTemplateResponse;
 import com.example.PixelMageEcomerceProject.dto.response.ProductResponse;
 import com.example.PixelMageEcomerceProject.mapper.ProductMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
@@ -16,23 +21,31 @@ import com.example.PixelMageEcomerceProject.dto.request.ProductRequestDTO;
 import com.example.PixelMageEcomerceProject.entity.Product;
 import com.example.PixelMageEcomerceProject.entity.PackCategory;
 import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.entity.ProductListing;
 import com.example.PixelMageEcomerceProject.repository.ProductRepository;
 import com.example.PixelMageEcomerceProject.repository.PackCategoryRepository;
 import com.example.PixelMageEcomerceProject.repository.CardTemplateRepository;
 import com.example.PixelMageEcomerceProject.repository.PackRepository;
 import com.example.PixelMageEcomerceProject.repository.CardRepository;
+import com.example.PixelMageEcomerceProject.repository.ProductListingRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.CardStockMintingService;
 import com.example.PixelMageEcomerceProject.service.interfaces.ProductService;
 import com.example.PixelMageEcomerceProject.mapper.CardTemplateMapper;
 import com.example.PixelMageEcomerceProject.enums.PackStatus;
 import com.example.PixelMageEcomerceProject.enums.CardProductStatus;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class ProductServiceImpl implements ProductService {
 
+    private static final ObjectMapper PREVIEW_MAPPER = new ObjectMapper();
+    private static final TypeReference<List<CardTemplateResponse.Summary>> PREVIEW_TYPE = new TypeReference<>() {};
+
     private final ProductRepository productRepository;
     private final PackCategoryRepository packCategoryRepository;
     private final CardTemplateRepository cardTemplateRepository;
@@ -40,6 +53,9 @@ public class ProductServiceImpl implements ProductService {
     private final CardRepository cardRepository;
     private final ProductMapper productMapper;
     private final CardTemplateMapper cardTemplateMapper;
+    private final CacheInvalidator cacheInvalidator;
+    private final ProductListingRepository productListingRepository;
+    private final CardStockMintingService cardStockMintingService;
 
     private ProductResponse mapToEnrichedResponse(Product product) {
         ProductResponse res = productMapper.toProductResponse(product);
@@ -59,11 +75,25 @@ public class ProductServiceImpl implements ProductService {
         return res;
     }
 
+    // Danh sách dựng từ read model product_listing: stock / pool / preview đã tính sẵn, không query thêm
+    private ProductResponse mapListingToResponse(ProductListing listing) {
+        ProductResponse res = productMapper.toProductResponse(listing.getProduct());
+        res.setStockCount(listing.getStockCount());
+        res.setPoolSize(listing.getPoolSize());
+        if (listing.getPoolPreview() != null) {
+            try {
+                res.setPoolPreview(PREVIEW_MAPPER.readValue(listing.getPoolPreview(), PREVIEW_TYPE));
+            } catch (Exception e) {
+                log.warn("Invalid pool preview for product {}: {}", listing.getProductId(), e.getMessage());
+            }
+        }
+        return res;
+    }
+
     @Override
     @Caching(evict = {
         @CacheEvict(value = "products",     allEntries = true),
-        @CacheEvict(value = "products-public", allEntries = true),
-        @CacheEvict(value = "product-by-id", allEntries = true)
+        @CacheEvict(value = "products-public", allEntries = true)
     })
     public ProductResponse createProduct(ProductRequestDTO productRequestDTO) {
         Product product = new Product();
@@ -115,19 +145,15 @@ public class ProductServiceImpl implements ProductService {
             savedProduct.getCardTemplate() != null && 
             productRequestDTO.getInitialStock() != null && 
             productRequestDTO.getInitialStock() > 0) {
-            
-            for (int i = 0; i < productRequestDTO.getInitialStock(); i++) {
-                com.example.PixelMageEcomerceProject.entity.Card card = new com.example.PixelMageEcomerceProject.entity.Card();
-                card.setCardTemplate(savedProduct.getCardTemplate());
-                card.setProduct(savedProduct);
-                card.setCardCondition(com.example.PixelMageEcomerceProject.enums.CardCondition.NEW);
-                // Set explicitly to READY so it shows up as stock immediately on the marketplace
-                card.setStatus(CardProductStatus.READY); 
-                card.setSerialNumber("PKG-" + java.util.UUID.randomUUID().toString().substring(0, 8).toUpperCase());
-                cardRepository.save(card);
-            }
+
+            // READY ngay để hiện stock trên marketplace; serial cấp theo khối, INSERT theo lô
+            cardStockMintingService.mintReadyCards(savedProduct, productRequestDTO.getInitialStock(), null);
+            // Stock SINGLE_CARD đếm theo template → các product khác cùng template cũng đổi stock
+            cacheInvalidator.evict("product-by-id",
+                    productRepository.findProductIdsByCardTemplateId(savedProduct.getCardTemplate().getCardTemplateId()));
         }
         
+        cacheInvalidator.invalidateNamespaces(ProductPriceBook.NAMESPACE);
         return mapToEnrichedResponse(savedProduct);
     }
 
@@ -170,6 +196,7 @@ public class ProductServiceImpl implements ProductService {
         validateProductBeforeSave(existingProduct);
             
         Product updatedProduct = productRepository.save(existingProduct);
+        cacheInvalidator.invalidateNamespaces(ProductPriceBook.NAMESPACE);
         return mapToEnrichedResponse(updatedProduct);
     }
 
@@ -205,10 +232,11 @@ public class ProductServiceImpl implements ProductService {
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
         existingProduct.setIsActive(false);
         productRepository.save(existingProduct);
+        cacheInvalidator.invalidateNamespaces(ProductPriceBook.NAMESPACE);
     }
 
     @Override
-    @Cacheable(value = "product-by-id", key = "#id")
+    @Cacheable(value = "product-by-id", key = "#id", sync = true)
     public ProductResponse getProductById(Integer id) {
         return productRepository.findById(id)
                 .map(this::mapToEnrichedResponse)
@@ -216,28 +244,20 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
-    @Cacheable(value = "products")
+    @Cacheable(value = "products", sync = true)
     public List<ProductResponse> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::mapToEnrichedResponse)
+        return productListingRepository.findAllWithProduct().stream()
+                .map(this::mapListingToResponse)
                 .toList();
     }
 
     @Override
-    @Cacheable(value = "products-public")
+    @Cacheable(value = "products-public", sync = true)
     public List<ProductResponse> getPublicProducts() {
-        // Chỉ trả về sản phẩm có isVisible=true và isActive=true cho khách hàng, 
-        // VÀ các thành phần con của nó (Pack Category / Card Template) cũng phải đang hiển thị
-        return productRepository.findAllByIsVisibleTrueAndIsActiveTrue().stream()
-                .filter(p -> {
-                    if (p.getProductType() == ProductType.GACHA_PACK) {
-                        return p.getPackCategory() != null && p.getPackCategory().getIsActive();
-                    } else if (p.getProductType() == ProductType.SINGLE_CARD) {
-                        return p.getCardTemplate() != null && p.getCardTemplate().getActive() && p.getCardTemplate().getIsVisible();
-                    }
-                    return false;
-                })
-                .map(this::mapToEnrichedResponse)
+        // Chỉ trả về sản phẩm có isVisible=true và isActive=true cho khách hàng,
+        // VÀ các thành phần con của nó (Pack Category / Card Template) cũng phải đang hiển thị — lọc ngay trong query
+        return productListingRepository.findAllPublicWithProduct().stream()
+                .map(this::mapListingToResponse)
                 .toList();
     }
 
@@ -271,6 +291,8 @@ public class ProductServiceImpl implements ProductService {
         Product existingProduct = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
         existingProduct.setIsActive(existingProduct.getIsActive() == null || !existingProduct.getIsActive());
-        return mapToEnrichedResponse(productRepository.save(existingProduct));
+        Product savedProduct = productRepository.save(existingProduct);
+        cacheInvalidator.invalidateNamespaces(ProductPriceBook.NAMESPACE);
+        return mapToEnrichedResponse(savedProduct);
     }
 }
@@ -4,7 +4,9 @@ import com.example.PixelMageEcomerceProject.dto.request.RoleRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.response.RoleResponseDTO;
 import com.example.PixelMageEcomerceProject.entity.Role;
 import com.example.PixelMageEcomerceProject.mapper.RoleMapper;
+import com.example.PixelMageEcomerceProject.repository.AccountRepository;
 import com.example.PixelMageEcomerceProject.repository.RoleRepository;
+import com.example.PixelMageEcomerceProject.security.service.TokenVersionService;
 import com.example.PixelMageEcomerceProject.service.interfaces.RoleService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -19,6 +21,8 @@ public class RoleServiceImpl implements RoleService {
 
     private final RoleRepository roleRepository;
     private final RoleMapper roleMapper;
+    private final AccountRepository accountRepository;
+    private final TokenVersionService tokenVersionService;
 
     @Override
     @Transactional
@@ -43,9 +47,15 @@ public class RoleServiceImpl implements RoleService {
             throw new RuntimeException("Role name already exists: " + roleRequestDTO.getRoleName());
         }
 
+        boolean renamed = !existingRole.getRoleName().equals(roleRequestDTO.getRoleName());
         existingRole.setRoleName(roleRequestDTO.getRoleName());
+        RoleResponseDTO response = roleMapper.toResponse(roleRepository.save(existingRole));
 
-        return roleMapper.toResponse(roleRepository.save(existingRole));
+        // Role đổi tên → authority trong JWT đã phát hành không còn đúng, thu hồi token của mọi account thuộc role
+        if (renamed) {
+            accountRepository.findCustomerIdsByRoleId(roleId).forEach(tokenVersionService::bump);
+        }
+        return response;
     }
 
     @Override
@@ -5,23 +5,52 @@ import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.service.model.InitPaymentResult;
 import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
 import com.example.PixelMageEcomerceProject.service.model.PaymentStrategyRequest;
+import com.example.PixelMageEcomerceProject.service.model.ReconciliationCandidate;
 import com.example.PixelMageEcomerceProject.service.model.WebhookResult;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Component("sepay")
 @Slf4j
 @Primary
 public class SEPayGatewayimpl implements PaymentGatewayStrategy {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    // Biên dịch một lần; CASE_INSENSITIVE thay cho toUpperCase() mỗi request
+    private static final Pattern PIXELMAGE_ORDER_REF = Pattern.compile("PIXELMAGE_?ORD_?(\\d{1,10})", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SHORT_ORDER_REF = Pattern.compile("\\bORD_?(\\d{1,10})", Pattern.CASE_INSENSITIVE);
+    // gatewayTransactionId do initPayment sinh: SEPAY_{orderId}_{epochMillis}
+    private static final Pattern TRANSACTION_REF = Pattern.compile("SEPAY_(\\d{1,10})_(\\d{1,19})");
+    // transaction_date của SEPay theo giờ Việt Nam
+    private static final ZoneId SEPAY_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter SEPAY_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_PAGES = 20;
 
     @Value("${sepay.bank-account:0703376647}")
     private String bankAccount;
@@ -29,6 +58,20 @@ public class SEPayGatewayimpl implements PaymentGatewayStrategy {
     @Value("${sepay.bank-code:MB}")
     private String bankCode;
 
+    @Value("${sepay.api-url:https://my.sepay.vn/userapi}")
+    private String apiUrl;
+
+    @Value("${sepay.api-key:}")
+    private String apiKey;
+
+    @Value("${sepay.reconcile.batch-size:500}")
+    private int reconcileBatchSize;
+
+    @Value("${sepay.reconcile.page-size:1000}")
+    private int pageSize;
+
+    private final RestTemplate restTemplate = createRestTemplate();
+
     @Override
     public InitPaymentResult initPayment(PaymentStrategyRequest request) {
         log.info("[SEPay] initPayment for order {}", request.getOrderId());
@@ -50,58 +93,25 @@ public class SEPayGatewayimpl implements PaymentGatewayStrategy {
                 .build();
     }
 
-
-    public SEPayGatewayimpl(org.springframework.data.redis.core.RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
-    }
-
     @Override
     public WebhookResult handleWebhook(Map<String, String> payload) {
         String content = payload.getOrDefault("content", "");
         String amountStr = payload.getOrDefault("transferAmount", "0");
         String sepayId = payload.getOrDefault("id", "unknown");
 
-        log.info("[SEPay] Processing webhook: content={}, amount={}, id={}", content, amountStr, sepayId);
-
-        // ID đơn hàng từ content
-        // Ngân hàng thường bỏ dấu _ nên: PIXELMAGE_ORD_6 → PIXELMAGEORD6
-        // Regex hỗ trợ cả 2 dạng: PIXELMAGE_ORD_6, PIXELMAGEORD6, ORD_6, ORD6
-        Integer orderId = null;
-        try {
-            String upperContent = content.toUpperCase();
-            java.util.regex.Matcher matcher;
-
-            // Pattern 1: PIXELMAGE_ORD_6 hoặc PIXELMAGEORD6
-            matcher = java.util.regex.Pattern.compile("PIXELMAGE[_]?ORD[_]?(\\d+)").matcher(upperContent);
-            if (matcher.find()) {
-                orderId = Integer.parseInt(matcher.group(1));
-            }
+        log.debug("[SEPay] Processing webhook: content={}, amount={}, id={}", content, amountStr, sepayId);
 
-            // Pattern 2: dự phòng ORD_6 hoặc ORD6
-            if (orderId == null) {
-                matcher = java.util.regex.Pattern.compile("\\bORD[_]?(\\d+)").matcher(upperContent);
-                if (matcher.find()) {
-                    orderId = Integer.parseInt(matcher.group(1));
-                }
-            }
-
-            log.info("[SEPay] Parsed orderId={} from content: {}", orderId, content);
-        } catch (Exception e) {
-            log.error("[SEPay] Failed to parse orderId from content: {}", content);
-        }
-
-        if (sepayId != null) {
-            String idempotencyKey = "sepay:webhook:" + sepayId;
-            Boolean isNew = redisTemplate.opsForValue().setIfAbsent(idempotencyKey, "processed", java.time.Duration.ofHours(24));
-
-            if (Boolean.FALSE.equals(isNew)) {
-                log.info("[SEPay] Duplicate webhook detected for SEPay ID: {} — skipping", sepayId);
-                return WebhookResult.builder()
-                        .success(true)
-                        .status(PaymentStatus.SUCCEEDED)
-                        .message("Duplicate webhook skipped")
-                        .build();
-            }
+        // Trùng lặp đã được chặn ở webhook inbox (dedupe theo id SEPay) trước khi tới đây
+        Integer orderId = parseOrderId(content);
+        log.info("[SEPay] Parsed orderId={} from content: {}", orderId, content);
+        if (orderId == null) {
+            // Chuyển khoản không phải cho đơn hàng (hoặc khách ghi sai nội dung)
+            return WebhookResult.builder()
+                    .success(false)
+                    .status(PaymentStatus.FAILED)
+                    .message("No order reference in transfer content")
+                    .gatewayTransactionId(sepayId)
+                    .build();
         }
 
         return WebhookResult.builder()
@@ -114,6 +124,35 @@ public class SEPayGatewayimpl implements PaymentGatewayStrategy {
                 .build();
     }
 
+    /**
+     * ID đơn hàng từ nội dung chuyển khoản.
+     * Ngân hàng thường bỏ dấu _ nên: PIXELMAGE_ORD_6 → PIXELMAGEORD6
+     * Hỗ trợ: PIXELMAGE_ORD_6, PIXELMAGEORD6, dự phòng ORD_6 / ORD6; null nếu không có.
+     */
+    public static Integer parseOrderId(String content) {
+        if (content == null || content.isEmpty()) {
+            return null;
+        }
+        Matcher matcher = PIXELMAGE_ORDER_REF.matcher(content);
+        if (!matcher.find()) {
+            matcher = SHORT_ORDER_REF.matcher(content);
+            if (!matcher.find()) {
+                return null;
+            }
+        }
+        try {
+            return Integer.valueOf(matcher.group(1));
+        } catch (NumberFormatException e) {
+            log.error("[SEPay] Order id out of range in content: {}", content);
+            return null;
+        }
+    }
+
+    @Override
+    public String webhookEventId(Map<String, String> payload) {
+        return payload.get("id");
+    }
+
     @Override
     public boolean verifySignature(Map<String, String> payload) {
         // Implement SEPay signature check
@@ -122,9 +161,98 @@ public class SEPayGatewayimpl implements PaymentGatewayStrategy {
 
     @Override
     public PaymentStatus pollStatus(String gatewayTransactionId) {
-        // Here we could call SEPay API to check if bank transfer is received for this transaction.
-        log.info("[SEPay] pollStatus for transaction {}", gatewayTransactionId);
-        return PaymentStatus.PENDING;
+        Matcher matcher = gatewayTransactionId != null ? TRANSACTION_REF.matcher(gatewayTransactionId) : null;
+        if (matcher == null || !matcher.matches()) {
+            return PaymentStatus.PENDING;
+        }
+        LocalDateTime createdAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(matcher.group(2))),
+                ZoneId.systemDefault());
+        ReconciliationCandidate candidate = new ReconciliationCandidate(null, Integer.valueOf(matcher.group(1)),
+                gatewayTransactionId, null, createdAt);
+        return reconcile(List.of(candidate)).isEmpty() ? PaymentStatus.PENDING : PaymentStatus.SUCCEEDED;
+    }
+
+    @Override
+    public int reconcileBatchSize() {
+        return reconcileBatchSize;
+    }
+
+    /**
+     * Chuyển khoản không gắn với mã giao dịch nào của mình nên không hỏi từng payment: liệt kê tiền vào tài khoản
+     * từ lúc payment cũ nhất của lô (một request / trang, keyset since_id) rồi khớp nội dung với orderId.
+     */
+    @Override
+    public List<Map<String, String>> reconcile(List<ReconciliationCandidate> candidates) {
+        if (candidates.isEmpty() || apiKey == null || apiKey.isBlank()) {
+            return List.of();
+        }
+        Set<Integer> orderIds = candidates.stream().map(ReconciliationCandidate::orderId).collect(Collectors.toSet());
+        LocalDateTime since = candidates.stream().map(ReconciliationCandidate::createdAt)
+                .min(Comparator.naturalOrder()).orElseThrow()
+                .atZone(ZoneId.systemDefault()).withZoneSameInstant(SEPAY_ZONE).toLocalDateTime()
+                .minusMinutes(1);
+
+        List<Map<String, String>> settled = new ArrayList<>();
+        Long sinceId = null;
+        for (int page = 0; page < MAX_PAGES; page++) {
+            JsonNode transactions = listTransactions(since, sinceId);
+            long maxId = sinceId != null ? sinceId - 1 : 0;
+            for (JsonNode transaction : transactions) {
+                maxId = Math.max(maxId, transaction.path("id").asLong());
+                Integer orderId = parseOrderId(transaction.path("transaction_content").asText(""));
+                if (orderId != null && orderIds.contains(orderId)
+                        && new BigDecimal(transaction.path("amount_in").asText("0")).signum() > 0) {
+                    settled.add(toWebhookPayload(transaction));
+                }
+            }
+            if (transactions.size() < pageSize) {
+                break;
+            }
+            sinceId = maxId + 1;
+        }
+        log.info("[SEPay] Reconciled {} orders against bank transfers since {}: {} settled",
+                orderIds.size(), since, settled.size());
+        return settled;
+    }
+
+    private JsonNode listTransactions(LocalDateTime since, Long sinceId) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(apiUrl + "/transactions/list")
+                .queryParam("account_number", bankAccount)
+                .queryParam("transaction_date_min", SEPAY_DATE.format(since))
+                .queryParam("limit", pageSize);
+        if (sinceId != null) {
+            uri.queryParam("since_id", sinceId);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(apiKey);
+        URI target = uri.encode().build().toUri();
+        JsonNode body = restTemplate.exchange(target, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class).getBody();
+        if (body == null || body.path("status").asInt() != 200) {
+            throw new IllegalStateException("SEPay transactions/list failed: " + body);
+        }
+        return body.path("transactions");
+    }
+
+    // Cùng tên field với webhook SEPay: handleWebhook và dedupe theo id dùng chung
+    private static Map<String, String> toWebhookPayload(JsonNode transaction) {
+        Map<String, String> payload = new HashMap<>();
+        payload.put("id", transaction.path("id").asText());
+        payload.put("gateway", transaction.path("bank_brand_name").asText(""));
+        payload.put("transactionDate", transaction.path("transaction_date").asText(""));
+        payload.put("accountNumber", transaction.path("account_number").asText(""));
+        payload.put("content", transaction.path("transaction_content").asText(""));
+        payload.put("transferType", "in");
+        payload.put("transferAmount", new BigDecimal(transaction.path("amount_in").asText("0")).stripTrailingZeros().toPlainString());
+        payload.put("referenceCode", transaction.path("reference_number").asText(""));
+        payload.put("reconciled", "true");
+        return payload;
+    }
+
+    private static RestTemplate createRestTemplate() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(5000);
+        factory.setReadTimeout(15000);
+        return new RestTemplate(factory);
     }
 
     @Override
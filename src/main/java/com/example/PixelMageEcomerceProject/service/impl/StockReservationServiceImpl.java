@@ -0,0 +1,386 @@
+package com.example.PixelMageEcomerceProject.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.PixelMageEcomerceProject.entity.OrderItem;
+import com.example.PixelMageEcomerceProject.entity.Product;
+import com.example.PixelMageEcomerceProject.entity.StockReservation;
+import com.example.PixelMageEcomerceProject.enums.CardProductStatus;
+import com.example.PixelMageEcomerceProject.enums.PackStatus;
+import com.example.PixelMageEcomerceProject.enums.ProductType;
+import com.example.PixelMageEcomerceProject.enums.ReservationStatus;
+import com.example.PixelMageEcomerceProject.exceptions.PackReservationException;
+import com.example.PixelMageEcomerceProject.exceptions.RedisUnavailableException;
+import com.example.PixelMageEcomerceProject.repository.CardRepository;
+import com.example.PixelMageEcomerceProject.repository.PackRepository;
+import com.example.PixelMageEcomerceProject.repository.StockReservationRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.StockReservationService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giữ hàng lúc checkout bằng counter tồn kho trên Redis, mirror trong bảng stock_reservations.
+ *
+ * - Counter {@code stock:{avail}:<stockKey>} = tồn vật lý (pack STOCKED / card READY) − tổng HELD,
+ *   dựng lại từ Postgres khi thiếu và sống {@code stock.reservation.counter-ttl-ms} — hết TTL là tự
+ *   đồng bộ lại với thay đổi tồn kho ngoài luồng order (sinh pack, bind NFC, ...).
+ * - Trừ / cộng bằng Lua nhiều key: cả order được giữ hoặc không dòng nào; hash tag {avail} để mọi
+ *   counter cùng slot khi chạy Redis Cluster. Hàng nghìn người mua cùng một product chỉ tranh nhau
+ *   trên Redis — người hết hàng bị từ chối trước khi chạm vào dòng packs / cards nào.
+ * - Unit vật lý vẫn được cấp phát lúc thanh toán (PackStatus / CardProductStatus như cũ); counter đảm
+ *   bảo tổng HELD không vượt tồn kho nên lúc đó luôn còn unit để cấp.
+ * - Giữa lúc đổi counter và lúc transaction commit, Postgres chưa thấy thay đổi: lượng đang giữ dở
+ *   ({@code reserving:}) và đang trả dở ({@code releasing:}) được ghi kèm trên Redis cho tới khi
+ *   transaction kết thúc, và bị trừ khi dựng lại counter — dựng lại đúng lúc đó không cộng trùng.
+ *   Lệch còn lại chỉ theo chiều thấp hơn thực tế (bán chậm tới lần dựng sau), không oversell.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private static final String PREFIX_COUNTER = "stock:{avail}:";
+    private static final String PREFIX_RESERVING = "stock:{avail}:reserving:"; // đã trừ counter, mirror chưa commit
+    private static final String PREFIX_RELEASING = "stock:{avail}:releasing:"; // mirror đã / sắp RELEASED, chưa cộng trả
+    // Node chết giữa chừng thì lượng dở tự hết hạn; tới lúc đó counter dựng lại chỉ thấp hơn thực tế
+    private static final long PENDING_TTL_MILLIS = 600_000;
+    private static final String KEY_PACK_CATEGORY = "pack-category:";
+    private static final String KEY_PRODUCT = "product:";
+
+    // KEYS = n counter + n reserving; ARGV = n số lượng + TTL lượng dở
+    // 0 = đã trừ; i > 0 = key thứ i không đủ hàng; -i = key thứ i chưa có counter
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local n = #KEYS / 2 "
+                    + "for i = 1, n do "
+                    + "  local v = redis.call('GET', KEYS[i]) "
+                    + "  if not v then return -i end "
+                    + "  if tonumber(v) < tonumber(ARGV[i]) then return i end "
+                    + "end "
+                    + "for i = 1, n do "
+                    + "  redis.call('DECRBY', KEYS[i], ARGV[i]) "
+                    + "  redis.call('INCRBY', KEYS[n + i], ARGV[i]) "
+                    + "  redis.call('PEXPIRE', KEYS[n + i], ARGV[n + 1]) "
+                    + "end "
+                    + "return 0",
+            Long.class);
+
+    // KEYS = n releasing; ARGV = n số lượng + TTL lượng dở
+    private static final RedisScript<Long> MARK_RELEASING_SCRIPT = new DefaultRedisScript<>(
+            "local n = #KEYS "
+                    + "for i = 1, n do "
+                    + "  redis.call('INCRBY', KEYS[i], ARGV[i]) "
+                    + "  redis.call('PEXPIRE', KEYS[i], ARGV[n + 1]) "
+                    + "end "
+                    + "return 0",
+            Long.class);
+
+    // Transaction kết thúc: KEYS = n counter + n lượng dở (reserving / releasing); ARGV = n số lượng + cờ
+    // cộng trả counter ('1': reserve rollback / release commit). Counter đã hết TTL thì không cộng: lần
+    // dựng lại tiếp theo đọc đúng từ Postgres
+    private static final RedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "local n = #KEYS / 2 "
+                    + "for i = 1, n do "
+                    + "  if ARGV[n + 1] == '1' and redis.call('EXISTS', KEYS[i]) == 1 then "
+                    + "    redis.call('INCRBY', KEYS[i], ARGV[i]) "
+                    + "  end "
+                    + "  if redis.call('DECRBY', KEYS[n + i], ARGV[i]) <= 0 then redis.call('DEL', KEYS[n + i]) end "
+                    + "end "
+                    + "return 0",
+            Long.class);
+
+    private final StockReservationRepository reservationRepository;
+    private final PackRepository packRepository;
+    private final CardRepository cardRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${stock.reservation.ttl-ms:900000}")
+    private long reservationTtlMillis;
+
+    @Value("${stock.reservation.counter-ttl-ms:60000}")
+    private long counterTtlMillis;
+
+    @Value("${stock.reservation.expiry.enabled:true}")
+    private boolean expiryEnabled;
+
+    @Value("${stock.reservation.expiry.batch-size:500}")
+    private int expiryBatchSize;
+
+    // Một thread mỗi node dựng lại counter của một stockKey — tránh dồn COUNT(*) khi counter hot hết TTL
+    private final Map<String, Object> initLocks = new ConcurrentHashMap<>();
+
+    @Override
+    public void reserve(Integer orderId, List<OrderItem> items) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        Map<String, String> productNames = new LinkedHashMap<>();
+        List<StockReservation> reservations = new ArrayList<>();
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(reservationTtlMillis));
+
+        for (OrderItem item : items) {
+            String stockKey = stockKey(item.getProduct());
+            if (stockKey == null) {
+                continue; // Product thiếu category / template — không có nguồn hàng để giữ
+            }
+            int quantity = item.getQuantity() != null && item.getQuantity() > 0 ? item.getQuantity() : 1;
+            quantities.merge(stockKey, quantity, Integer::sum);
+            productNames.putIfAbsent(stockKey, item.getProduct().getName());
+
+            StockReservation reservation = new StockReservation();
+            reservation.setOrderId(orderId);
+            reservation.setProductId(item.getProduct().getProductId());
+            reservation.setStockKey(stockKey);
+            reservation.setQuantity(quantity);
+            reservation.setStatus(ReservationStatus.HELD);
+            reservation.setExpiresAt(expiresAt);
+            reservations.add(reservation);
+        }
+        if (reservations.isEmpty()) {
+            return;
+        }
+
+        decrementCounters(quantities, productNames);
+        // Order rollback → mirror rollback theo, counter phải được cộng trả; commit → mirror đã thấy được
+        whenCompleted(committed -> settle(PREFIX_RESERVING, quantities, !committed),
+                () -> settle(PREFIX_RESERVING, quantities, false));
+        reservationRepository.saveAll(reservations);
+        log.info("[STOCK] Order {} holds {} until {}", orderId, quantities, expiresAt);
+    }
+
+    @Override
+    @Transactional
+    public int confirm(Integer orderId) {
+        List<StockReservation> held = reservationRepository.lockHeldByOrderId(orderId);
+        held.forEach(r -> r.setStatus(ReservationStatus.CONFIRMED));
+        reservationRepository.saveAll(held);
+        return held.size();
+    }
+
+    @Override
+    public boolean hasReservations(Integer orderId) {
+        return reservationRepository.existsByOrderId(orderId);
+    }
+
+    @Override
+    @Transactional
+    public int release(Integer orderId) {
+        List<StockReservation> held = reservationRepository.lockHeldByOrderId(orderId);
+        if (held.isEmpty()) {
+            return 0;
+        }
+        held.forEach(r -> r.setStatus(ReservationStatus.RELEASED));
+        reservationRepository.saveAll(held);
+        Map<String, Integer> quantities = sumByStockKey(held);
+        returnAfterCommit(quantities);
+        log.info("[STOCK] Order {} released {}", orderId, quantities);
+        return held.size();
+    }
+
+    @Override
+    @Transactional
+    public int releaseAll(List<Integer> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        List<StockReservation> held = reservationRepository.lockHeldByOrderIds(orderIds);
+        if (held.isEmpty()) {
+            return 0;
+        }
+        held.forEach(r -> r.setStatus(ReservationStatus.RELEASED));
+        reservationRepository.saveAll(held);
+        Map<String, Integer> quantities = sumByStockKey(held);
+        returnAfterCommit(quantities);
+        log.info("[STOCK] {} orders released {}", orderIds.size(), quantities);
+        return held.size();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${stock.reservation.expiry.interval-ms:30000}",
+            initialDelayString = "${stock.reservation.expiry.interval-ms:30000}")
+    public int releaseExpired() {
+        if (!expiryEnabled) {
+            return 0;
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int total = 0;
+        int batch;
+        do {
+            Integer released = transactionTemplate.execute(status -> {
+                List<StockReservation> expired = reservationRepository.lockExpired(
+                        LocalDateTime.now(), PageRequest.of(0, expiryBatchSize));
+                expired.forEach(r -> r.setStatus(ReservationStatus.EXPIRED));
+                reservationRepository.saveAll(expired);
+                Map<String, Integer> quantities = sumByStockKey(expired);
+                returnAfterCommit(quantities);
+                return expired.size();
+            });
+            batch = released != null ? released : 0;
+            total += batch;
+        } while (batch == expiryBatchSize);
+
+        if (total > 0) {
+            log.info("[STOCK] Released {} expired reservations", total);
+        }
+        return total;
+    }
+
+    static String stockKey(Product product) {
+        if (product == null) {
+            return null;
+        }
+        if (ProductType.GACHA_PACK.equals(product.getProductType()) && product.getPackCategory() != null) {
+            return KEY_PACK_CATEGORY + product.getPackCategory().getPackCategoryId();
+        }
+        // SINGLE_CARD được cấp phát theo product_id (findByProduct_ProductIdAndStatus...)
+        if (ProductType.SINGLE_CARD.equals(product.getProductType())) {
+            return KEY_PRODUCT + product.getProductId();
+        }
+        return null;
+    }
+
+    private void decrementCounters(Map<String, Integer> quantities, Map<String, String> productNames) {
+        List<String> stockKeys = new ArrayList<>(quantities.keySet());
+        List<String> keys = keys(quantities, PREFIX_COUNTER, PREFIX_RESERVING);
+        Object[] args = args(quantities, String.valueOf(PENDING_TTL_MILLIS));
+
+        // Mỗi vòng dựng thêm tối đa một counter thiếu
+        for (int attempt = 0; attempt <= keys.size(); attempt++) {
+            Long result;
+            try {
+                result = redisTemplate.execute(RESERVE_SCRIPT, keys, args);
+            } catch (Exception e) {
+                log.error("[STOCK] Redis unavailable while reserving {}: {}", quantities, e.getMessage());
+                throw new RedisUnavailableException("Hệ thống tạm thời không khả dụng. Vui lòng thử lại sau.");
+            }
+            if (result == null) {
+                throw new RedisUnavailableException("Hệ thống tạm thời không khả dụng. Vui lòng thử lại sau.");
+            }
+            if (result == 0) {
+                return;
+            }
+            if (result > 0) {
+                String stockKey = stockKeys.get((int) (result - 1));
+                log.info("[STOCK] Out of stock: {} (requested {})", stockKey, quantities.get(stockKey));
+                throw new PackReservationException(
+                        "Sản phẩm '" + productNames.get(stockKey) + "' không còn đủ hàng.");
+            }
+            initCounter(stockKeys.get((int) (-result - 1)));
+        }
+        throw new PackReservationException("Không thể giữ hàng lúc này. Vui lòng thử lại.");
+    }
+
+    private void initCounter(String stockKey) {
+        String key = PREFIX_COUNTER + stockKey;
+        synchronized (initLocks.computeIfAbsent(stockKey, k -> new Object())) {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                return; // thread / node khác vừa dựng xong
+            }
+            // reserving đọc trước Postgres: hold đã trừ counter cũ mà chưa commit không bị bỏ sót.
+            // releasing đọc sau: lượng trả đã commit mà chưa cộng vào counter không bị cộng trùng
+            long reserving = pendingQuantity(PREFIX_RESERVING + stockKey);
+            long free = physicalStock(stockKey) - reservationRepository.sumHeldQuantity(stockKey);
+            long releasing = pendingQuantity(PREFIX_RELEASING + stockKey);
+            long available = Math.max(0, free - reserving - releasing);
+            redisTemplate.opsForValue().setIfAbsent(key, String.valueOf(available), Duration.ofMillis(counterTtlMillis));
+            log.debug("[STOCK] Counter {} initialised to {}", stockKey, available);
+        }
+    }
+
+    private long physicalStock(String stockKey) {
+        if (stockKey.startsWith(KEY_PACK_CATEGORY)) {
+            Integer packCategoryId = Integer.valueOf(stockKey.substring(KEY_PACK_CATEGORY.length()));
+            return packRepository.countByPackCategory_PackCategoryIdAndStatus(packCategoryId, PackStatus.STOCKED);
+        }
+        Integer productId = Integer.valueOf(stockKey.substring(KEY_PRODUCT.length()));
+        return cardRepository.countByProduct_ProductIdAndStatus(productId, CardProductStatus.READY);
+    }
+
+    private long pendingQuantity(String key) {
+        String raw = redisTemplate.opsForValue().get(key);
+        return raw != null ? Math.max(0, Long.parseLong(raw)) : 0;
+    }
+
+    /** Trả hàng: ghi lượng đang trả dở ngay, commit xong mới cộng vào counter; rollback thì chỉ xoá lượng dở. */
+    private void returnAfterCommit(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.execute(MARK_RELEASING_SCRIPT, keys(quantities, PREFIX_RELEASING),
+                    args(quantities, String.valueOf(PENDING_TTL_MILLIS)));
+        } catch (Exception e) {
+            log.warn("[STOCK] Cannot mark {} as releasing: {}", quantities, e.getMessage());
+        }
+        whenCompleted(committed -> settle(PREFIX_RELEASING, quantities, committed),
+                () -> settle(PREFIX_RELEASING, quantities, true));
+    }
+
+    private void settle(String pendingPrefix, Map<String, Integer> quantities, boolean returnToCounter) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.execute(SETTLE_SCRIPT, keys(quantities, PREFIX_COUNTER, pendingPrefix),
+                    args(quantities, returnToCounter ? "1" : "0"));
+        } catch (Exception e) {
+            // Counter thấp hơn thực tế tới khi hết TTL và được dựng lại — chỉ bán chậm, không oversell
+            log.warn("[STOCK] Cannot settle {} on Redis counters: {}", quantities, e.getMessage());
+        }
+    }
+
+    private static List<String> keys(Map<String, Integer> quantities, String... prefixes) {
+        List<String> keys = new ArrayList<>(quantities.size() * prefixes.length);
+        for (String prefix : prefixes) {
+            quantities.keySet().forEach(stockKey -> keys.add(prefix + stockKey));
+        }
+        return keys;
+    }
+
+    private static Object[] args(Map<String, Integer> quantities, String last) {
+        List<String> args = new ArrayList<>(quantities.size() + 1);
+        quantities.values().forEach(quantity -> args.add(String.valueOf(quantity)));
+        args.add(last);
+        return args.toArray();
+    }
+
+    private static Map<String, Integer> sumByStockKey(List<StockReservation> reservations) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        reservations.forEach(r -> quantities.merge(r.getStockKey(), r.getQuantity(), Integer::sum));
+        return quantities;
+    }
+
+    private static void whenCompleted(Consumer<Boolean> callback, Runnable withoutTransaction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (withoutTransaction != null) {
+                withoutTransaction.run();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
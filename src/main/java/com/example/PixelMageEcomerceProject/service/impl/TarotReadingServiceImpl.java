@@ -77,7 +77,7 @@ public class TarotReadingServiceImpl implements TarotReadingService {
     private static final String EXPLORE_REDIS_KEY_PREFIX = "explore:session:";
 
     @Override
-    @Cacheable("spreads")
+    @Cacheable(value = "spreads", sync = true)
     public List<SpreadResponse> getAllSpreads() {
         return spreadMapper.toResponses(spreadRepository.findAll());
     }
@@ -4,21 +4,26 @@ import java.math.BigDecimal;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
-import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestTemplate;
 
 import com.example.PixelMageEcomerceProject.config.VNPayConfig;
 import com.example.PixelMageEcomerceProject.entity.Order;
@@ -26,14 +31,16 @@ import com.example.PixelMageEcomerceProject.entity.Payment;
 import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.event.PaymentSuccessEvent;
-import com.example.PixelMageEcomerceProject.exceptions.RedisUnavailableException;
 import com.example.PixelMageEcomerceProject.repository.OrderRepository;
 import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
 import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
 import com.example.PixelMageEcomerceProject.service.interfaces.VNPayService;
 import com.example.PixelMageEcomerceProject.service.model.InitPaymentResult;
 import com.example.PixelMageEcomerceProject.service.model.PaymentStrategyRequest;
+import com.example.PixelMageEcomerceProject.service.model.ReconciliationCandidate;
 import com.example.PixelMageEcomerceProject.service.model.WebhookResult;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -44,18 +51,36 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
 
+    // vnp_TxnRef = "{orderId}-{random}" (xem createPaymentUrl)
+    private static final Pattern TXN_REF = Pattern.compile("(\\d{1,9})-");
+    // gatewayTransactionId do initPayment sinh: VNPAY_INIT_{vnp_TxnRef}_{vnp_CreateDate} — đủ để gọi querydr
+    private static final Pattern INIT_TRANSACTION = Pattern.compile("VNPAY_INIT_(\\d{1,9}-\\d+)_(\\d{14})");
+    private static final TimeZone VNPAY_TIME_ZONE = TimeZone.getTimeZone("Etc/GMT+7");
+    private static final String VNP_VERSION = "2.1.0";
+
     private final VNPayConfig vnPayConfig;
     private final PaymentRepository paymentRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
     private final ApplicationEventPublisher eventPublisher;
     private final OrderRepository orderRepository; // Keeping it temporarily just for lookup, but plan said remove.
+    private final PaymentService paymentService;
     // Wait, if I remove OrderRepo, how do I find the Order to save Payment?
     // Payment entity has a relationship with Order. I need Order object.
     // I can use orderRepository.getReferenceById if I have the ID.
 
+    // API truy vấn giao dịch (querydr) dùng khi đối soát
+    @Value("${vnpay.api-url:https://sandbox.vnpayment.vn/merchant_webapi/api/transaction}")
+    private String apiUrl;
+
+    @Value("${vnpay.server-ip:127.0.0.1}")
+    private String serverIp;
+
+    private final RestTemplate restTemplate = createRestTemplate();
+
     @Override
     public InitPaymentResult initPayment(PaymentStrategyRequest request) {
-        String paymentUrl = createPaymentUrl(request.getOrderId(),
+        String txnRef = request.getOrderId() + "-" + VNPayConfig.getRandomNumber(8);
+        Calendar createdAt = Calendar.getInstance(VNPAY_TIME_ZONE);
+        String paymentUrl = createPaymentUrl(txnRef, createdAt,
                 request.getAmount().intValue(),
                 request.getDescription() != null ? request.getDescription() : "Thanh toan don hang PixelMage",
                 request.getIpAddress());
@@ -63,15 +88,20 @@ public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
         return InitPaymentResult.builder()
                 .paymentUrl(paymentUrl)
                 .isRedirect(true)
-                .gatewayTransactionId("VNPAY_INIT_" + request.getOrderId() + "_" + System.currentTimeMillis())
+                .gatewayTransactionId("VNPAY_INIT_" + txnRef + "_" + formatDate(createdAt))
                 .build();
     }
 
     @Override
     public String createPaymentUrl(Integer orderId, int amount, String orderInfo, String ipAddress) {
-        String vnp_Version = "2.1.0";
+        return createPaymentUrl(orderId.toString() + "-" + VNPayConfig.getRandomNumber(8),
+                Calendar.getInstance(VNPAY_TIME_ZONE), amount, orderInfo, ipAddress);
+    }
+
+    private String createPaymentUrl(String vnp_TxnRef, Calendar createdAt, int amount, String orderInfo,
+            String ipAddress) {
+        String vnp_Version = VNP_VERSION;
         String vnp_Command = "pay";
-        String vnp_TxnRef = orderId.toString() + "-" + VNPayConfig.getRandomNumber(8);
         String vnp_IpAddr = ipAddress;
         String vnp_TmnCode = vnPayConfig.getVnp_TmnCode();
 
@@ -89,13 +119,12 @@ public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
         vnp_Params.put("vnp_ReturnUrl", vnPayConfig.getVnp_ReturnUrl());
         vnp_Params.put("vnp_IpAddr", vnp_IpAddr);
 
-        Calendar cld = Calendar.getInstance(TimeZone.getTimeZone("Etc/GMT+7"));
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
-        String vnp_CreateDate = formatter.format(cld.getTime());
+        Calendar cld = (Calendar) createdAt.clone();
+        String vnp_CreateDate = formatDate(cld);
         vnp_Params.put("vnp_CreateDate", vnp_CreateDate);
 
         cld.add(Calendar.MINUTE, 15);
-        String vnp_ExpireDate = formatter.format(cld.getTime());
+        String vnp_ExpireDate = formatDate(cld);
         vnp_Params.put("vnp_ExpireDate", vnp_ExpireDate);
 
         List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
@@ -151,24 +180,16 @@ public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
             return WebhookResult.builder().success(false).message("Missing vnp_TxnRef").build();
         }
 
-        Integer orderId = Integer.parseInt(txnRef.split("-")[0]);
+        Matcher txnRefMatcher = TXN_REF.matcher(txnRef);
+        if (!txnRefMatcher.lookingAt()) {
+            return WebhookResult.builder().success(false).message("Invalid vnp_TxnRef").build();
+        }
+        Integer orderId = Integer.valueOf(txnRefMatcher.group(1));
         String transactionNo = payload.get("vnp_TransactionNo");
         String responseCode = payload.get("vnp_ResponseCode");
 
-        // Idempotency check
-        String idempotencyKey = "payment:vnpay:" + transactionNo;
-        try {
-            Boolean isNew = redisTemplate.opsForValue().setIfAbsent(idempotencyKey, "processed", Duration.ofHours(24));
-            if (Boolean.FALSE.equals(isNew)) {
-                log.info("[VNPAY] Duplicate IPN detected for TransactionNo: {} — skipping", transactionNo);
-                return WebhookResult.builder().success(true).status(PaymentStatus.SUCCEEDED).message("Confirm Success")
-                        .build();
-            }
-        } catch (Exception e) {
-            log.error("[VNPAY] Redis unavailable during idempotency check: {}", e.getMessage());
-            throw new RedisUnavailableException("Dịch vụ thanh toán tạm thời không khả dụng. Vui lòng thử lại sau.");
-        }
-
+        // Trùng lặp đã được chặn ở webhook inbox (dedupe theo vnp_TxnRef + vnp_TransactionNo) trước khi tới đây;
+        // worker retry / admin replay phải chạy lại trọn vẹn nên không giữ thêm key dedupe nào ở đây
         if ("00".equals(responseCode)) {
             Order order = orderRepository.findById(orderId).orElse(null);
             if (order != null) {
@@ -186,6 +207,11 @@ public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
             }
         }
 
+        // Thất bại / khách huỷ: ghi FAILED để client đang chờ nhận kết quả cuối thay vì chờ tới timeout
+        if (orderRepository.existsById(orderId)) {
+            String gatewayTransactionId = transactionNo == null || "0".equals(transactionNo) ? null : "VNPAY_" + transactionNo;
+            paymentService.recordPaymentFailure(orderId, gatewayTransactionId, "VNPay response code " + responseCode);
+        }
         return WebhookResult.builder().success(true).status(PaymentStatus.FAILED).message("Payment failed").build();
     }
 
@@ -202,7 +228,114 @@ public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
 
     @Override
     public PaymentStatus pollStatus(String gatewayTransactionId) {
-        return PaymentStatus.PENDING; // VNPay doesn't easily support simple polling without complex API calls
+        Map<String, String> transaction = queryTransaction(gatewayTransactionId);
+        if (transaction == null || !"00".equals(transaction.get("vnp_ResponseCode"))) {
+            return PaymentStatus.PENDING;
+        }
+        return switch (String.valueOf(transaction.get("vnp_TransactionStatus"))) {
+            case "00" -> PaymentStatus.SUCCEEDED;
+            case "01" -> PaymentStatus.PENDING;   // chưa hoàn tất
+            case "07" -> PaymentStatus.REQUIRES_ACTION; // nghi ngờ gian lận
+            default -> PaymentStatus.FAILED;
+        };
+    }
+
+    @Override
+    public int reconcileBatchSize() {
+        return 1; // querydr chỉ nhận một vnp_TxnRef mỗi request
+    }
+
+    @Override
+    public List<Map<String, String>> reconcile(List<ReconciliationCandidate> candidates) {
+        List<Map<String, String>> settled = new ArrayList<>();
+        for (ReconciliationCandidate candidate : candidates) {
+            Map<String, String> transaction = queryTransaction(candidate.gatewayTransactionId());
+            if (transaction != null && "00".equals(transaction.get("vnp_ResponseCode"))
+                    && "00".equals(transaction.get("vnp_TransactionStatus"))) {
+                settled.add(toIpnPayload(transaction));
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * querydr cho một giao dịch đã khởi tạo qua initPayment; null nếu gatewayTransactionId không theo định dạng đó.
+     * Chữ ký của response được kiểm tra trước khi trả về.
+     */
+    private Map<String, String> queryTransaction(String gatewayTransactionId) {
+        Matcher matcher = gatewayTransactionId != null ? INIT_TRANSACTION.matcher(gatewayTransactionId) : null;
+        if (matcher == null || !matcher.matches() || apiUrl == null || apiUrl.isBlank()) {
+            return null;
+        }
+        String txnRef = matcher.group(1);
+        String requestId = UUID.randomUUID().toString().replace("-", "");
+        String createDate = formatDate(Calendar.getInstance(VNPAY_TIME_ZONE));
+        String orderInfo = "Truy van giao dich " + txnRef;
+
+        Map<String, String> request = new LinkedHashMap<>();
+        request.put("vnp_RequestId", requestId);
+        request.put("vnp_Version", VNP_VERSION);
+        request.put("vnp_Command", "querydr");
+        request.put("vnp_TmnCode", vnPayConfig.getVnp_TmnCode());
+        request.put("vnp_TxnRef", txnRef);
+        request.put("vnp_OrderInfo", orderInfo);
+        request.put("vnp_TransactionDate", matcher.group(2));
+        request.put("vnp_CreateDate", createDate);
+        request.put("vnp_IpAddr", serverIp);
+        request.put("vnp_SecureHash", VNPayConfig.hmacSHA512(vnPayConfig.getVnp_HashSecret(), String.join("|",
+                requestId, VNP_VERSION, "querydr", vnPayConfig.getVnp_TmnCode(), txnRef, matcher.group(2),
+                createDate, serverIp, orderInfo)));
+
+        JsonNode body = restTemplate.postForObject(apiUrl, request, JsonNode.class);
+        if (body == null) {
+            throw new IllegalStateException("VNPay querydr returned no body for " + txnRef);
+        }
+        Map<String, String> response = new HashMap<>();
+        body.fields().forEachRemaining(field -> response.put(field.getKey(), field.getValue().asText()));
+        String expected = VNPayConfig.hmacSHA512(vnPayConfig.getVnp_HashSecret(), String.join("|",
+                field(response, "vnp_ResponseId"), field(response, "vnp_Command"), field(response, "vnp_ResponseCode"),
+                field(response, "vnp_Message"), field(response, "vnp_TmnCode"), field(response, "vnp_TxnRef"),
+                field(response, "vnp_Amount"), field(response, "vnp_BankCode"), field(response, "vnp_PayDate"),
+                field(response, "vnp_TransactionNo"), field(response, "vnp_TransactionType"),
+                field(response, "vnp_TransactionStatus"), field(response, "vnp_OrderInfo"),
+                field(response, "vnp_PromotionCode"), field(response, "vnp_PromotionAmount")));
+        if (!expected.equalsIgnoreCase(response.get("vnp_SecureHash"))) {
+            throw new IllegalStateException("VNPay querydr response signature mismatch for " + txnRef);
+        }
+        log.info("[VNPAY] querydr {}: responseCode={}, transactionStatus={}", txnRef,
+                response.get("vnp_ResponseCode"), response.get("vnp_TransactionStatus"));
+        return response;
+    }
+
+    // Dạng IPN, ký lại bằng hash secret của mình: đi qua verifySignature / handleWebhook như IPN thật
+    private Map<String, String> toIpnPayload(Map<String, String> transaction) {
+        Map<String, String> payload = new HashMap<>();
+        for (String field : List.of("vnp_TmnCode", "vnp_TxnRef", "vnp_Amount", "vnp_BankCode", "vnp_PayDate",
+                "vnp_TransactionNo", "vnp_TransactionStatus", "vnp_OrderInfo")) {
+            String value = transaction.get(field);
+            if (value != null && !value.isEmpty()) {
+                payload.put(field, value);
+            }
+        }
+        payload.put("vnp_ResponseCode", "00");
+        payload.put("vnp_SecureHash", VNPayConfig.hashAllFields(payload, vnPayConfig.getVnp_HashSecret()));
+        return payload;
+    }
+
+    private static String field(Map<String, String> response, String name) {
+        String value = response.get(name);
+        return value != null ? value : "";
+    }
+
+    private static String formatDate(Calendar calendar) {
+        return new SimpleDateFormat("yyyyMMddHHmmss").format(calendar.getTime());
+    }
+
+    private static RestTemplate createRestTemplate() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(5000);
+        factory.setReadTimeout(15000);
+        return new RestTemplate(factory);
     }
 
     @Override
@@ -246,6 +379,10 @@ public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
     }
 
     private void savePaymentRecord(Order order, String transactionNo, String amountStr) {
+        // Replay của cùng IPN: payment đã ghi ở lần trước, chỉ phát lại event (fulfil tự bỏ qua order đã xử lý)
+        if (paymentRepository.findByGatewayTransactionId("VNPAY_" + transactionNo).isPresent()) {
+            return;
+        }
         Payment payment = new Payment();
         payment.setOrder(order);
         payment.setGatewayTransactionId("VNPAY_" + transactionNo);
@@ -257,6 +394,17 @@ public class VNPayGatewayImpl implements VNPayService, PaymentGatewayStrategy {
         paymentRepository.save(payment);
     }
 
+    // vnp_TransactionNo = "0" với giao dịch lỗi / bị huỷ: một mình nó làm mọi IPN thất bại trùng key
+    @Override
+    public String webhookEventId(Map<String, String> payload) {
+        String txnRef = payload.get("vnp_TxnRef");
+        if (txnRef == null) {
+            return null;
+        }
+        String transactionNo = payload.get("vnp_TransactionNo");
+        return transactionNo != null ? txnRef + ":" + transactionNo : txnRef;
+    }
+
     @Override
     public PaymentGateway getGatewayType() {
         return PaymentGateway.VNPAY;
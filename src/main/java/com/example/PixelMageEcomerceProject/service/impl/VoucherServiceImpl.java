@@ -3,7 +3,6 @@ package com.example.PixelMageEcomerceProject.service.impl;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
@@ -12,6 +11,8 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.PixelMageEcomerceProject.dto.response.VoucherResponse;
 import com.example.PixelMageEcomerceProject.entity.Voucher;
 import com.example.PixelMageEcomerceProject.repository.VoucherRepository;
+import com.example.PixelMageEcomerceProject.serial.SerialNumberGenerator;
+import com.example.PixelMageEcomerceProject.serial.SerialSequence;
 import com.example.PixelMageEcomerceProject.service.interfaces.VoucherService;
 import com.example.PixelMageEcomerceProject.mapper.VoucherMapper;
 
@@ -26,11 +27,12 @@ public class VoucherServiceImpl implements VoucherService {
 
     private final VoucherRepository voucherRepository;
     private final VoucherMapper voucherMapper;
+    private final SerialNumberGenerator serialNumberGenerator;
 
     @Override
     public VoucherResponse createVoucher(Integer userId) {
         Voucher voucher = new Voucher();
-        voucher.setCode(UUID.randomUUID().toString().replace("-", "").toUpperCase().substring(0, 8));
+        voucher.setCode(serialNumberGenerator.next(SerialSequence.VOUCHER));
         voucher.setDiscountPct(10);
         voucher.setMaxDiscountVnd(20000);
         voucher.setOwnerId(userId);
@@ -0,0 +1,16 @@
+package com.example.PixelMageEcomerceProject.service.interfaces;
+
+import java.util.List;
+
+import com.example.PixelMageEcomerceProject.entity.Product;
+
+public interface CardStockMintingService {
+
+    /**
+     * Tạo {@code quantity} card READY của product SINGLE_CARD, mỗi card một serial mới.
+     * Chạy trong transaction của caller.
+     *
+     * @return serial của các card vừa tạo, theo thứ tự cấp
+     */
+    List<String> mintReadyCards(Product product, int quantity, String productionBatch);
+}
@@ -0,0 +1,20 @@
+package com.example.PixelMageEcomerceProject.service.interfaces;
+
+public interface OrderExpiryService {
+
+    /**
+     * @param orders       số order PENDING bị huỷ (status CANCELLED, paymentStatus EXPIRED)
+     * @param payments     số payment PENDING chuyển EXPIRED (của các order trên và payment treo khác)
+     * @param reservations số reservation HELD được trả về kho
+     * @param complete     false khi lượt chạy dừng sớm (hết {@code order.expiry.max-run-ms}, DB bận, lỗi) —
+     *                     phần còn lại để lượt sau
+     */
+    record Result(int orders, int payments, int reservations, long elapsedMs, boolean complete) {
+    }
+
+    /**
+     * Huỷ order PENDING tạo trước {@code order.expiry.pending-ttl-ms}: trả hàng đang giữ, payment PENDING
+     * → EXPIRED; sau đó đóng các payment PENDING quá hạn còn lại. Theo lô keyset, mỗi lô một transaction.
+     */
+    Result expireStale();
+}
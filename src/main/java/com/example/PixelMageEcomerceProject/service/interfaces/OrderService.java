@@ -25,4 +25,10 @@ public interface OrderService {
     List<OrderResponse> getAllOrders();
     List<OrderResponse> getOrdersByCustomerId(Integer customerId);
     List<OrderResponse> getOrdersByStatus(OrderStatus status);
+
+    /**
+     * Allocate stock and complete an order whose payment has been confirmed.
+     * Invoked from the payment outbox worker; safe to call more than once for the same order.
+     */
+    void fulfillPaidOrder(Integer orderId, String transactionId);
 }
@@ -0,0 +1,13 @@
+package com.example.PixelMageEcomerceProject.service.interfaces;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackCardAssignmentResponse;
+
+public interface PackCardAssignmentService {
+
+    /**
+     * Gắn card READY của {@code productionBatch} vào slot trống của pack (tuỳ chọn chỉ một category).
+     * {@code dryRun} chỉ trả báo cáo ghép, không ghi gì.
+     */
+    PackCardAssignmentResponse assignCards(String productionBatch, Integer packCategoryId, Integer chunkSize,
+            boolean dryRun);
+}
@@ -2,6 +2,7 @@ package com.example.PixelMageEcomerceProject.service.interfaces;
 
 import com.example.PixelMageEcomerceProject.dto.request.PackCategoryRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.response.PackCategoryResponse;
+import com.example.PixelMageEcomerceProject.dto.response.PackOddsSimulationResponse;
 
 import java.util.List;
 
@@ -12,4 +13,10 @@ public interface PackCategoryService {
     PackCategoryResponse getPackCategoryById(Integer id);
     List<PackCategoryResponse> getAllPackCategories();
     PackCategoryResponse toggleActive(Integer id);
+
+    /**
+     * Mô phỏng mở {@code packs} pack bằng bảng rút production của category: tỉ lệ thật theo template / rarity,
+     * khoảng tin cậy, số thẻ trùng khi mở {@code horizons} pack.
+     */
+    PackOddsSimulationResponse simulateOdds(Integer id, long packs, Long seed, List<Integer> horizons);
 }
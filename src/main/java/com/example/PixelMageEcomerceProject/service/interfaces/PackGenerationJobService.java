@@ -0,0 +1,26 @@
+package com.example.PixelMageEcomerceProject.service.interfaces;
+
+import java.util.List;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackGenerationJobResponse;
+
+public interface PackGenerationJobService {
+
+    /**
+     * Tạo job sinh {@code quantity} pack cho category và chạy nền; trả về ngay với status QUEUED.
+     * Category / pool / rarity_rates được kiểm tra trước khi tạo job.
+     * @param chunkSize số pack mỗi transaction; null = {@code pack.generation.chunk-size}
+     */
+    PackGenerationJobResponse startJob(Integer packCategoryId, Integer quantity, Integer chunkSize, Integer createdByAccountId);
+
+    PackGenerationJobResponse getJob(Long jobId);
+
+    /** 50 job gần nhất, lọc theo category nếu có. */
+    List<PackGenerationJobResponse> getRecentJobs(Integer packCategoryId);
+
+    /** Dừng sau chunk đang ghi; các chunk đã commit được giữ lại. */
+    PackGenerationJobResponse cancelJob(Long jobId);
+
+    /** Chạy tiếp job đã huỷ / lỗi / bị bỏ dở (node chết) từ số pack đã sinh. */
+    PackGenerationJobResponse resumeJob(Long jobId);
+}
@@ -1,5 +1,6 @@
 package com.example.PixelMageEcomerceProject.service.interfaces;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,4 +23,7 @@ public interface PackService {
     void deletePack(Integer id);
 
     PackResponse updatePackStatus(Integer packId, PackStatus status);
+
+    /** Xoá cache pack / product bị ảnh hưởng khi pack của category đổi ở các status này (sau commit). */
+    void invalidatePackCaches(Integer packCategoryId, Collection<PackStatus> statuses);
 }
@@ -0,0 +1,25 @@
+package com.example.PixelMageEcomerceProject.service.interfaces;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.PixelMageEcomerceProject.dto.response.OrderPaymentState;
+import com.example.PixelMageEcomerceProject.dto.response.ResponseBase;
+
+public interface PaymentAwaitService {
+
+    /**
+     * Long-poll: trả ngay nếu order đã có kết quả thanh toán, không thì giữ request (không giữ thread servlet)
+     * tới khi order settle hoặc hết timeout — khi đó trả trạng thái hiện tại để client poll tiếp.
+     * @param timeoutMs null → {@code payment.await.long-poll-timeout-ms}; bị chặn ở {@code payment.await.max-timeout-ms}
+     * @throws IllegalArgumentException nếu order không tồn tại
+     */
+    DeferredResult<ResponseEntity<ResponseBase<OrderPaymentState>>> awaitPayment(Integer orderId, Long timeoutMs);
+
+    /**
+     * SSE: gửi event "status" với trạng thái hiện tại, rồi event "payment" và đóng stream khi order settle.
+     * @throws IllegalArgumentException nếu order không tồn tại
+     */
+    SseEmitter streamPayment(Integer orderId);
+}
@@ -4,8 +4,10 @@ import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.service.model.InitPaymentResult;
 import com.example.PixelMageEcomerceProject.service.model.PaymentStrategyRequest;
+import com.example.PixelMageEcomerceProject.service.model.ReconciliationCandidate;
 import com.example.PixelMageEcomerceProject.service.model.WebhookResult;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,4 +24,28 @@ public interface PaymentGatewayStrategy {
     PaymentStatus pollStatus(String gatewayTransactionId);
 
     PaymentGateway getGatewayType();
+
+    /**
+     * Id giao dịch phía gateway dùng để dedupe webhook trong inbox; null nếu payload không có
+     * (inbox khi đó dedupe theo hash payload).
+     */
+    default String webhookEventId(Map<String, String> payload) {
+        return null;
+    }
+
+    /**
+     * Số payment tối đa hỏi gateway trong một lần gọi {@link #reconcile}; 0 = gateway không hỗ trợ đối soát.
+     */
+    default int reconcileBatchSize() {
+        return 0;
+    }
+
+    /**
+     * Đối soát: hỏi gateway các payment PENDING (một request cho cả lô nếu API cho phép) và trả payload
+     * dạng webhook cho những giao dịch gateway xác nhận đã thanh toán — payload đi vào webhook inbox như
+     * webhook thật, nên qua cùng kiểm tra chữ ký, dedupe theo {@link #webhookEventId} và luồng fulfillment.
+     */
+    default List<Map<String, String>> reconcile(List<ReconciliationCandidate> candidates) {
+        return List.of();
+    }
 }
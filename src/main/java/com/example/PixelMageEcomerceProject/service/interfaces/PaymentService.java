@@ -26,6 +26,12 @@ public interface PaymentService {
      */
     Payment savePaymentRecord(Integer orderId, String gatewayTransactionId, PaymentGateway gateway, Map<String, Object> paymentData);
 
+    /**
+     * Gateway báo giao dịch thất bại / bị huỷ: payment PENDING → FAILED, order đang chờ thanh toán → FAILED
+     * (khách có thể thanh toán lại), rồi sau commit đánh thức client đang chờ kết quả.
+     */
+    void recordPaymentFailure(Integer orderId, String gatewayTransactionId, String reason);
+
     /**
      * Update payment status.
      */
@@ -0,0 +1,12 @@
+package com.example.PixelMageEcomerceProject.service.interfaces;
+
+public interface ProductListingStockService {
+
+    /**
+     * Gom delta tồn kho do trigger packs / cards ghi (product_listing_stock_deltas) vào product_listing.stock_count.
+     * Theo lô {@code product-listing.stock-fold.batch-size}, mỗi lô một transaction, tới khi hết delta.
+     *
+     * @return số delta đã gom
+     */
+    int foldStockDeltas();
+}
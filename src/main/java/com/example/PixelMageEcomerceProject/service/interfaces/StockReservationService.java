@@ -0,0 +1,45 @@
+package com.example.PixelMageEcomerceProject.service.interfaces;
+
+import java.util.List;
+
+import com.example.PixelMageEcomerceProject.entity.OrderItem;
+
+public interface StockReservationService {
+
+    /**
+     * Giữ hàng cho các dòng của order vừa tạo: trừ nguyên tử counter Redis của mọi nguồn hàng
+     * (all-or-nothing) rồi ghi bản mirror HELD có hạn thanh toán. Transaction của order rollback
+     * thì counter được cộng trả.
+     * @throws com.example.PixelMageEcomerceProject.exceptions.PackReservationException nếu không đủ hàng
+     */
+    void reserve(Integer orderId, List<OrderItem> items);
+
+    /**
+     * Thanh toán thành công: HELD → CONFIRMED.
+     * @return số dòng được xác nhận; 0 nếu reservation đã hết hạn / bị huỷ (hoặc order tạo trước khi có giữ hàng)
+     */
+    int confirm(Integer orderId);
+
+    /**
+     * Order đã từng giữ hàng (mọi trạng thái reservation) — phân biệt reservation hết hạn với order tạo
+     * trước khi có giữ hàng khi {@link #confirm(Integer)} trả 0.
+     */
+    boolean hasReservations(Integer orderId);
+
+    /**
+     * Huỷ order: HELD → RELEASED, counter được cộng trả sau khi commit.
+     */
+    int release(Integer orderId);
+
+    /**
+     * Như {@link #release(Integer)} cho cả lô order (job huỷ order quá hạn), trong transaction của caller.
+     * @return số reservation đã trả
+     */
+    int releaseAll(List<Integer> orderIds);
+
+    /**
+     * Trả hàng của các reservation quá hạn thanh toán (HELD → EXPIRED), chạy theo lô.
+     * @return số reservation đã trả
+     */
+    int releaseExpired();
+}
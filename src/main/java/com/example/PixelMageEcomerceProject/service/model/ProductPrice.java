@@ -0,0 +1,11 @@
+package com.example.PixelMageEcomerceProject.service.model;
+
+import java.math.BigDecimal;
+
+/** Một dòng price book: giá bán hiện tại và cờ isActive của product. */
+public record ProductPrice(Integer productId, BigDecimal price, Boolean active) {
+
+    public boolean isOrderable() {
+        return Boolean.TRUE.equals(active) && price != null;
+    }
+}
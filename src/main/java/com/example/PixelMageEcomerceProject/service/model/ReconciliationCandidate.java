@@ -0,0 +1,9 @@
+package com.example.PixelMageEcomerceProject.service.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/** Payment PENDING cần hỏi lại gateway khi đối soát (có thể webhook của nó đã bị lỡ). */
+public record ReconciliationCandidate(Integer paymentId, Integer orderId, String gatewayTransactionId,
+        BigDecimal amount, LocalDateTime createdAt) {
+}
@@ -0,0 +1,142 @@
+package com.example.PixelMageEcomerceProject.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scalable Bloom filter (Almeida et al.) trên hash 128-bit do caller cung cấp.
+ * Khi slice hiện tại đầy, thêm slice mới gấp đôi dung lượng với tỉ lệ false-positive
+ * siết lại một nửa → tổng FP rate luôn ≤ {@code 2 × targetFpp}, bộ nhớ tăng theo số phần tử.
+ *
+ * Thread-safe: đọc/ghi bit lock-free qua {@link AtomicLongArray}; chỉ việc thêm slice mới là synchronized.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private final double targetFpp;
+    private volatile Slice[] slices;
+
+    public ScalableBloomFilter(int initialCapacity, double targetFpp) {
+        this.targetFpp = targetFpp;
+        this.slices = new Slice[] { new Slice(initialCapacity, targetFpp * (1 - TIGHTENING_RATIO)) };
+    }
+
+    public void put(long hash1, long hash2) {
+        Slice current = slices[slices.length - 1];
+        if (current.isFull()) {
+            current = grow(current);
+        }
+        current.put(hash1, hash2);
+    }
+
+    public boolean mightContain(long hash1, long hash2) {
+        for (Slice slice : slices) {
+            if (slice.mightContain(hash1, hash2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Số phần tử đã thêm. */
+    public long size() {
+        long total = 0;
+        for (Slice slice : slices) {
+            total += slice.count.get();
+        }
+        return total;
+    }
+
+    /** Dung lượng bit-array tính bằng byte. */
+    public long sizeInBytes() {
+        long total = 0;
+        for (Slice slice : slices) {
+            total += (long) slice.bits.length() * Long.BYTES;
+        }
+        return total;
+    }
+
+    /** FP rate ước lượng theo số phần tử thực tế: 1 − Π(1 − fpp_slice). */
+    public double estimatedFpp() {
+        double pass = 1.0;
+        for (Slice slice : slices) {
+            pass *= 1 - slice.currentFpp();
+        }
+        return 1 - pass;
+    }
+
+    public double targetFpp() {
+        return targetFpp;
+    }
+
+    private synchronized Slice grow(Slice full) {
+        Slice[] current = slices;
+        Slice last = current[current.length - 1];
+        if (last != full) {
+            return last; // thread khác đã grow
+        }
+        Slice next = new Slice(full.capacity * GROWTH_FACTOR, full.fpp * TIGHTENING_RATIO);
+        Slice[] grown = new Slice[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = next;
+        slices = grown;
+        return next;
+    }
+
+    private static final class Slice {
+        private final int capacity;
+        private final double fpp;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLongArray bits;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Slice(int capacity, double fpp) {
+            this.capacity = Math.max(capacity, 64);
+            this.fpp = fpp;
+            long m = (long) Math.ceil(-this.capacity * Math.log(fpp) / LN2_SQUARED);
+            this.bits = new AtomicLongArray((int) ((m + 63) >>> 6));
+            this.bitCount = (long) bits.length() << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+        }
+
+        private boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        // Kirsch–Mitzenmacher double hashing: g_i = h1 + i·h2
+        private void put(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitCount;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long prev;
+                do {
+                    prev = bits.get(word);
+                } while ((prev & mask) == 0 && !bits.compareAndSet(word, prev, prev | mask));
+                combined += hash2;
+            }
+            count.incrementAndGet();
+        }
+
+        private boolean mightContain(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitCount;
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+                combined += hash2;
+            }
+            return true;
+        }
+
+        private double currentFpp() {
+            return Math.pow(1 - Math.exp(-(double) hashCount * count.get() / bitCount), hashCount);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.PixelMageEcomerceProject.webhook;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.entity.WebhookInbox;
+import com.example.PixelMageEcomerceProject.enums.WebhookInboxStatus;
+import com.example.PixelMageEcomerceProject.outbox.FulfillmentWorker;
+import com.example.PixelMageEcomerceProject.repository.OutboxEventRepository;
+import com.example.PixelMageEcomerceProject.repository.WebhookInboxRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tầng nhận webhook: kiểm tra, dedupe, ghi payload gốc vào {@code webhook_inbox} cùng một outbox event
+ * {@code WEBHOOK_RECEIVED} rồi trả lời gateway ngay. Parse + cập nhật payment chạy trên worker outbox
+ * ({@link WebhookReceivedHandler}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookIngestionService {
+
+    private static final int MAX_EVENT_ID_LENGTH = 64;
+    private static final int MAX_REPLAY = 10_000;
+
+    private final Map<String, PaymentGatewayStrategy> strategies;
+    private final WebhookInboxRepository inboxRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final FulfillmentWorker fulfillmentWorker;
+    private final ObjectMapper objectMapper;
+
+    public enum Outcome {
+        ACCEPTED, DUPLICATE, UNSUPPORTED_GATEWAY, INVALID
+    }
+
+    public record Receipt(Outcome outcome, Long inboxId, String message) {
+    }
+
+    public record InboxStats(long received, long processed, long ignored) {
+    }
+
+    @Transactional
+    public Receipt accept(String gateway, Map<String, String> payload) {
+        String gatewayKey = gateway.toLowerCase(Locale.ROOT);
+        PaymentGatewayStrategy strategy = strategies.get(gatewayKey);
+        if (strategy == null) {
+            return new Receipt(Outcome.UNSUPPORTED_GATEWAY, null, "Unsupported gateway: " + gateway);
+        }
+        if (payload.isEmpty() || !strategy.verifySignature(payload)) {
+            log.warn("[WEBHOOK] Rejected {} webhook: empty payload or invalid signature", gatewayKey);
+            return new Receipt(Outcome.INVALID, null, "Invalid webhook payload");
+        }
+
+        // TreeMap: cùng nội dung → cùng JSON → cùng hash khi gateway không gửi id
+        String json = toJson(new TreeMap<>(payload));
+        String dedupKey = dedupKey(gatewayKey, strategy.webhookEventId(payload), json);
+        List<Long> inserted = inboxRepository.insertIfAbsent(gatewayKey, dedupKey, json, LocalDateTime.now());
+        if (inserted.isEmpty()) {
+            log.info("[WEBHOOK] Duplicate {} webhook {} — skipping", gatewayKey, dedupKey);
+            return new Receipt(Outcome.DUPLICATE, null, "Duplicate webhook skipped");
+        }
+        Long inboxId = inserted.get(0);
+        enqueue(inboxId);
+        log.info("[WEBHOOK] Accepted {} webhook {} as inbox {}", gatewayKey, dedupKey, inboxId);
+        return new Receipt(Outcome.ACCEPTED, inboxId, "Accepted");
+    }
+
+    /** Phát lại một webhook từ payload gốc trong inbox. */
+    @Transactional
+    public void replay(Long inboxId) {
+        WebhookInbox inbox = inboxRepository.findById(inboxId)
+                .orElseThrow(() -> new IllegalArgumentException("Webhook inbox entry not found: " + inboxId));
+        inbox.setStatus(WebhookInboxStatus.RECEIVED);
+        inbox.setResultMessage(null);
+        inbox.setProcessedAt(null);
+        inboxRepository.save(inbox);
+        enqueue(inboxId);
+        log.info("[WEBHOOK] Inbox {} queued for replay", inboxId);
+    }
+
+    /**
+     * Phát lại mọi webhook nhận trong [from, to) — vd. sau khi sửa lỗi parse.
+     *
+     * @param gateway null = mọi gateway
+     * @return số webhook được đưa lại vào hàng đợi
+     */
+    @Transactional
+    public int replay(String gateway, LocalDateTime from, LocalDateTime to) {
+        List<Long> inboxIds = inboxRepository.findIdsReceivedBetween(
+                gateway != null ? gateway.toLowerCase(Locale.ROOT) : null, from, to);
+        if (inboxIds.size() > MAX_REPLAY) {
+            throw new IllegalArgumentException("Too many webhooks in range (" + inboxIds.size()
+                    + "), narrow it to at most " + MAX_REPLAY);
+        }
+        inboxIds.forEach(this::replay);
+        return inboxIds.size();
+    }
+
+    public InboxStats stats() {
+        return new InboxStats(inboxRepository.countByStatus(WebhookInboxStatus.RECEIVED),
+                inboxRepository.countByStatus(WebhookInboxStatus.PROCESSED),
+                inboxRepository.countByStatus(WebhookInboxStatus.IGNORED));
+    }
+
+    private void enqueue(Long inboxId) {
+        outboxEventRepository.save(OutboxEvent.pending(OutboxEvent.TYPE_WEBHOOK_RECEIVED, String.valueOf(inboxId), null));
+        fulfillmentWorker.wakeUpAfterCommit();
+    }
+
+    static String dedupKey(String gateway, String eventId, String payloadJson) {
+        if (eventId != null && !eventId.isBlank() && eventId.length() <= MAX_EVENT_ID_LENGTH) {
+            return gateway + ":" + eventId;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(payloadJson.getBytes(StandardCharsets.UTF_8));
+            return gateway + ":sha256:" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Map<String, String> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize webhook payload", e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.PixelMageEcomerceProject.webhook;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.entity.WebhookInbox;
+import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
+import com.example.PixelMageEcomerceProject.enums.WebhookInboxStatus;
+import com.example.PixelMageEcomerceProject.outbox.OutboxEventHandler;
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+import com.example.PixelMageEcomerceProject.repository.WebhookInboxRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
+import com.example.PixelMageEcomerceProject.service.model.WebhookResult;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@code WEBHOOK_RECEIVED} → parse payload trong inbox bằng strategy của gateway và ghi payment.
+ * Chạy trong transaction của worker outbox: lỗi thì rollback và retry, payment ghi xong thì
+ * PaymentSuccessEvent tạo tiếp outbox event fulfillment trong cùng transaction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookReceivedHandler implements OutboxEventHandler {
+
+    private static final TypeReference<Map<String, String>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+    private static final int MAX_MESSAGE_LENGTH = 255;
+
+    private final Map<String, PaymentGatewayStrategy> strategies;
+    private final WebhookInboxRepository inboxRepository;
+    private final OrderRepository orderRepository;
+    private final PaymentService paymentService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String eventType() {
+        return OutboxEvent.TYPE_WEBHOOK_RECEIVED;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        Long inboxId = Long.valueOf(event.getAggregateId());
+        WebhookInbox inbox = inboxRepository.findById(inboxId)
+                .orElseThrow(() -> new IllegalStateException("Webhook inbox entry not found: " + inboxId));
+        PaymentGatewayStrategy strategy = strategies.get(inbox.getGateway());
+        if (strategy == null) {
+            throw new IllegalStateException("Unsupported gateway: " + inbox.getGateway());
+        }
+        Map<String, String> payload;
+        try {
+            payload = objectMapper.readValue(inbox.getPayload(), PAYLOAD_TYPE);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid inbox payload: " + e.getMessage(), e);
+        }
+
+        WebhookResult result = strategy.handleWebhook(payload);
+        WebhookInboxStatus status;
+        String message = result.getMessage();
+        if (!result.isSuccess() || !PaymentStatus.SUCCEEDED.equals(result.getStatus())) {
+            status = WebhookInboxStatus.IGNORED;
+        } else if (result.getOrderId() == null) {
+            // Gateway tự ghi payment trong handleWebhook (VNPay)
+            status = WebhookInboxStatus.PROCESSED;
+        } else if (!orderRepository.existsById(result.getOrderId())) {
+            // Kiểm tra trước: exception trong savePaymentRecord sẽ đánh dấu rollback cả transaction
+            status = WebhookInboxStatus.IGNORED;
+            message = "Order not found: " + result.getOrderId();
+        } else {
+            paymentService.savePaymentRecord(result.getOrderId(), result.getGatewayTransactionId(),
+                    strategy.getGatewayType(), new HashMap<>(payload));
+            status = WebhookInboxStatus.PROCESSED;
+        }
+
+        inbox.setStatus(status);
+        inbox.setOrderId(result.getOrderId());
+        inbox.setResultMessage(message != null && message.length() > MAX_MESSAGE_LENGTH
+                ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+        inbox.setProcessedAt(LocalDateTime.now());
+        inboxRepository.save(inbox);
+        log.info("[WEBHOOK] Inbox {} ({}) {}: {}", inboxId, inbox.getGateway(), status, message);
+    }
+}
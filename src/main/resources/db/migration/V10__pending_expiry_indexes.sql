@@ -0,0 +1,9 @@
+-- ============================================================
+-- V10__pending_expiry_indexes.sql
+-- Partial index cho job dọn order / payment PENDING quá hạn: câu claim keyset theo id ... FOR UPDATE
+-- SKIP LOCKED chỉ duyệt các dòng còn PENDING, không quét cả bảng orders / payments đã hoàn tất.
+-- ============================================================
+
+CREATE INDEX IF NOT EXISTS idx_orders_pending ON orders (order_id) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_payments_pending ON payments (payment_id) WHERE payment_status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_payments_order ON payments (order_id);
@@ -0,0 +1,26 @@
+-- ============================================================
+-- V11__pack_generation_jobs.sql
+-- Job sinh pack hàng loạt: chạy nền theo chunk, mỗi chunk một transaction ghi packs + pack_details
+-- và cộng generated_quantity → job dừng / node chết vẫn resume đúng chỗ.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS pack_generation_jobs (
+    job_id                BIGSERIAL   PRIMARY KEY,
+    pack_category_id      INTEGER     NOT NULL REFERENCES pack_categories(pack_category_id) ON DELETE CASCADE,
+    requested_quantity    INTEGER     NOT NULL,
+    generated_quantity    INTEGER     NOT NULL DEFAULT 0,
+    chunk_size            INTEGER     NOT NULL,
+    status                VARCHAR(20) NOT NULL DEFAULT 'QUEUED',
+    created_by_account_id INTEGER REFERENCES accounts(customer_id),
+    last_error            TEXT,
+    created_at            TIMESTAMP   NOT NULL,
+    started_at            TIMESTAMP,
+    updated_at            TIMESTAMP   NOT NULL,
+    finished_at           TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_pack_generation_jobs_active ON pack_generation_jobs (job_id)
+    WHERE status IN ('QUEUED', 'RUNNING');
+
+-- pack_details chỉ có PK: đọc chi tiết theo pack (PackMapper, xoá pack) phải quét cả bảng khi có hàng trăm nghìn dòng
+CREATE INDEX IF NOT EXISTS idx_pack_details_pack ON pack_details (pack_id);
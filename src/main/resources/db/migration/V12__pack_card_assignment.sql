@@ -0,0 +1,10 @@
+-- ============================================================
+-- V12__pack_card_assignment.sql
+-- Gắn card vật lý vào slot pack hàng loạt: đọc card READY của một lô sản xuất theo template,
+-- và các slot pack_details còn trống theo thứ tự pack_id.
+-- ============================================================
+
+CREATE INDEX IF NOT EXISTS idx_cards_ready_batch ON cards (production_batch, card_template_id, card_id)
+    WHERE status = 'READY';
+
+CREATE INDEX IF NOT EXISTS idx_pack_details_unfilled ON pack_details (pack_id) WHERE card_id IS NULL;
@@ -0,0 +1,8 @@
+-- ============================================================
+-- V13__serial_sequences.sql
+-- Sequence cho SerialNumberGenerator: mỗi nextval là đầu một khối 1000 giá trị (= BLOCK_SIZE),
+-- node cấp mã trong khối từ heap. Thay serial "PKG-" + 8 ký tự UUID (có thể trùng, không ai kiểm tra).
+-- ============================================================
+
+CREATE SEQUENCE IF NOT EXISTS card_serial_seq START WITH 1 INCREMENT BY 1000;
+CREATE SEQUENCE IF NOT EXISTS voucher_code_seq START WITH 1 INCREMENT BY 1000;
@@ -0,0 +1,8 @@
+-- ============================================================
+-- V14__account_token_version.sql
+-- Bản gốc của token version (thu hồi access token khi khoá account / đổi role / đổi mật khẩu).
+-- Redis token_version:{customerId} chỉ là cache: key bị evict / flush thì nạp lại từ cột này,
+-- không coi là version 0 (token đã thu hồi sẽ sống lại).
+-- ============================================================
+
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS token_version BIGINT NOT NULL DEFAULT 0;
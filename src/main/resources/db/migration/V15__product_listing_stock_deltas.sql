@@ -0,0 +1,112 @@
+-- ============================================================
+-- V15__product_listing_stock_deltas.sql
+-- Trigger stock của V4 UPDATE thẳng dòng product_listing trong transaction mua / mở pack: mọi claim
+-- SKIP LOCKED trên cùng category / template xếp hàng chờ row lock của một dòng listing tới lúc commit.
+--
+-- Đường nóng giờ chỉ INSERT delta vào bảng append-only (không khoá dòng chung nào);
+-- product_listing_fold_stock (job Java định kỳ) gom delta theo category / template rồi cộng vào listing.
+-- stock_count trễ tối đa một chu kỳ gom.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS product_listing_stock_deltas (
+    delta_id     BIGSERIAL   PRIMARY KEY,
+    product_type VARCHAR(50) NOT NULL,
+    source_id    INTEGER     NOT NULL,   -- pack_category_id (GACHA_PACK) / card_template_id (SINGLE_CARD)
+    delta        BIGINT      NOT NULL,
+    created_at   TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_listing_stock_deltas_source
+    ON product_listing_stock_deltas (product_type, source_id);
+
+-- Giữ nguyên chữ ký: trigger packs / cards của V4 gọi hàm này theo từng nhóm của statement
+CREATE OR REPLACE FUNCTION product_listing_shift_stock(p_product_type VARCHAR, p_source_id INTEGER, p_delta BIGINT)
+RETURNS VOID AS $$
+BEGIN
+    IF p_source_id IS NOT NULL AND p_delta <> 0 THEN
+        INSERT INTO product_listing_stock_deltas (product_type, source_id, delta)
+        VALUES (p_product_type, p_source_id, p_delta);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Gom tối đa p_limit delta đã commit; trả về số delta đã gom.
+-- Advisory lock: một node gom tại một thời điểm (tránh deadlock giữa hai lượt cập nhật cùng các dòng listing),
+-- và không chạy xen với product_listing_refresh.
+CREATE OR REPLACE FUNCTION product_listing_fold_stock(p_limit INTEGER) RETURNS INTEGER AS $$
+DECLARE
+    v_folded INTEGER;
+BEGIN
+    IF NOT pg_try_advisory_xact_lock(hashtext('product_listing_fold_stock')) THEN
+        RETURN 0;
+    END IF;
+
+    WITH batch AS (
+        DELETE FROM product_listing_stock_deltas
+        WHERE delta_id IN (SELECT delta_id FROM product_listing_stock_deltas
+                           ORDER BY delta_id
+                           LIMIT p_limit
+                           FOR UPDATE SKIP LOCKED)
+        RETURNING product_type, source_id, delta
+    ), summed AS (
+        SELECT product_type, source_id, SUM(delta) AS delta, COUNT(*) AS n
+        FROM batch
+        GROUP BY product_type, source_id
+    ), applied AS (
+        UPDATE product_listing pl
+        SET stock_count = pl.stock_count + s.delta,
+            updated_at  = CURRENT_TIMESTAMP
+        FROM summed s
+        JOIN products p ON p.product_type = s.product_type
+                       AND ((s.product_type = 'GACHA_PACK' AND p.pack_category_id = s.source_id)
+                         OR (s.product_type = 'SINGLE_CARD' AND p.card_template_id = s.source_id))
+        WHERE p.product_id = pl.product_id
+          AND s.delta <> 0
+    )
+    SELECT COALESCE(SUM(n), 0) INTO v_folded FROM summed;
+
+    RETURN v_folded;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Tính lại cả dòng: COUNT(*) đã gồm hàng của các delta đã commit nhưng chưa gom → trừ chúng ra (cùng snapshot
+-- với COUNT) để lượt gom sau cộng lại. Chờ advisory lock của lượt gom: không trừ delta mà lượt gom đang cộng dở.
+CREATE OR REPLACE FUNCTION product_listing_refresh(p_product_id INTEGER) RETURNS VOID AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('product_listing_fold_stock'));
+
+    INSERT INTO product_listing (product_id, stock_count, pool_size, pool_preview, updated_at)
+    SELECT p.product_id,
+           CASE
+               WHEN p.product_type = 'GACHA_PACK' AND p.pack_category_id IS NOT NULL THEN
+                   (SELECT COUNT(*) FROM packs pk
+                    WHERE pk.pack_category_id = p.pack_category_id AND pk.status = 'STOCKED')
+                   - (SELECT COALESCE(SUM(d.delta), 0) FROM product_listing_stock_deltas d
+                      WHERE d.product_type = 'GACHA_PACK' AND d.source_id = p.pack_category_id)
+               WHEN p.product_type = 'SINGLE_CARD' AND p.card_template_id IS NOT NULL THEN
+                   (SELECT COUNT(*) FROM cards c
+                    WHERE c.card_template_id = p.card_template_id AND c.status = 'READY')
+                   - (SELECT COALESCE(SUM(d.delta), 0) FROM product_listing_stock_deltas d
+                      WHERE d.product_type = 'SINGLE_CARD' AND d.source_id = p.card_template_id)
+           END,
+           CASE
+               WHEN p.product_type = 'GACHA_PACK' AND p.pack_category_id IS NOT NULL THEN pc.cards_per_pack
+               WHEN p.product_type = 'SINGLE_CARD' AND p.card_template_id IS NOT NULL THEN 1
+           END,
+           CASE
+               WHEN p.product_type = 'GACHA_PACK' AND p.pack_category_id IS NOT NULL THEN
+                   product_listing_preview(p.pack_category_id, NULL)
+               WHEN p.product_type = 'SINGLE_CARD' AND p.card_template_id IS NOT NULL THEN
+                   product_listing_preview(NULL, p.card_template_id)
+           END,
+           CURRENT_TIMESTAMP
+    FROM products p
+    LEFT JOIN pack_categories pc ON pc.pack_category_id = p.pack_category_id
+    WHERE p.product_id = p_product_id
+    ON CONFLICT (product_id) DO UPDATE
+        SET stock_count  = EXCLUDED.stock_count,
+            pool_size    = EXCLUDED.pool_size,
+            pool_preview = EXCLUDED.pool_preview,
+            updated_at   = EXCLUDED.updated_at;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,267 @@
+-- ============================================================
+-- V4__product_listing.sql
+-- Read model cho danh sách sản phẩm: tồn kho, pool size và preview pool tính sẵn.
+-- Thay cho COUNT(*) + lazy-load cardPools trên từng product khi dựng /products.
+--
+-- Giữ đồng bộ bằng trigger trong cùng transaction với thay đổi nguồn:
+--   - packs / cards đổi status      → cộng / trừ delta stock_count (statement-level, gom theo category / template)
+--   - products, pack_categories,
+--     pack_category_card_pools,
+--     card_templates, card_frameworks → tính lại dòng của các product bị ảnh hưởng
+-- Cập nhật bulk bằng native SQL cũng đi qua trigger nên không cần code Java riêng.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS product_listing (
+    product_id   INTEGER   PRIMARY KEY REFERENCES products(product_id) ON DELETE CASCADE,
+    stock_count  INTEGER,
+    pool_size    INTEGER,
+    pool_preview TEXT,
+    updated_at   TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- ----------------------------------------------------------------
+-- 1. Tính lại toàn bộ một dòng
+-- ----------------------------------------------------------------
+
+-- Preview pool dạng JSON (khớp CardTemplateResponse.Summary), tối đa 12 template
+CREATE OR REPLACE FUNCTION product_listing_preview(p_pack_category_id INTEGER, p_card_template_id INTEGER)
+RETURNS TEXT AS $$
+    SELECT COALESCE(json_agg(json_build_object(
+               'cardTemplateId', t.card_template_id,
+               'name',           t.name,
+               'description',    t.description,
+               'arcanaType',     t.arcana_type,
+               'suit',           t.suit,
+               'cardNumber',     t.card_number,
+               'rarity',         t.rarity,
+               'imagePath',      t.image_path,
+               'isVisible',      t.is_visible,
+               'frameworkName',  f.name) ORDER BY t.card_template_id)::TEXT, '[]')
+    FROM (SELECT ct.*
+          FROM card_templates ct
+          WHERE ct.card_template_id = p_card_template_id
+             OR ct.card_template_id IN (SELECT cp.card_template_id
+                                        FROM pack_category_card_pools cp
+                                        WHERE cp.pack_category_id = p_pack_category_id)
+          ORDER BY ct.card_template_id
+          LIMIT 12) t
+    LEFT JOIN card_frameworks f ON f.framework_id = t.framework_id;
+$$ LANGUAGE SQL STABLE;
+
+CREATE OR REPLACE FUNCTION product_listing_refresh(p_product_id INTEGER) RETURNS VOID AS $$
+BEGIN
+    INSERT INTO product_listing (product_id, stock_count, pool_size, pool_preview, updated_at)
+    SELECT p.product_id,
+           CASE
+               WHEN p.product_type = 'GACHA_PACK' AND p.pack_category_id IS NOT NULL THEN
+                   (SELECT COUNT(*) FROM packs pk
+                    WHERE pk.pack_category_id = p.pack_category_id AND pk.status = 'STOCKED')
+               WHEN p.product_type = 'SINGLE_CARD' AND p.card_template_id IS NOT NULL THEN
+                   (SELECT COUNT(*) FROM cards c
+                    WHERE c.card_template_id = p.card_template_id AND c.status = 'READY')
+           END,
+           CASE
+               WHEN p.product_type = 'GACHA_PACK' AND p.pack_category_id IS NOT NULL THEN pc.cards_per_pack
+               WHEN p.product_type = 'SINGLE_CARD' AND p.card_template_id IS NOT NULL THEN 1
+           END,
+           CASE
+               WHEN p.product_type = 'GACHA_PACK' AND p.pack_category_id IS NOT NULL THEN
+                   product_listing_preview(p.pack_category_id, NULL)
+               WHEN p.product_type = 'SINGLE_CARD' AND p.card_template_id IS NOT NULL THEN
+                   product_listing_preview(NULL, p.card_template_id)
+           END,
+           CURRENT_TIMESTAMP
+    FROM products p
+    LEFT JOIN pack_categories pc ON pc.pack_category_id = p.pack_category_id
+    WHERE p.product_id = p_product_id
+    ON CONFLICT (product_id) DO UPDATE
+        SET stock_count  = EXCLUDED.stock_count,
+            pool_size    = EXCLUDED.pool_size,
+            pool_preview = EXCLUDED.pool_preview,
+            updated_at   = EXCLUDED.updated_at;
+END;
+$$ LANGUAGE plpgsql;
+
+-- ----------------------------------------------------------------
+-- 2. Delta tồn kho (đường nóng: mua hàng, mở pack, sinh pack / card)
+-- ----------------------------------------------------------------
+CREATE OR REPLACE FUNCTION product_listing_shift_stock(p_product_type VARCHAR, p_source_id INTEGER, p_delta BIGINT)
+RETURNS VOID AS $$
+BEGIN
+    UPDATE product_listing pl
+    SET stock_count = pl.stock_count + p_delta,
+        updated_at  = CURRENT_TIMESTAMP
+    FROM products p
+    WHERE p.product_id = pl.product_id
+      AND p.product_type = p_product_type
+      AND ((p_product_type = 'GACHA_PACK' AND p.pack_category_id = p_source_id)
+        OR (p_product_type = 'SINGLE_CARD' AND p.card_template_id = p_source_id));
+END;
+$$ LANGUAGE plpgsql;
+
+-- Statement-level: một UPDATE hàng loạt chỉ chạm mỗi dòng listing một lần.
+-- plpgsql chỉ plan câu lệnh khi chạy tới, nên nhánh tham chiếu transition table không tồn tại không lỗi.
+CREATE OR REPLACE FUNCTION product_listing_on_packs() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM product_listing_shift_stock('GACHA_PACK', d.pack_category_id, d.delta)
+        FROM (SELECT pack_category_id, COUNT(*) AS delta FROM new_rows
+              WHERE status = 'STOCKED' GROUP BY pack_category_id) d;
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM product_listing_shift_stock('GACHA_PACK', d.pack_category_id, -d.delta)
+        FROM (SELECT pack_category_id, COUNT(*) AS delta FROM old_rows
+              WHERE status = 'STOCKED' GROUP BY pack_category_id) d;
+    ELSE
+        PERFORM product_listing_shift_stock('GACHA_PACK', d.pack_category_id, d.delta)
+        FROM (SELECT x.pack_category_id, SUM(x.delta) AS delta
+              FROM (SELECT pack_category_id, 1 AS delta FROM new_rows WHERE status = 'STOCKED'
+                    UNION ALL
+                    SELECT pack_category_id, -1 FROM old_rows WHERE status = 'STOCKED') x
+              GROUP BY x.pack_category_id
+              HAVING SUM(x.delta) <> 0) d;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_listing_packs_ins AFTER INSERT ON packs
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_packs();
+CREATE TRIGGER trg_product_listing_packs_upd AFTER UPDATE ON packs
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_packs();
+CREATE TRIGGER trg_product_listing_packs_del AFTER DELETE ON packs
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_packs();
+
+CREATE OR REPLACE FUNCTION product_listing_on_cards() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM product_listing_shift_stock('SINGLE_CARD', d.card_template_id, d.delta)
+        FROM (SELECT card_template_id, COUNT(*) AS delta FROM new_rows
+              WHERE status = 'READY' GROUP BY card_template_id) d;
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM product_listing_shift_stock('SINGLE_CARD', d.card_template_id, -d.delta)
+        FROM (SELECT card_template_id, COUNT(*) AS delta FROM old_rows
+              WHERE status = 'READY' GROUP BY card_template_id) d;
+    ELSE
+        PERFORM product_listing_shift_stock('SINGLE_CARD', d.card_template_id, d.delta)
+        FROM (SELECT x.card_template_id, SUM(x.delta) AS delta
+              FROM (SELECT card_template_id, 1 AS delta FROM new_rows WHERE status = 'READY'
+                    UNION ALL
+                    SELECT card_template_id, -1 FROM old_rows WHERE status = 'READY') x
+              GROUP BY x.card_template_id
+              HAVING SUM(x.delta) <> 0) d;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_listing_cards_ins AFTER INSERT ON cards
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_cards();
+CREATE TRIGGER trg_product_listing_cards_upd AFTER UPDATE ON cards
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_cards();
+CREATE TRIGGER trg_product_listing_cards_del AFTER DELETE ON cards
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_cards();
+
+-- ----------------------------------------------------------------
+-- 3. Thay đổi cấu trúc (hiếm): tính lại cả dòng
+-- ----------------------------------------------------------------
+CREATE OR REPLACE FUNCTION product_listing_on_products() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT'
+       OR OLD.product_type IS DISTINCT FROM NEW.product_type
+       OR OLD.pack_category_id IS DISTINCT FROM NEW.pack_category_id
+       OR OLD.card_template_id IS DISTINCT FROM NEW.card_template_id THEN
+        PERFORM product_listing_refresh(NEW.product_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_listing_products AFTER INSERT OR UPDATE ON products
+    FOR EACH ROW EXECUTE FUNCTION product_listing_on_products();
+
+CREATE OR REPLACE FUNCTION product_listing_on_pack_categories() RETURNS TRIGGER AS $$
+BEGIN
+    IF OLD.cards_per_pack IS DISTINCT FROM NEW.cards_per_pack THEN
+        PERFORM product_listing_refresh(p.product_id)
+        FROM products p WHERE p.pack_category_id = NEW.pack_category_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_listing_pack_categories AFTER UPDATE ON pack_categories
+    FOR EACH ROW EXECUTE FUNCTION product_listing_on_pack_categories();
+
+-- Hibernate ghi lại cả collection (xoá hết rồi insert lại) → gom theo category ở mức statement
+CREATE OR REPLACE FUNCTION product_listing_on_card_pools() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM product_listing_refresh(p.product_id)
+        FROM products p
+        WHERE p.pack_category_id IN (SELECT DISTINCT pack_category_id FROM new_rows);
+    ELSE
+        PERFORM product_listing_refresh(p.product_id)
+        FROM products p
+        WHERE p.pack_category_id IN (SELECT DISTINCT pack_category_id FROM old_rows);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_listing_card_pools_ins AFTER INSERT ON pack_category_card_pools
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_card_pools();
+CREATE TRIGGER trg_product_listing_card_pools_del AFTER DELETE ON pack_category_card_pools
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION product_listing_on_card_pools();
+
+-- Template đổi thông tin hiển thị → preview của product bán lẻ template đó và các pack chứa nó
+CREATE OR REPLACE FUNCTION product_listing_refresh_template(p_card_template_id INTEGER) RETURNS VOID AS $$
+BEGIN
+    PERFORM product_listing_refresh(p.product_id)
+    FROM products p
+    WHERE p.card_template_id = p_card_template_id
+       OR p.pack_category_id IN (SELECT cp.pack_category_id FROM pack_category_card_pools cp
+                                 WHERE cp.card_template_id = p_card_template_id);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION product_listing_on_card_templates() RETURNS TRIGGER AS $$
+BEGIN
+    IF (OLD.name, OLD.description, OLD.arcana_type, OLD.suit, OLD.card_number, OLD.rarity,
+        OLD.image_path, OLD.is_visible, OLD.framework_id)
+       IS DISTINCT FROM
+       (NEW.name, NEW.description, NEW.arcana_type, NEW.suit, NEW.card_number, NEW.rarity,
+        NEW.image_path, NEW.is_visible, NEW.framework_id) THEN
+        PERFORM product_listing_refresh_template(NEW.card_template_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_listing_card_templates AFTER UPDATE ON card_templates
+    FOR EACH ROW EXECUTE FUNCTION product_listing_on_card_templates();
+
+CREATE OR REPLACE FUNCTION product_listing_on_card_frameworks() RETURNS TRIGGER AS $$
+BEGIN
+    IF OLD.name IS DISTINCT FROM NEW.name THEN
+        PERFORM product_listing_refresh_template(ct.card_template_id)
+        FROM card_templates ct WHERE ct.framework_id = NEW.framework_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_product_listing_card_frameworks AFTER UPDATE ON card_frameworks
+    FOR EACH ROW EXECUTE FUNCTION product_listing_on_card_frameworks();
+
+-- ----------------------------------------------------------------
+-- 4. Backfill
+-- ----------------------------------------------------------------
+SELECT product_listing_refresh(product_id) FROM products;
@@ -0,0 +1,22 @@
+-- ============================================================
+-- V5__stock_reservations.sql
+-- Giữ hàng lúc tạo order: mirror Postgres của counter tồn kho trên Redis (stock:{avail}:*).
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS stock_reservations (
+    reservation_id BIGSERIAL   PRIMARY KEY,
+    order_id       INTEGER     NOT NULL REFERENCES orders(order_id) ON DELETE CASCADE,
+    product_id     INTEGER     NOT NULL REFERENCES products(product_id),
+    stock_key      VARCHAR(50) NOT NULL,
+    quantity       INTEGER     NOT NULL CHECK (quantity > 0),
+    status         VARCHAR(20) NOT NULL DEFAULT 'HELD',
+    expires_at     TIMESTAMP   NOT NULL,
+    created_at     TIMESTAMP   NOT NULL,
+    updated_at     TIMESTAMP   NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_reservations_order ON stock_reservations (order_id);
+
+-- Partial index: chỉ dòng HELD được đọc khi dựng lại counter và khi quét hết hạn
+CREATE INDEX IF NOT EXISTS idx_stock_reservations_held_key ON stock_reservations (stock_key) WHERE status = 'HELD';
+CREATE INDEX IF NOT EXISTS idx_stock_reservations_held_expiry ON stock_reservations (expires_at) WHERE status = 'HELD';
@@ -0,0 +1,8 @@
+-- ============================================================
+-- V6__stock_allocation_indexes.sql
+-- Partial index cho câu claim ... FOR UPDATE SKIP LOCKED lúc cấp phát hàng sau thanh toán:
+-- chỉ đọc đúng các dòng còn bán được, theo thứ tự cấp phát.
+-- ============================================================
+
+CREATE INDEX IF NOT EXISTS idx_packs_stocked_category ON packs (pack_category_id, pack_id) WHERE status = 'STOCKED';
+CREATE INDEX IF NOT EXISTS idx_cards_ready_product ON cards (product_id, created_at, card_id) WHERE status = 'READY';
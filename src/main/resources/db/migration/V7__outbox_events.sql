@@ -0,0 +1,25 @@
+-- ============================================================
+-- V7__outbox_events.sql
+-- Transactional outbox: việc sau thanh toán (fulfillment) ghi cùng transaction với payment,
+-- worker nền claim bằng FOR UPDATE SKIP LOCKED.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    event_id        BIGSERIAL   PRIMARY KEY,
+    event_type      VARCHAR(50) NOT NULL,
+    aggregate_id    VARCHAR(64) NOT NULL,
+    payload         TEXT,
+    status          VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts        INTEGER     NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP   NOT NULL,
+    locked_until    TIMESTAMP,
+    locked_by       VARCHAR(64),   -- node giữ lease; DONE / retry chỉ ghi khi còn là chủ lease
+    last_error      TEXT,
+    created_at      TIMESTAMP   NOT NULL,
+    processed_at    TIMESTAMP
+);
+
+-- Chỉ dòng chưa xong nằm trong index claim; DONE tích luỹ không làm chậm poll
+CREATE INDEX IF NOT EXISTS idx_outbox_events_due ON outbox_events (event_id)
+    WHERE status IN ('PENDING', 'PROCESSING');
+CREATE INDEX IF NOT EXISTS idx_outbox_events_aggregate ON outbox_events (event_type, aggregate_id);
@@ -0,0 +1,20 @@
+-- ============================================================
+-- V8__webhook_inbox.sql
+-- Inbox webhook thanh toán: payload gốc ghi một lần (append-only), dedupe bằng dedup_key,
+-- xử lý bất đồng bộ qua outbox (WEBHOOK_RECEIVED) và phát lại được.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS webhook_inbox (
+    inbox_id       BIGSERIAL    PRIMARY KEY,
+    gateway        VARCHAR(20)  NOT NULL,
+    dedup_key      VARCHAR(96)  NOT NULL,
+    payload        TEXT         NOT NULL,
+    status         VARCHAR(20)  NOT NULL DEFAULT 'RECEIVED',
+    order_id       INTEGER,
+    result_message VARCHAR(255),
+    received_at    TIMESTAMP    NOT NULL,
+    processed_at   TIMESTAMP,
+    CONSTRAINT uq_webhook_inbox_dedup UNIQUE (dedup_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_received_at ON webhook_inbox (received_at);
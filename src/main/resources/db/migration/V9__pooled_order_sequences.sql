@@ -0,0 +1,10 @@
+-- ============================================================
+-- V9__pooled_order_sequences.sql
+-- Order / OrderItem / StockReservation chuyển từ IDENTITY sang sequence pooled (allocationSize = 50):
+-- Hibernate lấy 50 id mỗi lần gọi nextval, không phải INSERT từng dòng để biết id → INSERT được gom batch.
+-- INCREMENT BY phải bằng allocationSize. DEFAULT nextval của cột vẫn dùng được cho INSERT tay.
+-- ============================================================
+
+ALTER SEQUENCE IF EXISTS orders_order_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS order_items_order_item_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS stock_reservations_reservation_id_seq INCREMENT BY 50;
@@ -0,0 +1,64 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class CacheAdminServiceTest {
+
+    @Mock private CacheManager cacheManager;
+    @Mock private CacheMetricsRegistry metrics;
+    @Mock private CacheLoadCoalescer coalescer;
+    @Mock private CacheGenerationService generationService;
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private Cache productById;
+
+    @InjectMocks
+    private CacheAdminService cacheAdminService;
+
+    // ── Xoá một key: chỉ evict key đó, không clear cả cache ─────────────────
+    @Test
+    void evictKey_evictsOnlyThatKey() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of("product-by-id"));
+        when(cacheManager.getCache("product-by-id")).thenReturn(productById);
+
+        cacheAdminService.evictKey("product-by-id", "42");
+
+        verify(productById).evict("42");
+        verify(productById, never()).clear();
+    }
+
+    // ── Xoá một cache ───────────────────────────────────────────────────────
+    @Test
+    void evictCache_clearsNamedCache() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of());
+        when(cacheManager.getCache("products-public")).thenReturn(productById);
+
+        cacheAdminService.evictCache("products-public");
+
+        verify(productById).clear();
+    }
+
+    // ── Tên cache lạ → 400, không tạo cache mới ─────────────────────────────
+    @Test
+    void evictCache_unknownName_throws() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of());
+
+        assertThatThrownBy(() -> cacheAdminService.evictCache("no-such-cache"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(cacheManager, never()).getCache("no-such-cache");
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CacheGenerationServiceTest {
+
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private RedisMessageListenerContainer listenerContainer;
+    @Mock private ValueOperations<String, String> valueOperations;
+
+    private CacheGenerationService generationService;
+    private final List<String> bumped = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        generationService = new CacheGenerationService(redisTemplate, listenerContainer);
+        ReflectionTestUtils.setField(generationService, "localTtlMillis", 0L);
+        generationService.addBumpListener(bumped::add);
+    }
+
+    // ── Counter bị evict (Redis trả null) → không lùi về 0 mà bump vượt local ─
+    @Test
+    @SuppressWarnings("unchecked")
+    void current_counterEvicted_bumpsPastLocalGeneration() {
+        when(valueOperations.get("cache:gen:products-public")).thenReturn("7", (String) null);
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("cache:gen:products-public")), eq("7")))
+                .thenReturn(8L);
+
+        assertThat(generationService.current("products-public")).isEqualTo(7);
+        assertThat(generationService.current("products-public")).isEqualTo(8);
+
+        assertThat(bumped).containsExactly("products-public");
+        verify(redisTemplate).convertAndSend("cache:generation", "products-public:8");
+    }
+
+    // ── Node khác INCR trên counter đã mất (gen 1 < local 7) → bump đó vẫn có hiệu lực ─
+    @Test
+    @SuppressWarnings("unchecked")
+    void onMessage_lowerGenerationAfterReset_isNotDropped() {
+        ReflectionTestUtils.setField(generationService, "localTtlMillis", 60_000L);
+        when(valueOperations.get("cache:gen:products-public")).thenReturn("7", "1");
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), eq("7"))).thenReturn(8L);
+        generationService.current("products-public");
+
+        generationService.onMessage(message("products-public:1"), null);
+
+        assertThat(bumped).containsExactly("products-public");
+        assertThat(generationService.keyPrefix("products-public")).startsWith("products-public::g8::");
+    }
+
+    // ── Message trễ thật sự (Redis vẫn ≥ local) → bỏ qua ─────────────────────
+    @Test
+    @SuppressWarnings("unchecked")
+    void onMessage_lateMessage_ignored() {
+        when(valueOperations.get("cache:gen:products-public")).thenReturn("7");
+        generationService.current("products-public");
+
+        generationService.onMessage(message("products-public:6"), null);
+
+        assertThat(bumped).isEmpty();
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), anyString());
+    }
+
+    private static DefaultMessage message(String payload) {
+        return new DefaultMessage("cache:generation".getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CacheLoadCoalescerTest {
+
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private ValueOperations<String, String> valueOps;
+
+    // ── N request đồng thời cùng key → loader chạy đúng một lần ─────────────
+    @Test
+    void load_concurrentMisses_runLoaderOnce() throws Exception {
+        CacheLoadCoalescer coalescer = new CacheLoadCoalescer(redisTemplate, false, Duration.ofSeconds(1),
+                Duration.ofMillis(10));
+        Cache l2 = new ConcurrentMapCache("products-public");
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 16;
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> coalescer.load("products-public", "SimpleKey []", l2, "SimpleKey []",
+                        () -> {
+                            loaderCalls.incrementAndGet();
+                            release.await(5, TimeUnit.SECONDS);
+                            return List.of("p1", "p2");
+                        })));
+            }
+            // Đợi mọi caller vào hàng chờ trước khi cho loader trả kết quả
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (coalescer.stats("products-public").coalescedWaiters() < callers - 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Object> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(List.of("p1", "p2"));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loaderCalls.get()).isEqualTo(1);
+        assertThat(coalescer.stats("products-public").loads()).isEqualTo(1);
+        assertThat(coalescer.stats("products-public").coalescedWaiters()).isEqualTo(callers - 1);
+        assertThat(l2.get("SimpleKey []").get()).isEqualTo(List.of("p1", "p2"));
+    }
+
+    // ── Lỗi của loader được trả cho caller, lần sau load lại ─────────────────
+    @Test
+    void load_loaderFails_propagatesAndDoesNotStickInFlight() throws Exception {
+        CacheLoadCoalescer coalescer = new CacheLoadCoalescer(redisTemplate, false, Duration.ofSeconds(1),
+                Duration.ofMillis(10));
+        Cache l2 = new ConcurrentMapCache("spreads");
+
+        assertThatThrownBy(() -> coalescer.load("spreads", "k", l2, "k", () -> {
+            throw new IllegalStateException("db down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(coalescer.load("spreads", "k", l2, "k", () -> "ok")).isEqualTo("ok");
+    }
+
+    // ── Node khác giữ lease → chờ L2 được ghi, không tự gọi loader ──────────
+    @Test
+    void load_leaseHeldByOtherNode_waitsForL2Fill() throws Exception {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(redisTemplate.hasKey(anyString())).thenReturn(true);
+        CacheLoadCoalescer coalescer = new CacheLoadCoalescer(redisTemplate, true, Duration.ofSeconds(2),
+                Duration.ofMillis(10));
+        Cache l2 = new ConcurrentMapCache("card-templates");
+        AtomicInteger loaderCalls = new AtomicInteger();
+
+        Thread otherNode = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            l2.put("SimpleKey []", "filled-by-leader");
+        });
+        otherNode.start();
+
+        Object value = coalescer.load("card-templates", "SimpleKey []", l2, "SimpleKey []", () -> {
+            loaderCalls.incrementAndGet();
+            return "loaded-locally";
+        });
+        otherNode.join();
+
+        assertThat(value).isEqualTo("filled-by-leader");
+        assertThat(loaderCalls.get()).isZero();
+        assertThat(coalescer.stats("card-templates").leaseWaits()).isEqualTo(1);
+        assertThat(coalescer.stats("card-templates").leaseFills()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import com.example.PixelMageEcomerceProject.dto.response.CardTemplateResponse;
+import com.example.PixelMageEcomerceProject.dto.response.ProductResponse;
+import com.example.PixelMageEcomerceProject.enums.ProductType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class CacheValueCodecTest {
+
+    private final GenericJackson2JsonRedisSerializer json = jsonSerializer();
+    private final CacheValueCodec codec = new CacheValueCodec(json, true, 1024);
+
+    // ── List DTO: round trip giữ đúng class phần tử ─────────────────────────
+    @Test
+    void roundTrip_productList_keepsElementType() {
+        List<ProductResponse> catalog = catalog(3, 4);
+
+        Object decoded = codec.deserialize(codec.serialize(catalog));
+
+        assertThat(decoded).isInstanceOf(List.class);
+        assertThat((List<?>) decoded).hasSize(3).allMatch(ProductResponse.class::isInstance);
+        assertThat(decoded).isEqualTo(catalog);
+    }
+
+    // ── Payload lớn được nén, nhỏ hơn JSON ─────────────────────────────────
+    @Test
+    void serialize_largePayload_isCompressedAndSmallerThanJson() {
+        List<ProductResponse> catalog = catalog(200, 10);
+
+        byte[] encoded = codec.serialize(catalog);
+
+        assertThat(encoded[0]).isEqualTo(CacheValueCodec.MAGIC);
+        assertThat(encoded[2] & CacheValueCodec.FLAG_LZ4).isEqualTo(CacheValueCodec.FLAG_LZ4);
+        assertThat(encoded.length).isLessThan(json.serialize(catalog).length);
+        assertThat(codec.deserialize(encoded)).isEqualTo(catalog);
+    }
+
+    // ── Entry JSON cũ vẫn đọc được sau khi rollout ──────────────────────────
+    @Test
+    void deserialize_legacyJson_isReadByFallback() {
+        byte[] legacy = json.serialize("active");
+
+        assertThat(codec.deserialize(legacy)).isEqualTo("active");
+    }
+
+    // ── Version lạ (node mới hơn ghi) → coi như miss ───────────────────────
+    @Test
+    void deserialize_unknownVersion_returnsNull() {
+        byte[] encoded = codec.serialize(catalog(1, 1));
+        encoded[1] = 99;
+
+        assertThat(codec.deserialize(encoded)).isNull();
+    }
+
+    // ── List lẫn nhiều class → không mô tả được bằng một kiểu → ghi JSON ───
+    @Test
+    void serialize_heterogeneousList_fallsBackToJson() {
+        List<Object> mixed = new ArrayList<>(List.of("a", 1));
+
+        byte[] encoded = codec.serialize(mixed);
+
+        assertThat(encoded[0]).isNotEqualTo(CacheValueCodec.MAGIC);
+    }
+
+    // ── Bytes / µs / allocation — chạy tay: mvn test -Dtest=CacheValueCodecTest -Dcache.benchmark=true
+    @Test
+    @EnabledIfSystemProperty(named = "cache.benchmark", matches = "true")
+    void benchmark_binaryVsJson_onCatalogPayload() {
+        List<ProductResponse> catalog = catalog(200, 10);
+        CacheValueCodec jsonOnly = new CacheValueCodec(json, false, Integer.MAX_VALUE);
+
+        for (Map.Entry<String, CacheValueCodec> entry : Map.of("json", jsonOnly, "binary", codec).entrySet()) {
+            CacheValueCodec candidate = entry.getValue();
+            byte[] encoded = candidate.serialize(catalog);
+            int iterations = 2_000;
+            for (int i = 0; i < iterations; i++) candidate.deserialize(candidate.serialize(catalog));
+
+            long allocBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) candidate.serialize(catalog);
+            double encodeMicros = (System.nanoTime() - start) / 1e3 / iterations;
+            long encodeAlloc = (allocatedBytes() - allocBefore) / iterations;
+
+            allocBefore = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) candidate.deserialize(encoded);
+            double decodeMicros = (System.nanoTime() - start) / 1e3 / iterations;
+            long decodeAlloc = (allocatedBytes() - allocBefore) / iterations;
+
+            System.out.printf("[CACHE-CODEC-BENCH] %-6s bytes=%d encode=%.1fµs (%d B alloc) decode=%.1fµs (%d B alloc)%n",
+                    entry.getKey(), encoded.length, encodeMicros, encodeAlloc, decodeMicros, decodeAlloc);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Payload giống products-public thật: mỗi product kèm pool preview các lá bài. */
+    private static List<ProductResponse> catalog(int products, int previewSize) {
+        return IntStream.rangeClosed(1, products)
+                .mapToObj(id -> ProductResponse.builder()
+                        .productId(id)
+                        .name("Gói Tarot Major Arcana #" + id)
+                        .description("Gói bài ngẫu nhiên gồm " + previewSize + " lá, có tỉ lệ ra lá hiếm.")
+                        .price(BigDecimal.valueOf(99_000 + id))
+                        .imageUrl("https://res.cloudinary.com/pixelmage/image/upload/v1/products/" + id + ".png")
+                        .poolSize(previewSize)
+                        .stockCount(id * 3)
+                        .productType(ProductType.GACHA_PACK)
+                        .isVisible(true)
+                        .isActive(true)
+                        .packCategoryId(id % 7)
+                        .poolPreview(IntStream.range(0, previewSize)
+                                .mapToObj(card -> CardTemplateResponse.Summary.builder()
+                                        .cardTemplateId(card)
+                                        .name("The Card " + card)
+                                        .description("Biểu tượng của khởi đầu mới và sự tự do.")
+                                        .arcanaType("MAJOR")
+                                        .suit("NONE")
+                                        .cardNumber(card)
+                                        .rarity(card % 5 == 0 ? "LEGENDARY" : "COMMON")
+                                        .imagePath("https://res.cloudinary.com/pixelmage/image/upload/v1/cards/" + card + ".png")
+                                        .isVisible(true)
+                                        .frameworkName("Rider-Waite")
+                                        .build())
+                                .toList())
+                        .build())
+                .toList();
+    }
+
+    private static GenericJackson2JsonRedisSerializer jsonSerializer() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        return new GenericJackson2JsonRedisSerializer(mapper);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CacheWarmerTest {
+
+    @Mock private CacheGenerationService generationService;
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private ValueOperations<String, String> valueOps;
+
+    private CacheWarmer warmer;
+
+    @AfterEach
+    void tearDown() {
+        if (warmer != null) {
+            ReflectionTestUtils.invokeMethod(warmer, "shutdown");
+        }
+    }
+
+    // ── Warm-up lúc khởi động: nạp mọi cache, ghi nhận lỗi từng cache ───────
+    @Test
+    void run_warmsEveryDeclaredCacheAndReportsFailures() {
+        AtomicInteger productLoads = new AtomicInteger();
+        warmer = warmer(mock(CacheManager.class), List.of(
+                new WarmedCache("products-public", () -> productLoads.incrementAndGet()),
+                new WarmedCache("spreads", () -> {
+                    throw new IllegalStateException("db down");
+                })));
+
+        warmer.run(null);
+
+        assertThat(productLoads.get()).isEqualTo(1);
+        CacheWarmer.Stats stats = warmer.stats();
+        assertThat(stats.warmupMillis()).isGreaterThanOrEqualTo(0);
+        assertThat(stats.caches()).extracting(CacheWarmer.CacheStats::cacheName)
+                .containsExactly("products-public", "spreads");
+        assertThat(stats.caches().get(0).refreshes()).isEqualTo(1);
+        assertThat(stats.caches().get(1).failures()).isEqualTo(1);
+        assertThat(stats.caches().get(1).lastError()).isEqualTo("db down");
+    }
+
+    // ── Refresh-ahead: node khác đã giữ lock chu kỳ này → bỏ qua, không gọi DB ─
+    @Test
+    void refreshDueEntries_lockHeldByOtherNode_skipsLoader() throws Exception {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), eq("1"), any(Duration.class))).thenReturn(false);
+        AtomicInteger loads = new AtomicInteger();
+        warmer = warmer(mock(TwoTierCacheManager.class),
+                List.of(new WarmedCache("card-templates", () -> loads.incrementAndGet())));
+
+        warmer.refreshDueEntries();
+
+        awaitStats(s -> s.caches().get(0).skipped() == 1);
+        assertThat(loads.get()).isZero();
+    }
+
+    // ── Refresh-ahead: giữ được lock → loader chạy ở chế độ refresh ─────────
+    @Test
+    void refreshDueEntries_lockAcquired_reloadsInRefreshMode() throws Exception {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), eq("1"), any(Duration.class))).thenReturn(true);
+        AtomicInteger refreshModeLoads = new AtomicInteger();
+        warmer = warmer(mock(TwoTierCacheManager.class), List.of(new WarmedCache("card-templates", () -> {
+            if (TwoTierCacheManager.isRefreshing()) {
+                refreshModeLoads.incrementAndGet();
+            }
+            return null;
+        })));
+
+        warmer.refreshDueEntries();
+
+        awaitStats(s -> s.caches().get(0).refreshes() == 1);
+        assertThat(refreshModeLoads.get()).isEqualTo(1);
+    }
+
+    private CacheWarmer warmer(CacheManager cacheManager, List<WarmedCache> caches) {
+        CacheWarmer cacheWarmer = new CacheWarmer(caches, cacheManager, generationService, redisTemplate);
+        ReflectionTestUtils.setField(cacheWarmer, "enabled", true);
+        ReflectionTestUtils.setField(cacheWarmer, "refreshFraction", 0.8);
+        ReflectionTestUtils.setField(cacheWarmer, "checkIntervalMillis", 30_000L);
+        ReflectionTestUtils.setField(cacheWarmer, "startupTimeoutMillis", 5_000L);
+        ReflectionTestUtils.setField(cacheWarmer, "threads", 2);
+        ReflectionTestUtils.invokeMethod(cacheWarmer, "init");
+        return cacheWarmer;
+    }
+
+    private void awaitStats(Predicate<CacheWarmer.Stats> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.test(warmer.stats()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.test(warmer.stats())).isTrue();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.example.PixelMageEcomerceProject.repository.ProductRepository;
+import com.example.PixelMageEcomerceProject.service.model.ProductPrice;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ProductPriceBookTest {
+
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private CacheGenerationService generationService;
+
+    private ProductPriceBook priceBook;
+    private final List<Consumer<String>> bumpListeners = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(i -> bumpListeners.add(i.getArgument(0))).when(generationService).addBumpListener(any());
+        priceBook = new ProductPriceBook(productRepository, generationService);
+        priceBook.ttlMillis = 60_000;
+        priceBook.minReloadIntervalMillis = 0;
+        priceBook.listen();
+        when(productRepository.findAllPrices()).thenReturn(List.of(price(1, "10000"), price(2, "20000")));
+    }
+
+    // ── Nhiều order liên tiếp: cả bảng giá nạp một lần ───────────────────────
+    @Test
+    void lookup_servesRepeatedOrdersFromOneLoad() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(priceBook.lookup(Set.of(1, 2))).containsOnlyKeys(1, 2);
+        }
+        verify(productRepository, times(1)).findAllPrices();
+    }
+
+    // ── ProductService đổi giá → bump namespace → lần tới đọc giá mới ────────
+    @Test
+    void bumpOfPriceNamespace_dropsSnapshot() {
+        priceBook.lookup(Set.of(1));
+        when(productRepository.findAllPrices()).thenReturn(List.of(price(1, "15000")));
+
+        bumpListeners.forEach(listener -> listener.accept("products-public"));
+        assertThat(priceBook.lookup(Set.of(1)).get(1).price()).isEqualByComparingTo("10000");
+
+        bumpListeners.forEach(listener -> listener.accept(ProductPriceBook.NAMESPACE));
+        assertThat(priceBook.lookup(Set.of(1)).get(1).price()).isEqualByComparingTo("15000");
+    }
+
+    // ── Product tạo sau snapshot → nạp lại; id không tồn tại → vắng trong kết quả ─
+    @Test
+    void unknownId_reloadsThenReportsMissing() {
+        priceBook.lookup(Set.of(1));
+        when(productRepository.findAllPrices()).thenReturn(List.of(price(1, "10000"), price(2, "20000"), price(3, "30000")));
+
+        assertThat(priceBook.lookup(Set.of(3))).containsOnlyKeys(3);
+        assertThat(priceBook.lookup(Set.of(99))).isEmpty();
+    }
+
+    private static ProductPrice price(int productId, String price) {
+        return new ProductPrice(productId, new BigDecimal(price), true);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.PixelMageEcomerceProject.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TwoTierCacheManagerTest {
+
+    @Mock private RedisCacheManager redisCacheManager;
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private CacheGenerationService generationService;
+
+    private Cache l2;
+    private TwoTierCacheManager cacheManager;
+    private Consumer<String> bumpListener;
+    private final CacheMetricsRegistry metrics = new CacheMetricsRegistry();
+
+    @BeforeEach
+    void setUp() {
+        l2 = spy(new ConcurrentMapCache("products-public"));
+        when(redisCacheManager.getCache("products-public")).thenReturn(l2);
+        CacheLoadCoalescer coalescer = new CacheLoadCoalescer(redisTemplate, false, Duration.ofSeconds(1),
+                Duration.ofMillis(10));
+        cacheManager = new TwoTierCacheManager(redisCacheManager, redisTemplate, generationService, coalescer, metrics,
+                Map.of("products-public", Duration.ofHours(1)), Duration.ofHours(1),
+                Duration.ofMinutes(10), 1_000);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(generationService).addBumpListener(listener.capture());
+        bumpListener = listener.getValue();
+    }
+
+    // ── L1 hit không chạm L2 ─────────────────────────────────────────────────
+    @Test
+    void get_secondReadIsServedFromL1() {
+        l2.put("SimpleKey []", List.of("a", "b"));
+        Cache cache = cacheManager.getCache("products-public");
+
+        assertThat(cache.get("SimpleKey []").get()).isEqualTo(List.of("a", "b"));
+        assertThat(cache.get("SimpleKey []").get()).isEqualTo(List.of("a", "b"));
+
+        verify(l2, times(1)).get("SimpleKey []");
+    }
+
+    // ── Evict xoá cả hai tầng và broadcast ──────────────────────────────────
+    @Test
+    void evict_clearsBothTiersAndPublishes() {
+        Cache cache = cacheManager.getCache("products-public");
+        cache.put(5, "product-5");
+
+        cache.evict(5);
+
+        assertThat(cache.get(5)).isNull();
+        verify(redisTemplate).convertAndSend(eq(TwoTierCacheManager.CHANNEL_L1_INVALIDATE), anyString());
+    }
+
+    // ── Message từ node khác chỉ xoá L1 local ───────────────────────────────
+    @Test
+    void onMessage_fromOtherNode_dropsL1Entry() {
+        Cache cache = cacheManager.getCache("products-public");
+        cache.put(7, "stale");
+        l2.put(7, "fresh"); // node khác đã ghi giá trị mới vào Redis
+
+        cacheManager.onMessage(message("other-node|E|products-public|7"), null);
+
+        assertThat(cache.get(7).get()).isEqualTo("fresh");
+    }
+
+    // ── Clear = bump generation, không xoá L2 bằng SCAN + DEL ───────────────
+    @Test
+    void clear_bumpsGenerationInsteadOfClearingL2() {
+        Cache cache = cacheManager.getCache("products-public");
+        cache.put(1, "one");
+
+        cache.clear();
+
+        verify(generationService).bump("products-public");
+        verify(l2, never()).clear();
+    }
+
+    // ── Bump (từ node này hoặc node khác) xoá toàn bộ L1 ────────────────────
+    @Test
+    void generationBump_dropsWholeL1() {
+        Cache cache = cacheManager.getCache("products-public");
+        cache.put(1, "one");
+        cache.put(2, "two");
+        l2.clear(); // generation mới → entry cũ trên Redis không còn được đọc tới
+
+        bumpListener.accept("products-public");
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(2)).isNull();
+    }
+
+    // ── Refresh chủ động: bỏ qua giá trị cũ, ghi đè và báo node khác xoá L1 ──
+    @Test
+    void refreshing_bypassesCachedValueAndOverwrites() throws Exception {
+        Cache cache = cacheManager.getCache("products-public");
+        cache.put("SimpleKey []", "old");
+
+        Object refreshed = TwoTierCacheManager.refreshing(() -> cache.get("SimpleKey []", () -> "new"));
+
+        assertThat(refreshed).isEqualTo("new");
+        assertThat(cache.get("SimpleKey []").get()).isEqualTo("new");
+        verify(redisTemplate).convertAndSend(eq(TwoTierCacheManager.CHANNEL_L1_INVALIDATE), anyString());
+    }
+
+    // ── Metrics: hit L1 / hit L2 / miss + load được đếm trong process ──────
+    @Test
+    void metrics_countHitsMissesAndLoads() {
+        l2.put("a", "from-redis");
+        Cache cache = cacheManager.getCache("products-public");
+
+        cache.get("a");                    // L2 hit, nạp L1
+        cache.get("a");                    // L1 hit
+        cache.get("b", () -> "loaded");    // miss → load
+
+        CacheMetricsRegistry.Snapshot snapshot = metrics.snapshot("products-public");
+        assertThat(snapshot.l1Hits()).isEqualTo(1);
+        assertThat(snapshot.l2Hits()).isEqualTo(1);
+        assertThat(snapshot.misses()).isEqualTo(1);
+        assertThat(snapshot.loads()).isEqualTo(1);
+        assertThat(snapshot.hitRatio()).isEqualTo(2.0 / 3);
+    }
+
+    private static Message message(String payload) {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(payload.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+}
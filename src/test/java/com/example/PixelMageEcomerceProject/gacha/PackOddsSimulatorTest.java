@@ -0,0 +1,179 @@
+package com.example.PixelMageEcomerceProject.gacha;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackOddsSimulationResponse;
+import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.enums.CardTemplateRarity;
+
+class PackOddsSimulatorTest {
+
+    private PackOddsSimulator simulator;
+
+    @BeforeEach
+    void setUp() {
+        simulator = new PackOddsSimulator();
+        simulator.parallelism = 4;
+        simulator.maxPacks = 10_000_000;
+        simulator.cpuBudgetMillis = 60_000;
+        simulator.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.shutdown();
+    }
+
+    // ── Tỉ lệ quan sát khớp lý thuyết: giá trị lý thuyết nằm trong khoảng tin cậy ─
+    @Test
+    void simulate_observedOddsMatchSamplerWithinConfidenceIntervals() {
+        List<CardTemplate> templates = templates(4, 3, 2);
+        PackSampler sampler = sampler(templates, rates(60, 30, 10));
+
+        PackOddsSimulationResponse result = simulator.simulate(1, sampler, templates, 400_000, 42L, List.of(1, 10));
+
+        assertThat(result.getTruncated()).isFalse();
+        assertThat(result.getPacksSimulated()).isEqualTo(400_000);
+        assertThat(result.getCardsDrawn()).isEqualTo(2_000_000);
+        assertThat(result.getTemplates().stream().mapToLong(PackOddsSimulationResponse.TemplateOdds::getCount).sum())
+                .isEqualTo(2_000_000);
+        // 9 khoảng 95%: cho phép tối đa một khoảng trượt
+        long misses = result.getTemplates().stream()
+                .filter(t -> t.getExpectedProbability() < t.getCiLow() || t.getExpectedProbability() > t.getCiHigh())
+                .count();
+        assertThat(misses).isLessThanOrEqualTo(1);
+        for (PackOddsSimulationResponse.RarityOdds rarity : result.getRarities()) {
+            assertThat(rarity.getObservedProbability()).isCloseTo(rarity.getConfiguredRate(), within(0.002));
+            assertThat(rarity.getFallback()).isFalse();
+        }
+        assertThat(result.getWarnings()).isEmpty();
+    }
+
+    // ── Cùng seed + số pack → cùng kết quả, dù chạy song song ───────────────
+    @Test
+    void simulate_sameSeedIsReproducible() {
+        List<CardTemplate> templates = templates(4, 3, 2);
+        PackSampler sampler = sampler(templates, rates(60, 30, 10));
+
+        PackOddsSimulationResponse first = simulator.simulate(1, sampler, templates, 200_000, 7L, List.of());
+        PackOddsSimulationResponse second = simulator.simulate(1, sampler, templates, 200_000, 7L, List.of());
+
+        assertThat(second.getTemplates()).extracting(PackOddsSimulationResponse.TemplateOdds::getCount)
+                .isEqualTo(first.getTemplates().stream().map(PackOddsSimulationResponse.TemplateOdds::getCount).toList());
+    }
+
+    // ── Rarity không có template: tỉ lệ thật lệch khỏi cấu hình, có cảnh báo ─
+    @Test
+    void simulate_fallbackRarityIsReportedAndSkewsOdds() {
+        List<CardTemplate> templates = templates(2, 2, 0);
+        PackSampler sampler = sampler(templates, rates(60, 30, 10));
+
+        PackOddsSimulationResponse result = simulator.simulate(1, sampler, templates, 100_000, 1L, List.of());
+
+        PackOddsSimulationResponse.RarityOdds legendary = result.getRarities().stream()
+                .filter(r -> r.getRarity().equals("LEGENDARY")).findFirst().orElseThrow();
+        assertThat(legendary.getFallback()).isTrue();
+        assertThat(legendary.getObservedProbability()).isZero();
+        PackOddsSimulationResponse.RarityOdds common = result.getRarities().stream()
+                .filter(r -> r.getRarity().equals("COMMON")).findFirst().orElseThrow();
+        assertThat(common.getObservedProbability()).isCloseTo(0.65, within(0.005)); // 60% + nửa của 10%
+        assertThat(result.getWarnings()).anyMatch(w -> w.contains("LEGENDARY"));
+    }
+
+    // ── Trùng trong pack và ước lượng trùng khi mở N pack ───────────────────
+    @Test
+    void simulate_duplicates() {
+        List<CardTemplate> single = templates(1, 0, 0);
+        PackOddsSimulationResponse result = simulator.simulate(1, sampler(single, rates(100, 0, 0)), single, 1_000, 1L,
+                List.of(3));
+
+        assertThat(result.getInPackDuplicates().getMeanDuplicatesPerPack()).isEqualTo(4.0);
+        assertThat(result.getInPackDuplicates().getPacksWithDuplicateRatio()).isEqualTo(1.0);
+        PackOddsSimulationResponse.CollectionEstimate threePacks = result.getCollection().get(0);
+        assertThat(threePacks.getCards()).isEqualTo(15);
+        assertThat(threePacks.getExpectedDistinctTemplates()).isCloseTo(1.0, within(1e-9));
+        assertThat(threePacks.getExpectedDuplicates()).isCloseTo(14.0, within(1e-9));
+    }
+
+    @Test
+    void collectionEstimate_matchesCouponCollectorFormula() {
+        // 10 template đều nhau, 2 pack × 5 thẻ: E[distinct] = 10 × (1 − 0.9^10)
+        double[] uniform = new double[10];
+        Arrays.fill(uniform, 0.1);
+
+        PackOddsSimulationResponse.CollectionEstimate estimate = PackOddsSimulator.collectionEstimate(2, 5, uniform);
+
+        assertThat(estimate.getExpectedDistinctTemplates()).isCloseTo(10 * (1 - Math.pow(0.9, 10)), within(1e-12));
+        assertThat(estimate.getCollectionCompletion()).isCloseTo(1 - Math.pow(0.9, 10), within(1e-12));
+    }
+
+    // ── CPU budget: hết budget thì dừng sớm, kết quả đánh dấu truncated ─────
+    @Test
+    void simulate_stopsWhenCpuBudgetIsExhausted() {
+        simulator.shutdown();
+        simulator.cpuBudgetMillis = 4; // 1 ms wall trên 4 thread
+        simulator.init();
+        List<CardTemplate> templates = templates(4, 3, 2);
+
+        PackOddsSimulationResponse result = simulator.simulate(1, sampler(templates, rates(60, 30, 10)), templates,
+                10_000_000, 3L, List.of());
+
+        assertThat(result.getTruncated()).isTrue();
+        assertThat(result.getPacksSimulated()).isLessThan(10_000_000);
+        assertThat(result.getWarnings()).anyMatch(w -> w.startsWith("CPU budget exhausted"));
+    }
+
+    @Test
+    void simulate_rejectsOutOfRangePackCount() {
+        List<CardTemplate> templates = templates(1, 0, 0);
+        PackSampler sampler = sampler(templates, rates(100, 0, 0));
+
+        assertThatThrownBy(() -> simulator.simulate(1, sampler, templates, 0, null, List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> simulator.simulate(1, sampler, templates, 10_000_001, null, List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static PackSampler sampler(List<CardTemplate> templates, Map<String, Integer> rates) {
+        Map<Integer, String> rarities = new LinkedHashMap<>();
+        templates.forEach(t -> rarities.put(t.getCardTemplateId(), t.getRarity().name()));
+        return PackSampler.compile(null, 5, rates, rarities);
+    }
+
+    private static Map<String, Integer> rates(int common, int rare, int legendary) {
+        Map<String, Integer> rates = new LinkedHashMap<>();
+        rates.put("COMMON", common);
+        rates.put("RARE", rare);
+        rates.put("LEGENDARY", legendary);
+        return rates;
+    }
+
+    private static List<CardTemplate> templates(int common, int rare, int legendary) {
+        List<CardTemplate> templates = new ArrayList<>();
+        int[] counts = { common, rare, legendary };
+        CardTemplateRarity[] rarities = { CardTemplateRarity.COMMON, CardTemplateRarity.RARE, CardTemplateRarity.LEGENDARY };
+        int id = 1;
+        for (int r = 0; r < rarities.length; r++) {
+            for (int i = 0; i < counts[r]; i++) {
+                CardTemplate template = new CardTemplate();
+                template.setCardTemplateId(id);
+                template.setName(rarities[r].name() + "_" + id++);
+                template.setRarity(rarities[r]);
+                templates.add(template);
+            }
+        }
+        return templates;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.PixelMageEcomerceProject.gacha;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.enums.CardTemplateRarity;
+
+/**
+ * JMH: một lượt rút thẻ bằng vòng roll cũ của PackServiceImpl (cộng trọng số, duyệt map, stream lọc pool
+ * theo rarity) so với {@link PackSampler} (alias table + bucket dựng sẵn), pool 30 / 300 / 3000 template.
+ *
+ * Chạy tay (JVM fork riêng, ~1 phút):
+ * mvn test -Dtest=PackSamplerBenchmarkTest -Dgacha.bench=true
+ */
+@EnabledIfSystemProperty(named = "gacha.bench", matches = "true")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackSamplerBenchmarkTest {
+
+    @Param({ "30", "300", "3000" })
+    public int poolSize;
+
+    private Map<String, Integer> rarityRates;
+    private List<CardTemplate> pool;
+    private PackSampler sampler;
+    private Random legacyRandom;
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp() {
+        rarityRates = new LinkedHashMap<>();
+        rarityRates.put("COMMON", 60);
+        rarityRates.put("RARE", 30);
+        rarityRates.put("LEGENDARY", 10);
+        pool = new ArrayList<>();
+        Map<Integer, String> templateRarities = new LinkedHashMap<>();
+        CardTemplateRarity[] rarities = CardTemplateRarity.values();
+        for (int i = 1; i <= poolSize; i++) {
+            CardTemplate template = new CardTemplate();
+            template.setCardTemplateId(i);
+            template.setRarity(rarities[i % rarities.length]);
+            pool.add(template);
+            templateRarities.put(i, template.getRarity().name());
+        }
+        sampler = PackSampler.compile(null, 5, rarityRates, templateRarities);
+        legacyRandom = new Random(42);
+        random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public int legacyRoll() {
+        return legacyRollRarityAndPickTemplate(rarityRates, pool, legacyRandom).getCardTemplateId();
+    }
+
+    @Benchmark
+    public int aliasSampler() {
+        return sampler.draw(random);
+    }
+
+    @Test
+    void aliasSampler_outperformsLegacyRoll() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(PackSamplerBenchmarkTest.class.getName() + ".*")
+                .build()).run();
+
+        Map<String, Double> legacy = new LinkedHashMap<>();
+        Map<String, Double> alias = new LinkedHashMap<>();
+        for (RunResult result : results) {
+            String size = result.getParams().getParam("poolSize");
+            double score = result.getPrimaryResult().getScore();
+            (result.getParams().getBenchmark().endsWith("aliasSampler") ? alias : legacy).put(size, score);
+        }
+        legacy.forEach((size, legacyScore) -> {
+            double aliasScore = alias.get(size);
+            System.out.printf("[GACHA-BENCH] pool=%5s  legacy=%,10.2f draws/us  alias=%,10.2f draws/us  (%.1fx)%n",
+                    size, legacyScore, aliasScore, aliasScore / legacyScore);
+            assertThat(aliasScore).isGreaterThan(legacyScore);
+        });
+    }
+
+    /** Bản sao vòng roll trước khi có PackSampler, làm mốc so sánh. */
+    private static CardTemplate legacyRollRarityAndPickTemplate(Map<String, Integer> rarityRates,
+            List<CardTemplate> pool, Random random) {
+        int totalWeight = rarityRates.values().stream().mapToInt(Integer::intValue).sum();
+        if (totalWeight <= 0) totalWeight = 100;
+
+        int roll = random.nextInt(totalWeight) + 1;
+        String selectedRarity = "COMMON";
+        int currentSum = 0;
+        for (Map.Entry<String, Integer> entry : rarityRates.entrySet()) {
+            currentSum += entry.getValue();
+            if (roll <= currentSum) {
+                selectedRarity = entry.getKey();
+                break;
+            }
+        }
+
+        String finalRarity = selectedRarity;
+        List<CardTemplate> availableTemplates = pool.stream()
+                .filter(ct -> ct.getRarity().name().equalsIgnoreCase(finalRarity))
+                .toList();
+        if (availableTemplates.isEmpty()) {
+            availableTemplates = pool;
+        }
+        return availableTemplates.get(random.nextInt(availableTemplates.size()));
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.PixelMageEcomerceProject.gacha;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.entity.PackCategory;
+import com.example.PixelMageEcomerceProject.enums.CardTemplateRarity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class PackSamplerTest {
+
+    // 4 COMMON, 3 RARE, 2 LEGENDARY → mỗi template: 0.15, 0.10, 0.05 với rate 60/30/10
+    private static final Map<Integer, String> POOL = pool(4, 3, 2);
+
+    // ── Alias table cho lại đúng rarity_rates (không qua lấy mẫu) ────────────
+    @Test
+    void aliasTable_reproducesRarityRatesExactly() {
+        Map<String, Integer> rates = new LinkedHashMap<>();
+        rates.put("COMMON", 53);
+        rates.put("RARE", 29);
+        rates.put("LEGENDARY", 17);
+        rates.put("MYTHIC", 1);
+        PackSampler sampler = PackSampler.compile(null, 5, rates, pool(3, 2, 1));
+
+        Map<String, Double> odds = sampler.rarityProbabilities();
+        rates.forEach((rarity, weight) -> assertThat(odds.get(rarity)).isCloseTo(weight / 100.0, within(1e-12)));
+        assertThat(sampler.templateProbabilities().values().stream().mapToDouble(Double::doubleValue).sum())
+                .isCloseTo(1.0, within(1e-12));
+    }
+
+    // ── Chi-square: tần suất rút thật khớp rarity_rates / số template mỗi rarity ─
+    @Test
+    void chiSquare_templateFrequenciesMatchRarityRates() throws Exception {
+        PackSampler sampler = PackSampler.compile(null, 5, rates(60, 30, 10), POOL);
+        assertChiSquare(sampler, POOL, 1_000_000);
+    }
+
+    @Test
+    void chiSquare_skewedRatesWithRareTail() throws Exception {
+        PackSampler sampler = PackSampler.compile(null, 5, rates(94, 5, 1), POOL);
+        assertChiSquare(sampler, POOL, 1_000_000);
+    }
+
+    // ── Rarity không có template: phần của nó rải đều trên cả pool ───────────
+    @Test
+    void rarityWithoutTemplates_fallsBackToWholePool() {
+        Map<Integer, String> noLegendary = pool(2, 2, 0);
+        PackSampler sampler = PackSampler.compile(null, 5, rates(60, 30, 10), noLegendary);
+
+        assertThat(sampler.fallbackRarities()).containsExactly("LEGENDARY");
+        Map<Integer, Double> odds = sampler.templateProbabilities();
+        assertThat(odds.get(1)).isCloseTo(0.30 + 0.10 / 4, within(1e-12)); // COMMON
+        assertThat(odds.get(3)).isCloseTo(0.15 + 0.10 / 4, within(1e-12)); // RARE
+    }
+
+    @Test
+    void zeroWeights_allDrawsAreCommon() {
+        PackSampler sampler = PackSampler.compile(null, 5, rates(0, 0, 0), POOL);
+
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(POOL.get(sampler.draw(random))).isEqualTo("COMMON");
+        }
+    }
+
+    // ── Không cấp phát khi rút ───────────────────────────────────────────────
+    @Test
+    void draw_doesNotAllocate() {
+        assumeThat(ManagementFactory.getThreadMXBean()).isInstanceOf(com.sun.management.ThreadMXBean.class);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeThat(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()).isTrue();
+        PackSampler sampler = PackSampler.compile(null, 5, rates(60, 30, 10), POOL);
+        SplittableRandom random = new SplittableRandom(5);
+        int[] pack = new int[5];
+        long checksum = 0;
+        for (int i = 0; i < 100_000; i++) { // warm-up
+            sampler.drawPack(random, pack, 0);
+            checksum += pack[0];
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            sampler.drawPack(random, pack, 0);
+            checksum += pack[4];
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertThat(checksum).isPositive();
+        assertThat(allocated).isLessThan(1024); // chỉ nhiễu của chính lần đo, không tỉ lệ với 5M lượt rút
+    }
+
+    // ── Registry: dùng lại bảng cùng phiên bản, biên dịch lại khi updated_at đổi ─
+    @Test
+    void registry_recompilesOnlyWhenCategoryVersionChanges() {
+        PackSamplerRegistry registry = new PackSamplerRegistry(new ObjectMapper());
+        PackCategory category = category("{\"COMMON\":60,\"RARE\":30,\"LEGENDARY\":10}");
+
+        PackSampler first = registry.samplerFor(category);
+        assertThat(registry.samplerFor(category)).isSameAs(first);
+
+        category.setRarityRates("{\"COMMON\":100}");
+        category.setUpdatedAt(category.getUpdatedAt().plusSeconds(1));
+        PackSampler second = registry.samplerFor(category);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.rarityProbabilities()).containsOnlyKeys("COMMON");
+
+        registry.invalidate(category.getPackCategoryId());
+        assertThat(registry.samplerFor(category)).isNotSameAs(second);
+    }
+
+    /**
+     * Rút song song trên 4 thread, mỗi thread một SplittableRandom tách từ gốc; so tần suất với
+     * {@link PackSampler#templateProbabilities()} bằng chi-square ở mức ý nghĩa 0.001.
+     */
+    private static void assertChiSquare(PackSampler sampler, Map<Integer, String> pool, int draws) throws Exception {
+        int maxId = pool.keySet().stream().mapToInt(Integer::intValue).max().orElseThrow();
+        int threads = 4;
+        SplittableRandom root = new SplittableRandom(20_240_601);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = root.split();
+            futures.add(executor.submit(() -> {
+                long[] counts = new long[maxId + 1];
+                for (int i = 0; i < draws / threads; i++) {
+                    counts[sampler.draw(random)]++;
+                }
+                return counts;
+            }));
+        }
+        long[] observed = new long[maxId + 1];
+        for (Future<long[]> future : futures) {
+            long[] counts = future.get(1, TimeUnit.MINUTES);
+            for (int i = 0; i < counts.length; i++) {
+                observed[i] += counts[i];
+            }
+        }
+        executor.shutdown();
+
+        long total = (long) (draws / threads) * threads;
+        double chiSquare = 0;
+        for (Map.Entry<Integer, Double> entry : sampler.templateProbabilities().entrySet()) {
+            double expected = entry.getValue() * total;
+            double diff = observed[entry.getKey()] - expected;
+            chiSquare += diff * diff / expected;
+        }
+        int degreesOfFreedom = pool.size() - 1;
+        assertThat(chiSquare).isLessThan(chiSquareCritical(degreesOfFreedom));
+    }
+
+    // Wilson–Hilferty, z của mức ý nghĩa 0.001 (một phía)
+    private static double chiSquareCritical(int degreesOfFreedom) {
+        double z = 3.0902;
+        double k = degreesOfFreedom;
+        return k * Math.pow(1 - 2 / (9 * k) + z * Math.sqrt(2 / (9 * k)), 3);
+    }
+
+    private static Map<String, Integer> rates(int common, int rare, int legendary) {
+        Map<String, Integer> rates = new LinkedHashMap<>();
+        rates.put("COMMON", common);
+        rates.put("RARE", rare);
+        rates.put("LEGENDARY", legendary);
+        return rates;
+    }
+
+    private static Map<Integer, String> pool(int common, int rare, int legendary) {
+        Map<Integer, String> pool = new LinkedHashMap<>();
+        int id = 1;
+        for (int i = 0; i < common; i++) {
+            pool.put(id++, "COMMON");
+        }
+        for (int i = 0; i < rare; i++) {
+            pool.put(id++, "RARE");
+        }
+        for (int i = 0; i < legendary; i++) {
+            pool.put(id++, "LEGENDARY");
+        }
+        return pool;
+    }
+
+    private static PackCategory category(String rarityRates) {
+        PackCategory category = new PackCategory();
+        category.setPackCategoryId(1);
+        category.setCardsPerPack(5);
+        category.setRarityRates(rarityRates);
+        category.setUpdatedAt(LocalDateTime.of(2026, 1, 1, 0, 0));
+        List<CardTemplate> templates = new ArrayList<>();
+        for (CardTemplateRarity rarity : CardTemplateRarity.values()) {
+            CardTemplate template = new CardTemplate();
+            template.setCardTemplateId(rarity.ordinal() + 1);
+            template.setRarity(rarity);
+            templates.add(template);
+        }
+        category.setCardPools(templates);
+        return category;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.PixelMageEcomerceProject.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Redis giả bằng map trong heap; controller giả đếm số lần thực thi thật.
+ */
+class IdempotencyFilterTest {
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger executions = new AtomicInteger();
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.get(anyString())).thenAnswer(i -> redis.get(i.<String>getArgument(0)));
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(i -> redis.putIfAbsent(i.getArgument(0), i.getArgument(1)) == null);
+        doAnswer(i -> redis.put(i.getArgument(0), i.getArgument(1)))
+                .when(ops).set(anyString(), anyString(), any(Duration.class));
+        when(redisTemplate.delete(anyString())).thenAnswer(i -> redis.remove(i.<String>getArgument(0)) != null);
+
+        filter = new IdempotencyFilter(redisTemplate, new ObjectMapper());
+        filter.enabled = true;
+        filter.paths = List.of("/api/orders");
+        filter.ttlMillis = 60_000;
+        filter.lockTtlMillis = 30_000;
+        filter.waitTimeoutMillis = 5_000;
+        filter.maxResponseBytes = 1 << 20;
+    }
+
+    // ── Retry sau khi xong: trả lại đúng bytes, controller không chạy lần hai ─
+    @Test
+    void retry_replaysStoredResponseWithoutExecuting() throws Exception {
+        MockHttpServletResponse first = send("key-1", "{\"customerId\":1}", controller(201, 0));
+        MockHttpServletResponse retry = send("key-1", "{\"customerId\":1}", controller(201, 0));
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsByteArray()).isEqualTo(first.getContentAsByteArray());
+        assertThat(retry.getHeader(IdempotencyFilter.HEADER_REPLAYED)).isEqualTo("true");
+        assertThat(first.getHeader(IdempotencyFilter.HEADER_REPLAYED)).isNull();
+    }
+
+    @Test
+    void sameKeyDifferentBody_rejected() throws Exception {
+        send("key-1", "{\"customerId\":1}", controller(201, 0));
+        MockHttpServletResponse other = send("key-1", "{\"customerId\":2}", controller(201, 0));
+
+        assertThat(other.getStatus()).isEqualTo(422);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    // ── 5xx không được lưu: retry thực thi lại ──────────────────────────────
+    @Test
+    void serverError_releasesKey() throws Exception {
+        send("key-1", "{}", controller(500, 0));
+        MockHttpServletResponse retry = send("key-1", "{}", controller(201, 0));
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(retry.getStatus()).isEqualTo(201);
+    }
+
+    // ── Request trùng đồng thời: chỉ một lần thực thi, các request còn lại chờ rồi nhận kết quả ─
+    @Test
+    void concurrentDuplicates_waitForFirstAndShareResponse() throws Exception {
+        int clients = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MockHttpServletResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return send("key-1", "{}", controller(201, 200));
+            }));
+        }
+        start.countDown();
+
+        for (Future<MockHttpServletResponse> future : futures) {
+            MockHttpServletResponse response = future.get(10, TimeUnit.SECONDS);
+            assertThat(response.getStatus()).isEqualTo(201);
+            assertThat(response.getContentAsString()).contains("\"orderId\":1");
+        }
+        executor.shutdown();
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void withoutHeader_notFiltered() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/orders");
+        assertThat(filter.shouldNotFilter(request)).isTrue();
+        request.addHeader(IdempotencyFilter.HEADER_KEY, "key-1");
+        assertThat(filter.shouldNotFilter(request)).isFalse();
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/orders");
+        request.addHeader(IdempotencyFilter.HEADER_KEY, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private FilterChain controller(int status, long delayMillis) {
+        return (request, response) -> {
+            request.getInputStream().readAllBytes(); // controller vẫn đọc được body
+            int execution = executions.incrementAndGet();
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            ((HttpServletResponse) response).setStatus(status);
+            response.setContentType("application/json");
+            response.getOutputStream().write(("{\"code\":" + status + ",\"data\":{\"orderId\":" + execution + "}}")
+                    .getBytes(StandardCharsets.UTF_8));
+        };
+    }
+}
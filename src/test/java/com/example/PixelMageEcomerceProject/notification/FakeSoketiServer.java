@@ -0,0 +1,118 @@
+package com.example.PixelMageEcomerceProject.notification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pusher.rest.Pusher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Soketi giả chạy trong JVM test: nhận {@code POST /apps/{id}/events} và {@code /apps/{id}/batch_events}
+ * giống Soketi (không kiểm chữ ký), ghi lại event đã nhận; {@link #setAvailable(false)} trả 503 để mô phỏng
+ * Soketi sập.
+ */
+class FakeSoketiServer implements AutoCloseable {
+
+    record Received(String channel, String name, JsonNode data) {
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final List<Received> received = new CopyOnWriteArrayList<>();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private volatile boolean available = true;
+
+    FakeSoketiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/apps/", this::handle);
+        server.start();
+    }
+
+    /** Pusher client trỏ vào server này, giống SoketiConfig với host:port không SSL. */
+    Pusher pusher() {
+        Pusher pusher = new Pusher("test-app", "test-key", "test-secret");
+        pusher.setHost("127.0.0.1:" + server.getAddress().getPort());
+        pusher.setEncrypted(false);
+        return pusher;
+    }
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    List<Received> received() {
+        return new ArrayList<>(received);
+    }
+
+    List<Integer> batchSizes() {
+        return new ArrayList<>(batchSizes);
+    }
+
+    int rejectedRequests() {
+        return rejected.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readAllBytes();
+            if (!available) {
+                rejected.incrementAndGet();
+                respond(exchange, 503, "{\"error\":\"unavailable\"}");
+                return;
+            }
+            JsonNode root = MAPPER.readTree(bytes);
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/batch_events")) {
+                JsonNode batch = root.path("batch");
+                batchSizes.add(batch.size());
+                batch.forEach(this::record);
+            } else if (path.endsWith("/events")) {
+                batchSizes.add(1);
+                root.path("channels").forEach(channel -> received.add(new Received(channel.asText(),
+                        root.path("name").asText(), parseData(root.path("data")))));
+            } else {
+                respond(exchange, 404, "{}");
+                return;
+            }
+            respond(exchange, 200, "{}");
+        }
+    }
+
+    private void record(JsonNode event) {
+        received.add(new Received(event.path("channel").asText(), event.path("name").asText(),
+                parseData(event.path("data"))));
+    }
+
+    private static JsonNode parseData(JsonNode data) {
+        try {
+            // Pusher gửi data là chuỗi JSON
+            return data.isTextual() ? MAPPER.readTree(data.asText()) : data;
+        } catch (IOException e) {
+            return data;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
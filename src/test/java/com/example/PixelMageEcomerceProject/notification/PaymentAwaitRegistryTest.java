@@ -0,0 +1,122 @@
+package com.example.PixelMageEcomerceProject.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.example.PixelMageEcomerceProject.dto.response.OrderPaymentState;
+import com.example.PixelMageEcomerceProject.enums.OrderStatus;
+import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PaymentAwaitRegistryTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private PaymentAwaitRegistry registry;
+
+    private static final OrderPaymentState PAID =
+            new OrderPaymentState(7, OrderStatus.COMPLETED, PaymentStatus.SUCCEEDED);
+
+    @BeforeEach
+    void setUp() {
+        registry = new PaymentAwaitRegistry(orderRepository, redisTemplate, listenerContainer);
+        registry.maxWaiters = 100;
+        when(orderRepository.findPaymentStateById(7)).thenReturn(Optional.of(PAID));
+    }
+
+    // ── Settle trên node này: waiter local được đánh thức, node khác nhận qua pub/sub ─
+    @Test
+    void publishSettled_wakesLocalWaitersAndBroadcasts() {
+        List<OrderPaymentState> first = new ArrayList<>();
+        List<OrderPaymentState> second = new ArrayList<>();
+        registry.register(7, first::add);
+        registry.register(7, second::add);
+
+        registry.publishSettled(7);
+
+        assertThat(first).containsExactly(PAID);
+        assertThat(second).containsExactly(PAID);
+        assertThat(registry.waiterCount()).isZero();
+        verify(orderRepository, times(1)).findPaymentStateById(7); // một lần đọc cho cả hai waiter
+        verify(redisTemplate).convertAndSend(PaymentAwaitRegistry.CHANNEL_PAYMENT_SETTLED, "7");
+    }
+
+    // ── Message pub/sub cho order không ai chờ ở node này: không đọc DB ─────
+    @Test
+    void onMessage_withoutWaiters_skipsDatabase() {
+        registry.onMessage(message("7"), null);
+
+        verify(orderRepository, never()).findPaymentStateById(any());
+    }
+
+    @Test
+    void onMessage_wakesWaiterOfThatOrderOnly() {
+        List<OrderPaymentState> woken = new ArrayList<>();
+        List<OrderPaymentState> other = new ArrayList<>();
+        registry.register(7, woken::add);
+        registry.register(8, other::add);
+
+        registry.onMessage(message("7"), null);
+
+        assertThat(woken).containsExactly(PAID);
+        assertThat(other).isEmpty();
+        assertThat(registry.waiterCount()).isEqualTo(1);
+    }
+
+    @Test
+    void deregister_removesWaiter() {
+        List<OrderPaymentState> woken = new ArrayList<>();
+        Runnable deregister = registry.register(7, woken::add);
+
+        deregister.run();
+        registry.publishSettled(7);
+
+        assertThat(woken).isEmpty();
+        assertThat(registry.waiterCount()).isZero();
+    }
+
+    // ── Quá số waiter cho phép: từ chối, caller trả trạng thái ngay ─────────
+    @Test
+    void register_overCapacity_returnsNull() {
+        registry.maxWaiters = 2;
+        assertThat(registry.register(7, s -> { })).isNotNull();
+        assertThat(registry.register(8, s -> { })).isNotNull();
+
+        assertThat(registry.register(9, s -> { })).isNull();
+        assertThat(registry.waiterCount()).isEqualTo(2);
+    }
+
+    private static Message message(String body) {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+}
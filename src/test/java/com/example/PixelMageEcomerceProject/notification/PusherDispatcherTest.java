@@ -0,0 +1,113 @@
+package com.example.PixelMageEcomerceProject.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.PixelMageEcomerceProject.dto.event.NotificationEvent;
+
+/**
+ * Chạy dispatcher với Pusher client thật trỏ vào {@link FakeSoketiServer}.
+ */
+class PusherDispatcherTest {
+
+    private FakeSoketiServer soketi;
+    private PusherDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        soketi = new FakeSoketiServer();
+        dispatcher = new PusherDispatcher(soketi.pusher());
+        dispatcher.queueCapacity = 1000;
+        dispatcher.batchSize = 10;
+        dispatcher.dropPolicy = PusherDispatcher.DropPolicy.DROP_OLDEST;
+        dispatcher.maxAgeMillis = 60_000;
+        dispatcher.maxAttempts = 100;
+        dispatcher.coalesceChannels = Set.of("admin.notifications");
+        dispatcher.coalesceWindowMillis = 200;
+        dispatcher.backoffBaseMillis = 100;
+        dispatcher.backoffMaxMillis = 100;
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+        soketi.close();
+    }
+
+    // ── Event user đi qua batch_events, mỗi request tối đa 10 event ────────
+    @Test
+    void userEvents_sentThroughBatchApi() throws Exception {
+        dispatcher.start();
+        for (int i = 0; i < 25; i++) {
+            dispatcher.dispatch("user." + i, NotificationEvent.paymentConfirmed(i, i, "TX-" + i));
+        }
+
+        // Server ghi nhận event trước khi dispatcher cộng sent, chờ cả hai
+        await(() -> soketi.received().size() == 25 && dispatcher.stats().sent() == 25);
+
+        assertThat(soketi.batchSizes()).allSatisfy(size -> assertThat(size).isBetween(1, 10));
+        assertThat(soketi.batchSizes().stream().mapToInt(Integer::intValue).sum()).isEqualTo(25);
+        assertThat(soketi.received()).extracting(FakeSoketiServer.Received::name).containsOnly("PAYMENT_CONFIRMED");
+        assertThat(dispatcher.stats().sent()).isEqualTo(25);
+    }
+
+    // ── Burst trên admin.notifications gộp thành một event ──────────────────
+    @Test
+    void adminBurst_coalescedWithinWindow() throws Exception {
+        dispatcher.start();
+        for (int i = 1; i <= 5; i++) {
+            dispatcher.dispatch("admin.notifications", NotificationEvent.orderPaid(i, BigDecimal.TEN));
+        }
+
+        await(() -> !soketi.received().isEmpty());
+        Thread.sleep(300);
+
+        assertThat(soketi.received()).hasSize(1);
+        FakeSoketiServer.Received event = soketi.received().get(0);
+        assertThat(event.name()).isEqualTo("ORDER_PAID");
+        assertThat(event.data().path("payload").path("coalescedCount").asInt()).isEqualTo(5);
+        assertThat(event.data().path("payload").path("items")).hasSize(5);
+        assertThat(event.data().path("payload").path("orderId").asInt()).isEqualTo(5);
+        assertThat(dispatcher.stats().coalesced()).isEqualTo(4);
+    }
+
+    // ── Soketi sập: caller không bị chặn, hàng đầy thì bỏ event cũ, hồi phục thì gửi tiếp ─
+    @Test
+    void soketiDown_callersNeverBlockAndOldestDropped() throws Exception {
+        dispatcher.queueCapacity = 5;
+        soketi.setAvailable(false);
+        dispatcher.start();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            dispatcher.dispatch("user." + i, NotificationEvent.paymentConfirmed(i, i, "TX-" + i));
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(500));
+
+        await(() -> soketi.rejectedRequests() > 0);
+        assertThat(dispatcher.stats().droppedFull()).isPositive();
+        assertThat(dispatcher.stats().queued()).isLessThanOrEqualTo(5);
+
+        soketi.setAvailable(true);
+        await(() -> soketi.received().stream().anyMatch(e -> e.channel().equals("user.199")));
+        assertThat(soketi.received()).hasSizeLessThanOrEqualTo(15);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met within 10s");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.PixelMageEcomerceProject.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.enums.OutboxStatus;
+import com.example.PixelMageEcomerceProject.repository.OutboxEventRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class FulfillmentWorkerTest {
+
+    @Mock private OutboxEventRepository outboxEventRepository;
+    @Mock private OrderService orderService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private FulfillmentWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new FulfillmentWorker(outboxEventRepository,
+                List.of(new PaymentSucceededHandler(new ObjectMapper(), orderService)), transactionManager);
+        ReflectionTestUtils.setField(worker, "threads", 2);
+        ReflectionTestUtils.setField(worker, "maxAttempts", 3);
+        ReflectionTestUtils.setField(worker, "backoffBaseMillis", 1000L);
+        ReflectionTestUtils.setField(worker, "backoffMaxMillis", 60_000L);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        worker.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+    }
+
+    private OutboxEvent claimedEvent(int attempts) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventId(1L);
+        event.setEventType(OutboxEvent.TYPE_PAYMENT_SUCCEEDED);
+        event.setAggregateId("42");
+        event.setPayload("{\"orderId\":42,\"transactionId\":\"TX-1\"}");
+        event.setStatus(OutboxStatus.PROCESSING);
+        event.setAttempts(attempts);
+        event.setLockedBy(owner());
+        event.setCreatedAt(LocalDateTime.now().minusSeconds(2));
+        when(outboxEventRepository.findById(1L)).thenReturn(Optional.of(event));
+        // UPDATE có điều kiện lease như trong DB: chỉ ghi khi dòng vẫn PROCESSING với đúng owner + attempts
+        when(outboxEventRepository.complete(eq(1L), anyString(), anyInt(), any())).thenAnswer(inv -> {
+            if (!holdsLease(event, inv.getArgument(1), inv.getArgument(2))) {
+                return 0;
+            }
+            event.setStatus(OutboxStatus.DONE);
+            event.setProcessedAt(inv.getArgument(3));
+            return 1;
+        });
+        when(outboxEventRepository.fail(eq(1L), anyString(), anyInt(), anyString(), any(), anyString())).thenAnswer(inv -> {
+            if (!holdsLease(event, inv.getArgument(1), inv.getArgument(2))) {
+                return 0;
+            }
+            event.setStatus(OutboxStatus.valueOf(inv.getArgument(3)));
+            event.setNextAttemptAt(inv.getArgument(4));
+            event.setLastError(inv.getArgument(5));
+            return 1;
+        });
+        return event;
+    }
+
+    private String owner() {
+        return (String) ReflectionTestUtils.getField(worker, "owner");
+    }
+
+    private static boolean holdsLease(OutboxEvent event, String owner, int attempts) {
+        return event.getStatus() == OutboxStatus.PROCESSING && owner.equals(event.getLockedBy())
+                && attempts == event.getAttempts();
+    }
+
+    // ── Thành công: fulfillment chạy, dòng outbox DONE ──────────────────────
+    @Test
+    void process_success_marksDone() {
+        OutboxEvent event = claimedEvent(1);
+
+        worker.process(1L);
+
+        verify(orderService).fulfillPaidOrder(42, "TX-1");
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.DONE);
+        assertThat(event.getProcessedAt()).isNotNull();
+        assertThat(worker.stats().processed()).isEqualTo(1);
+    }
+
+    // ── Lỗi còn lượt: quay lại PENDING, lùi lịch theo backoff ───────────────
+    @Test
+    void process_failure_reschedulesWithBackoff() {
+        OutboxEvent event = claimedEvent(1);
+        doThrow(new RuntimeException("db timeout")).when(orderService).fulfillPaidOrder(42, "TX-1");
+
+        worker.process(1L);
+
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(event.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(event.getLastError()).contains("db timeout");
+    }
+
+    // ── Hết lượt: DEAD, không lên lịch lại ─────────────────────────────────
+    @Test
+    void process_failureAfterMaxAttempts_marksDead() {
+        OutboxEvent event = claimedEvent(3);
+        doThrow(new RuntimeException("boom")).when(orderService).fulfillPaidOrder(42, "TX-1");
+
+        worker.process(1L);
+
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.DEAD);
+        assertThat(worker.stats().deadLettered()).isEqualTo(1);
+    }
+
+    // ── Dòng đã được xử lý ở nơi khác: bỏ qua ──────────────────────────────
+    @Test
+    void process_notProcessing_skips() {
+        OutboxEvent event = claimedEvent(1);
+        event.setStatus(OutboxStatus.DONE);
+
+        worker.process(1L);
+
+        verify(orderService, never()).fulfillPaidOrder(any(), any());
+    }
+
+    // ── Lease hết hạn giữa chừng và node khác claim lại: không ghi DONE, không lên lịch retry ─
+    @Test
+    void process_leaseReclaimedDuringHandler_rollsBackWithoutTouchingRow() {
+        OutboxEvent event = claimedEvent(1);
+        doAnswer(inv -> {
+            event.setLockedBy("other-node");
+            event.setAttempts(2);
+            return null;
+        }).when(orderService).fulfillPaidOrder(42, "TX-1");
+
+        worker.process(1L);
+
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.PROCESSING);
+        assertThat(event.getLockedBy()).isEqualTo("other-node");
+        verify(outboxEventRepository, never()).fail(any(), any(), anyInt(), any(), any(), any());
+        assertThat(worker.stats().processed()).isZero();
+    }
+
+    // ── Dòng PROCESSING của node khác: không chạy handler ───────────────────
+    @Test
+    void process_leaseOwnedByAnotherNode_skips() {
+        OutboxEvent event = claimedEvent(1);
+        event.setLockedBy("other-node");
+
+        worker.process(1L);
+
+        verify(orderService, never()).fulfillPaidOrder(any(), any());
+    }
+}
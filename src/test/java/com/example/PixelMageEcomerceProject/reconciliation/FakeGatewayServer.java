@@ -0,0 +1,208 @@
+package com.example.PixelMageEcomerceProject.reconciliation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.example.PixelMageEcomerceProject.config.VNPayConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * SEPay và VNPay giả chạy trong JVM test:
+ * - {@code GET /userapi/transactions/list}: liệt kê tiền vào như SEPay user API (lọc since_id, limit; cần Bearer key)
+ * - {@code POST /merchant_webapi/api/transaction}: querydr như VNPay, kiểm chữ ký request và ký response
+ *   bằng cùng hash secret
+ * Ghi lại số request và số request VNPay chạy đồng thời lớn nhất; {@link #setFailing(true)} trả 500.
+ */
+class FakeGatewayServer implements AutoCloseable {
+
+    static final String SEPAY_KEY = "sepay-test-key";
+    static final String VNPAY_TMN = "TESTTMN";
+    static final String VNPAY_SECRET = "vnpay-test-secret";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<ObjectNode> sePayTransactions = new CopyOnWriteArrayList<>();
+    private final Map<String, String[]> vnPayTransactions = new ConcurrentHashMap<>(); // txnRef → {transactionNo, amount, status}
+    private final List<Map<String, String>> sePayRequests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger vnPayRequests = new AtomicInteger();
+    private final AtomicInteger vnPayInFlight = new AtomicInteger();
+    private final AtomicInteger vnPayMaxInFlight = new AtomicInteger();
+    private volatile long vnPayDelayMillis;
+    private volatile boolean failing;
+
+    FakeGatewayServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor); // nhiều request VNPay cùng lúc
+        server.createContext("/userapi/transactions/list", this::handleSePay);
+        server.createContext("/merchant_webapi/api/transaction", this::handleVnPay);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void addSePayTransfer(long id, String content, String amountIn) {
+        ObjectNode transaction = MAPPER.createObjectNode();
+        transaction.put("id", String.valueOf(id));
+        transaction.put("bank_brand_name", "MBBank");
+        transaction.put("account_number", "0703376647");
+        transaction.put("transaction_date", "2026-10-18 10:00:00");
+        transaction.put("amount_out", "0.00");
+        transaction.put("amount_in", amountIn);
+        transaction.put("transaction_content", content);
+        transaction.put("reference_number", "FT" + id);
+        sePayTransactions.add(transaction);
+    }
+
+    void addVnPayTransaction(String txnRef, String transactionNo, long amount, String transactionStatus) {
+        vnPayTransactions.put(txnRef, new String[] { transactionNo, String.valueOf(amount * 100), transactionStatus });
+    }
+
+    void setVnPayDelayMillis(long delayMillis) {
+        this.vnPayDelayMillis = delayMillis;
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    List<Map<String, String>> sePayRequests() {
+        return new ArrayList<>(sePayRequests);
+    }
+
+    int vnPayRequests() {
+        return vnPayRequests.get();
+    }
+
+    int vnPayMaxInFlight() {
+        return vnPayMaxInFlight.get();
+    }
+
+    private void handleSePay(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        sePayRequests.add(query);
+        if (failing) {
+            respond(exchange, 500, "{\"status\":500}");
+            return;
+        }
+        if (!("Bearer " + SEPAY_KEY).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            respond(exchange, 401, "{\"status\":401}");
+            return;
+        }
+        long sinceId = Long.parseLong(query.getOrDefault("since_id", "0"));
+        int limit = Integer.parseInt(query.getOrDefault("limit", "100"));
+        ArrayNode transactions = MAPPER.createArrayNode();
+        sePayTransactions.stream()
+                .filter(t -> t.path("id").asLong() >= sinceId)
+                .sorted((a, b) -> Long.compare(a.path("id").asLong(), b.path("id").asLong()))
+                .limit(limit)
+                .forEach(transactions::add);
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("status", 200);
+        body.putNull("error");
+        body.putObject("messages").put("success", true);
+        body.set("transactions", transactions);
+        respond(exchange, 200, MAPPER.writeValueAsString(body));
+    }
+
+    private void handleVnPay(HttpExchange exchange) throws IOException {
+        vnPayRequests.incrementAndGet();
+        vnPayMaxInFlight.accumulateAndGet(vnPayInFlight.incrementAndGet(), Math::max);
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonNode request = MAPPER.readTree(in.readAllBytes());
+            if (vnPayDelayMillis > 0) {
+                Thread.sleep(vnPayDelayMillis);
+            }
+            if (failing) {
+                respond(exchange, 500, "{}");
+                return;
+            }
+            String expected = VNPayConfig.hmacSHA512(VNPAY_SECRET, String.join("|", text(request, "vnp_RequestId"),
+                    text(request, "vnp_Version"), text(request, "vnp_Command"), text(request, "vnp_TmnCode"),
+                    text(request, "vnp_TxnRef"), text(request, "vnp_TransactionDate"), text(request, "vnp_CreateDate"),
+                    text(request, "vnp_IpAddr"), text(request, "vnp_OrderInfo")));
+            String txnRef = text(request, "vnp_TxnRef");
+            String[] transaction = vnPayTransactions.get(txnRef);
+            String responseCode = !expected.equals(text(request, "vnp_SecureHash")) ? "97"
+                    : transaction == null ? "91" : "00";
+
+            Map<String, String> response = new LinkedHashMap<>();
+            response.put("vnp_ResponseId", text(request, "vnp_RequestId"));
+            response.put("vnp_Command", "querydr");
+            response.put("vnp_ResponseCode", responseCode);
+            response.put("vnp_Message", "00".equals(responseCode) ? "QueryDR Success" : "Error");
+            response.put("vnp_TmnCode", VNPAY_TMN);
+            response.put("vnp_TxnRef", txnRef);
+            response.put("vnp_Amount", transaction != null ? transaction[1] : "");
+            response.put("vnp_BankCode", transaction != null ? "NCB" : "");
+            response.put("vnp_PayDate", transaction != null ? "20261018100500" : "");
+            response.put("vnp_TransactionNo", transaction != null ? transaction[0] : "");
+            response.put("vnp_TransactionType", transaction != null ? "01" : "");
+            response.put("vnp_TransactionStatus", transaction != null ? transaction[2] : "");
+            response.put("vnp_OrderInfo", text(request, "vnp_OrderInfo"));
+            response.put("vnp_PromotionCode", "");
+            response.put("vnp_PromotionAmount", "");
+            response.put("vnp_SecureHash", VNPayConfig.hmacSHA512(VNPAY_SECRET, String.join("|", response.values())));
+            respond(exchange, 200, MAPPER.writeValueAsString(response));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 500, "{}");
+        } finally {
+            vnPayInFlight.decrementAndGet();
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.path(field).asText("");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.PixelMageEcomerceProject.reconciliation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.PixelMageEcomerceProject.config.VNPayConfig;
+import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
+import com.example.PixelMageEcomerceProject.service.impl.SEPayGatewayimpl;
+import com.example.PixelMageEcomerceProject.service.impl.VNPayGatewayImpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
+import com.example.PixelMageEcomerceProject.service.interfaces.RedisLockService;
+import com.example.PixelMageEcomerceProject.service.model.ReconciliationCandidate;
+import com.example.PixelMageEcomerceProject.webhook.WebhookIngestionService;
+import com.example.PixelMageEcomerceProject.webhook.WebhookIngestionService.Outcome;
+import com.example.PixelMageEcomerceProject.webhook.WebhookIngestionService.Receipt;
+
+/**
+ * Gateway chạy thật (SEPayGatewayimpl / VNPayGatewayImpl) trỏ vào {@link FakeGatewayServer}; DB và inbox giả.
+ */
+class PaymentReconcilerTest {
+
+    private FakeGatewayServer gatewayServer;
+    private SEPayGatewayimpl sePay;
+    private VNPayGatewayImpl vnPay;
+    private PaymentRepository paymentRepository;
+    private WebhookIngestionService ingestion;
+    private RedisLockService lockService;
+    private MockEnvironment environment;
+    private PaymentReconciler reconciler;
+    private final List<Map<String, String>> queued = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        gatewayServer = new FakeGatewayServer();
+
+        sePay = new SEPayGatewayimpl();
+        ReflectionTestUtils.setField(sePay, "apiUrl", gatewayServer.baseUrl() + "/userapi");
+        ReflectionTestUtils.setField(sePay, "apiKey", FakeGatewayServer.SEPAY_KEY);
+        ReflectionTestUtils.setField(sePay, "bankAccount", "0703376647");
+        ReflectionTestUtils.setField(sePay, "reconcileBatchSize", 500);
+        ReflectionTestUtils.setField(sePay, "pageSize", 1000);
+
+        VNPayConfig vnPayConfig = mock(VNPayConfig.class);
+        when(vnPayConfig.getVnp_TmnCode()).thenReturn(FakeGatewayServer.VNPAY_TMN);
+        when(vnPayConfig.getVnp_HashSecret()).thenReturn(FakeGatewayServer.VNPAY_SECRET);
+        vnPay = new VNPayGatewayImpl(vnPayConfig, mock(PaymentRepository.class),
+                mock(ApplicationEventPublisher.class), mock(OrderRepository.class), mock(PaymentService.class));
+        ReflectionTestUtils.setField(vnPay, "apiUrl", gatewayServer.baseUrl() + "/merchant_webapi/api/transaction");
+        ReflectionTestUtils.setField(vnPay, "serverIp", "127.0.0.1");
+
+        paymentRepository = mock(PaymentRepository.class);
+        when(paymentRepository.findReconciliationCandidates(any(), any(), any(), anyInt(), any()))
+                .thenReturn(List.of());
+        ingestion = mock(WebhookIngestionService.class);
+        when(ingestion.accept(anyString(), any())).thenAnswer(i -> {
+            queued.add(i.getArgument(1));
+            return new Receipt(Outcome.ACCEPTED, (long) queued.size(), "Accepted");
+        });
+        lockService = mock(RedisLockService.class);
+        when(lockService.tryLock(anyString(), anyLong())).thenReturn(true);
+        environment = new MockEnvironment();
+
+        Map<String, PaymentGatewayStrategy> strategies = Map.of("sepay", sePay, "vnpay", vnPay);
+        reconciler = new PaymentReconciler(strategies, paymentRepository, ingestion, lockService, environment);
+        reconciler.enabled = true;
+        reconciler.minAgeMillis = 120_000;
+        reconciler.lookbackMillis = 86_400_000;
+        reconciler.pageSize = 500;
+        reconciler.defaultConcurrency = 2;
+        reconciler.defaultRatePerSecond = 1_000;
+        reconciler.lockTtlSeconds = 60;
+    }
+
+    @AfterEach
+    void tearDown() {
+        gatewayServer.close();
+    }
+
+    // ── SEPay: một request liệt kê giao dịch cho cả lô, chỉ đơn khớp nội dung được đưa vào inbox ─
+    @Test
+    void sePay_missedTransfers_reconciledWithOneCallPerBatch() {
+        gatewayServer.addSePayTransfer(101, "MBVCB.1 PIXELMAGEORD11 FT1", "150000.00");
+        gatewayServer.addSePayTransfer(102, "chuyen tien an trua", "50000.00");
+        gatewayServer.addSePayTransfer(103, "PIXELMAGE_ORD_13", "90000.00");
+        gatewayServer.addSePayTransfer(104, "PIXELMAGE_ORD_99", "10000.00"); // đơn không còn PENDING
+        candidates(PaymentGateway.SEPAY, sePayCandidate(1, 11), sePayCandidate(2, 12), sePayCandidate(3, 13));
+
+        PaymentReconciler.Report report = reconciler.run();
+
+        PaymentReconciler.GatewayReport sepay = gatewayReport(report, "sepay");
+        assertThat(sepay.checked()).isEqualTo(3);
+        assertThat(sepay.calls()).isEqualTo(1);
+        assertThat(sepay.reconciled()).isEqualTo(2);
+        assertThat(gatewayServer.sePayRequests()).hasSize(1);
+        assertThat(gatewayServer.sePayRequests().get(0)).containsEntry("account_number", "0703376647");
+        // Payload đi qua đúng parser của webhook SEPay
+        assertThat(queued).extracting(p -> sePay.handleWebhook(p).getOrderId()).containsExactlyInAnyOrder(11, 13);
+        assertThat(queued).extracting(sePay::webhookEventId).containsExactlyInAnyOrder("101", "103");
+        verify(ingestion, never()).accept(eq("vnpay"), any());
+    }
+
+    @Test
+    void sePay_pagesThroughTransfersBySinceId() {
+        ReflectionTestUtils.setField(sePay, "pageSize", 2);
+        for (int id = 1; id <= 5; id++) {
+            gatewayServer.addSePayTransfer(id, "PIXELMAGEORD" + (20 + id), "10000.00");
+        }
+        candidates(PaymentGateway.SEPAY, sePayCandidate(1, 21), sePayCandidate(2, 25));
+
+        PaymentReconciler.Report report = reconciler.run();
+
+        assertThat(gatewayReport(report, "sepay").reconciled()).isEqualTo(2);
+        assertThat(gatewayServer.sePayRequests()).extracting(q -> q.get("since_id"))
+                .containsExactly(null, "3", "5");
+    }
+
+    // ── VNPay: querydr từng giao dịch, không vượt concurrency của gateway ───
+    @Test
+    void vnPay_queriesEachTransactionWithBoundedConcurrency() {
+        environment.setProperty("payment.reconcile.vnpay.concurrency", "2");
+        gatewayServer.setVnPayDelayMillis(30);
+        List<ReconciliationCandidate> pending = new ArrayList<>();
+        for (int order = 1; order <= 8; order++) {
+            pending.add(vnPayCandidate(order, order));
+            if (order % 2 == 0) {
+                gatewayServer.addVnPayTransaction(order + "-12345678", "1400" + order, 50_000, "00");
+            }
+        }
+        gatewayServer.addVnPayTransaction("1-12345678", "14001", 50_000, "01"); // chưa hoàn tất
+        candidates(PaymentGateway.VNPAY, pending.toArray(ReconciliationCandidate[]::new));
+
+        PaymentReconciler.Report report = reconciler.run();
+
+        PaymentReconciler.GatewayReport vnpay = gatewayReport(report, "vnpay");
+        assertThat(vnpay.checked()).isEqualTo(8);
+        assertThat(vnpay.calls()).isEqualTo(8);
+        assertThat(vnpay.reconciled()).isEqualTo(4);
+        assertThat(gatewayServer.vnPayRequests()).isEqualTo(8);
+        assertThat(gatewayServer.vnPayMaxInFlight()).isBetween(1, 2);
+        // Payload ký lại dạng IPN: qua được verifySignature của luồng webhook, dedupe theo vnp_TxnRef + vnp_TransactionNo
+        assertThat(queued).allMatch(vnPay::verifySignature);
+        assertThat(queued).extracting(vnPay::webhookEventId).containsExactlyInAnyOrder(
+                "2-12345678:14002", "4-12345678:14004", "6-12345678:14006", "8-12345678:14008");
+    }
+
+    @Test
+    void vnPay_rateLimitSpacesRequests() {
+        environment.setProperty("payment.reconcile.vnpay.concurrency", "4");
+        environment.setProperty("payment.reconcile.vnpay.rate-per-second", "20");
+        candidates(PaymentGateway.VNPAY, vnPayCandidate(1, 1), vnPayCandidate(2, 2), vnPayCandidate(3, 3),
+                vnPayCandidate(4, 4), vnPayCandidate(5, 5), vnPayCandidate(6, 6));
+
+        long started = System.nanoTime();
+        reconciler.run();
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        // 6 request, 20/s → ít nhất 5 khoảng 50 ms dù có 4 thread
+        assertThat(gatewayServer.vnPayRequests()).isEqualTo(6);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(240);
+    }
+
+    // ── Webhook đã tới trước: inbox báo DUPLICATE, không tính là reconcile ──
+    @Test
+    void webhookAlreadyInInbox_countedAsAlreadyReceived() {
+        gatewayServer.addSePayTransfer(201, "PIXELMAGE_ORD_31", "10000.00");
+        candidates(PaymentGateway.SEPAY, sePayCandidate(1, 31));
+        when(ingestion.accept(eq("sepay"), any())).thenReturn(new Receipt(Outcome.DUPLICATE, null, "Duplicate"));
+
+        PaymentReconciler.GatewayReport sepay = gatewayReport(reconciler.run(), "sepay");
+
+        assertThat(sepay.reconciled()).isZero();
+        assertThat(sepay.alreadyReceived()).isEqualTo(1);
+    }
+
+    @Test
+    void gatewayDown_countsFailedCallsWithoutQueueing() {
+        gatewayServer.setFailing(true);
+        candidates(PaymentGateway.SEPAY, sePayCandidate(1, 41));
+        candidates(PaymentGateway.VNPAY, vnPayCandidate(2, 42));
+
+        PaymentReconciler.Report report = reconciler.run();
+
+        assertThat(gatewayReport(report, "sepay").failedCalls()).isEqualTo(1);
+        assertThat(gatewayReport(report, "vnpay").failedCalls()).isEqualTo(1);
+        assertThat(report.reconciled()).isZero();
+        verify(ingestion, never()).accept(anyString(), any());
+    }
+
+    @Test
+    void anotherNodeRunning_skips() {
+        when(lockService.tryLock(anyString(), anyLong())).thenReturn(false);
+
+        reconciler.run();
+
+        verify(paymentRepository, never()).findReconciliationCandidates(any(), any(), any(), anyInt(), any());
+    }
+
+    private void candidates(PaymentGateway gateway, ReconciliationCandidate... candidates) {
+        when(paymentRepository.findReconciliationCandidates(eq(gateway), any(), any(), eq(0), any()))
+                .thenReturn(List.of(candidates));
+    }
+
+    private static ReconciliationCandidate sePayCandidate(int paymentId, int orderId) {
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(30);
+        return new ReconciliationCandidate(paymentId, orderId, "SEPAY_" + orderId + "_1700000000000",
+                new BigDecimal("10000"), createdAt);
+    }
+
+    private static ReconciliationCandidate vnPayCandidate(int paymentId, int orderId) {
+        return new ReconciliationCandidate(paymentId, orderId, "VNPAY_INIT_" + orderId + "-12345678_20261018095500",
+                new BigDecimal("50000"), LocalDateTime.now().minusMinutes(30));
+    }
+
+    private static PaymentReconciler.GatewayReport gatewayReport(PaymentReconciler.Report report, String gateway) {
+        return report.gateways().stream().filter(g -> g.gateway().equals(gateway)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Orders/s của đường ghi order trên Postgres thật, 1–50 dòng mỗi order, hai kiểu câu lệnh Hibernate sinh ra:
+ * - identity: findById từng product, INSERT ... RETURNING từng dòng (IDENTITY không gom batch được)
+ * - batched: một SELECT ... = ANY cho mọi product, id lấy từ sequence INCREMENT BY 50, INSERT gom JDBC batch
+ *
+ * Chạy tay (schema tạm, xoá khi xong):
+ * mvn test -Dtest=OrderWriteBenchmarkTest -Dorder.bench.jdbc-url="jdbc:postgresql://localhost:5432/pixelmage?reWriteBatchedInserts=true"
+ *   -Dorder.bench.username=... -Dorder.bench.password=... [-Dorder.bench.threads=8] [-Dorder.bench.orders=2000]
+ */
+@EnabledIfSystemProperty(named = "order.bench.jdbc-url", matches = ".+")
+class OrderWriteBenchmarkTest {
+
+    private static final String SCHEMA = "order_write_bench";
+    private static final int PRODUCTS = 200;
+    private static final int POOL = 50; // = allocationSize của Order / OrderItem
+    private static final int[] LINE_ITEMS = { 1, 5, 10, 25, 50 };
+
+    private static HikariDataSource dataSource;
+    private static int threads;
+    private static int ordersPerRun;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        threads = Integer.getInteger("order.bench.threads", 8);
+        ordersPerRun = Integer.getInteger("order.bench.orders", 2_000);
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getProperty("order.bench.jdbc-url"));
+        config.setUsername(System.getProperty("order.bench.username"));
+        config.setPassword(System.getProperty("order.bench.password"));
+        config.setMaximumPoolSize(threads);
+        config.setAutoCommit(false);
+        config.setConnectionInitSql("SET search_path TO " + SCHEMA);
+        try (Connection c = java.sql.DriverManager.getConnection(config.getJdbcUrl(), config.getUsername(),
+                config.getPassword()); Statement st = c.createStatement()) {
+            st.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            st.execute("CREATE SCHEMA " + SCHEMA);
+            st.execute("SET search_path TO " + SCHEMA);
+            st.execute("CREATE TABLE products (product_id SERIAL PRIMARY KEY, name VARCHAR(100) NOT NULL, "
+                    + "price NUMERIC(10, 2) NOT NULL, is_active BOOLEAN NOT NULL DEFAULT TRUE)");
+            st.execute("CREATE TABLE orders (order_id SERIAL PRIMARY KEY, customer_id INTEGER NOT NULL, "
+                    + "status VARCHAR(50) NOT NULL, total_amount NUMERIC(12, 2) NOT NULL, created_at TIMESTAMP NOT NULL DEFAULT now())");
+            st.execute("CREATE TABLE order_items (order_item_id SERIAL PRIMARY KEY, "
+                    + "order_id INTEGER NOT NULL REFERENCES orders(order_id), product_id INTEGER NOT NULL REFERENCES products(product_id), "
+                    + "quantity INTEGER NOT NULL, unit_price NUMERIC(10, 2) NOT NULL, subtotal NUMERIC(12, 2) NOT NULL)");
+            // Bắt đầu xa dải id SERIAL của kiểu identity để hai kiểu ghi chung bảng không trùng khoá
+            st.execute("CREATE SEQUENCE orders_pooled_seq START WITH 1000000000 INCREMENT BY " + POOL);
+            st.execute("CREATE SEQUENCE order_items_pooled_seq START WITH 1000000000 INCREMENT BY " + POOL);
+            st.execute("INSERT INTO products (name, price) SELECT 'Product ' || g, 10000 + g FROM generate_series(1, "
+                    + PRODUCTS + ") g");
+        }
+        dataSource = new HikariDataSource(config);
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (dataSource != null) {
+            try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+                st.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+                c.commit();
+            }
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void ordersPerSecond_identityVsBatched() throws Exception {
+        Map<Integer, BigDecimal> priceBook = loadPriceBook();
+        for (int items : LINE_ITEMS) {
+            // Warm-up cho JIT / plan cache của cả hai kiểu
+            run(items, ordersPerRun / 10, (c, ids) -> writeIdentity(c, ids));
+            run(items, ordersPerRun / 10, (c, ids) -> writeBatched(c, ids, priceBook));
+
+            double identity = run(items, ordersPerRun, (c, ids) -> writeIdentity(c, ids));
+            double batched = run(items, ordersPerRun, (c, ids) -> writeBatched(c, ids, priceBook));
+            System.out.printf("[ORDER-WRITE-BENCH] items=%2d threads=%d  identity=%,8.0f orders/s  batched=%,8.0f orders/s  (%.2fx)%n",
+                    items, threads, identity, batched, batched / identity);
+            if (items >= 10) {
+                // Ngưỡng lỏng để không phụ thuộc máy: round trip giảm từ ~2N+1 xuống hằng số
+                assertThat(batched).isGreaterThan(identity);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface OrderWrite {
+        void write(Connection connection, int[] productIds) throws SQLException;
+    }
+
+    private static double run(int items, int orders, OrderWrite write) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int perThread = Math.max(1, orders / threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                try (Connection c = dataSource.getConnection()) {
+                    for (int i = 0; i < perThread; i++) {
+                        write.write(c, randomProducts(items));
+                        c.commit();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        return perThread * threads / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /** Đường ghi cũ: mỗi dòng một findById và một INSERT ... RETURNING. */
+    private static void writeIdentity(Connection c, int[] productIds) throws SQLException {
+        List<BigDecimal> prices = new ArrayList<>(productIds.length);
+        try (PreparedStatement find = c.prepareStatement("SELECT product_id, price FROM products WHERE product_id = ?")) {
+            for (int productId : productIds) {
+                find.setInt(1, productId);
+                try (ResultSet rs = find.executeQuery()) {
+                    rs.next();
+                    prices.add(rs.getBigDecimal(2));
+                }
+            }
+        }
+        int orderId;
+        try (PreparedStatement insert = c.prepareStatement(
+                "INSERT INTO orders (customer_id, status, total_amount) VALUES (?, 'PENDING', ?) RETURNING order_id")) {
+            insert.setInt(1, 1);
+            insert.setBigDecimal(2, prices.stream().reduce(BigDecimal.ZERO, BigDecimal::add));
+            try (ResultSet rs = insert.executeQuery()) {
+                rs.next();
+                orderId = rs.getInt(1);
+            }
+        }
+        try (PreparedStatement insert = c.prepareStatement("INSERT INTO order_items (order_id, product_id, quantity, "
+                + "unit_price, subtotal) VALUES (?, ?, 1, ?, ?) RETURNING order_item_id")) {
+            for (int i = 0; i < productIds.length; i++) {
+                insert.setInt(1, orderId);
+                insert.setInt(2, productIds[i]);
+                insert.setBigDecimal(3, prices.get(i));
+                insert.setBigDecimal(4, prices.get(i));
+                try (ResultSet rs = insert.executeQuery()) {
+                    rs.next();
+                }
+            }
+        }
+    }
+
+    /** Đường ghi mới: một SELECT cho mọi product, giá từ price book, id pooled, INSERT theo batch. */
+    private static void writeBatched(Connection c, int[] productIds, Map<Integer, BigDecimal> priceBook)
+            throws SQLException {
+        Object[] boxed = new Object[productIds.length];
+        for (int i = 0; i < productIds.length; i++) {
+            boxed[i] = productIds[i];
+        }
+        Array ids = c.createArrayOf("integer", boxed);
+        try (PreparedStatement find = c.prepareStatement("SELECT product_id FROM products WHERE product_id = ANY(?)")) {
+            find.setArray(1, ids);
+            try (ResultSet rs = find.executeQuery()) {
+                while (rs.next()) {
+                    rs.getInt(1);
+                }
+            }
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (int productId : productIds) {
+            total = total.add(priceBook.get(productId));
+        }
+        int orderId = IdPool.ORDERS.next(c);
+        try (PreparedStatement insert = c.prepareStatement(
+                "INSERT INTO orders (order_id, customer_id, status, total_amount) VALUES (?, ?, 'PENDING', ?)")) {
+            insert.setInt(1, orderId);
+            insert.setInt(2, 1);
+            insert.setBigDecimal(3, total);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement insert = c.prepareStatement("INSERT INTO order_items (order_item_id, order_id, product_id, "
+                + "quantity, unit_price, subtotal) VALUES (?, ?, ?, 1, ?, ?)")) {
+            for (int productId : productIds) {
+                insert.setInt(1, IdPool.ORDER_ITEMS.next(c));
+                insert.setInt(2, orderId);
+                insert.setInt(3, productId);
+                insert.setBigDecimal(4, priceBook.get(productId));
+                insert.setBigDecimal(5, priceBook.get(productId));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /** Optimizer pooled của Hibernate: một nextval cấp POOL id. */
+    private enum IdPool {
+        ORDERS("orders_pooled_seq"), ORDER_ITEMS("order_items_pooled_seq");
+
+        private final String sequence;
+        private final ThreadLocal<int[]> range = ThreadLocal.withInitial(() -> new int[] { 0, 0 }); // {next, end}
+
+        IdPool(String sequence) {
+            this.sequence = sequence;
+        }
+
+        int next(Connection c) throws SQLException {
+            int[] r = range.get();
+            if (r[0] >= r[1]) {
+                try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT nextval('" + sequence + "')")) {
+                    rs.next();
+                    r[0] = rs.getInt(1);
+                    r[1] = r[0] + POOL;
+                }
+            }
+            return r[0]++;
+        }
+    }
+
+    private static Map<Integer, BigDecimal> loadPriceBook() throws SQLException {
+        Map<Integer, BigDecimal> prices = new HashMap<>();
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT product_id, price FROM products")) {
+            while (rs.next()) {
+                prices.put(rs.getInt(1), rs.getBigDecimal(2));
+            }
+            c.commit();
+        }
+        return prices;
+    }
+
+    private static int[] randomProducts(int items) {
+        return ThreadLocalRandom.current().ints(items, 1, PRODUCTS + 1).toArray();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.PixelMageEcomerceProject.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Chạy đúng câu SQL claim của {@link PackRepository} / {@link CardRepository} trên Postgres thật
+ * (SKIP LOCKED không giả lập được bằng H2 / mock). Dữ liệu nằm trong schema tạm, xoá khi xong:
+ * mvn test -Dtest=StockAllocationConcurrencyTest -Dallocation.it.jdbc-url=jdbc:postgresql://localhost:5432/pixelmage
+ *   -Dallocation.it.username=... -Dallocation.it.password=... [-Dallocation.it.pool-size=16]
+ */
+@EnabledIfSystemProperty(named = "allocation.it.jdbc-url", matches = ".+")
+class StockAllocationConcurrencyTest {
+
+    private static final String SCHEMA = "allocation_it";
+    private static final int PACK_CATEGORY_ID = 1;
+    private static final int PRODUCT_ID = 1;
+
+    private static HikariDataSource dataSource;
+    private static NamedParameterJdbcTemplate jdbc;
+    private static int poolSize;
+
+    @BeforeAll
+    static void setUp() {
+        poolSize = Integer.getInteger("allocation.it.pool-size", 16);
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getProperty("allocation.it.jdbc-url"));
+        config.setUsername(System.getProperty("allocation.it.username"));
+        config.setPassword(System.getProperty("allocation.it.password"));
+        config.setMaximumPoolSize(poolSize);
+        config.setConnectionInitSql("SET search_path TO " + SCHEMA);
+        // Tạo schema trước khi pool mở kết nối có search_path trỏ tới nó
+        try (HikariDataSource bootstrap = new HikariDataSource(copyWithoutInit(config))) {
+            new NamedParameterJdbcTemplate(bootstrap).getJdbcTemplate().execute(
+                    "DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE; CREATE SCHEMA " + SCHEMA);
+        }
+        dataSource = new HikariDataSource(config);
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+        jdbc.getJdbcTemplate().execute("CREATE TABLE packs (pack_id SERIAL PRIMARY KEY, version BIGINT NOT NULL DEFAULT 0, "
+                + "pack_category_id INTEGER, status VARCHAR(20) NOT NULL)");
+        jdbc.getJdbcTemplate().execute("CREATE INDEX ON packs (pack_category_id, pack_id) WHERE status = 'STOCKED'");
+        jdbc.getJdbcTemplate().execute("CREATE TABLE cards (card_id SERIAL PRIMARY KEY, product_id INTEGER NOT NULL, "
+                + "status VARCHAR(20) NOT NULL, created_at TIMESTAMP NOT NULL DEFAULT now(), "
+                + "updated_at TIMESTAMP NOT NULL DEFAULT now(), sold_at TIMESTAMP)");
+        jdbc.getJdbcTemplate().execute("CREATE INDEX ON cards (product_id, created_at, card_id) WHERE status = 'READY'");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (dataSource != null) {
+            jdbc.getJdbcTemplate().execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            dataSource.close();
+        }
+    }
+
+    // ── Nhiều webhook claim song song: mỗi pack chỉ được cấp cho đúng một người ─
+    @Test
+    void claimStockedPacks_concurrentBuyers_neverDoubleAllocate() throws Exception {
+        int stock = 5_000;
+        seedPacks(stock);
+        ConcurrentLinkedQueue<Integer> claimed = new ConcurrentLinkedQueue<>();
+
+        runConcurrently(poolSize * 2, () -> {
+            while (true) {
+                List<Integer> ids = jdbc.queryForList(PackRepository.CLAIM_STOCKED_PACKS_SQL,
+                        Map.of("packCategoryId", PACK_CATEGORY_ID, "quantity", ThreadLocalRandom.current().nextInt(1, 6)),
+                        Integer.class);
+                if (ids.isEmpty()) {
+                    return;
+                }
+                claimed.addAll(ids);
+            }
+        });
+
+        Set<Integer> unique = new HashSet<>(claimed);
+        assertThat(claimed).hasSize(stock);
+        assertThat(unique).hasSize(stock);
+        assertThat(count("SELECT COUNT(*) FROM packs WHERE status = 'SOLD'")).isEqualTo(stock);
+    }
+
+    @Test
+    void claimReadyCards_concurrentBuyers_neverDoubleAllocate() throws Exception {
+        int stock = 2_000;
+        jdbc.getJdbcTemplate().update("INSERT INTO cards (product_id, status) "
+                + "SELECT " + PRODUCT_ID + ", 'READY' FROM generate_series(1, " + stock + ")");
+        ConcurrentLinkedQueue<Integer> claimed = new ConcurrentLinkedQueue<>();
+
+        runConcurrently(poolSize * 2, () -> {
+            while (true) {
+                List<Integer> ids = jdbc.queryForList(CardRepository.CLAIM_READY_CARDS_SQL,
+                        Map.of("productId", PRODUCT_ID, "quantity", 2, "soldAt", LocalDateTime.now()), Integer.class);
+                if (ids.isEmpty()) {
+                    return;
+                }
+                claimed.addAll(ids);
+            }
+        });
+
+        assertThat(new HashSet<>(claimed)).hasSize(stock);
+        assertThat(claimed).hasSize(stock);
+    }
+
+    // ── Throughput theo số thread: không ai chờ khoá của ai nên tăng gần tuyến tính tới pool size ─
+    @Test
+    void claimStockedPacks_throughputScalesWithThreads() throws Exception {
+        List<Double> rates = new ArrayList<>();
+        for (int threads = 1; threads <= poolSize; threads *= 2) {
+            int claimsPerThread = 300;
+            seedPacks(threads * claimsPerThread);
+            long start = System.nanoTime();
+            runConcurrently(threads, () -> {
+                for (int i = 0; i < claimsPerThread; i++) {
+                    jdbc.queryForList(PackRepository.CLAIM_STOCKED_PACKS_SQL,
+                            Map.of("packCategoryId", PACK_CATEGORY_ID, "quantity", 1), Integer.class);
+                }
+            });
+            double perSecond = threads * claimsPerThread / ((System.nanoTime() - start) / 1e9);
+            rates.add(perSecond);
+            System.out.printf("[ALLOCATION] threads=%2d  claims/s=%,.0f  speedup=%.2fx%n",
+                    threads, perSecond, perSecond / rates.get(0));
+        }
+        if (poolSize >= 4) {
+            // Ngưỡng lỏng để không phụ thuộc máy; với FOR UPDATE thường (không SKIP) speedup ≈ 1x
+            assertThat(rates.get(rates.size() - 1)).isGreaterThan(rates.get(0) * 2);
+        }
+    }
+
+    private static void seedPacks(int count) {
+        jdbc.getJdbcTemplate().update("DELETE FROM packs");
+        jdbc.getJdbcTemplate().update("INSERT INTO packs (pack_category_id, status) "
+                + "SELECT " + PACK_CATEGORY_ID + ", 'STOCKED' FROM generate_series(1, " + count + ")");
+        jdbc.getJdbcTemplate().execute("ANALYZE packs");
+    }
+
+    private static long count(String sql) {
+        Long value = jdbc.getJdbcTemplate().queryForObject(sql, Long.class);
+        return value != null ? value : 0;
+    }
+
+    private static void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+
+    private static HikariConfig copyWithoutInit(HikariConfig config) {
+        HikariConfig copy = new HikariConfig();
+        copy.setJdbcUrl(config.getJdbcUrl());
+        copy.setUsername(config.getUsername());
+        copy.setPassword(config.getPassword());
+        copy.setMaximumPoolSize(1);
+        return copy;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.PixelMageEcomerceProject.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.PixelMageEcomerceProject.entity.Account;
+import com.example.PixelMageEcomerceProject.entity.Role;
+import com.example.PixelMageEcomerceProject.exceptions.RedisUnavailableException;
+import com.example.PixelMageEcomerceProject.security.jwt.JwtPrincipal;
+import com.example.PixelMageEcomerceProject.security.jwt.JwtTokenProvider;
+import com.example.PixelMageEcomerceProject.security.jwt.VerifiedClaims;
+import com.example.PixelMageEcomerceProject.security.service.TokenVersionService;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    @Mock private TokenVersionService tokenVersionService;
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    @BeforeEach
+    void setUp() {
+        when(tokenVersionService.currentVersion(anyInt())).thenReturn(OptionalLong.of(3L));
+        jwtTokenProvider = newProvider(3_600_000L);
+    }
+
+    private JwtTokenProvider newProvider(long expirationMillis) {
+        JwtTokenProvider provider = new JwtTokenProvider(tokenVersionService);
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpiration", expirationMillis);
+        ReflectionTestUtils.invokeMethod(provider, "init");
+        return provider;
+    }
+
+    private Account buildAccount() {
+        Role role = new Role();
+        role.setRoleId(2);
+        role.setRoleName("CUSTOMER");
+        Account account = new Account();
+        account.setCustomerId(42);
+        account.setEmail("buyer@pixelmage.vn");
+        account.setRole(role);
+        return account;
+    }
+
+    // ── verify — happy path ──────────────────────────────────────────────────
+    @Test
+    void verify_returnsAllClaimsFromSingleParse() {
+        String token = jwtTokenProvider.generateToken(buildAccount());
+
+        VerifiedClaims claims = jwtTokenProvider.verify(token);
+
+        assertThat(claims.username()).isEqualTo("buyer@pixelmage.vn");
+        assertThat(claims.userId()).isEqualTo(42);
+        assertThat(claims.roles()).containsExactly("ROLE_CUSTOMER");
+        assertThat(claims.tokenVersion()).isEqualTo(3L);
+        assertThat(claims.remainingMillis()).isPositive();
+    }
+
+    @Test
+    void verify_principalCarriesCustomerIdAndAuthorities() {
+        String token = jwtTokenProvider.generateToken(buildAccount());
+
+        JwtPrincipal principal = jwtTokenProvider.verify(token).toPrincipal();
+
+        assertThat(principal.getCustomerId()).isEqualTo(42);
+        assertThat(principal.getUsername()).isEqualTo("buyer@pixelmage.vn");
+        assertThat(principal.getAuthorities())
+                .extracting(a -> a.getAuthority())
+                .containsExactly("ROLE_CUSTOMER");
+    }
+
+    // ── verify — rejected tokens ─────────────────────────────────────────────
+    @Test
+    void verify_tamperedSignature_throws() {
+        String token = jwtTokenProvider.generateToken(buildAccount());
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtTokenProvider.verify(tampered));
+    }
+
+    @Test
+    void verify_expiredToken_throws() {
+        String token = newProvider(-1_000L).generateToken(buildAccount());
+
+        assertThrows(ExpiredJwtException.class, () -> jwtTokenProvider.verify(token));
+    }
+
+    @Test
+    void generateToken_versionUnavailable_refusesToIssue() {
+        when(tokenVersionService.currentVersion(anyInt())).thenReturn(OptionalLong.empty());
+
+        assertThrows(RedisUnavailableException.class, () -> jwtTokenProvider.generateToken(buildAccount()));
+    }
+
+    @Test
+    void verify_tokenWithoutUserId_hasNoPrincipal() {
+        Account account = buildAccount();
+        account.setCustomerId(null);
+        String token = jwtTokenProvider.generateToken(account);
+
+        VerifiedClaims claims = jwtTokenProvider.verify(token);
+
+        assertThat(claims.userId()).isNull();
+        assertThat(claims.tokenVersion()).isZero();
+        assertThat(claims.toPrincipal()).isNull();
+    }
+}
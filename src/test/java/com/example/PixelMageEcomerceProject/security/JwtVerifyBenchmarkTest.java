@@ -0,0 +1,122 @@
+package com.example.PixelMageEcomerceProject.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.Key;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.PixelMageEcomerceProject.entity.Account;
+import com.example.PixelMageEcomerceProject.entity.Role;
+import com.example.PixelMageEcomerceProject.security.jwt.JwtTokenProvider;
+import com.example.PixelMageEcomerceProject.security.jwt.VerifiedClaims;
+import com.example.PixelMageEcomerceProject.security.service.TokenVersionService;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * JMH: xác thực một access token theo luồng cũ của JwtAuthenticationFilter (decode key + dựng parser mới,
+ * parse 3 lần / request) so với {@link JwtTokenProvider#verify} (key / parser dựng sẵn, parse một lần).
+ * Một thread đo → điểm là tokens/s trên một core.
+ *
+ * Chạy tay (JVM fork riêng, ~30 giây):
+ * mvn test -Dtest=JwtVerifyBenchmarkTest -Djwt.bench=true
+ */
+@EnabledIfSystemProperty(named = "jwt.bench", matches = "true")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class JwtVerifyBenchmarkTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtTokenProvider jwtTokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        TokenVersionService tokenVersionService = mock(TokenVersionService.class);
+        when(tokenVersionService.currentVersion(anyInt())).thenReturn(OptionalLong.of(3L));
+        jwtTokenProvider = new JwtTokenProvider(tokenVersionService);
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.invokeMethod(jwtTokenProvider, "init");
+
+        Role role = new Role();
+        role.setRoleId(2);
+        role.setRoleName("CUSTOMER");
+        Account account = new Account();
+        account.setCustomerId(42);
+        account.setEmail("buyer@pixelmage.vn");
+        account.setRole(role);
+        token = jwtTokenProvider.generateToken(account);
+    }
+
+    @Benchmark
+    public boolean legacyVerify() {
+        String username = legacyParse(token).getSubject();
+        return username.equals(legacyParse(token).getSubject())
+                && !legacyParse(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public VerifiedClaims singleParseVerify() {
+        return jwtTokenProvider.verify(token);
+    }
+
+    @Test
+    void singleParseVerify_outperformsLegacyVerify() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(JwtVerifyBenchmarkTest.class.getName() + ".*")
+                .build()).run();
+
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            scores.put(benchmark.substring(benchmark.lastIndexOf('.') + 1), result.getPrimaryResult().getScore());
+        }
+        double legacy = scores.get("legacyVerify");
+        double singleParse = scores.get("singleParseVerify");
+        System.out.printf("[JWT-BENCH] legacy=%,.0f tokens/s/core  single-parse=%,.0f tokens/s/core  (%.1fx)%n",
+                legacy, singleParse, singleParse / legacy);
+        assertThat(singleParse).isGreaterThan(legacy);
+    }
+
+    /** Luồng trước khi có JwtTokenProvider#verify: mỗi lần parse decode key và dựng parser mới. */
+    private static Claims legacyParse(String token) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+}
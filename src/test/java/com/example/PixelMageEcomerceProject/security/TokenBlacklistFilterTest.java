@@ -0,0 +1,90 @@
+package com.example.PixelMageEcomerceProject.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.PixelMageEcomerceProject.security.service.TokenBlacklistFilter;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TokenBlacklistFilterTest {
+
+    private static final String KEY_GENERATION = "token_blacklist:generation";
+
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+    @Mock private RedisMessageListenerContainer listenerContainer;
+
+    private TokenBlacklistFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        Cursor<String> emptyCursor = mock(Cursor.class);
+        when(emptyCursor.hasNext()).thenReturn(false);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(emptyCursor);
+        when(valueOperations.get(KEY_GENERATION)).thenReturn("3");
+
+        filter = new TokenBlacklistFilter(redisTemplate, listenerContainer);
+        ReflectionTestUtils.setField(filter, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "generationCheckMillis", 0L);
+        ReflectionTestUtils.setField(filter, "resyncMillis", 600_000L);
+        ReflectionTestUtils.invokeMethod(filter, "subscribe");
+        filter.rebuild();
+    }
+
+    private long expiresAt() {
+        return System.currentTimeMillis() + 1_800_000L;
+    }
+
+    @Test
+    void mightContain_upToDateWithRedis_answersLocally() {
+        assertThat(filter.mightContain("token-a", expiresAt())).isFalse();
+    }
+
+    @Test
+    void mightContain_missedMessage_fallsBackToRedisUntilCaughtUp() {
+        when(valueOperations.get(KEY_GENERATION)).thenReturn("4");
+
+        assertThat(filter.mightContain("token-a", expiresAt())).isTrue();
+
+        // Message generation 4 tới muộn → filter bù đủ, lại trả lời local
+        String payload = "00".repeat(32) + ":" + expiresAt() + ":4";
+        filter.onMessage(new DefaultMessage("token_blacklist:added".getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(filter.mightContain("token-a", expiresAt())).isFalse();
+    }
+
+    @Test
+    void resyncIfNeeded_gapPersists_rebuildsFromRedis() {
+        when(valueOperations.get(KEY_GENERATION)).thenReturn("5");
+        assertThat(filter.mightContain("token-a", expiresAt())).isTrue();
+        ReflectionTestUtils.setField(filter, "gapSince", System.currentTimeMillis() - 10_000L);
+
+        filter.resyncIfNeeded();
+
+        assertThat(filter.mightContain("token-a", expiresAt())).isFalse();
+    }
+}
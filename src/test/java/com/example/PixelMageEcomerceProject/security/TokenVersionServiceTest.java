@@ -0,0 +1,89 @@
+package com.example.PixelMageEcomerceProject.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.PixelMageEcomerceProject.repository.AccountRepository;
+import com.example.PixelMageEcomerceProject.security.service.TokenVersionService;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TokenVersionServiceTest {
+
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+    @Mock private AccountRepository accountRepository;
+    @Mock private RedisMessageListenerContainer listenerContainer;
+
+    private TokenVersionService tokenVersionService;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        tokenVersionService = new TokenVersionService(redisTemplate, accountRepository, listenerContainer);
+        ReflectionTestUtils.setField(tokenVersionService, "localTtlMillis", 300_000L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void currentVersion_missingKey_reseedsFromDatabase() {
+        when(valueOperations.get("token_version:7")).thenReturn(null);
+        when(accountRepository.findTokenVersion(7)).thenReturn(Optional.of(4L));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), eq("4"))).thenReturn(4L);
+
+        assertThat(tokenVersionService.currentVersion(7)).isEqualTo(OptionalLong.of(4L));
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("token_version:7")), eq("4"));
+    }
+
+    @Test
+    void currentVersion_redisDown_fallsBackToDatabase() {
+        when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        when(accountRepository.findTokenVersion(7)).thenReturn(Optional.of(2L));
+
+        assertThat(tokenVersionService.currentVersion(7)).isEqualTo(OptionalLong.of(2L));
+    }
+
+    @Test
+    void currentVersion_redisAndDatabaseDown_isEmpty() {
+        when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        when(accountRepository.findTokenVersion(7)).thenThrow(new RuntimeException("db down"));
+
+        assertThat(tokenVersionService.currentVersion(7)).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void bump_writesDatabaseThenRaisesCache() {
+        when(accountRepository.incrementTokenVersion(7)).thenReturn(Optional.of(5L));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), eq("5"))).thenReturn(5L);
+
+        assertThat(tokenVersionService.bump(7)).isEqualTo(5L);
+        verify(redisTemplate).convertAndSend("token_version:changed", "7:5");
+        verify(valueOperations, never()).increment(anyString());
+        assertThat(tokenVersionService.currentVersion(7)).isEqualTo(OptionalLong.of(5L));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.PixelMageEcomerceProject.serial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Sequence giả bằng AtomicLong, mỗi nextval cộng BLOCK_SIZE như sequence INCREMENT BY 1000 của V13.
+ */
+class SerialNumberGeneratorTest {
+
+    private final AtomicLong sequence = new AtomicLong(1);
+    private JdbcTemplate jdbcTemplate;
+    private SerialNumberGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyString(), anyInt()))
+                .thenAnswer(inv -> {
+                    int blocks = inv.getArgument(3);
+                    List<Long> starts = new ArrayList<>();
+                    for (int i = 0; i < blocks; i++) {
+                        starts.add(sequence.getAndAdd(SerialNumberGenerator.BLOCK_SIZE));
+                    }
+                    return starts;
+                });
+        generator = new SerialNumberGenerator(jdbcTemplate);
+    }
+
+    // ── 10k serial: một round trip, tăng dần, không trùng, checksum hợp lệ ──
+    @Test
+    void next_mintsLargeBatchWithOneSequenceCall() {
+        List<String> serials = generator.next(SerialSequence.CARD, 10_000);
+
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(Long.class), eq("card_serial_seq"), eq(10));
+        assertThat(serials).hasSize(10_000).doesNotHaveDuplicates().isSorted();
+        assertThat(serials.get(0)).isEqualTo("PM" + SerialCodec.withCheck("0000001"));
+        assertThat(serials).allSatisfy(serial -> {
+            assertThat(serial).hasSize(10);
+            assertThat(SerialCodec.isValid(serial, "PM")).isTrue();
+        });
+    }
+
+    @Test
+    void next_servesFromHeldBlockUntilExhausted() {
+        generator.next(SerialSequence.CARD, 400);
+        generator.next(SerialSequence.CARD, 600);   // đúng hết khối đầu
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(Long.class), anyString(), eq(1));
+
+        String next = generator.next(SerialSequence.CARD);
+        verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(Long.class), anyString(), eq(1));
+        assertThat(SerialCodec.decode(next.substring(2, 9))).isEqualTo(1001);
+    }
+
+    // ── Voucher: hoán vị nên không lộ thứ tự, nhưng vẫn không trùng ─────────
+    @Test
+    void next_scrambledSequenceStaysUnique() {
+        List<String> codes = generator.next(SerialSequence.VOUCHER, 5_000);
+
+        assertThat(codes).doesNotHaveDuplicates().isNotEqualTo(codes.stream().sorted().toList());
+        assertThat(codes).allSatisfy(code -> assertThat(SerialCodec.isValid(code, "V")).isTrue());
+    }
+
+    @Test
+    void codec_roundTripsAndNormalizesHandTypedCodes() {
+        String digits = SerialCodec.encode(34_359_738_367L, 7); // 32^7 − 1
+        assertThat(digits).isEqualTo("ZZZZZZZ");
+        assertThat(SerialCodec.decode(digits)).isEqualTo(34_359_738_367L);
+        assertThatThrownBy(() -> SerialCodec.encode(34_359_738_368L, 7)).isInstanceOf(IllegalArgumentException.class);
+
+        String code = "PM" + SerialCodec.withCheck(SerialCodec.encode(1_010_101, 7));
+        String handTyped = code.toLowerCase().replace('0', 'o').replace('1', 'l');
+        assertThat(SerialCodec.isValid(handTyped.substring(0, 5) + "-" + handTyped.substring(5), "PM")).isTrue();
+    }
+
+    // ── Ký tự kiểm tra bắt mọi lỗi sai một ký tự và đảo hai ký tự liền nhau ──
+    @Test
+    void checkChar_detectsSubstitutionsAndAdjacentTranspositions() {
+        SplittableRandom random = new SplittableRandom(5);
+        Set<String> undetected = new HashSet<>();
+        for (int n = 0; n < 2_000; n++) {
+            String code = SerialCodec.random(random, 8);
+            for (int i = 0; i < code.length(); i++) {
+                for (char c : SerialCodec.ALPHABET.toCharArray()) {
+                    if (c != code.charAt(i)) {
+                        String typo = code.substring(0, i) + c + code.substring(i + 1);
+                        if (SerialCodec.isValid(typo, null)) {
+                            undetected.add(code + " -> " + typo);
+                        }
+                    }
+                }
+                if (i + 1 < code.length() && code.charAt(i) != code.charAt(i + 1)) {
+                    String swapped = code.substring(0, i) + code.charAt(i + 1) + code.charAt(i) + code.substring(i + 2);
+                    // Luhn mod N không bắt được đúng một cặp (0 ↔ N−1) khi đảo
+                    boolean blindPair = Set.of(code.charAt(i), code.charAt(i + 1)).equals(Set.of('0', 'Z'));
+                    if (!blindPair && SerialCodec.isValid(swapped, null)) {
+                        undetected.add(code + " -> " + swapped);
+                    }
+                }
+            }
+        }
+        assertThat(undetected).isEmpty();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.PixelMageEcomerceProject.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
+import com.example.PixelMageEcomerceProject.service.impl.OrderExpiryServiceImpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.OrderExpiryService;
+import com.example.PixelMageEcomerceProject.service.interfaces.StockReservationService;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OrderExpiryServiceTest {
+
+    @Mock private OrderRepository orderRepository;
+    @Mock private PaymentRepository paymentRepository;
+    @Mock private StockReservationService stockReservationService;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private HikariDataSource dataSource;
+
+    @InjectMocks
+    private OrderExpiryServiceImpl orderExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderExpiryService, "enabled", true);
+        ReflectionTestUtils.setField(orderExpiryService, "pendingTtlMillis", 3_600_000L);
+        ReflectionTestUtils.setField(orderExpiryService, "batchSize", 3);
+        ReflectionTestUtils.setField(orderExpiryService, "dutyCycle", 1.0);
+        ReflectionTestUtils.setField(orderExpiryService, "maxPoolUsage", 0.8);
+        ReflectionTestUtils.setField(orderExpiryService, "busyPauseMillis", 10L);
+        ReflectionTestUtils.setField(orderExpiryService, "maxRunMillis", 5_000L);
+        when(dataSource.getMaximumPoolSize()).thenReturn(10);
+    }
+
+    // ── Keyset: lô sau bắt đầu sau id lớn nhất của lô trước, lô thiếu = hết ─
+    @Test
+    void expireStale_walksBatchesByKeyset() {
+        when(orderRepository.expireStalePending(any(), eq(0), eq(3), any())).thenReturn(List.of(4, 9, 12));
+        when(orderRepository.expireStalePending(any(), eq(12), eq(3), any())).thenReturn(List.of(15));
+        when(paymentRepository.expirePendingByOrderIds(any(), any())).thenReturn(2, 1);
+        when(stockReservationService.releaseAll(any())).thenReturn(5, 1);
+        when(paymentRepository.expireStalePending(any(), eq(0), eq(3), any())).thenReturn(List.of(30));
+
+        OrderExpiryService.Result result = orderExpiryService.expireStale();
+
+        assertThat(result.orders()).isEqualTo(4);
+        assertThat(result.payments()).isEqualTo(4);
+        assertThat(result.reservations()).isEqualTo(6);
+        assertThat(result.complete()).isTrue();
+        verify(stockReservationService).releaseAll(List.of(4, 9, 12));
+        verify(stockReservationService).releaseAll(List.of(15));
+    }
+
+    @Test
+    void expireStale_onlyTouchesOrdersOlderThanWindow() {
+        when(orderRepository.expireStalePending(any(), anyInt(), anyInt(), any())).thenReturn(List.of());
+        LocalDateTime before = LocalDateTime.now().minusHours(1);
+
+        orderExpiryService.expireStale();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(orderRepository).expireStalePending(cutoff.capture(), eq(0), eq(3), any());
+        assertThat(cutoff.getValue()).isAfterOrEqualTo(before).isBefore(LocalDateTime.now().minusMinutes(59));
+        verify(stockReservationService, never()).releaseAll(any());
+    }
+
+    // ── DB bận (có thread chờ connection): không chạy lô nào, để lượt sau ───
+    @Test
+    void expireStale_poolSaturated_backsOffWithoutTouchingRows() {
+        ReflectionTestUtils.setField(orderExpiryService, "maxRunMillis", 50L);
+        HikariPoolMXBean pool = mock(HikariPoolMXBean.class);
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+        when(pool.getThreadsAwaitingConnection()).thenReturn(3);
+
+        OrderExpiryService.Result result = orderExpiryService.expireStale();
+
+        assertThat(result.complete()).isFalse();
+        verify(orderRepository, never()).expireStalePending(any(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void poolBusy_aboveUsageThreshold() {
+        HikariPoolMXBean pool = mock(HikariPoolMXBean.class);
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+        when(pool.getActiveConnections()).thenReturn(7);
+        assertThat(ReflectionTestUtils.<Boolean>invokeMethod(orderExpiryService, "poolBusy")).isFalse();
+        when(pool.getActiveConnections()).thenReturn(8);
+        assertThat(ReflectionTestUtils.<Boolean>invokeMethod(orderExpiryService, "poolBusy")).isTrue();
+    }
+
+    @Test
+    void disabled_doesNothing() {
+        ReflectionTestUtils.setField(orderExpiryService, "enabled", false);
+
+        orderExpiryService.expireStale();
+
+        verify(orderRepository, never()).expireStalePending(any(), anyInt(), anyInt(), any());
+        verify(paymentRepository, never()).expireStalePending(any(), anyInt(), anyInt(), any());
+    }
+}
@@ -6,18 +6,22 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -26,20 +30,33 @@ import org.mockito.quality.Strictness;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.SimpleTransactionStatus;
 
+import com.example.PixelMageEcomerceProject.cache.ProductPriceBook;
 import com.example.PixelMageEcomerceProject.dto.response.OrderResponse;
+import com.example.PixelMageEcomerceProject.mapper.OrderItemMapper;
 import com.example.PixelMageEcomerceProject.mapper.OrderMapper;
 import com.example.PixelMageEcomerceProject.dto.request.OrderItemRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.request.OrderRequestDTO;
 import com.example.PixelMageEcomerceProject.entity.Account;
 import com.example.PixelMageEcomerceProject.entity.Order;
 import com.example.PixelMageEcomerceProject.entity.OrderItem;
+import com.example.PixelMageEcomerceProject.entity.PackCategory;
 import com.example.PixelMageEcomerceProject.entity.Product;
+import com.example.PixelMageEcomerceProject.enums.OrderStatus;
+import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
+import com.example.PixelMageEcomerceProject.enums.ProductType;
+import com.example.PixelMageEcomerceProject.exceptions.PackReservationException;
+import com.example.PixelMageEcomerceProject.notification.PaymentAwaitRegistry;
 import com.example.PixelMageEcomerceProject.repository.AccountRepository;
+import com.example.PixelMageEcomerceProject.repository.CardRepository;
 import com.example.PixelMageEcomerceProject.repository.OrderItemRepository;
 import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+import com.example.PixelMageEcomerceProject.repository.PackRepository;
 import com.example.PixelMageEcomerceProject.repository.ProductRepository;
 import com.example.PixelMageEcomerceProject.service.impl.OrderServiceImpl;
 import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
+import com.example.PixelMageEcomerceProject.service.interfaces.StockReservationService;
+import com.example.PixelMageEcomerceProject.service.interfaces.WebSocketNotificationService;
+import com.example.PixelMageEcomerceProject.service.model.ProductPrice;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
@@ -59,6 +76,20 @@ class OrderServiceTest {
     private PlatformTransactionManager transactionManager;
     @Mock
     private OrderMapper orderMapper;
+    @Mock
+    private StockReservationService stockReservationService;
+    @Mock
+    private PackRepository packRepository;
+    @Mock
+    private CardRepository cardRepository;
+    @Mock
+    private WebSocketNotificationService wsNotificationService;
+    @Mock
+    private PaymentAwaitRegistry paymentAwaitRegistry;
+    @Mock
+    private ProductPriceBook productPriceBook;
+    @Mock
+    private OrderItemMapper orderItemMapper;
 
     @InjectMocks
     private OrderServiceImpl orderService;
@@ -69,6 +100,8 @@ class OrderServiceTest {
         when(transactionManager.getTransaction(any())).thenReturn(txStatus);
         doNothing().when(transactionManager).commit(any());
         doNothing().when(transactionManager).rollback(any());
+        when(orderMapper.toEntity(any())).thenAnswer(i -> new Order());
+        when(orderItemMapper.toEntity(any())).thenAnswer(i -> new OrderItem());
     }
 
     @Test
@@ -90,7 +123,8 @@ class OrderServiceTest {
 
         Product product = new Product();
         product.setProductId(5);
-        when(productRepository.findById(5)).thenReturn(Optional.of(product));
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(productPriceBook.lookup(any())).thenReturn(Map.of(5, new ProductPrice(5, new BigDecimal("50000"), true)));
 
         when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
         when(orderMapper.toOrderResponse(any())).thenReturn(new OrderResponse());
@@ -98,7 +132,64 @@ class OrderServiceTest {
         OrderResponse result = orderService.createOrder(req);
 
         assertThat(result).isNotNull();
-        verify(orderItemRepository, times(1)).save(any(OrderItem.class));
+        verify(orderItemRepository, times(1)).saveAll(any());
+    }
+
+    // ── Giá tính từ price book, bỏ qua tổng client gửi; product resolve bằng một query ─
+    @Test
+    void createOrder_pricesItemsFromPriceBook_ignoringClientTotal() {
+        OrderRequestDTO req = new OrderRequestDTO();
+        req.setCustomerId(10);
+        req.setTotalAmount(BigDecimal.ONE);
+        OrderItemRequestDTO first = new OrderItemRequestDTO();
+        first.setProductId(5);
+        first.setQuantity(2);
+        first.setUnitPrice(BigDecimal.ONE);
+        OrderItemRequestDTO second = new OrderItemRequestDTO();
+        second.setProductId(6);
+        OrderItemRequestDTO third = new OrderItemRequestDTO();
+        third.setProductId(5);
+        req.setOrderItems(List.of(first, second, third));
+
+        when(accountRepository.findById(10)).thenReturn(Optional.of(new Account()));
+        when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
+        Product p5 = new Product();
+        p5.setProductId(5);
+        Product p6 = new Product();
+        p6.setProductId(6);
+        when(productRepository.findAllById(any())).thenReturn(List.of(p5, p6));
+        when(productPriceBook.lookup(any())).thenReturn(Map.of(
+                5, new ProductPrice(5, new BigDecimal("50000"), true),
+                6, new ProductPrice(6, new BigDecimal("120000"), true)));
+
+        orderService.createOrder(req);
+
+        ArgumentCaptor<Order> saved = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository).save(saved.capture());
+        assertThat(saved.getValue().getTotalAmount()).isEqualByComparingTo("270000");
+        assertThat(saved.getValue().getOrderItems()).extracting(item -> item.getSubtotal().intValueExact())
+                .containsExactly(100000, 120000, 50000);
+        verify(productRepository, times(1)).findAllById(any());
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    void createOrder_inactiveProduct_throwsException() {
+        OrderRequestDTO req = new OrderRequestDTO();
+        req.setCustomerId(10);
+        OrderItemRequestDTO itemReq = new OrderItemRequestDTO();
+        itemReq.setProductId(5);
+        req.setOrderItems(List.of(itemReq));
+
+        when(accountRepository.findById(10)).thenReturn(Optional.of(new Account()));
+        Product product = new Product();
+        product.setProductId(5);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(productPriceBook.lookup(any())).thenReturn(Map.of(5, new ProductPrice(5, new BigDecimal("50000"), false)));
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> orderService.createOrder(req));
+        assertThat(ex.getMessage()).contains("not available");
+        verify(stockReservationService, never()).reserve(any(), any());
     }
 
     @Test
@@ -122,7 +213,7 @@ class OrderServiceTest {
 
         when(accountRepository.findById(10)).thenReturn(Optional.of(new Account()));
 
-        when(productRepository.findById(5)).thenReturn(Optional.empty());
+        when(productRepository.findAllById(any())).thenReturn(List.of());
         when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
 
         RuntimeException ex = assertThrows(RuntimeException.class, () -> orderService.createOrder(req));
@@ -141,4 +232,126 @@ class OrderServiceTest {
 
         assertThrows(RuntimeException.class, () -> orderService.createOrder(req));
     }
+
+    // ── Thanh toán: mọi dòng cùng category được claim bằng một câu SKIP LOCKED ─
+    @Test
+    void fulfillPaidOrder_claimsPacksOncePerCategory() {
+        PackCategory category = new PackCategory();
+        category.setPackCategoryId(3);
+        Product product = new Product();
+        product.setProductId(5);
+        product.setProductType(ProductType.GACHA_PACK);
+        product.setPackCategory(category);
+
+        Order order = new Order();
+        order.setOrderId(1);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        List<OrderItem> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            OrderItem item = new OrderItem();
+            item.setProduct(product);
+            items.add(item);
+        }
+        order.setOrderItems(items);
+        when(orderRepository.findByIdForUpdate(1)).thenReturn(Optional.of(order));
+        when(packRepository.claimStockedPacks(3, 3)).thenReturn(List.of(11, 12));
+
+        orderService.fulfillPaidOrder(1, "TX-1");
+
+        verify(packRepository, times(1)).claimStockedPacks(3, 3);
+        verify(packRepository).getReferenceById(11);
+        verify(packRepository).getReferenceById(12);
+        verify(stockReservationService).confirm(1);
+        verify(paymentAwaitRegistry).publishSettled(1);
+    }
+
+    // ── Tiền về sau khi order đã bị job quá hạn huỷ: còn hàng → giữ lại và fulfil ─
+    @Test
+    void fulfillPaidOrder_latePaymentOnExpiredOrder_reopensWhenStockAvailable() {
+        Order order = expiredOrderWithOnePack();
+        when(orderRepository.findByIdForUpdate(1)).thenReturn(Optional.of(order));
+        when(packRepository.claimStockedPacks(3, 1)).thenReturn(List.of(11));
+
+        orderService.fulfillPaidOrder(1, "TX-LATE");
+
+        verify(stockReservationService).reserve(1, order.getOrderItems());
+        verify(packRepository).claimStockedPacks(3, 1);
+        assertThat(order.getPaymentStatus()).isEqualTo(PaymentStatus.SUCCEEDED);
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.COMPLETED);
+        verify(paymentAwaitRegistry).publishSettled(1);
+    }
+
+    // ── Tiền về muộn nhưng đã hết hàng → không cấp phát, đánh dấu chờ hoàn tiền ─
+    @Test
+    void fulfillPaidOrder_latePaymentOnExpiredOrder_flagsRefundWhenOutOfStock() {
+        Order order = expiredOrderWithOnePack();
+        when(orderRepository.findByIdForUpdate(1)).thenReturn(Optional.of(order));
+        doThrow(new PackReservationException("Sản phẩm 'Pack' không còn đủ hàng."))
+                .when(stockReservationService).reserve(eq(1), any());
+
+        orderService.fulfillPaidOrder(1, "TX-LATE");
+
+        verify(packRepository, never()).claimStockedPacks(any(), any(Integer.class));
+        verify(stockReservationService, never()).confirm(1);
+        assertThat(order.getPaymentStatus()).isEqualTo(PaymentStatus.REFUND_REQUIRED);
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        verify(orderRepository).save(order);
+        verify(wsNotificationService).pushToTopic(eq("admin.notifications"), any());
+        verify(paymentAwaitRegistry).publishSettled(1);
+    }
+
+    // ── Giữ hàng hết hạn trước khi tiền về (order còn PENDING): phải giữ lại, không lấy phần đã hứa cho người khác ─
+    @Test
+    void fulfillPaidOrder_lapsedReservation_holdsStockAgainBeforeAllocating() {
+        Order order = expiredOrderWithOnePack();
+        order.setStatus(OrderStatus.PENDING);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        when(orderRepository.findByIdForUpdate(1)).thenReturn(Optional.of(order));
+        when(stockReservationService.confirm(1)).thenReturn(0, 1);
+        when(stockReservationService.hasReservations(1)).thenReturn(true);
+        when(packRepository.claimStockedPacks(3, 1)).thenReturn(List.of(11));
+
+        orderService.fulfillPaidOrder(1, "TX-LATE");
+
+        verify(stockReservationService).reserve(1, order.getOrderItems());
+        verify(stockReservationService, times(2)).confirm(1);
+        verify(packRepository).claimStockedPacks(3, 1);
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.COMPLETED);
+    }
+
+    @Test
+    void fulfillPaidOrder_lapsedReservation_flagsRefundWhenOutOfStock() {
+        Order order = expiredOrderWithOnePack();
+        order.setStatus(OrderStatus.PENDING);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        when(orderRepository.findByIdForUpdate(1)).thenReturn(Optional.of(order));
+        when(stockReservationService.hasReservations(1)).thenReturn(true);
+        doThrow(new PackReservationException("Sản phẩm 'Pack' không còn đủ hàng."))
+                .when(stockReservationService).reserve(eq(1), any());
+
+        orderService.fulfillPaidOrder(1, "TX-LATE");
+
+        verify(packRepository, never()).claimStockedPacks(any(), any(Integer.class));
+        assertThat(order.getPaymentStatus()).isEqualTo(PaymentStatus.REFUND_REQUIRED);
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        verify(paymentAwaitRegistry).publishSettled(1);
+    }
+
+    private static Order expiredOrderWithOnePack() {
+        PackCategory category = new PackCategory();
+        category.setPackCategoryId(3);
+        Product product = new Product();
+        product.setProductId(5);
+        product.setProductType(ProductType.GACHA_PACK);
+        product.setPackCategory(category);
+        OrderItem item = new OrderItem();
+        item.setProduct(product);
+
+        Order order = new Order();
+        order.setOrderId(1);
+        order.setStatus(OrderStatus.CANCELLED);
+        order.setPaymentStatus(PaymentStatus.EXPIRED);
+        order.setOrderItems(new ArrayList<>(List.of(item)));
+        return order;
+    }
 }
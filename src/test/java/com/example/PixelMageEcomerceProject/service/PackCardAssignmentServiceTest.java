@@ -0,0 +1,191 @@
+package com.example.PixelMageEcomerceProject.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.PixelMageEcomerceProject.dto.response.PackCardAssignmentResponse;
+import com.example.PixelMageEcomerceProject.repository.PackCardAssignmentRepository;
+import com.example.PixelMageEcomerceProject.repository.PackCardAssignmentRepository.ReadyCard;
+import com.example.PixelMageEcomerceProject.repository.PackCardAssignmentRepository.Slot;
+import com.example.PixelMageEcomerceProject.service.impl.PackCardAssignmentServiceImpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackService;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PackCardAssignmentServiceTest {
+
+    private static final String BATCH = "LOT-2026-10";
+
+    @Mock private PackCardAssignmentRepository packCardAssignmentRepository;
+    @Mock private PackService packService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private PackCardAssignmentServiceImpl packCardAssignmentService;
+
+    private final List<Slot> slots = new ArrayList<>();
+    private final List<ReadyCard> cards = new ArrayList<>();
+    private int nextDetailId;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(packCardAssignmentService, "maxCards", 1000);
+        ReflectionTestUtils.setField(packCardAssignmentService, "defaultChunkSize", 2);
+        when(packCardAssignmentRepository.findReadyCards(eq(BATCH), anyInt())).thenAnswer(inv -> cards);
+        // Phân trang theo pack giống câu SQL: mọi slot của tối đa packLimit pack có pack_id > afterPackId
+        when(packCardAssignmentRepository.findUnfilledSlots(any(), anyInt(), anyInt())).thenAnswer(inv -> {
+            int after = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            List<Integer> packIds = slots.stream().map(Slot::packId).filter(id -> id > after).distinct().sorted()
+                    .limit(limit).toList();
+            return slots.stream().filter(s -> packIds.contains(s.packId())).toList();
+        });
+        when(packCardAssignmentRepository.markCardsPacked(any(), any())).thenAnswer(inv -> ((Integer[]) inv.getArgument(0)).length);
+        when(packCardAssignmentRepository.fillSlots(any(), any())).thenAnswer(inv -> ((Integer[]) inv.getArgument(0)).length);
+    }
+
+    private void pack(int packId, Integer... templateIds) {
+        for (Integer templateId : templateIds) {
+            slots.add(new Slot(++nextDetailId, packId, templateId));
+        }
+    }
+
+    private void cards(int templateId, int... cardIds) {
+        for (int cardId : cardIds) {
+            cards.add(new ReadyCard(cardId, templateId));
+        }
+    }
+
+    private Map<Integer, PackCardAssignmentResponse.TemplateAssignment> byTemplate(PackCardAssignmentResponse result) {
+        return result.getTemplates().stream()
+                .collect(Collectors.toMap(PackCardAssignmentResponse.TemplateAssignment::getCardTemplateId, Function.identity()));
+    }
+
+    // ── Pack thiếu card bị bỏ qua nguyên pack; pack sau vẫn được gắn nếu đủ ─
+    @Test
+    void assignCards_fillsWholePacksInPackOrderAndSkipsShortOnes() {
+        pack(10, 1, 1, 2);   // đủ
+        pack(11, 2, 2, 3);   // thiếu template 3, không gắn dở
+        pack(12, 1, 2);      // đủ
+        cards(1, 101, 102, 103);
+        cards(2, 201, 202);
+
+        PackCardAssignmentResponse result = packCardAssignmentService.assignCards(BATCH, null, null, false);
+
+        assertThat(result.getPacksFilled()).isEqualTo(2);
+        assertThat(result.getPacksShort()).isEqualTo(1);
+        assertThat(result.getSlotsFilled()).isEqualTo(5);
+        assertThat(result.getCardsLeftOver()).isZero();
+        assertThat(byTemplate(result).get(3).getCardsMissing()).isEqualTo(1);
+        assertThat(byTemplate(result).get(2).getCardsAssigned()).isEqualTo(2);
+
+        ArgumentCaptor<Integer[]> details = ArgumentCaptor.forClass(Integer[].class);
+        ArgumentCaptor<Integer[]> assigned = ArgumentCaptor.forClass(Integer[].class);
+        verify(packCardAssignmentRepository).fillSlots(details.capture(), assigned.capture());
+        // card_id tăng dần trong từng template, pack theo pack_id
+        assertThat(details.getValue()).containsExactly(1, 2, 3, 7, 8);
+        assertThat(assigned.getValue()).containsExactly(101, 102, 201, 103, 202);
+        verify(packService).invalidatePackCaches(eq(null), any());
+    }
+
+    // ── Chunk theo pack: pack không bị chia giữa hai transaction ────────────
+    @Test
+    void assignCards_writesChunksOfWholePacks() {
+        for (int packId = 1; packId <= 5; packId++) {
+            pack(packId, 1, 1, 1);
+        }
+        cards(1, IntStream.rangeClosed(1, 15).toArray());
+
+        PackCardAssignmentResponse result = packCardAssignmentService.assignCards(BATCH, null, 2, false);
+
+        ArgumentCaptor<Integer[]> cardIds = ArgumentCaptor.forClass(Integer[].class);
+        verify(packCardAssignmentRepository, times(3)).markCardsPacked(cardIds.capture(), any());
+        assertThat(cardIds.getAllValues()).extracting(ids -> ids.length).containsExactly(6, 6, 3);
+        assertThat(result.getChunksWritten()).isEqualTo(3);
+        assertThat(result.getSupplyExhausted()).isFalse();
+    }
+
+    // ── Card bị bán song song: chunk đó rollback, chunk khác vẫn ghi ────────
+    @Test
+    void assignCards_rollsBackConflictingChunkOnly() {
+        pack(1, 1);
+        pack(2, 1);
+        cards(1, 11, 12);
+        doReturn(0, 1).when(packCardAssignmentRepository).markCardsPacked(any(), any());
+
+        PackCardAssignmentResponse result = packCardAssignmentService.assignCards(BATCH, null, 1, false);
+
+        assertThat(result.getPacksConflicted()).isEqualTo(1);
+        assertThat(result.getPacksFilled()).isEqualTo(1);
+        assertThat(result.getCardsLeftOver()).isEqualTo(1);
+        assertThat(byTemplate(result).get(1).getCardsAssigned()).isEqualTo(1);
+        verify(packCardAssignmentRepository, times(1)).fillSlots(any(), any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void assignCards_dryRunReportsWithoutWriting() {
+        pack(1, 1, 2);
+        pack(2, 1, 2);
+        pack(3, 1, 2);
+        cards(1, 11, 12);
+        cards(2, 21, 22);
+
+        PackCardAssignmentResponse result = packCardAssignmentService.assignCards(BATCH, 4, null, true);
+
+        assertThat(result.getPacksFilled()).isEqualTo(2);
+        assertThat(result.getSupplyExhausted()).isTrue();
+        assertThat(result.getPacksScanned()).isEqualTo(2);
+        verify(packCardAssignmentRepository, never()).markCardsPacked(any(), any());
+        verify(packCardAssignmentRepository, never()).fillSlots(any(), any());
+        verify(packService, never()).invalidatePackCaches(any(), any());
+    }
+
+    @Test
+    void assignCards_slotWithoutTemplateIsShort() {
+        pack(1, 1, null);
+        cards(1, 11);
+
+        PackCardAssignmentResponse result = packCardAssignmentService.assignCards(BATCH, null, null, true);
+
+        assertThat(result.getPacksShort()).isEqualTo(1);
+        assertThat(result.getSlotsWithoutTemplate()).isEqualTo(1);
+        assertThat(result.getCardsLeftOver()).isEqualTo(1);
+    }
+
+    @Test
+    void assignCards_rejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> packCardAssignmentService.assignCards(" ", null, null, true));
+        assertThrows(IllegalArgumentException.class, () -> packCardAssignmentService.assignCards(BATCH, null, 0, true));
+        ReflectionTestUtils.setField(packCardAssignmentService, "maxCards", 1);
+        cards(1, 11, 12);
+        assertThrows(IllegalArgumentException.class, () -> packCardAssignmentService.assignCards(BATCH, null, null, true));
+    }
+}
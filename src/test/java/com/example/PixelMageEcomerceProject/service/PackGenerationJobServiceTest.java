@@ -0,0 +1,247 @@
+package com.example.PixelMageEcomerceProject.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.entity.PackCategory;
+import com.example.PixelMageEcomerceProject.entity.PackGenerationJob;
+import com.example.PixelMageEcomerceProject.enums.CardTemplateRarity;
+import com.example.PixelMageEcomerceProject.enums.PackGenerationJobStatus;
+import com.example.PixelMageEcomerceProject.enums.PackStatus;
+import com.example.PixelMageEcomerceProject.gacha.PackSamplerRegistry;
+import com.example.PixelMageEcomerceProject.repository.PackBulkRepository;
+import com.example.PixelMageEcomerceProject.repository.PackCategoryRepository;
+import com.example.PixelMageEcomerceProject.repository.PackGenerationJobRepository;
+import com.example.PixelMageEcomerceProject.service.impl.PackGenerationJobServiceImpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.PackService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PackGenerationJobServiceTest {
+
+    private static final long JOB_ID = 7L;
+
+    @Mock private PackGenerationJobRepository packGenerationJobRepository;
+    @Mock private PackCategoryRepository packCategoryRepository;
+    @Mock private PackBulkRepository packBulkRepository;
+    @Mock private PackService packService;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Spy private PackSamplerRegistry packSamplerRegistry = new PackSamplerRegistry(new ObjectMapper());
+
+    @InjectMocks
+    private PackGenerationJobServiceImpl packGenerationJobService;
+
+    private int nextPackId;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(packGenerationJobService, "threads", 1);
+        ReflectionTestUtils.setField(packGenerationJobService, "defaultChunkSize", 2);
+        ReflectionTestUtils.setField(packGenerationJobService, "maxQuantity", 1000);
+        ReflectionTestUtils.setField(packGenerationJobService, "staleMillis", 300_000L);
+        ReflectionTestUtils.invokeMethod(packGenerationJobService, "init");
+        when(packGenerationJobRepository.claim(eq(JOB_ID), any())).thenReturn(1);
+        when(packGenerationJobRepository.recordChunk(eq(JOB_ID), anyInt(), anyInt(), any())).thenReturn(1);
+        when(packBulkRepository.insertStockedPacks(eq(1), any(), anyInt(), any())).thenAnswer(inv -> {
+            int count = inv.getArgument(2);
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ids.add(++nextPackId);
+            }
+            return ids;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(packGenerationJobService, "shutdown");
+    }
+
+    private PackCategory category(int cardsPerPack, String rarityRates) {
+        PackCategory category = new PackCategory();
+        category.setPackCategoryId(1);
+        category.setCardsPerPack(cardsPerPack);
+        category.setRarityRates(rarityRates);
+        List<CardTemplate> pool = new ArrayList<>();
+        for (CardTemplateRarity rarity : List.of(CardTemplateRarity.COMMON, CardTemplateRarity.RARE)) {
+            CardTemplate template = new CardTemplate();
+            template.setCardTemplateId(rarity.ordinal() + 1);
+            template.setRarity(rarity);
+            pool.add(template);
+        }
+        category.setCardPools(pool);
+        return category;
+    }
+
+    private void givenJob(int requested, int generated, int chunkSize) {
+        PackGenerationJob job = new PackGenerationJob();
+        job.setJobId(JOB_ID);
+        job.setPackCategoryId(1);
+        job.setRequestedQuantity(requested);
+        job.setGeneratedQuantity(generated);
+        job.setChunkSize(chunkSize);
+        job.setStatus(PackGenerationJobStatus.RUNNING);
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(LocalDateTime.now());
+        when(packGenerationJobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+    }
+
+    private void run() {
+        ReflectionTestUtils.invokeMethod(packGenerationJobService, "run", JOB_ID);
+    }
+
+    // ── Chia chunk, mỗi chunk một INSERT packs + một INSERT details, invalidate một lần ─
+    @Test
+    void run_writesChunksThenCompletes() {
+        givenJob(5, 0, 2);
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(category(3, "{\"COMMON\":100}")));
+
+        run();
+
+        verify(packBulkRepository, times(2)).insertStockedPacks(eq(1), any(), eq(2), any());
+        verify(packBulkRepository).insertStockedPacks(eq(1), any(), eq(1), any());
+        verify(packGenerationJobRepository).recordChunk(eq(JOB_ID), eq(0), eq(2), any());
+        verify(packGenerationJobRepository).recordChunk(eq(JOB_ID), eq(2), eq(2), any());
+        verify(packGenerationJobRepository).recordChunk(eq(JOB_ID), eq(4), eq(1), any());
+
+        ArgumentCaptor<Integer[]> packIds = ArgumentCaptor.forClass(Integer[].class);
+        ArgumentCaptor<Integer[]> templateIds = ArgumentCaptor.forClass(Integer[].class);
+        ArgumentCaptor<Integer[]> positions = ArgumentCaptor.forClass(Integer[].class);
+        verify(packBulkRepository, times(3)).insertDetails(packIds.capture(), templateIds.capture(), positions.capture());
+        assertThat(packIds.getAllValues().stream().mapToInt(a -> a.length).sum()).isEqualTo(15);
+        assertThat(packIds.getAllValues().get(0)).containsExactly(1, 1, 1, 2, 2, 2);
+        assertThat(positions.getAllValues().get(0)).containsExactly(0, 1, 2, 0, 1, 2);
+        // COMMON 100% → chỉ template COMMON (id 1)
+        templateIds.getAllValues().forEach(ids -> assertThat(ids).containsOnly(1));
+
+        verify(packGenerationJobRepository).complete(eq(JOB_ID), any());
+        verify(packService, times(1)).invalidatePackCaches(1, List.of(PackStatus.STOCKED));
+    }
+
+    @Test
+    void run_rarityWithoutTemplates_fallsBackToWholePool() {
+        givenJob(200, 0, 200);
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(category(5, "{\"LEGENDARY\":100}")));
+
+        run();
+
+        ArgumentCaptor<Integer[]> templateIds = ArgumentCaptor.forClass(Integer[].class);
+        verify(packBulkRepository).insertDetails(any(), templateIds.capture(), any());
+        assertThat(Arrays.stream(templateIds.getValue()).distinct()).containsExactlyInAnyOrder(1, 2);
+    }
+
+    // ── Huỷ giữa chừng: recordChunk trả 0 → không ghi chunk đó, chunk đã commit giữ lại ─
+    @Test
+    void run_cancelled_stopsBeforeWritingNextChunk() {
+        givenJob(6, 0, 2);
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(category(2, "{\"COMMON\":100}")));
+        when(packGenerationJobRepository.recordChunk(eq(JOB_ID), anyInt(), anyInt(), any())).thenReturn(1, 0);
+
+        run();
+
+        verify(packBulkRepository, times(1)).insertStockedPacks(any(), any(), anyInt(), any());
+        verify(packGenerationJobRepository, never()).complete(any(), any());
+        verify(packService, times(1)).invalidatePackCaches(1, List.of(PackStatus.STOCKED));
+    }
+
+    @Test
+    void run_resumesFromGeneratedQuantity() {
+        givenJob(5, 4, 2);
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(category(2, "{\"COMMON\":100}")));
+
+        run();
+
+        verify(packGenerationJobRepository).recordChunk(eq(JOB_ID), eq(4), eq(1), any());
+        verify(packBulkRepository, times(1)).insertStockedPacks(eq(1), any(), eq(1), any());
+        verify(packGenerationJobRepository).complete(eq(JOB_ID), any());
+    }
+
+    @Test
+    void run_notClaimed_doesNothing() {
+        when(packGenerationJobRepository.claim(eq(JOB_ID), any())).thenReturn(0);
+
+        run();
+
+        verify(packBulkRepository, never()).insertStockedPacks(any(), any(), anyInt(), any());
+        verify(packService, never()).invalidatePackCaches(any(), any());
+    }
+
+    @Test
+    void run_writeFails_marksJobFailed() {
+        givenJob(4, 0, 2);
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(category(2, "{\"COMMON\":100}")));
+        when(packBulkRepository.insertStockedPacks(any(), any(), anyInt(), any()))
+                .thenThrow(new IllegalStateException("connection reset"));
+
+        run();
+
+        verify(packGenerationJobRepository).fail(eq(JOB_ID), anyString(), any());
+        verify(packGenerationJobRepository, never()).complete(any(), any());
+        verify(packService, never()).invalidatePackCaches(any(), any());
+    }
+
+    // ── Category hỏng bị từ chối trước khi tạo job ─────────────────────────
+    @Test
+    void startJob_invalidRarityRates_rejectedWithoutCreatingJob() {
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(category(5, "NOT_VALID_JSON")));
+
+        assertThrows(IllegalArgumentException.class, () -> packGenerationJobService.startJob(1, 100, null, null));
+        verify(packGenerationJobRepository, never()).save(any());
+    }
+
+    @Test
+    void startJob_quantityOutOfRange_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> packGenerationJobService.startJob(1, 0, null, null));
+        assertThrows(IllegalArgumentException.class, () -> packGenerationJobService.startJob(1, 1001, null, null));
+        verify(packGenerationJobRepository, never()).save(any());
+    }
+
+    @Test
+    void startJob_createsQueuedJob() {
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(category(5, "{\"COMMON\":100}")));
+        when(packGenerationJobRepository.save(any(PackGenerationJob.class))).thenAnswer(inv -> {
+            PackGenerationJob job = inv.getArgument(0);
+            job.setJobId(JOB_ID);
+            return job;
+        });
+        when(packGenerationJobRepository.claim(eq(JOB_ID), any())).thenReturn(0); // không chạy nền trong test
+
+        var response = packGenerationJobService.startJob(1, 100, null, 42);
+
+        assertThat(response.getJobId()).isEqualTo(JOB_ID);
+        assertThat(response.getStatus()).isEqualTo(PackGenerationJobStatus.QUEUED);
+        assertThat(response.getChunkSize()).isEqualTo(2);
+        assertThat(response.getCreatedByAccountId()).isEqualTo(42);
+        assertThat(response.getProgressPercent()).isZero();
+    }
+}
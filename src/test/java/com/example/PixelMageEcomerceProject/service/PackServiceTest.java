@@ -18,8 +18,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.example.PixelMageEcomerceProject.cache.CacheInvalidator;
 import com.example.PixelMageEcomerceProject.dto.request.PackRequestDTO;
 import com.example.PixelMageEcomerceProject.dto.response.PackResponse;
 import com.example.PixelMageEcomerceProject.entity.Account;
@@ -30,6 +32,7 @@ import com.example.PixelMageEcomerceProject.entity.PackCategory;
 import com.example.PixelMageEcomerceProject.entity.PackDetail;
 import com.example.PixelMageEcomerceProject.enums.CardTemplateRarity;
 import com.example.PixelMageEcomerceProject.enums.PackStatus;
+import com.example.PixelMageEcomerceProject.gacha.PackSamplerRegistry;
 import com.example.PixelMageEcomerceProject.mapper.PackMapper;
 import com.example.PixelMageEcomerceProject.repository.AccountRepository;
 import com.example.PixelMageEcomerceProject.repository.CardRepository;
@@ -38,6 +41,7 @@ import com.example.PixelMageEcomerceProject.repository.PackDetailRepository;
 import com.example.PixelMageEcomerceProject.repository.PackRepository;
 import com.example.PixelMageEcomerceProject.repository.ProductRepository;
 import com.example.PixelMageEcomerceProject.service.impl.PackServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @ExtendWith(MockitoExtension.class)
 class PackServiceTest {
@@ -49,6 +53,8 @@ class PackServiceTest {
     @Mock private CardRepository cardRepository;
     @Mock private PackCategoryRepository packCategoryRepository;
     @Mock private PackMapper packMapper;
+    @Mock private CacheInvalidator cacheInvalidator;
+    @Spy private PackSamplerRegistry packSamplerRegistry = new PackSamplerRegistry(new ObjectMapper());
 
     @InjectMocks
     private PackServiceImpl packService;
@@ -109,6 +115,23 @@ class PackServiceTest {
         verify(packRepository, times(3)).save(any(Pack.class));
     }
 
+    // ── generatePacks — invalidation chỉ một lần, đúng phạm vi category ─────
+    @Test
+    void generatePacks_invalidatesOnlyAffectedCategoryKeys() {
+        PackCategory cat = buildCategory(2, "{\"COMMON\":100}");
+        when(packCategoryRepository.findById(1)).thenReturn(Optional.of(cat));
+        when(packRepository.save(any(Pack.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(packDetailRepository.save(any(PackDetail.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(productRepository.findProductIdsByPackCategoryId(1)).thenReturn(List.of(10));
+
+        packService.generatePacks(1, 5);
+
+        verify(cacheInvalidator, times(1)).invalidateNamespaces("packs", "products", "products-public");
+        verify(cacheInvalidator).evict("packs-by-status", List.of(PackStatus.STOCKED));
+        verify(cacheInvalidator).evict("packs-by-product-status", List.of("1-STOCKED"));
+        verify(cacheInvalidator).evict("product-by-id", List.of(10));
+    }
+
     // ── generatePacks — PackCategory not found ───────────────────────────────
     @Test
     void generatePacks_categoryNotFound_throwsException() {
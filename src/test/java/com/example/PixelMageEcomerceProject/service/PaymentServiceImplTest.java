@@ -6,6 +6,7 @@ import com.example.PixelMageEcomerceProject.entity.Payment;
 import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.mapper.PaymentMapper;
+import com.example.PixelMageEcomerceProject.notification.PaymentAwaitRegistry;
 import com.example.PixelMageEcomerceProject.repository.OrderRepository;
 import com.example.PixelMageEcomerceProject.repository.PackRepository;
 import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
@@ -43,6 +44,8 @@ class PaymentServiceImplTest {
     private PaymentGatewayStrategy activeGateway;
     @Mock
     private PaymentMapper paymentMapper;
+    @Mock
+    private PaymentAwaitRegistry paymentAwaitRegistry;
 
     @InjectMocks
     private PaymentServiceImpl paymentService;
@@ -92,4 +95,40 @@ class PaymentServiceImplTest {
         assertThat(status).isEqualTo(PaymentStatus.SUCCEEDED);
         verify(activeGateway).pollStatus("TXN_123");
     }
+
+    @Test
+    void recordPaymentFailure_marksPendingPaymentAndOrderFailed_andWakesWaiters() {
+        // GIVEN
+        testOrder.setPaymentStatus(PaymentStatus.PENDING);
+        Payment payment = new Payment();
+        payment.setPaymentStatus(PaymentStatus.PENDING);
+        when(orderRepository.findById(1)).thenReturn(Optional.of(testOrder));
+        when(paymentRepository.findTopByOrder_OrderIdAndPaymentStatus(1, PaymentStatus.PENDING))
+                .thenReturn(Optional.of(payment));
+
+        // WHEN
+        paymentService.recordPaymentFailure(1, "VNPAY_999", "VNPay response code 24");
+
+        // THEN
+        assertThat(payment.getPaymentStatus()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(payment.getFailureReason()).isEqualTo("VNPay response code 24");
+        assertThat(testOrder.getPaymentStatus()).isEqualTo(PaymentStatus.FAILED);
+        verify(paymentAwaitRegistry).publishSettled(1);
+    }
+
+    @Test
+    void recordPaymentFailure_paidOrderKeepsStatus() {
+        // GIVEN
+        testOrder.setPaymentStatus(PaymentStatus.SUCCEEDED);
+        when(orderRepository.findById(1)).thenReturn(Optional.of(testOrder));
+        when(paymentRepository.findTopByOrder_OrderIdAndPaymentStatus(1, PaymentStatus.PENDING))
+                .thenReturn(Optional.empty());
+
+        // WHEN
+        paymentService.recordPaymentFailure(1, null, "VNPay response code 24");
+
+        // THEN
+        assertThat(testOrder.getPaymentStatus()).isEqualTo(PaymentStatus.SUCCEEDED);
+        verify(orderRepository, never()).save(any());
+    }
 }
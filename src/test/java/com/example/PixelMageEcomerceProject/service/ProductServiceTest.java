@@ -0,0 +1,117 @@
+package com.example.PixelMageEcomerceProject.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.PixelMageEcomerceProject.cache.CacheInvalidator;
+import com.example.PixelMageEcomerceProject.dto.request.ProductRequestDTO;
+import com.example.PixelMageEcomerceProject.dto.response.CardTemplateResponse;
+import com.example.PixelMageEcomerceProject.dto.response.ProductResponse;
+import com.example.PixelMageEcomerceProject.entity.CardTemplate;
+import com.example.PixelMageEcomerceProject.entity.Product;
+import com.example.PixelMageEcomerceProject.entity.ProductListing;
+import com.example.PixelMageEcomerceProject.enums.ProductType;
+import com.example.PixelMageEcomerceProject.mapper.CardTemplateMapper;
+import com.example.PixelMageEcomerceProject.mapper.ProductMapper;
+import com.example.PixelMageEcomerceProject.repository.CardRepository;
+import com.example.PixelMageEcomerceProject.repository.CardTemplateRepository;
+import com.example.PixelMageEcomerceProject.repository.PackCategoryRepository;
+import com.example.PixelMageEcomerceProject.repository.PackRepository;
+import com.example.PixelMageEcomerceProject.repository.ProductListingRepository;
+import com.example.PixelMageEcomerceProject.repository.ProductRepository;
+import com.example.PixelMageEcomerceProject.service.impl.ProductServiceImpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.CardStockMintingService;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceTest {
+
+    @Mock private ProductRepository productRepository;
+    @Mock private PackCategoryRepository packCategoryRepository;
+    @Mock private CardTemplateRepository cardTemplateRepository;
+    @Mock private PackRepository packRepository;
+    @Mock private CardRepository cardRepository;
+    @Mock private ProductMapper productMapper;
+    @Mock private CardTemplateMapper cardTemplateMapper;
+    @Mock private CacheInvalidator cacheInvalidator;
+    @Mock private ProductListingRepository productListingRepository;
+    @Mock private CardStockMintingService cardStockMintingService;
+
+    @InjectMocks
+    private ProductServiceImpl productService;
+
+    // ── Danh sách public đọc từ read model: không đếm stock / load pool theo từng product ─
+    @Test
+    void getPublicProducts_readsPrecomputedListingWithoutPerProductQueries() {
+        Product product = new Product();
+        product.setProductId(7);
+        product.setProductType(ProductType.GACHA_PACK);
+        ProductListing listing = new ProductListing();
+        listing.setProductId(7);
+        listing.setProduct(product);
+        listing.setStockCount(42);
+        listing.setPoolSize(5);
+        listing.setPoolPreview("[{\"cardTemplateId\":3,\"name\":\"The Fool\",\"arcanaType\":\"MAJOR\","
+                + "\"isVisible\":true,\"frameworkName\":\"Rider\"}]");
+        when(productListingRepository.findAllPublicWithProduct()).thenReturn(List.of(listing));
+        when(productMapper.toProductResponse(any(Product.class)))
+                .thenReturn(ProductResponse.builder().productId(7).build());
+
+        List<ProductResponse> result = productService.getPublicProducts();
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getStockCount()).isEqualTo(42);
+        assertThat(result.get(0).getPoolSize()).isEqualTo(5);
+        assertThat(result.get(0).getPoolPreview()).singleElement().satisfies(summary -> {
+            assertThat(summary.getCardTemplateId()).isEqualTo(3);
+            assertThat(summary.getName()).isEqualTo("The Fool");
+            assertThat(summary.getFrameworkName()).isEqualTo("Rider");
+        });
+        verifyNoInteractions(packRepository, cardRepository, cardTemplateMapper);
+    }
+
+    // ── Stock ban đầu SINGLE_CARD: một lần mint theo lô, không save từng card ─
+    @Test
+    void createProduct_singleCardMintsInitialStockInOneCall() {
+        CardTemplate template = new CardTemplate();
+        template.setCardTemplateId(3);
+        template.setName("The Fool");
+        when(cardTemplateRepository.findById(3)).thenReturn(Optional.of(template));
+        when(productRepository.save(any(Product.class))).thenAnswer(inv -> {
+            Product saved = inv.getArgument(0);
+            saved.setProductId(9);
+            return saved;
+        });
+        when(productMapper.toProductResponse(any(Product.class)))
+                .thenReturn(ProductResponse.builder().productId(9).build());
+        when(productRepository.findProductIdsByCardTemplateId(3)).thenReturn(List.of(9));
+        when(cardTemplateMapper.toSummaryResponse(any(CardTemplate.class)))
+                .thenReturn(CardTemplateResponse.Summary.builder().cardTemplateId(3).name("The Fool").build());
+
+        ProductRequestDTO request = new ProductRequestDTO();
+        request.setProductType(ProductType.SINGLE_CARD);
+        request.setPrice(BigDecimal.valueOf(50000));
+        request.setCardTemplateId(3);
+        request.setInitialStock(10_000);
+
+        productService.createProduct(request);
+
+        verify(cardStockMintingService).mintReadyCards(any(Product.class), eq(10_000), isNull());
+        verify(cardRepository, never()).save(any());
+    }
+}
@@ -4,23 +4,20 @@ import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.service.impl.SEPayGatewayimpl;
 import com.example.PixelMageEcomerceProject.service.model.InitPaymentResult;
 import com.example.PixelMageEcomerceProject.service.model.PaymentStrategyRequest;
+import com.example.PixelMageEcomerceProject.service.model.WebhookResult;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
-import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.RedisTemplate;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @ExtendWith(MockitoExtension.class)
 class SEPayGatewayTest {
 
-    @Mock
-    private RedisTemplate<String, Object> redisTemplate;
-
     @InjectMocks
     private SEPayGatewayimpl sePayGateway;
 
@@ -50,4 +47,22 @@ class SEPayGatewayTest {
         // THEN
         assertThat(status).isEqualTo(PaymentStatus.PENDING);
     }
+
+    @Test
+    void parseOrderId_acceptsBankMangledReferences() {
+        assertThat(SEPayGatewayimpl.parseOrderId("PIXELMAGE_ORD_6 chuyen tien")).isEqualTo(6);
+        assertThat(SEPayGatewayimpl.parseOrderId("MBVCB.123 pixelmageord42 FT2401")).isEqualTo(42);
+        assertThat(SEPayGatewayimpl.parseOrderId("thanh toan ORD_7")).isEqualTo(7);
+        assertThat(SEPayGatewayimpl.parseOrderId("WORD123 khong phai don")).isNull();
+        assertThat(SEPayGatewayimpl.parseOrderId("")).isNull();
+    }
+
+    @Test
+    void handleWebhook_withoutOrderReference_isNotSuccessful() {
+        WebhookResult result = sePayGateway.handleWebhook(Map.of(
+                "id", "9001", "content", "tien nha thang 5", "transferAmount", "50000"));
+
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getOrderId()).isNull();
+    }
 }
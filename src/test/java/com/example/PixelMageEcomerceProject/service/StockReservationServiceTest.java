@@ -0,0 +1,143 @@
+package com.example.PixelMageEcomerceProject.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.PixelMageEcomerceProject.entity.OrderItem;
+import com.example.PixelMageEcomerceProject.entity.PackCategory;
+import com.example.PixelMageEcomerceProject.entity.Product;
+import com.example.PixelMageEcomerceProject.entity.StockReservation;
+import com.example.PixelMageEcomerceProject.enums.PackStatus;
+import com.example.PixelMageEcomerceProject.enums.ProductType;
+import com.example.PixelMageEcomerceProject.enums.ReservationStatus;
+import com.example.PixelMageEcomerceProject.exceptions.PackReservationException;
+import com.example.PixelMageEcomerceProject.repository.CardRepository;
+import com.example.PixelMageEcomerceProject.repository.PackRepository;
+import com.example.PixelMageEcomerceProject.repository.StockReservationRepository;
+import com.example.PixelMageEcomerceProject.service.impl.StockReservationServiceImpl;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockReservationServiceTest {
+
+    private static final String COUNTER = "stock:{avail}:pack-category:5";
+    private static final String RESERVING = "stock:{avail}:reserving:pack-category:5";
+    private static final String RELEASING = "stock:{avail}:releasing:pack-category:5";
+
+    @Mock private StockReservationRepository reservationRepository;
+    @Mock private PackRepository packRepository;
+    @Mock private CardRepository cardRepository;
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private ValueOperations<String, String> valueOps;
+
+    @InjectMocks
+    private StockReservationServiceImpl stockReservationService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(stockReservationService, "reservationTtlMillis", 900_000L);
+        ReflectionTestUtils.setField(stockReservationService, "counterTtlMillis", 60_000L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+    }
+
+    private OrderItem gachaItem(int quantity) {
+        PackCategory category = new PackCategory();
+        category.setPackCategoryId(5);
+        Product product = new Product();
+        product.setProductId(7);
+        product.setName("Starter Pack");
+        product.setProductType(ProductType.GACHA_PACK);
+        product.setPackCategory(category);
+        OrderItem item = new OrderItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    // ── Hết hàng: từ chối trên Redis, không ghi mirror nào ──────────────────
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_notEnoughStock_throwsWithoutWritingReservations() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(1L);
+
+        assertThatThrownBy(() -> stockReservationService.reserve(100, List.of(gachaItem(2))))
+                .isInstanceOf(PackReservationException.class)
+                .hasMessageContaining("Starter Pack");
+        verify(reservationRepository, never()).saveAll(anyList());
+    }
+
+    // ── Counter chưa có: dựng từ tồn vật lý − tổng HELD rồi giữ hàng ────────
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_missingCounter_initialisesFromDatabaseThenHolds() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(COUNTER, RESERVING)), eq("2"), eq("600000")))
+                .thenReturn(-1L, 0L);
+        when(redisTemplate.hasKey(COUNTER)).thenReturn(false);
+        when(packRepository.countByPackCategory_PackCategoryIdAndStatus(5, PackStatus.STOCKED)).thenReturn(10L);
+        when(reservationRepository.sumHeldQuantity("pack-category:5")).thenReturn(3L);
+
+        stockReservationService.reserve(100, List.of(gachaItem(2)));
+
+        verify(valueOps).setIfAbsent(COUNTER, "7", Duration.ofMillis(60_000));
+        verify(reservationRepository).saveAll(anyList());
+    }
+
+    // ── Huỷ order: HELD → RELEASED và cộng trả counter ──────────────────────
+    @Test
+    @SuppressWarnings("unchecked")
+    void release_marksReleasedAndReturnsQuantityToCounter() {
+        StockReservation held = new StockReservation();
+        held.setOrderId(100);
+        held.setStockKey("pack-category:5");
+        held.setQuantity(2);
+        held.setStatus(ReservationStatus.HELD);
+        when(reservationRepository.lockHeldByOrderId(100)).thenReturn(List.of(held));
+
+        int released = stockReservationService.release(100);
+
+        assertThat(released).isEqualTo(1);
+        assertThat(held.getStatus()).isEqualTo(ReservationStatus.RELEASED);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(COUNTER, RELEASING)), eq("2"), eq("1"));
+    }
+
+    // ── Dựng lại counter giữa lúc có order giữ / trả dở: không cộng trùng phần chưa commit ─
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_rebuildSubtractsInFlightHoldsAndReleases() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(COUNTER, RESERVING)), eq("2"), eq("600000")))
+                .thenReturn(-1L, 0L);
+        when(redisTemplate.hasKey(COUNTER)).thenReturn(false);
+        when(valueOps.get(RESERVING)).thenReturn("4");
+        when(valueOps.get(RELEASING)).thenReturn("1");
+        when(packRepository.countByPackCategory_PackCategoryIdAndStatus(5, PackStatus.STOCKED)).thenReturn(10L);
+        when(reservationRepository.sumHeldQuantity("pack-category:5")).thenReturn(3L);
+
+        stockReservationService.reserve(100, List.of(gachaItem(2)));
+
+        verify(valueOps).setIfAbsent(COUNTER, "2", Duration.ofMillis(60_000));
+        // Không có transaction: coi như commit, lượng giữ dở được xoá, counter không bị cộng trả
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(COUNTER, RESERVING)), eq("2"), eq("0"));
+    }
+}
@@ -1,23 +1,19 @@
 package com.example.PixelMageEcomerceProject.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -25,18 +21,17 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 
 import com.example.PixelMageEcomerceProject.config.VNPayConfig;
 import com.example.PixelMageEcomerceProject.entity.Order;
 import com.example.PixelMageEcomerceProject.entity.Payment;
 import com.example.PixelMageEcomerceProject.enums.PaymentStatus;
 import com.example.PixelMageEcomerceProject.event.PaymentSuccessEvent;
-import com.example.PixelMageEcomerceProject.exceptions.RedisUnavailableException;
 import com.example.PixelMageEcomerceProject.repository.OrderRepository;
 import com.example.PixelMageEcomerceProject.repository.PaymentRepository;
 import com.example.PixelMageEcomerceProject.service.impl.VNPayGatewayImpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
+import com.example.PixelMageEcomerceProject.service.model.WebhookResult;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -50,22 +45,15 @@ class VNPayServiceTest {
     @Mock
     private PaymentRepository paymentRepository;
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
-    @Mock
-    private ValueOperations<String, Object> valueOperations;
-    @Mock
     private HttpServletRequest request;
     @Mock
     private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PaymentService paymentService;
 
     @InjectMocks
     private VNPayGatewayImpl vnPayService;
 
-    @BeforeEach
-    void setUp() {
-        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-    }
-
     @Test
     void processIpn_success_firstTime() {
         // Mocking VNPay parameters
@@ -87,9 +75,6 @@ class VNPayServiceTest {
         when(orderRepository.findById(123)).thenReturn(Optional.of(order));
         when(vnPayConfig.getVnp_HashSecret()).thenReturn("SECRET");
 
-        // Mocking Redis for the first processing
-        when(valueOperations.setIfAbsent(eq("payment:vnpay:TRANS123"), eq("processed"), any(Duration.class)))
-                .thenReturn(true);
 
         try (MockedStatic<VNPayConfig> mockedConfig = mockStatic(VNPayConfig.class)) {
             mockedConfig.when(() -> VNPayConfig.hashAllFields(any(), eq("SECRET"))).thenReturn("VALID_HASH");
@@ -105,8 +90,9 @@ class VNPayServiceTest {
         }
     }
 
+    // ── Replay / worker retry của cùng IPN: xử lý lại, không tạo payment thứ hai ─
     @Test
-    void processIpn_duplicate_returnsSuccessImmediately() {
+    void processIpn_redelivery_doesNotDuplicatePayment() {
         // Mocking VNPay parameters
         List<String> paramNames = List.of(
                 "vnp_TxnRef", "vnp_TransactionNo", "vnp_ResponseCode",
@@ -120,11 +106,11 @@ class VNPayServiceTest {
         when(request.getParameter("vnp_SecureHash")).thenReturn("VALID_HASH");
 
         // Mocking Service dependencies
+        Order order = new Order();
+        order.setOrderId(123);
+        when(orderRepository.findById(123)).thenReturn(Optional.of(order));
         when(vnPayConfig.getVnp_HashSecret()).thenReturn("SECRET");
-
-        // Mocking Redis: key already exists
-        when(valueOperations.setIfAbsent(eq("payment:vnpay:TRANS123"), eq("processed"), any(Duration.class)))
-                .thenReturn(false);
+        when(paymentRepository.findByGatewayTransactionId("VNPAY_TRANS123")).thenReturn(Optional.of(new Payment()));
 
         try (MockedStatic<VNPayConfig> mockedConfig = mockStatic(VNPayConfig.class)) {
             mockedConfig.when(() -> VNPayConfig.hashAllFields(any(), eq("SECRET"))).thenReturn("VALID_HASH");
@@ -133,37 +119,38 @@ class VNPayServiceTest {
 
             assertEquals("00", result.get("RspCode"));
             assertEquals("Confirm Success", result.get("Message"));
-            verify(orderRepository, never()).findById(any()); // Should skip lookup for duplicate
             verify(paymentRepository, never()).save(any());
-            verify(eventPublisher, never()).publishEvent(any());
+            verify(eventPublisher).publishEvent(any(PaymentSuccessEvent.class));
         }
     }
 
+    // ── IPN thất bại đều có vnp_TransactionNo = "0": key dedupe phải khác nhau theo vnp_TxnRef ─
     @Test
-    void processIpn_redisUnavailable_throwsException() {
-        // Mocking VNPay parameters
-        List<String> paramNames = List.of(
-                "vnp_TxnRef", "vnp_TransactionNo", "vnp_ResponseCode",
-                "vnp_Amount", "vnp_SecureHash");
-        when(request.getParameterNames()).thenReturn(
-                Collections.enumeration(paramNames));
-        when(request.getParameter("vnp_TxnRef")).thenReturn("123-random");
-        when(request.getParameter("vnp_TransactionNo")).thenReturn("TRANS123");
-        when(request.getParameter("vnp_ResponseCode")).thenReturn("00");
-        when(request.getParameter("vnp_Amount")).thenReturn("100000");
-        when(request.getParameter("vnp_SecureHash")).thenReturn("VALID_HASH");
+    void webhookEventId_failedTransactionsDoNotCollide() {
+        String first = vnPayService.webhookEventId(Map.of(
+                "vnp_TxnRef", "123-aaaa", "vnp_TransactionNo", "0", "vnp_ResponseCode", "24"));
+        String second = vnPayService.webhookEventId(Map.of(
+                "vnp_TxnRef", "456-bbbb", "vnp_TransactionNo", "0", "vnp_ResponseCode", "24"));
+
+        assertEquals("123-aaaa:0", first);
+        assertEquals("456-bbbb:0", second);
+    }
 
-        // Mocking Service dependencies
+    // ── IPN thất bại: ghi FAILED (đánh thức client đang chờ), không phát PaymentSuccessEvent ─
+    @Test
+    void handleWebhook_failedPayment_recordsFailure() {
         when(vnPayConfig.getVnp_HashSecret()).thenReturn("SECRET");
-
-        // Mocking Redis failure
-        when(valueOperations.setIfAbsent(anyString(), any(), any(Duration.class)))
-                .thenThrow(new RuntimeException("Redis connection failed"));
+        when(orderRepository.existsById(123)).thenReturn(true);
 
         try (MockedStatic<VNPayConfig> mockedConfig = mockStatic(VNPayConfig.class)) {
             mockedConfig.when(() -> VNPayConfig.hashAllFields(any(), eq("SECRET"))).thenReturn("VALID_HASH");
 
-            assertThrows(RedisUnavailableException.class, () -> vnPayService.processIpn(request));
+            WebhookResult result = vnPayService.handleWebhook(new HashMap<>(Map.of(
+                    "vnp_TxnRef", "123-random", "vnp_TransactionNo", "0", "vnp_ResponseCode", "24",
+                    "vnp_Amount", "100000", "vnp_SecureHash", "VALID_HASH")));
+
+            assertEquals(PaymentStatus.FAILED, result.getStatus());
+            verify(paymentService).recordPaymentFailure(123, null, "VNPay response code 24");
             verify(eventPublisher, never()).publishEvent(any());
         }
     }
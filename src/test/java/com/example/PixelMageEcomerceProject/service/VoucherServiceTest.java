@@ -20,6 +20,7 @@ import org.mockito.MockitoAnnotations;
 import com.example.PixelMageEcomerceProject.dto.response.VoucherResponse;
 import com.example.PixelMageEcomerceProject.entity.Voucher;
 import com.example.PixelMageEcomerceProject.repository.VoucherRepository;
+import com.example.PixelMageEcomerceProject.serial.SerialNumberGenerator;
 import com.example.PixelMageEcomerceProject.service.impl.VoucherServiceImpl;
 
 public class VoucherServiceTest {
@@ -27,6 +28,9 @@ public class VoucherServiceTest {
     @Mock
     private VoucherRepository voucherRepository;
 
+    @Mock
+    private SerialNumberGenerator serialNumberGenerator;
+
     @InjectMocks
     private VoucherServiceImpl voucherService;
 
@@ -0,0 +1,59 @@
+package com.example.PixelMageEcomerceProject.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class ScalableBloomFilterTest {
+
+    // ── Không bao giờ có false negative, kể cả sau khi grow nhiều slice ───────
+    @Test
+    void mightContain_neverMissesInsertedEntries() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(64, 0.001);
+        SplittableRandom random = new SplittableRandom(7);
+        long[][] inserted = new long[10_000][2];
+        for (long[] hash : inserted) {
+            hash[0] = random.nextLong();
+            hash[1] = random.nextLong();
+            filter.put(hash[0], hash[1]);
+        }
+
+        for (long[] hash : inserted) {
+            assertThat(filter.mightContain(hash[0], hash[1])).isTrue();
+        }
+        assertThat(filter.size()).isEqualTo(10_000);
+    }
+
+    // ── FP rate thực tế nằm trong cận 2 × target ─────────────────────────────
+    @Test
+    void falsePositiveRate_staysWithinBound() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_024, 0.001);
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 20_000; i++) {
+            filter.put(random.nextLong(), random.nextLong());
+        }
+
+        int probes = 200_000;
+        int falsePositives = 0;
+        SplittableRandom other = new SplittableRandom(99);
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(other.nextLong(), other.nextLong())) {
+                falsePositives++;
+            }
+        }
+
+        assertThat((double) falsePositives / probes).isLessThan(2 * filter.targetFpp());
+        assertThat(filter.estimatedFpp()).isLessThan(2 * filter.targetFpp());
+    }
+
+    @Test
+    void emptyFilter_containsNothing() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_024, 0.001);
+
+        assertThat(filter.mightContain(1L, 2L)).isFalse();
+        assertThat(filter.size()).isZero();
+        assertThat(filter.sizeInBytes()).isPositive();
+    }
+}
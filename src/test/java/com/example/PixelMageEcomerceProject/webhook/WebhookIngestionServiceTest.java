@@ -0,0 +1,99 @@
+package com.example.PixelMageEcomerceProject.webhook;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.outbox.FulfillmentWorker;
+import com.example.PixelMageEcomerceProject.repository.OutboxEventRepository;
+import com.example.PixelMageEcomerceProject.repository.WebhookInboxRepository;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WebhookIngestionServiceTest {
+
+    private static final Map<String, String> SEPAY_PAYLOAD = Map.of(
+            "id", "93017", "content", "PIXELMAGEORD12", "transferAmount", "150000");
+
+    @Mock private PaymentGatewayStrategy sepay;
+    @Mock private WebhookInboxRepository inboxRepository;
+    @Mock private OutboxEventRepository outboxEventRepository;
+    @Mock private FulfillmentWorker fulfillmentWorker;
+
+    private WebhookIngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() {
+        ingestionService = new WebhookIngestionService(Map.of("sepay", sepay), inboxRepository,
+                outboxEventRepository, fulfillmentWorker, new ObjectMapper());
+        when(sepay.verifySignature(any())).thenReturn(true);
+        when(sepay.webhookEventId(any())).thenAnswer(inv -> inv.<Map<String, String>>getArgument(0).get("id"));
+    }
+
+    // ── Webhook mới: ghi inbox + outbox, chưa parse / xử lý gì ──────────────
+    @Test
+    void accept_newWebhook_storesInboxAndQueuesOutbox() {
+        when(inboxRepository.insertIfAbsent(eq("sepay"), eq("sepay:93017"), anyString(), any())).thenReturn(List.of(5L));
+
+        WebhookIngestionService.Receipt receipt = ingestionService.accept("SEPay", SEPAY_PAYLOAD);
+
+        assertThat(receipt.outcome()).isEqualTo(WebhookIngestionService.Outcome.ACCEPTED);
+        ArgumentCaptor<OutboxEvent> outbox = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).save(outbox.capture());
+        assertThat(outbox.getValue().getEventType()).isEqualTo(OutboxEvent.TYPE_WEBHOOK_RECEIVED);
+        assertThat(outbox.getValue().getAggregateId()).isEqualTo("5");
+        verify(fulfillmentWorker).wakeUpAfterCommit();
+        verify(sepay, never()).handleWebhook(any());
+    }
+
+    // ── Trùng dedup key: trả 200, không tạo việc mới ────────────────────────
+    @Test
+    void accept_duplicate_doesNotQueue() {
+        when(inboxRepository.insertIfAbsent(anyString(), anyString(), anyString(), any())).thenReturn(List.of());
+
+        WebhookIngestionService.Receipt receipt = ingestionService.accept("sepay", SEPAY_PAYLOAD);
+
+        assertThat(receipt.outcome()).isEqualTo(WebhookIngestionService.Outcome.DUPLICATE);
+        verify(outboxEventRepository, never()).save(any());
+    }
+
+    // ── Sai chữ ký: từ chối, không ghi gì ───────────────────────────────────
+    @Test
+    void accept_invalidSignature_rejected() {
+        when(sepay.verifySignature(any())).thenReturn(false);
+
+        WebhookIngestionService.Receipt receipt = ingestionService.accept("sepay", SEPAY_PAYLOAD);
+
+        assertThat(receipt.outcome()).isEqualTo(WebhookIngestionService.Outcome.INVALID);
+        verify(inboxRepository, never()).insertIfAbsent(anyString(), anyString(), anyString(), any());
+    }
+
+    // ── Gateway không gửi id: dedupe theo hash payload, độc lập thứ tự field ─
+    @Test
+    void dedupKey_withoutEventId_hashesPayload() {
+        String key = WebhookIngestionService.dedupKey("sepay", null, "{\"a\":\"1\"}");
+
+        assertThat(key).startsWith("sepay:sha256:").hasSizeLessThanOrEqualTo(96);
+        assertThat(WebhookIngestionService.dedupKey("sepay", "", "{\"a\":\"1\"}")).isEqualTo(key);
+        assertThat(WebhookIngestionService.dedupKey("sepay", null, "{\"a\":\"2\"}")).isNotEqualTo(key);
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.PixelMageEcomerceProject.webhook;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.entity.WebhookInbox;
+import com.example.PixelMageEcomerceProject.enums.OutboxStatus;
+import com.example.PixelMageEcomerceProject.enums.WebhookInboxStatus;
+import com.example.PixelMageEcomerceProject.outbox.FulfillmentWorker;
+import com.example.PixelMageEcomerceProject.outbox.OutboxEventHandler;
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+import com.example.PixelMageEcomerceProject.repository.OutboxEventRepository;
+import com.example.PixelMageEcomerceProject.repository.WebhookInboxRepository;
+import com.example.PixelMageEcomerceProject.service.impl.SEPayGatewayimpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentGatewayStrategy;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Phát lại webhook SEPay với nhịp cố định qua toàn bộ pipeline trong JVM: ingest → inbox → outbox →
+ * worker pool → parse SEPay → ghi payment. Repository là bộ nhớ trong (mock có state) để đo phần Java —
+ * thời gian ack và độ trễ xử lý — không phụ thuộc DB:
+ * mvn test -Dtest=WebhookPipelineLoadTest -Dwebhook.load.enabled=true
+ *   [-Dwebhook.load.count=10000] [-Dwebhook.load.per-minute=10000] [-Dwebhook.load.workers=4]
+ */
+@EnabledIfSystemProperty(named = "webhook.load.enabled", matches = "true")
+class WebhookPipelineLoadTest {
+
+    private static final int DUPLICATE_EVERY = 20; // 5% webhook gửi lại (gateway retry)
+
+    private final ConcurrentMap<Long, WebhookInbox> inbox = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> dedupKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, OutboxEvent> outbox = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Long> dueOutboxIds = new ConcurrentSkipListSet<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger paymentsSaved = new AtomicInteger();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replaysWebhooksAtTargetRate() throws Exception {
+        int count = Integer.getInteger("webhook.load.count", 10_000);
+        int perMinute = Integer.getInteger("webhook.load.per-minute", 10_000);
+        int workers = Integer.getInteger("webhook.load.workers", 4);
+
+        WebhookInboxRepository inboxRepository = inMemoryInbox();
+        OutboxEventRepository outboxRepository = inMemoryOutbox();
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        when(orderRepository.existsById(anyInt())).thenReturn(true);
+        PaymentService paymentService = mock(PaymentService.class);
+        when(paymentService.savePaymentRecord(any(), any(), any(), any())).thenAnswer(inv -> {
+            paymentsSaved.incrementAndGet();
+            return null;
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, PaymentGatewayStrategy> strategies = Map.of("sepay", new SEPayGatewayimpl());
+        List<OutboxEventHandler> handlers = List.of(new WebhookReceivedHandler(strategies, inboxRepository,
+                orderRepository, paymentService, objectMapper));
+        FulfillmentWorker worker = new FulfillmentWorker(outboxRepository, handlers, transactionManager);
+        ReflectionTestUtils.setField(worker, "enabled", true);
+        ReflectionTestUtils.setField(worker, "threads", workers);
+        ReflectionTestUtils.setField(worker, "leaseMillis", 60_000L);
+        ReflectionTestUtils.setField(worker, "maxAttempts", 8);
+        ReflectionTestUtils.setField(worker, "backoffBaseMillis", 100L);
+        ReflectionTestUtils.setField(worker, "backoffMaxMillis", 1_000L);
+        ReflectionTestUtils.invokeMethod(worker, "init");
+        WebhookIngestionService ingestion = new WebhookIngestionService(strategies, inboxRepository,
+                outboxRepository, worker, objectMapper);
+
+        long intervalNanos = Duration.ofMinutes(1).toNanos() / perMinute;
+        long[] ackNanos = new long[count];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        long start = System.nanoTime();
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(senders.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                        LockSupport.parkNanos(start + i * intervalNanos - System.nanoTime());
+                        // Mỗi webhook thứ DUPLICATE_EVERY là bản gửi lại của webhook liền trước
+                        int sepayId = i % DUPLICATE_EVERY == DUPLICATE_EVERY - 1 ? i - 1 : i;
+                        Map<String, String> payload = Map.of(
+                                "id", String.valueOf(500_000 + sepayId),
+                                "gateway", "MBBank",
+                                "content", "MBVCB." + sepayId + " PIXELMAGEORD" + (1 + sepayId % 5000) + " FT24",
+                                "transferAmount", "150000");
+                        long sent = System.nanoTime();
+                        WebhookIngestionService.Receipt receipt = ingestion.accept("sepay", payload);
+                        ackNanos[i] = System.nanoTime() - sent;
+                        if (receipt.outcome() == WebhookIngestionService.Outcome.DUPLICATE) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            senders.shutdown();
+        }
+        long sendNanos = System.nanoTime() - start;
+
+        int unique = count - duplicates.get();
+        long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        while (paymentsSaved.get() < unique && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        long drainNanos = System.nanoTime() - start - sendNanos;
+        ReflectionTestUtils.invokeMethod(worker, "shutdown");
+
+        Arrays.sort(ackNanos);
+        FulfillmentWorker.Stats stats = worker.stats();
+        System.out.printf("[webhook-load] %d webhooks (%d duplicate) in %.1fs, ack p50=%.2fms p99=%.2fms max=%.2fms, "
+                + "backlog drained %.0fms after last send, processing lag p50=%.0fms p95=%.0fms%n",
+                count, duplicates.get(), sendNanos / 1e9, ackNanos[count / 2] / 1e6,
+                ackNanos[(int) (count * 0.99)] / 1e6, ackNanos[count - 1] / 1e6, drainNanos / 1e6,
+                stats.lagP50Ms(), stats.lagP95Ms());
+
+        assertThat(duplicates.get()).isEqualTo(count / DUPLICATE_EVERY);
+        assertThat(paymentsSaved.get()).isEqualTo(unique);
+        assertThat(inbox.values()).allMatch(row -> row.getStatus() == WebhookInboxStatus.PROCESSED);
+        assertThat(outbox.values()).noneMatch(event -> event.getStatus() == OutboxStatus.DEAD);
+        assertThat(Duration.ofNanos(ackNanos[(int) (count * 0.99)])).isLessThan(Duration.ofMillis(50));
+    }
+
+    private WebhookInboxRepository inMemoryInbox() {
+        WebhookInboxRepository repository = mock(WebhookInboxRepository.class);
+        when(repository.insertIfAbsent(anyString(), anyString(), anyString(), any())).thenAnswer(inv -> {
+            long id = ids.incrementAndGet();
+            if (dedupKeys.putIfAbsent(inv.getArgument(1), id) != null) {
+                return List.of();
+            }
+            WebhookInbox row = new WebhookInbox(id, inv.getArgument(0), inv.getArgument(1), inv.getArgument(2),
+                    WebhookInboxStatus.RECEIVED, null, null, inv.getArgument(3), null);
+            inbox.put(id, row);
+            return List.of(id);
+        });
+        when(repository.findById(any())).thenAnswer(inv -> Optional.ofNullable(inbox.get(inv.<Long>getArgument(0))));
+        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        return repository;
+    }
+
+    private OutboxEventRepository inMemoryOutbox() {
+        OutboxEventRepository repository = mock(OutboxEventRepository.class);
+        when(repository.save(any())).thenAnswer(inv -> {
+            OutboxEvent event = inv.getArgument(0);
+            if (event.getEventId() == null) {
+                event.setEventId(ids.incrementAndGet());
+                event.setCreatedAt(LocalDateTime.now());
+                outbox.put(event.getEventId(), event);
+            }
+            if (event.getStatus() == OutboxStatus.PENDING) {
+                dueOutboxIds.add(event.getEventId());
+            }
+            return event;
+        });
+        when(repository.findById(any())).thenAnswer(inv -> Optional.ofNullable(outbox.get(inv.<Long>getArgument(0))));
+        // Giống claimDue: lấy dòng PENDING tới hạn theo thứ tự id, chuyển PROCESSING
+        when(repository.claimDue(any(), any(), anyString(), anyInt())).thenAnswer(inv -> {
+            LocalDateTime now = inv.getArgument(0);
+            int limit = inv.getArgument(3);
+            List<Long> claimed = new ArrayList<>();
+            for (Long id : dueOutboxIds) {
+                if (claimed.size() >= limit) {
+                    break;
+                }
+                OutboxEvent event = outbox.get(id);
+                if (!event.getNextAttemptAt().isAfter(now) && dueOutboxIds.remove(id)) {
+                    event.setStatus(OutboxStatus.PROCESSING);
+                    event.setAttempts(event.getAttempts() + 1);
+                    event.setLockedUntil(inv.getArgument(1));
+                    event.setLockedBy(inv.getArgument(2));
+                    claimed.add(id);
+                }
+            }
+            return claimed;
+        });
+        // Giống complete / fail: UPDATE có điều kiện lease
+        when(repository.complete(any(), anyString(), anyInt(), any())).thenAnswer(inv -> {
+            OutboxEvent event = leasedEvent(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2));
+            if (event == null) {
+                return 0;
+            }
+            event.setStatus(OutboxStatus.DONE);
+            event.setProcessedAt(inv.getArgument(3));
+            return 1;
+        });
+        when(repository.fail(any(), anyString(), anyInt(), anyString(), any(), anyString())).thenAnswer(inv -> {
+            OutboxEvent event = leasedEvent(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2));
+            if (event == null) {
+                return 0;
+            }
+            event.setStatus(OutboxStatus.valueOf(inv.getArgument(3)));
+            event.setNextAttemptAt(inv.getArgument(4));
+            event.setLastError(inv.getArgument(5));
+            if (event.getStatus() == OutboxStatus.PENDING) {
+                dueOutboxIds.add(event.getEventId());
+            }
+            return 1;
+        });
+        return repository;
+    }
+
+    private OutboxEvent leasedEvent(Long eventId, String owner, int attempts) {
+        OutboxEvent event = outbox.get(eventId);
+        return event != null && event.getStatus() == OutboxStatus.PROCESSING && owner.equals(event.getLockedBy())
+                && attempts == event.getAttempts() ? event : null;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.PixelMageEcomerceProject.webhook;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.PixelMageEcomerceProject.entity.OutboxEvent;
+import com.example.PixelMageEcomerceProject.entity.WebhookInbox;
+import com.example.PixelMageEcomerceProject.enums.PaymentGateway;
+import com.example.PixelMageEcomerceProject.enums.WebhookInboxStatus;
+import com.example.PixelMageEcomerceProject.repository.OrderRepository;
+import com.example.PixelMageEcomerceProject.repository.WebhookInboxRepository;
+import com.example.PixelMageEcomerceProject.service.impl.SEPayGatewayimpl;
+import com.example.PixelMageEcomerceProject.service.interfaces.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookReceivedHandlerTest {
+
+    @Mock private WebhookInboxRepository inboxRepository;
+    @Mock private OrderRepository orderRepository;
+    @Mock private PaymentService paymentService;
+
+    private WebhookReceivedHandler handler;
+    private WebhookInbox inbox;
+
+    @BeforeEach
+    void setUp() {
+        handler = new WebhookReceivedHandler(Map.of("sepay", new SEPayGatewayimpl()), inboxRepository,
+                orderRepository, paymentService, new ObjectMapper());
+        inbox = new WebhookInbox();
+        inbox.setInboxId(5L);
+        inbox.setGateway("sepay");
+        inbox.setStatus(WebhookInboxStatus.RECEIVED);
+        when(inboxRepository.findById(5L)).thenReturn(Optional.of(inbox));
+    }
+
+    private static OutboxEvent received() {
+        return OutboxEvent.pending(OutboxEvent.TYPE_WEBHOOK_RECEIVED, "5", null);
+    }
+
+    // ── Nội dung khớp order: ghi payment, inbox PROCESSED ───────────────────
+    @Test
+    void handle_matchingOrder_savesPayment() {
+        inbox.setPayload("{\"content\":\"PIXELMAGEORD12\",\"id\":\"93017\",\"transferAmount\":\"150000\"}");
+        when(orderRepository.existsById(12)).thenReturn(true);
+
+        handler.handle(received());
+
+        verify(paymentService).savePaymentRecord(eq(12), eq("93017"), eq(PaymentGateway.SEPAY), anyMap());
+        assertThat(inbox.getStatus()).isEqualTo(WebhookInboxStatus.PROCESSED);
+        assertThat(inbox.getOrderId()).isEqualTo(12);
+    }
+
+    // ── Order không tồn tại: IGNORED, không retry vô ích ────────────────────
+    @Test
+    void handle_unknownOrder_ignored() {
+        inbox.setPayload("{\"content\":\"PIXELMAGEORD99\",\"id\":\"93018\",\"transferAmount\":\"150000\"}");
+        when(orderRepository.existsById(99)).thenReturn(false);
+
+        handler.handle(received());
+
+        verify(paymentService, never()).savePaymentRecord(any(), any(), any(), any());
+        assertThat(inbox.getStatus()).isEqualTo(WebhookInboxStatus.IGNORED);
+    }
+}